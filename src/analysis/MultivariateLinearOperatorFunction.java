@@ -0,0 +1,16 @@
+package analysis;
+
+import linear.RealLinearOperator;
+
+public interface MultivariateLinearOperatorFunction {
+
+    /**
+     * Compute the value for the function at the given point.
+     * @param point point at which the function must be evaluated
+     * @return linear operator value for the given point
+     * @exception IllegalArgumentException if points dimension is wrong
+     */
+    RealLinearOperator value(double[] point)
+        throws IllegalArgumentException;
+
+}
@@ -0,0 +1,21 @@
+package analysis;
+
+public interface UnivariateBatchFunction extends UnivariateFunction {
+    /**
+     * Compute the values of the function at several points.
+     * <p>
+     * Implementations should return the same values as calls to
+     * {@link #value(double)} for each point, but may share work between
+     * points or evaluate them in a vectorized way.
+     * </p>
+     *
+     * @param x Points at which the function values should be computed.
+     * @param result Array where to store the function values.
+     * @param off Index of the first element to process in both arrays.
+     * @param len Number of elements to process.
+     * @throws IllegalArgumentException when the activated method itself can
+     * ascertain that a precondition, specified in the API expressed at the
+     * level of the activated method, has been violated.
+     */
+    void value(double[] x, double[] result, int off, int len);
+}
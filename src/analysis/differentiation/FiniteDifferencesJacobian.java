@@ -0,0 +1,233 @@
+package analysis.differentiation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import math.util.ConcurrencyUtils;
+import analysis.MultivariateMatrixFunction;
+import analysis.MultivariateVectorFunction;
+import exception.DimensionMismatchException;
+import exception.NoDataException;
+import exception.NotStrictlyPositiveException;
+import exception.NullArgumentException;
+
+public class FiniteDifferencesJacobian implements MultivariateMatrixFunction {
+
+    /** Underlying vector-valued function. */
+    private final MultivariateVectorFunction function;
+
+    /** Step sizes for each parameter. */
+    private final double[] steps;
+
+    /** Sparsity pattern, {@code pattern[i][j]} is true if component i depends on parameter j (may be null). */
+    private final boolean[][] pattern;
+
+    /** Groups of structurally orthogonal columns, evaluated with a single function call each. */
+    private final int[][] groups;
+
+    /** Executor running the perturbed evaluations (may be null). */
+    private final ExecutorService executor;
+
+    /**
+     * Build a dense Jacobian, with one function evaluation per parameter.
+     * <p>
+     * The function is evaluated at the unperturbed point and at one
+     * perturbed point per parameter. If {@code executor} is not null,
+     * the perturbed evaluations are run concurrently, so the function
+     * must then be safe for use by several threads at once.
+     * </p>
+     * @param function function to differentiate
+     * @param steps step sizes for forward differences, one per parameter
+     * @param executor executor for the perturbed evaluations (may be null
+     * to evaluate all points in the calling thread)
+     * @exception NullArgumentException if {@code function} or {@code steps} is null
+     * @exception NoDataException if {@code steps} is empty
+     * @exception NotStrictlyPositiveException if a step is not strictly positive
+     */
+    public FiniteDifferencesJacobian(final MultivariateVectorFunction function,
+                                     final double[] steps,
+                                     final ExecutorService executor)
+        throws NullArgumentException, NoDataException, NotStrictlyPositiveException {
+        this(function, steps, null, executor);
+    }
+
+    /**
+     * Build a sparse Jacobian, sharing function evaluations between independent parameters.
+     * <p>
+     * Parameters that never affect the same function component are
+     * perturbed together in a single evaluation (Curtis-Powell-Reid
+     * column grouping). For banded or block-sparse Jacobians this
+     * reduces the number of evaluations from the number of parameters
+     * to roughly the maximal number of parameters a single component
+     * depends on. Entries outside of the pattern are set to 0.
+     * </p>
+     * <p>
+     * If {@code executor} is not null, the evaluations of the groups are
+     * run concurrently, so the function must then be safe for use by
+     * several threads at once.
+     * </p>
+     * @param function function to differentiate
+     * @param steps step sizes for forward differences, one per parameter
+     * @param pattern sparsity pattern, {@code pattern[i][j]} must be true if
+     * component i depends on parameter j (may be null for a dense Jacobian)
+     * @param executor executor for the perturbed evaluations (may be null
+     * to evaluate all points in the calling thread)
+     * @exception NullArgumentException if {@code function} or {@code steps} is null
+     * @exception NoDataException if {@code steps} is empty
+     * @exception NotStrictlyPositiveException if a step is not strictly positive
+     * @exception DimensionMismatchException if a row of the pattern does not
+     * have one entry per parameter
+     */
+    public FiniteDifferencesJacobian(final MultivariateVectorFunction function,
+                                     final double[] steps,
+                                     final boolean[][] pattern,
+                                     final ExecutorService executor)
+        throws NullArgumentException, NoDataException,
+               NotStrictlyPositiveException, DimensionMismatchException {
+
+        if (function == null || steps == null) {
+            throw new NullArgumentException();
+        }
+        if (steps.length == 0) {
+            throw new NoDataException();
+        }
+        for (final double h : steps) {
+            if (!(h > 0)) {
+                throw new NotStrictlyPositiveException(h);
+            }
+        }
+
+        this.function = function;
+        this.steps    = steps.clone();
+        this.executor = executor;
+
+        if (pattern == null) {
+            this.pattern = null;
+            this.groups  = new int[steps.length][];
+            for (int j = 0; j < steps.length; ++j) {
+                groups[j] = new int[] { j };
+            }
+        } else {
+            this.pattern = new boolean[pattern.length][];
+            for (int i = 0; i < pattern.length; ++i) {
+                if (pattern[i].length != steps.length) {
+                    throw new DimensionMismatchException(pattern[i].length, steps.length);
+                }
+                this.pattern[i] = pattern[i].clone();
+            }
+            this.groups = groupColumns(this.pattern, steps.length);
+        }
+
+    }
+
+    /**
+     * Partition the columns of a sparsity pattern into structurally orthogonal groups.
+     * <p>
+     * Two columns belong to the same group only if no row has a non-zero
+     * entry in both of them. Columns are assigned greedily, in increasing
+     * index order, to the first compatible group.
+     * </p>
+     * @param pattern sparsity pattern, {@code pattern[i][j]} is true if
+     * entry (i, j) may be non-zero
+     * @param columns number of columns
+     * @return groups of column indices
+     */
+    public static int[][] groupColumns(final boolean[][] pattern, final int columns) {
+
+        final List<boolean[]> usedRows = new ArrayList<boolean[]>();
+        final List<List<Integer>> members = new ArrayList<List<Integer>>();
+
+        for (int j = 0; j < columns; ++j) {
+            int selected = -1;
+            for (int g = 0; selected < 0 && g < usedRows.size(); ++g) {
+                final boolean[] used = usedRows.get(g);
+                boolean compatible = true;
+                for (int i = 0; compatible && i < pattern.length; ++i) {
+                    compatible = !(pattern[i][j] && used[i]);
+                }
+                if (compatible) {
+                    selected = g;
+                }
+            }
+            if (selected < 0) {
+                selected = usedRows.size();
+                usedRows.add(new boolean[pattern.length]);
+                members.add(new ArrayList<Integer>());
+            }
+            final boolean[] used = usedRows.get(selected);
+            for (int i = 0; i < pattern.length; ++i) {
+                used[i] |= pattern[i][j];
+            }
+            members.get(selected).add(j);
+        }
+
+        final int[][] groups = new int[members.size()][];
+        for (int g = 0; g < groups.length; ++g) {
+            final List<Integer> m = members.get(g);
+            groups[g] = new int[m.size()];
+            for (int k = 0; k < groups[g].length; ++k) {
+                groups[g][k] = m.get(k);
+            }
+        }
+        return groups;
+
+    }
+
+    /**
+     * Get the number of perturbed function evaluations needed for one Jacobian.
+     * @return number of perturbed evaluations (the unperturbed evaluation is not counted)
+     */
+    public int getEvaluationsPerJacobian() {
+        return groups.length;
+    }
+
+    /** {@inheritDoc} */
+    public double[][] value(final double[] point)
+        throws IllegalArgumentException {
+
+        if (point.length != steps.length) {
+            throw new DimensionMismatchException(point.length, steps.length);
+        }
+
+        final double[] f0 = function.value(point.clone());
+        if (pattern != null && pattern.length != f0.length) {
+            throw new DimensionMismatchException(f0.length, pattern.length);
+        }
+
+        final List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>(groups.length);
+        for (final int[] group : groups) {
+            tasks.add(new Callable<double[]>() {
+                /** {@inheritDoc} */
+                public double[] call() {
+                    final double[] shifted = point.clone();
+                    for (final int j : group) {
+                        shifted[j] += steps[j];
+                    }
+                    return function.value(shifted);
+                }
+            });
+        }
+        final List<double[]> perturbed = ConcurrencyUtils.invokeAll(executor, tasks);
+
+        final double[][] jacobian = new double[f0.length][point.length];
+        for (int g = 0; g < groups.length; ++g) {
+            final double[] fg = perturbed.get(g);
+            if (fg.length != f0.length) {
+                throw new DimensionMismatchException(fg.length, f0.length);
+            }
+            for (final int j : groups[g]) {
+                for (int i = 0; i < f0.length; ++i) {
+                    if (pattern == null || pattern[i][j]) {
+                        jacobian[i][j] = (fg[i] - f0[i]) / steps[j];
+                    }
+                }
+            }
+        }
+
+        return jacobian;
+
+    }
+
+}
@@ -0,0 +1,662 @@
+package analysis.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import math.util.FastMath;
+import math.util.Precision;
+import exception.ConvergenceException;
+import exception.MaxCountExceededException;
+import exception.NotStrictlyPositiveException;
+import exception.NumberIsTooSmallException;
+import exception.TooManyEvaluationsException;
+import exception.util.LocalizedFormats;
+
+public class AdaptiveGaussKronrodIntegrator
+    extends BaseAbstractUnivariateIntegrator {
+
+    /** Abscissae of the 21-point Kronrod rule, in decreasing order (the odd indices are the 10-point Gauss abscissae). */
+    private static final double[] XGK = {
+        0.995657163025808080735527280689003,
+        0.973906528517171720077964012084452,
+        0.930157491355708226001207180059508,
+        0.865063366688984510732096688423493,
+        0.780817726586416897063717578345042,
+        0.679409568299024406234327365114874,
+        0.562757134668604683339000099272694,
+        0.433395394129247190799265943165784,
+        0.294392862701460198131126603103866,
+        0.148874338981631210884826001129720
+    };
+
+    /** Weights of the 21-point Kronrod rule (the last one is the weight of the center). */
+    private static final double[] WGK = {
+        0.011694638867371874278064396062192,
+        0.032558162307964727478818972459390,
+        0.054755896574351996031381300244580,
+        0.075039674810919952767043140916190,
+        0.093125454583697605535065465083366,
+        0.109387158802297641899210590325805,
+        0.123491976262065851077208980529035,
+        0.134709217311473325928054001771707,
+        0.142775938577060080797094273138717,
+        0.147739104901338491374841515972068,
+        0.149445554002916905664936468389821
+    };
+
+    /** Weights of the 10-point Gauss rule. */
+    private static final double[] WG = {
+        0.066671344308688137593568809893332,
+        0.149451349150580593145776339657697,
+        0.219086362515982043995534934228163,
+        0.269266719309996355091226921569469,
+        0.295524224714752870173892994651338
+    };
+
+    /** Number of nodes of the Kronrod rule. */
+    private static final int RULE_SIZE = 21;
+
+    /** Relative machine precision. */
+    private static final double EPMACH = 2 * Precision.EPSILON;
+
+    /** Smallest positive normalized number. */
+    private static final double UFLOW = Precision.SAFE_MIN;
+
+    /** Largest finite number, used as an "unknown error" marker. */
+    private static final double OFLOW = Double.MAX_VALUE;
+
+    /**
+     * Builds an integrator with given accuracies and iterations counts.
+     *
+     * @param relativeAccuracy Relative accuracy of the result.
+     * @param absoluteAccuracy Absolute accuracy of the result.
+     * @param minimalIterationCount Minimum number of iterations.
+     * @param maximalIterationCount Maximum number of iterations.
+     * @throws NotStrictlyPositiveException if minimal number of iterations
+     * is not strictly positive.
+     * @throws NumberIsTooSmallException if maximal number of iterations
+     * is smaller than or equal to the minimal number of iterations.
+     */
+    public AdaptiveGaussKronrodIntegrator(final double relativeAccuracy,
+                                          final double absoluteAccuracy,
+                                          final int minimalIterationCount,
+                                          final int maximalIterationCount)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException {
+        super(relativeAccuracy, absoluteAccuracy, minimalIterationCount, maximalIterationCount);
+    }
+
+    /**
+     * Builds an integrator with given accuracies.
+     * <p>
+     * The minimal iteration count is set to 1, so that integrands
+     * accurately integrated by the first Kronrod rule are accepted
+     * without any bisection.
+     * </p>
+     *
+     * @param relativeAccuracy Relative accuracy of the result.
+     * @param absoluteAccuracy Absolute accuracy of the result.
+     */
+    public AdaptiveGaussKronrodIntegrator(final double relativeAccuracy,
+                                          final double absoluteAccuracy) {
+        this(relativeAccuracy, absoluteAccuracy, 1, DEFAULT_MAX_ITERATIONS_COUNT);
+    }
+
+    /**
+     * Builds an integrator with given iteration counts.
+     *
+     * @param minimalIterationCount Minimum number of iterations.
+     * @param maximalIterationCount Maximum number of iterations.
+     * @throws NotStrictlyPositiveException if minimal number of iterations
+     * is not strictly positive.
+     * @throws NumberIsTooSmallException if maximal number of iterations
+     * is smaller than or equal to the minimal number of iterations.
+     */
+    public AdaptiveGaussKronrodIntegrator(final int minimalIterationCount,
+                                          final int maximalIterationCount)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_ABSOLUTE_ACCURACY,
+             minimalIterationCount, maximalIterationCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This is the globally adaptive QAGS algorithm of QUADPACK (Piessens,
+     * de Doncker-Kapenga, &Uuml;berhuber and Kahaner, 1983). Each iteration
+     * bisects the subinterval with the largest error estimate, taken from a
+     * priority queue, and integrates both halves with the 21-point
+     * Gauss-Kronrod rule, so evaluations concentrate where the integrand is
+     * difficult. When the bisected subintervals become small, the sequence
+     * of integral approximations is accelerated by the epsilon algorithm of
+     * Wynn, which handles integrable end point singularities.
+     * </p>
+     * <p>
+     * The 42 nodes of the two halves are evaluated in a single call when the
+     * integrand is an {@link analysis.UnivariateBatchFunction}. Each node
+     * still counts as one evaluation.
+     * </p>
+     * <p>
+     * An iteration is one bisection. The cases where QUADPACK gives up with
+     * its best estimate (round-off errors, a subinterval too small to be
+     * bisected, round-off in the extrapolation table, or a seemingly
+     * divergent integral) raise a {@link ConvergenceException} whose message
+     * holds that estimate and its error, unless the error estimate of the
+     * selected result still meets the requested accuracy.
+     * </p>
+     *
+     * @throws ConvergenceException if the requested accuracy cannot be reached.
+     */
+    @Override
+    protected double doIntegrate()
+        throws TooManyEvaluationsException, MaxCountExceededException, ConvergenceException {
+
+        final double absAcc = getAbsoluteAccuracy();
+        final double relAcc = getRelativeAccuracy();
+        final double a = getMin();
+        final double b = getMax();
+
+        // first approximation to the integral
+        final double[] wholePoints = new double[RULE_SIZE];
+        final double[] wholeValues = new double[RULE_SIZE];
+        nodes(a, b, wholePoints, 0);
+        computeObjectiveValues(wholePoints, wholeValues);
+        final Subinterval whole = rule(a, b, wholeValues, 0);
+        final double defabs = whole.resabs;
+        double errbnd = FastMath.max(absAcc, relAcc * FastMath.abs(whole.result));
+
+        // test on accuracy
+        if ((whole.error <= 100 * EPMACH * defabs && whole.error > errbnd) ||
+            (getMinimalIterationCount() <= 1 &&
+             ((whole.error <= errbnd && whole.error != whole.resasc) || whole.error == 0))) {
+            return whole.result;
+        }
+
+        // subintervals, the one with the largest error first; the
+        // subintervals deferred because they are too small for the current
+        // extrapolation step are kept aside
+        final PriorityQueue<Subinterval> queue = new PriorityQueue<Subinterval>();
+        final List<Subinterval> deferred = new ArrayList<Subinterval>();
+        queue.add(whole);
+
+        final EpsilonTable table = new EpsilonTable(whole.result);
+        double area = whole.result;
+        double errsum = whole.error;
+        final double[] points = new double[2 * RULE_SIZE];
+        final double[] values = new double[2 * RULE_SIZE];
+        double result = whole.result;
+        double abserr = OFLOW;
+        double correc = 0;
+        double small = 0;
+        double erlarg = 0;
+        double ertest = 0;
+        int ktmin = 0;
+        boolean extrap = false;
+        boolean noext = false;
+        int iroff1 = 0;
+        int iroff2 = 0;
+        int iroff3 = 0;
+        boolean roundoffInExtrapolation = false;
+        boolean failed = false;
+
+        while (true) {
+
+            // bisect the subinterval with the largest error estimate
+            iterations.incrementCount();
+            final Subinterval current = queue.poll();
+            final double errmax = current.error;
+            final double a1 = current.lower;
+            final double b1 = 0.5 * (current.lower + current.upper);
+            final double b2 = current.upper;
+            nodes(a1, b1, points, 0);
+            nodes(b1, b2, points, RULE_SIZE);
+            computeObjectiveValues(points, values);
+            final Subinterval left = rule(a1, b1, values, 0);
+            final Subinterval right = rule(b1, b2, values, RULE_SIZE);
+
+            // improve previous approximations to integral and error and test for accuracy
+            final double area12 = left.result + right.result;
+            final double erro12 = left.error + right.error;
+            errsum += erro12 - errmax;
+            area += area12 - current.result;
+            if (left.resasc != left.error && right.resasc != right.error) {
+                if (FastMath.abs(current.result - area12) <= 1.0e-5 * FastMath.abs(area12) &&
+                    erro12 >= 0.99 * errmax) {
+                    if (extrap) {
+                        ++iroff2;
+                    } else {
+                        ++iroff1;
+                    }
+                }
+                if (iterations.getCount() > 9 && erro12 > errmax) {
+                    ++iroff3;
+                }
+            }
+            errbnd = FastMath.max(absAcc, relAcc * FastMath.abs(area));
+
+            // test for round-off error, and for a subinterval too small to be bisected
+            final boolean stop =
+                iroff1 + iroff2 >= 10 || iroff3 >= 20 ||
+                FastMath.max(FastMath.abs(a1), FastMath.abs(b2)) <=
+                (1 + 100 * EPMACH) * (FastMath.abs(b1) + 1000 * UFLOW);
+            if (iroff2 >= 5) {
+                roundoffInExtrapolation = true;
+            }
+
+            queue.add(left);
+            queue.add(right);
+
+            final boolean enough = iterations.getCount() + 1 >= getMinimalIterationCount();
+            if (enough && errsum <= errbnd) {
+                return sum(queue, deferred);
+            }
+            if (stop) {
+                failed = true;
+                break;
+            }
+
+            if (iterations.getCount() == 1) {
+                small = FastMath.abs(b - a) * 0.375;
+                erlarg = errsum;
+                ertest = errbnd;
+                table.append(area);
+                continue;
+            }
+            if (noext) {
+                continue;
+            }
+
+            // erlarg is the sum of the errors over the subintervals larger than small
+            erlarg -= errmax;
+            if (FastMath.abs(b1 - a1) > small) {
+                erlarg += erro12;
+            }
+            if (!extrap) {
+                // test whether the subinterval to be bisected next is a small one
+                if (queue.peek().width() > small) {
+                    continue;
+                }
+                extrap = true;
+            }
+
+            if (!roundoffInExtrapolation && erlarg > ertest) {
+                // the small subintervals have the largest errors, before
+                // extrapolating, bisect the large ones until the sum of
+                // their errors is small enough
+                while (!queue.isEmpty() && queue.peek().width() <= small) {
+                    deferred.add(queue.poll());
+                }
+                if (!queue.isEmpty()) {
+                    continue;
+                }
+            }
+
+            // perform extrapolation
+            table.append(area);
+            table.extrapolate();
+            ++ktmin;
+            // the extrapolated result does not improve anymore, but as in
+            // QUADPACK a better extrapolant from this last step is still kept
+            final boolean diverging = ktmin > 5 && abserr < 1.0e-3 * errsum;
+            if (table.error < abserr) {
+                ktmin = 0;
+                abserr = table.error;
+                result = table.result;
+                correc = erlarg;
+                ertest = FastMath.max(absAcc, relAcc * FastMath.abs(result));
+                if (enough && abserr <= ertest) {
+                    break;
+                }
+            }
+            if (diverging) {
+                failed = true;
+                break;
+            }
+
+            // prepare bisection of the smallest subintervals
+            if (table.size() == 1) {
+                noext = true;
+            }
+            queue.addAll(deferred);
+            deferred.clear();
+            extrap = false;
+            small *= 0.5;
+            erlarg = errsum;
+
+        }
+
+        // select between the extrapolated result and the sum of the subintervals
+        final boolean useSum;
+        if (abserr == OFLOW) {
+            useSum = true;
+        } else {
+            if (roundoffInExtrapolation) {
+                abserr += correc;
+                failed = true;
+            }
+            if (result != 0 && area != 0) {
+                useSum = abserr / FastMath.abs(result) > errsum / FastMath.abs(area);
+            } else {
+                useSum = abserr > errsum;
+            }
+        }
+        final double selected = useSum ? sum(queue, deferred) : result;
+        final double error    = useSum ? errsum : abserr;
+        final double tolerance = FastMath.max(absAcc, relAcc * FastMath.abs(selected));
+        if (failed && error > tolerance) {
+            throw new ConvergenceException(LocalizedFormats.QUADRATURE_NOT_CONVERGED,
+                                           selected, error, tolerance);
+        }
+        return selected;
+
+    }
+
+    /**
+     * Compute the nodes of the 21-point Kronrod rule on an interval.
+     * <p>
+     * The center comes first, followed by the symmetric pairs of nodes.
+     * </p>
+     *
+     * @param lower Lower bound of the interval.
+     * @param upper Upper bound of the interval.
+     * @param points Array where to store the nodes.
+     * @param off Index of the first node in the array.
+     */
+    private static void nodes(final double lower, final double upper,
+                              final double[] points, final int off) {
+        final double centr = 0.5 * (lower + upper);
+        final double hlgth = 0.5 * (upper - lower);
+        points[off] = centr;
+        for (int j = 0; j < XGK.length; ++j) {
+            final double absc = hlgth * XGK[j];
+            points[off + 2 * j + 1] = centr - absc;
+            points[off + 2 * j + 2] = centr + absc;
+        }
+    }
+
+    /**
+     * Apply the 21-point Gauss-Kronrod rule on an interval.
+     *
+     * @param lower Lower bound of the interval.
+     * @param upper Upper bound of the interval.
+     * @param values Integrand values at the nodes computed by
+     * {@link #nodes(double, double, double[], int)}.
+     * @param off Index of the first value in the array.
+     * @return the integral and error estimates on the interval.
+     */
+    private static Subinterval rule(final double lower, final double upper,
+                                    final double[] values, final int off) {
+        final double hlgth = 0.5 * (upper - lower);
+        final double dhlgth = FastMath.abs(hlgth);
+
+        // 21-point Kronrod and 10-point Gauss approximations
+        final double fc = values[off];
+        double resg = 0;
+        double resk = WGK[XGK.length] * fc;
+        double resabs = FastMath.abs(resk);
+        for (int j = 0; j < XGK.length; ++j) {
+            final double fval1 = values[off + 2 * j + 1];
+            final double fval2 = values[off + 2 * j + 2];
+            final double fsum = fval1 + fval2;
+            resk += WGK[j] * fsum;
+            resabs += WGK[j] * (FastMath.abs(fval1) + FastMath.abs(fval2));
+            if ((j & 0x1) == 1) {
+                resg += WG[j / 2] * fsum;
+            }
+        }
+
+        // approximation to the integral of |f - I/(b-a)|
+        final double reskh = resk * 0.5;
+        double resasc = WGK[XGK.length] * FastMath.abs(fc - reskh);
+        for (int j = 0; j < XGK.length; ++j) {
+            resasc += WGK[j] * (FastMath.abs(values[off + 2 * j + 1] - reskh) +
+                                FastMath.abs(values[off + 2 * j + 2] - reskh));
+        }
+
+        final double result = resk * hlgth;
+        resabs *= dhlgth;
+        resasc *= dhlgth;
+        double abserr = FastMath.abs((resk - resg) * hlgth);
+        if (resasc != 0 && abserr != 0) {
+            abserr = resasc * FastMath.min(1, FastMath.pow(200 * abserr / resasc, 1.5));
+        }
+        if (resabs > UFLOW / (50 * EPMACH)) {
+            abserr = FastMath.max((EPMACH * 50) * resabs, abserr);
+        }
+
+        return new Subinterval(lower, upper, result, abserr, resabs, resasc);
+    }
+
+    /**
+     * Sum the integral estimates of all subintervals.
+     *
+     * @param queue Subintervals in the priority queue.
+     * @param deferred Deferred subintervals.
+     * @return sum of the integral estimates.
+     */
+    private static double sum(final PriorityQueue<Subinterval> queue,
+                              final List<Subinterval> deferred) {
+        double sum = 0;
+        for (final Subinterval s : queue) {
+            sum += s.result;
+        }
+        for (final Subinterval s : deferred) {
+            sum += s.result;
+        }
+        return sum;
+    }
+
+    /** Subinterval with its integral and error estimates. */
+    private static class Subinterval implements Comparable<Subinterval> {
+
+        /** Lower bound. */
+        private final double lower;
+
+        /** Upper bound. */
+        private final double upper;
+
+        /** Integral estimate. */
+        private final double result;
+
+        /** Error estimate. */
+        private final double error;
+
+        /** Estimate of the integral of |f|. */
+        private final double resabs;
+
+        /** Estimate of the integral of |f - mean(f)|. */
+        private final double resasc;
+
+        /**
+         * Simple constructor.
+         * @param lower lower bound
+         * @param upper upper bound
+         * @param result integral estimate
+         * @param error error estimate
+         * @param resabs estimate of the integral of |f|
+         * @param resasc estimate of the integral of |f - mean(f)|
+         */
+        Subinterval(final double lower, final double upper,
+                    final double result, final double error,
+                    final double resabs, final double resasc) {
+            this.lower  = lower;
+            this.upper  = upper;
+            this.result = result;
+            this.error  = error;
+            this.resabs = resabs;
+            this.resasc = resasc;
+        }
+
+        /**
+         * Get the width of the subinterval.
+         * @return width of the subinterval
+         */
+        double width() {
+            return upper - lower;
+        }
+
+        /**
+         * Compare the error estimates, the largest error coming first.
+         * @param other subinterval to compare to
+         * @return a negative number if this subinterval has a larger error
+         */
+        public int compareTo(final Subinterval other) {
+            return Double.compare(other.error, error);
+        }
+
+    }
+
+    /**
+     * Table of the epsilon algorithm of Wynn.
+     * <p>
+     * This is the QEXT routine of QUADPACK. The indices of the table follow
+     * the original one-based routine.
+     * </p>
+     */
+    private static class EpsilonTable {
+
+        /** Maximal number of elements in the table. */
+        private static final int LIMEXP = 50;
+
+        /** Elements of the table (index 0 is unused). */
+        private final double[] epstab;
+
+        /** Last three extrapolated results. */
+        private final double[] res3la;
+
+        /** Number of elements currently in the table. */
+        private int n;
+
+        /** Number of calls to the extrapolation routine. */
+        private int nres;
+
+        /** Last extrapolated result. */
+        private double result;
+
+        /** Error estimate of the last extrapolated result. */
+        private double error;
+
+        /**
+         * Simple constructor.
+         * @param first first element of the sequence
+         */
+        EpsilonTable(final double first) {
+            epstab    = new double[LIMEXP + 3];
+            res3la    = new double[3];
+            epstab[1] = first;
+            n         = 1;
+            nres      = 0;
+        }
+
+        /**
+         * Get the number of elements in the table.
+         * @return number of elements in the table
+         */
+        int size() {
+            return n;
+        }
+
+        /**
+         * Append an element of the sequence to extrapolate.
+         * @param element element to append
+         */
+        void append(final double element) {
+            epstab[++n] = element;
+        }
+
+        /** Compute the extrapolated limit of the sequence and its error. */
+        void extrapolate() {
+            ++nres;
+            error  = OFLOW;
+            result = epstab[n];
+            if (n < 3) {
+                error = FastMath.max(error, 5 * EPMACH * FastMath.abs(result));
+                return;
+            }
+            epstab[n + 2] = epstab[n];
+            final int newelm = (n - 1) / 2;
+            epstab[n] = OFLOW;
+            final int num = n;
+            int k1 = n;
+            for (int i = 1; i <= newelm; ++i) {
+                final int k2 = k1 - 1;
+                final int k3 = k1 - 2;
+                double res = epstab[k1 + 2];
+                final double e0 = epstab[k3];
+                final double e1 = epstab[k2];
+                final double e2 = res;
+                final double e1abs = FastMath.abs(e1);
+                final double delta2 = e2 - e1;
+                final double err2 = FastMath.abs(delta2);
+                final double tol2 = FastMath.max(FastMath.abs(e2), e1abs) * EPMACH;
+                final double delta3 = e1 - e0;
+                final double err3 = FastMath.abs(delta3);
+                final double tol3 = FastMath.max(e1abs, FastMath.abs(e0)) * EPMACH;
+                if (err2 <= tol2 && err3 <= tol3) {
+                    // e0, e1 and e2 are equal to within machine accuracy,
+                    // convergence is assumed
+                    result = res;
+                    error = FastMath.max(err2 + err3, 5 * EPMACH * FastMath.abs(result));
+                    return;
+                }
+                final double e3 = epstab[k1];
+                epstab[k1] = e1;
+                final double delta1 = e1 - e3;
+                final double err1 = FastMath.abs(delta1);
+                final double tol1 = FastMath.max(e1abs, FastMath.abs(e3)) * EPMACH;
+                if (err1 <= tol1 || err2 <= tol2 || err3 <= tol3) {
+                    // two elements are very close to each other,
+                    // omit a part of the table
+                    n = i + i - 1;
+                    break;
+                }
+                final double ss = 1 / delta1 + 1 / delta2 - 1 / delta3;
+                if (FastMath.abs(ss * e1) <= 1.0e-4) {
+                    // irregular behaviour in the table, omit a part of it
+                    n = i + i - 1;
+                    break;
+                }
+                // compute a new element and eventually adjust the result
+                res = e1 + 1 / ss;
+                epstab[k1] = res;
+                k1 -= 2;
+                final double err = err2 + FastMath.abs(res - e2) + err3;
+                if (err <= error) {
+                    error = err;
+                    result = res;
+                }
+            }
+
+            // shift the table
+            if (n == LIMEXP) {
+                n = 2 * (LIMEXP / 2) - 1;
+            }
+            int ib = ((num & 0x1) == 0) ? 2 : 1;
+            for (int i = 1; i <= newelm + 1; ++i) {
+                epstab[ib] = epstab[ib + 2];
+                ib += 2;
+            }
+            if (num != n) {
+                int indx = num - n + 1;
+                for (int i = 1; i <= n; ++i) {
+                    epstab[i] = epstab[indx++];
+                }
+            }
+
+            if (nres < 4) {
+                res3la[nres - 1] = result;
+                error = OFLOW;
+            } else {
+                error = FastMath.abs(result - res3la[2]) +
+                        FastMath.abs(result - res3la[1]) +
+                        FastMath.abs(result - res3la[0]);
+                res3la[0] = res3la[1];
+                res3la[1] = res3la[2];
+                res3la[2] = result;
+            }
+            error = FastMath.max(error, 5 * EPMACH * FastMath.abs(result));
+        }
+
+    }
+
+}
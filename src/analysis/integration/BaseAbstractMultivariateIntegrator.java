@@ -0,0 +1,304 @@
+package analysis.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import math.util.ConcurrencyUtils;
+import math.util.Incrementor;
+import math.util.MathUtils;
+import analysis.MultivariateFunction;
+import analysis.solvers.UnivariateSolverUtils;
+import exception.DimensionMismatchException;
+import exception.MathIllegalArgumentException;
+import exception.MaxCountExceededException;
+import exception.NotStrictlyPositiveException;
+import exception.NullArgumentException;
+import exception.NumberIsTooSmallException;
+import exception.TooManyEvaluationsException;
+
+public abstract class BaseAbstractMultivariateIntegrator implements MultivariateIntegrator {
+
+    /** Default absolute accuracy. */
+    public static final double DEFAULT_ABSOLUTE_ACCURACY = 1.0e-15;
+
+    /** Default relative accuracy. */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 1.0e-6;
+
+    /** Default minimal iteration count. */
+    public static final int DEFAULT_MIN_ITERATIONS_COUNT = 1;
+
+    /** Default maximal iteration count. */
+    public static final int DEFAULT_MAX_ITERATIONS_COUNT = Integer.MAX_VALUE;
+
+    /** The iteration count. */
+    protected final Incrementor iterations;
+
+    /** Maximum absolute error. */
+    private final double absoluteAccuracy;
+
+    /** Maximum relative error. */
+    private final double relativeAccuracy;
+
+    /** minimum number of iterations */
+    private final int minimalIterationCount;
+
+    /** Executor for the evaluations of the integrand (may be null). */
+    private final ExecutorService executor;
+
+    /** The functions evaluation count. */
+    private final Incrementor evaluations;
+
+    /** Function to integrate. */
+    private MultivariateFunction function;
+
+    /** Lower bounds of the hyper-rectangle. */
+    private double[] lower;
+
+    /** Upper bounds of the hyper-rectangle. */
+    private double[] upper;
+
+    /** Error estimate of the last run. */
+    private double errorEstimate;
+
+    /**
+     * Construct an integrator with given accuracies, iteration counts
+     * and executor.
+     * <p>
+     * The accuracies and iteration counts have the same meaning as in
+     * {@link BaseAbstractUnivariateIntegrator}. The integrand is evaluated
+     * at many points at once; if an executor is provided, these points are
+     * split in chunks evaluated concurrently, so the integrand must then be
+     * thread-safe.
+     * </p>
+     * @param relativeAccuracy relative accuracy of the result
+     * @param absoluteAccuracy absolute accuracy of the result
+     * @param minimalIterationCount minimum number of iterations
+     * @param maximalIterationCount maximum number of iterations
+     * @param executor executor for the evaluations of the integrand
+     * (may be null to evaluate everything in the calling thread)
+     * @exception NotStrictlyPositiveException if minimal number of iterations
+     * is not strictly positive
+     * @exception NumberIsTooSmallException if maximal number of iterations
+     * is lesser than or equal to the minimal number of iterations
+     */
+    protected BaseAbstractMultivariateIntegrator(final double relativeAccuracy,
+                                                 final double absoluteAccuracy,
+                                                 final int minimalIterationCount,
+                                                 final int maximalIterationCount,
+                                                 final ExecutorService executor)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException {
+
+        // accuracy settings
+        this.relativeAccuracy      = relativeAccuracy;
+        this.absoluteAccuracy      = absoluteAccuracy;
+
+        // iterations count settings
+        if (minimalIterationCount <= 0) {
+            throw new NotStrictlyPositiveException(minimalIterationCount);
+        }
+        if (maximalIterationCount <= minimalIterationCount) {
+            throw new NumberIsTooSmallException(maximalIterationCount, minimalIterationCount, false);
+        }
+        this.minimalIterationCount = minimalIterationCount;
+        this.iterations            = new Incrementor();
+        iterations.setMaximalCount(maximalIterationCount);
+
+        this.executor = executor;
+
+        // prepare evaluations counter, but do not set it yet
+        evaluations = new Incrementor();
+
+    }
+
+    /** {@inheritDoc} */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /** {@inheritDoc} */
+    public double getAbsoluteAccuracy() {
+        return absoluteAccuracy;
+    }
+
+    /** {@inheritDoc} */
+    public int getMinimalIterationCount() {
+        return minimalIterationCount;
+    }
+
+    /** {@inheritDoc} */
+    public int getMaximalIterationCount() {
+        return iterations.getMaximalCount();
+    }
+
+    /** {@inheritDoc} */
+    public int getEvaluations() {
+        return evaluations.getCount();
+    }
+
+    /** {@inheritDoc} */
+    public int getIterations() {
+        return iterations.getCount();
+    }
+
+    /** {@inheritDoc} */
+    public double getErrorEstimate() {
+        return errorEstimate;
+    }
+
+    /**
+     * Set the error estimate of the current run.
+     * @param errorEstimate absolute error estimate
+     */
+    protected void setErrorEstimate(final double errorEstimate) {
+        this.errorEstimate = errorEstimate;
+    }
+
+    /**
+     * @return the dimension of the hyper-rectangle.
+     */
+    protected int getDimension() {
+        return lower.length;
+    }
+
+    /**
+     * @return the lower bounds (a reference to the internal array, which
+     * must not be modified).
+     */
+    protected double[] getLower() {
+        return lower;
+    }
+
+    /**
+     * @return the upper bounds (a reference to the internal array, which
+     * must not be modified).
+     */
+    protected double[] getUpper() {
+        return upper;
+    }
+
+    /**
+     * Check that the objective function can still be evaluated at
+     * several points, for example before building large arrays of points.
+     *
+     * @param count Number of points.
+     * @throws TooManyEvaluationsException if evaluating {@code count} more
+     * points would exceed the maximal number of function evaluations.
+     */
+    protected void checkEvaluations(final int count)
+        throws TooManyEvaluationsException {
+        if (count > evaluations.getMaximalCount() - evaluations.getCount()) {
+            throw new TooManyEvaluationsException(evaluations.getMaximalCount());
+        }
+    }
+
+    /**
+     * Compute the objective function values at several points.
+     * <p>
+     * Each point counts as one evaluation. The evaluation count is checked
+     * before any evaluation, so either all points are evaluated or none.
+     * </p>
+     *
+     * @param points Points at which the objective function must be evaluated.
+     * @param values Array where to store the objective function values.
+     * @throws TooManyEvaluationsException if the maximal number of function
+     * evaluations is exceeded.
+     */
+    protected void computeObjectiveValues(final double[][] points, final double[] values)
+        throws TooManyEvaluationsException {
+        checkEvaluations(points.length);
+        evaluations.incrementCount(points.length);
+
+        final MultivariateFunction f = function;
+        final int[] bounds = (executor == null || points.length < 2) ?
+                             new int[] { 0, points.length } :
+                             ConcurrencyUtils.splitRange(0, points.length,
+                                                         Runtime.getRuntime().availableProcessors(),
+                                                         1);
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bounds.length - 1);
+        for (int k = 0; k + 1 < bounds.length; ++k) {
+            final int begin = bounds[k];
+            final int end   = bounds[k + 1];
+            tasks.add(new Callable<Void>() {
+                /** {@inheritDoc} */
+                public Void call() {
+                    for (int i = begin; i < end; ++i) {
+                        values[i] = f.value(points[i]);
+                    }
+                    return null;
+                }
+            });
+        }
+        ConcurrencyUtils.invokeAll(executor, tasks);
+    }
+
+    /**
+     * Prepare for computation.
+     * Subclasses must call this method if they override the
+     * {@code integrate} method.
+     *
+     * @param maxEval Maximum number of evaluations.
+     * @param f the integrand function
+     * @param lowerBounds the lower bounds of the hyper-rectangle
+     * @param upperBounds the upper bounds of the hyper-rectangle
+     * @throws NullArgumentException if {@code f} or the bounds are {@code null}.
+     * @throws DimensionMismatchException if the bounds have different lengths.
+     * @throws MathIllegalArgumentException if {@code lower[i] >= upper[i]}.
+     */
+    protected void setup(final int maxEval,
+                         final MultivariateFunction f,
+                         final double[] lowerBounds, final double[] upperBounds)
+        throws NullArgumentException, MathIllegalArgumentException {
+
+        // Checks.
+        MathUtils.checkNotNull(f);
+        MathUtils.checkNotNull(lowerBounds);
+        MathUtils.checkNotNull(upperBounds);
+        if (lowerBounds.length != upperBounds.length) {
+            throw new DimensionMismatchException(upperBounds.length, lowerBounds.length);
+        }
+        for (int i = 0; i < lowerBounds.length; ++i) {
+            UnivariateSolverUtils.verifyInterval(lowerBounds[i], upperBounds[i]);
+        }
+
+        // Reset.
+        lower = lowerBounds.clone();
+        upper = upperBounds.clone();
+        function = f;
+        errorEstimate = Double.NaN;
+        evaluations.setMaximalCount(maxEval);
+        evaluations.resetCount();
+        iterations.resetCount();
+
+    }
+
+    /** {@inheritDoc} */
+    public double integrate(final int maxEval, final MultivariateFunction f,
+                            final double[] lowerBounds, final double[] upperBounds)
+        throws TooManyEvaluationsException, MaxCountExceededException,
+               MathIllegalArgumentException, NullArgumentException {
+
+        // Initialization.
+        setup(maxEval, f, lowerBounds, upperBounds);
+
+        // Perform computation.
+        return doIntegrate();
+
+    }
+
+    /**
+     * Method for implementing actual integration algorithms in derived
+     * classes.
+     *
+     * @return the integral, with its absolute error estimate set by
+     * {@link #setErrorEstimate(double)}.
+     * @throws TooManyEvaluationsException if the maximal number of evaluations
+     * is exceeded.
+     * @throws MaxCountExceededException if the maximum iteration count is exceeded
+     * or the integrator detects convergence problems otherwise
+     */
+    protected abstract double doIntegrate()
+        throws TooManyEvaluationsException, MaxCountExceededException;
+
+}
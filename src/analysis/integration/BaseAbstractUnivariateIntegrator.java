@@ -2,6 +2,7 @@ package analysis.integration;
 
 import math.util.Incrementor;
 import math.util.MathUtils;
+import analysis.UnivariateBatchFunction;
 import analysis.UnivariateFunction;
 import analysis.solvers.UnivariateSolverUtils;
 import exception.MathIllegalArgumentException;
@@ -198,6 +199,35 @@ public abstract class BaseAbstractUnivariateIntegrator implements UnivariateInte
         return function.value(point);
     }
 
+    /**
+     * Compute the objective function values at several points.
+     * <p>
+     * If the objective function is a {@link UnivariateBatchFunction}, all
+     * the points are evaluated in a single call. Each point counts as one
+     * evaluation.
+     * </p>
+     *
+     * @param points Points at which the objective function must be evaluated.
+     * @param values Array where to store the objective function values.
+     * @throws TooManyEvaluationsException if the maximal number of function
+     * evaluations is exceeded.
+     */
+    protected void computeObjectiveValues(final double[] points, final double[] values)
+        throws TooManyEvaluationsException {
+        try {
+            evaluations.incrementCount(points.length);
+        } catch (MaxCountExceededException e) {
+            throw new TooManyEvaluationsException(e.getMax());
+        }
+        if (function instanceof UnivariateBatchFunction) {
+            ((UnivariateBatchFunction) function).value(points, values, 0, points.length);
+        } else {
+            for (int i = 0; i < points.length; ++i) {
+                values[i] = function.value(points[i]);
+            }
+        }
+    }
+
     /**
      * Prepare for computation.
      * Subclasses must call this method if they override any of the
@@ -0,0 +1,349 @@
+package analysis.integration;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+
+import math.util.FastMath;
+import exception.MaxCountExceededException;
+import exception.NotStrictlyPositiveException;
+import exception.NumberIsTooSmallException;
+import exception.TooManyEvaluationsException;
+import exception.util.LocalizedFormats;
+
+public class GenzMalikIntegrator extends BaseAbstractMultivariateIntegrator {
+
+    /** Generator of the points on the axes used by the degree 5 rule. */
+    private static final double LAMBDA2 = FastMath.sqrt(9.0 / 70.0);
+
+    /** Generator of the points on the axes used by both rules. */
+    private static final double LAMBDA3 = FastMath.sqrt(9.0 / 10.0);
+
+    /** Generator of the points in the coordinate planes. */
+    private static final double LAMBDA4 = FastMath.sqrt(9.0 / 10.0);
+
+    /** Generator of the vertices points. */
+    private static final double LAMBDA5 = FastMath.sqrt(9.0 / 19.0);
+
+    /** Ratio used in the fourth differences that select the split axis. */
+    private static final double RATIO = (LAMBDA2 * LAMBDA2) / (LAMBDA3 * LAMBDA3);
+
+    /**
+     * Builds an integrator with given accuracies, iterations counts and
+     * executor.
+     *
+     * @param relativeAccuracy Relative accuracy of the result.
+     * @param absoluteAccuracy Absolute accuracy of the result.
+     * @param minimalIterationCount Minimum number of iterations.
+     * @param maximalIterationCount Maximum number of iterations.
+     * @param executor Executor for the evaluations of the integrand (may
+     * be null to evaluate everything in the calling thread).
+     * @throws NotStrictlyPositiveException if minimal number of iterations
+     * is not strictly positive.
+     * @throws NumberIsTooSmallException if maximal number of iterations
+     * is smaller than or equal to the minimal number of iterations.
+     */
+    public GenzMalikIntegrator(final double relativeAccuracy,
+                               final double absoluteAccuracy,
+                               final int minimalIterationCount,
+                               final int maximalIterationCount,
+                               final ExecutorService executor)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException {
+        super(relativeAccuracy, absoluteAccuracy, minimalIterationCount, maximalIterationCount,
+              executor);
+    }
+
+    /**
+     * Builds an integrator with given accuracies, evaluating the
+     * integrand in the calling thread.
+     *
+     * @param relativeAccuracy Relative accuracy of the result.
+     * @param absoluteAccuracy Absolute accuracy of the result.
+     */
+    public GenzMalikIntegrator(final double relativeAccuracy,
+                               final double absoluteAccuracy) {
+        this(relativeAccuracy, absoluteAccuracy,
+             DEFAULT_MIN_ITERATIONS_COUNT, DEFAULT_MAX_ITERATIONS_COUNT, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This is the globally adaptive algorithm of Genz and Malik (J. Comput.
+     * Appl. Math. 6, 1980). Each subregion is integrated with a degree 7
+     * rule using {@code 2^d + 2d^2 + 2d + 1} points, and its error is
+     * estimated by the difference with an embedded degree 5 rule. Each
+     * iteration takes the subregion with the largest error from a priority
+     * queue and bisects it along the axis where the fourth difference of
+     * the integrand is the largest. The points of both halves are evaluated
+     * in a single batch, concurrently if an executor was provided.
+     * </p>
+     * <p>
+     * The number of points of the rule grows as {@code 2^d}, so this
+     * integrator is suited to moderate dimensions, say up to 10.
+     * </p>
+     *
+     * @throws NumberIsTooSmallException if the dimension is smaller than 2.
+     */
+    @Override
+    protected double doIntegrate()
+        throws TooManyEvaluationsException, MaxCountExceededException {
+
+        final int d = getDimension();
+        if (d < 2) {
+            throw new NumberIsTooSmallException(LocalizedFormats.DIMENSION, d, 2, true);
+        }
+        final Rule rule = new Rule(d);
+
+        // first approximation to the integral
+        final double[] lower = getLower();
+        final double[] upper = getUpper();
+        final double[] center = new double[d];
+        final double[] halfWidth = new double[d];
+        for (int i = 0; i < d; ++i) {
+            center[i]    = 0.5 * (lower[i] + upper[i]);
+            halfWidth[i] = 0.5 * (upper[i] - lower[i]);
+        }
+        final Region whole = new Region(center, halfWidth);
+        rule.apply(new Region[] { whole });
+
+        final PriorityQueue<Region> queue = new PriorityQueue<Region>();
+        queue.add(whole);
+        double result = whole.result;
+        double error  = whole.error;
+
+        while (true) {
+            setErrorEstimate(error);
+            if (iterations.getCount() + 1 >= getMinimalIterationCount() &&
+                error <= FastMath.max(getAbsoluteAccuracy(), getRelativeAccuracy() * FastMath.abs(result))) {
+                return result;
+            }
+            iterations.incrementCount();
+
+            // bisect the subregion with the largest error
+            final Region current = queue.poll();
+            final Region[] halves = current.split();
+            rule.apply(halves);
+            result += halves[0].result + halves[1].result - current.result;
+            error  += halves[0].error  + halves[1].error  - current.error;
+            queue.add(halves[0]);
+            queue.add(halves[1]);
+
+            if (queue.size() % 1024 == 0) {
+                // recompute the sums from scratch to avoid accumulating rounding errors
+                result = 0;
+                error  = 0;
+                for (final Region region : queue) {
+                    result += region.result;
+                    error  += region.error;
+                }
+            }
+        }
+
+    }
+
+    /** Subregion with its integral and error estimates. */
+    private static class Region implements Comparable<Region> {
+
+        /** Center. */
+        private final double[] center;
+
+        /** Half widths. */
+        private final double[] halfWidth;
+
+        /** Integral estimate. */
+        private double result;
+
+        /** Error estimate. */
+        private double error;
+
+        /** Axis along which the region should be split. */
+        private int splitAxis;
+
+        /**
+         * Simple constructor.
+         * @param center center of the region
+         * @param halfWidth half widths of the region
+         */
+        Region(final double[] center, final double[] halfWidth) {
+            this.center    = center;
+            this.halfWidth = halfWidth;
+        }
+
+        /**
+         * Split the region in two halves along its split axis.
+         * @return the two halves
+         */
+        Region[] split() {
+            final double h = 0.5 * halfWidth[splitAxis];
+            final double[] newHalfWidth = halfWidth.clone();
+            newHalfWidth[splitAxis] = h;
+            final double[] lowerCenter = center.clone();
+            lowerCenter[splitAxis] -= h;
+            final double[] upperCenter = center.clone();
+            upperCenter[splitAxis] += h;
+            return new Region[] {
+                new Region(lowerCenter, newHalfWidth),
+                new Region(upperCenter, newHalfWidth.clone())
+            };
+        }
+
+        /**
+         * Compare the error estimates, the largest error coming first.
+         * @param other region to compare to
+         * @return a negative number if this region has a larger error
+         */
+        public int compareTo(final Region other) {
+            return Double.compare(other.error, error);
+        }
+
+    }
+
+    /** Degree 7 rule with embedded degree 5 rule, in a given dimension. */
+    private class Rule {
+
+        /** Dimension. */
+        private final int d;
+
+        /** Number of points. */
+        private final int size;
+
+        /** Weights of the degree 7 rule, for a region of unit volume. */
+        private final double[] w7;
+
+        /** Weights of the degree 5 rule, for a region of unit volume. */
+        private final double[] w5;
+
+        /**
+         * Simple constructor.
+         * @param d dimension
+         */
+        Rule(final int d) {
+            this.d    = d;
+            this.size = (1 << d) + 2 * d * d + 2 * d + 1;
+            this.w7   = new double[] {
+                (12824.0 - 9120.0 * d + 400.0 * d * d) / 19683.0,
+                980.0 / 6561.0,
+                (1820.0 - 400.0 * d) / 19683.0,
+                200.0 / 19683.0,
+                6859.0 / 19683.0 / (1 << d)
+            };
+            this.w5   = new double[] {
+                (729.0 - 950.0 * d + 50.0 * d * d) / 729.0,
+                245.0 / 486.0,
+                (265.0 - 100.0 * d) / 1458.0,
+                25.0 / 729.0
+            };
+        }
+
+        /**
+         * Compute the integral and error estimates of regions, and the
+         * axes along which they should be split.
+         * @param regions regions to integrate
+         */
+        void apply(final Region[] regions) {
+
+            // generate the points of all regions
+            final double[][] points = new double[regions.length * size][];
+            for (int r = 0; r < regions.length; ++r) {
+                final double[] c = regions[r].center;
+                final double[] h = regions[r].halfWidth;
+                int k = r * size;
+                points[k++] = c.clone();
+                for (int i = 0; i < d; ++i) {
+                    points[k++] = shifted(c, i, -LAMBDA2 * h[i]);
+                    points[k++] = shifted(c, i,  LAMBDA2 * h[i]);
+                }
+                for (int i = 0; i < d; ++i) {
+                    points[k++] = shifted(c, i, -LAMBDA3 * h[i]);
+                    points[k++] = shifted(c, i,  LAMBDA3 * h[i]);
+                }
+                for (int i = 0; i < d; ++i) {
+                    for (int j = i + 1; j < d; ++j) {
+                        for (int s = 0; s < 4; ++s) {
+                            final double[] p = c.clone();
+                            p[i] += ((s & 0x1) == 0 ? -LAMBDA4 : LAMBDA4) * h[i];
+                            p[j] += ((s & 0x2) == 0 ? -LAMBDA4 : LAMBDA4) * h[j];
+                            points[k++] = p;
+                        }
+                    }
+                }
+                for (int mask = 0; mask < (1 << d); ++mask) {
+                    final double[] p = c.clone();
+                    for (int i = 0; i < d; ++i) {
+                        p[i] += (((mask >> i) & 0x1) == 0 ? -LAMBDA5 : LAMBDA5) * h[i];
+                    }
+                    points[k++] = p;
+                }
+            }
+
+            final double[] values = new double[points.length];
+            computeObjectiveValues(points, values);
+
+            // apply the rules
+            for (int r = 0; r < regions.length; ++r) {
+                final Region region = regions[r];
+                int k = r * size;
+                final double f0 = values[k++];
+                double s2 = 0;
+                double s3 = 0;
+                double s4 = 0;
+                double s5 = 0;
+                final double[] diff = new double[d];
+                for (int i = 0; i < d; ++i) {
+                    final double fm = values[k++];
+                    final double fp = values[k++];
+                    s2 += fm + fp;
+                    diff[i] = fm + fp - 2 * f0;
+                }
+                for (int i = 0; i < d; ++i) {
+                    final double fm = values[k++];
+                    final double fp = values[k++];
+                    s3 += fm + fp;
+                    diff[i] = FastMath.abs(diff[i] - RATIO * (fm + fp - 2 * f0));
+                }
+                for (int i = 0; i < 2 * d * (d - 1); ++i) {
+                    s4 += values[k++];
+                }
+                for (int i = 0; i < (1 << d); ++i) {
+                    s5 += values[k++];
+                }
+
+                double volume = 1;
+                for (int i = 0; i < d; ++i) {
+                    volume *= 2 * region.halfWidth[i];
+                }
+                final double i7 = volume * (w7[0] * f0 + w7[1] * s2 + w7[2] * s3 + w7[3] * s4 + w7[4] * s5);
+                final double i5 = volume * (w5[0] * f0 + w5[1] * s2 + w5[2] * s3 + w5[3] * s4);
+                region.result = i7;
+                region.error  = FastMath.abs(i7 - i5);
+
+                // split along the axis with the largest fourth difference,
+                // the widest one among equal differences
+                int axis = 0;
+                for (int i = 1; i < d; ++i) {
+                    if (diff[i] > diff[axis] ||
+                        (diff[i] == diff[axis] && region.halfWidth[i] > region.halfWidth[axis])) {
+                        axis = i;
+                    }
+                }
+                region.splitAxis = axis;
+            }
+
+        }
+
+        /**
+         * Build a point shifted along one axis.
+         * @param c original point
+         * @param i index of the axis
+         * @param delta shift
+         * @return a new shifted point
+         */
+        private double[] shifted(final double[] c, final int i, final double delta) {
+            final double[] p = c.clone();
+            p[i] += delta;
+            return p;
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package analysis.integration;
+
+import analysis.MultivariateFunction;
+import exception.DimensionMismatchException;
+import exception.MathIllegalArgumentException;
+import exception.MaxCountExceededException;
+import exception.NullArgumentException;
+import exception.TooManyEvaluationsException;
+
+public interface MultivariateIntegrator {
+
+    /**
+     * Get the actual relative accuracy.
+     * @return the accuracy
+     */
+    double getRelativeAccuracy();
+
+    /**
+     * Get the actual absolute accuracy.
+     *
+     * @return the accuracy
+     */
+    double getAbsoluteAccuracy();
+
+    /**
+     * Get the min limit for the number of iterations.
+     *
+     * @return the actual min limit
+     */
+    int getMinimalIterationCount();
+
+    /**
+     * Get the upper limit for the number of iterations.
+     *
+     * @return the actual upper limit
+     */
+    int getMaximalIterationCount();
+
+    /**
+     * Integrate the function over the given hyper-rectangle.
+     *
+     * @param maxEval Maximum number of evaluations.
+     * @param f the integrand function
+     * @param lower the lower bounds of the hyper-rectangle
+     * @param upper the upper bounds of the hyper-rectangle
+     * @return the value of integral
+     * @throws TooManyEvaluationsException if the maximum number of function
+     * evaluations is exceeded.
+     * @throws MaxCountExceededException if the maximum iteration count is exceeded
+     * or the integrator detects convergence problems otherwise
+     * @throws DimensionMismatchException if {@code lower} and {@code upper}
+     * have different lengths.
+     * @throws MathIllegalArgumentException if {@code lower[i] >= upper[i]}
+     * for some {@code i} or the bounds do not satisfy the requirements
+     * specified by the integrator
+     * @throws NullArgumentException if {@code f} is {@code null}.
+     */
+    double integrate(int maxEval, MultivariateFunction f, double[] lower,
+                     double[] upper)
+        throws TooManyEvaluationsException, MaxCountExceededException,
+               MathIllegalArgumentException, NullArgumentException;
+
+    /**
+     * Get the number of function evaluations of the last run of the integrator.
+     * @return number of function evaluations
+     */
+    int getEvaluations();
+
+    /**
+     * Get the number of iterations of the last run of the integrator.
+     * @return number of iterations
+     */
+    int getIterations();
+
+    /**
+     * Get the estimate of the absolute error of the last run of the integrator.
+     * @return absolute error estimate
+     */
+    double getErrorEstimate();
+
+}
@@ -0,0 +1,214 @@
+package analysis.integration;
+
+import java.util.concurrent.ExecutorService;
+
+import math.util.FastMath;
+import math.util.MathUtils;
+import random.HaltonSequenceGenerator;
+import random.RandomGenerator;
+import random.RandomVectorGenerator;
+import random.SobolSequenceGenerator;
+import random.Well19937c;
+import exception.MaxCountExceededException;
+import exception.NotStrictlyPositiveException;
+import exception.NullArgumentException;
+import exception.NumberIsTooSmallException;
+import exception.TooManyEvaluationsException;
+import exception.util.LocalizedFormats;
+
+public class QuasiMonteCarloIntegrator extends BaseAbstractMultivariateIntegrator {
+
+    /** Default number of independent scramblings. */
+    public static final int DEFAULT_REPLICATES = 8;
+
+    /** Number of points of each replicate at the first iteration. */
+    private static final int INITIAL_POINTS = 128;
+
+    /** Low discrepancy sequences. */
+    public static enum Sequence {
+
+        /** Sobol sequence with random digital shifts. */
+        SOBOL {
+            /** {@inheritDoc} */
+            @Override
+            RandomVectorGenerator create(final int dimension, final RandomGenerator rng) {
+                return new SobolSequenceGenerator(dimension, rng);
+            }
+        },
+
+        /** Halton sequence with random digit permutations. */
+        HALTON {
+            /** {@inheritDoc} */
+            @Override
+            RandomVectorGenerator create(final int dimension, final RandomGenerator rng) {
+                return new HaltonSequenceGenerator(dimension, rng);
+            }
+        };
+
+        /**
+         * Create a scrambled generator of the sequence.
+         * @param dimension space dimension
+         * @param rng generator for the scrambling
+         * @return a new generator
+         */
+        abstract RandomVectorGenerator create(int dimension, RandomGenerator rng);
+
+    }
+
+    /** Low discrepancy sequence. */
+    private final Sequence sequence;
+
+    /** Number of independent scramblings. */
+    private final int replicates;
+
+    /** Generator for the scramblings. */
+    private final RandomGenerator rng;
+
+    /**
+     * Builds an integrator.
+     *
+     * @param sequence Low discrepancy sequence.
+     * @param replicates Number of independent scramblings of the sequence.
+     * @param rng Generator for the scramblings.
+     * @param relativeAccuracy Relative accuracy of the result.
+     * @param absoluteAccuracy Absolute accuracy of the result.
+     * @param minimalIterationCount Minimum number of iterations.
+     * @param maximalIterationCount Maximum number of iterations.
+     * @param executor Executor for the evaluations of the integrand (may
+     * be null to evaluate everything in the calling thread).
+     * @throws NumberIsTooSmallException if {@code replicates < 2}, or
+     * if maximal number of iterations is smaller than or equal to the
+     * minimal number of iterations.
+     * @throws NotStrictlyPositiveException if minimal number of iterations
+     * is not strictly positive.
+     * @throws NullArgumentException if {@code sequence} or {@code rng} is
+     * {@code null}.
+     */
+    public QuasiMonteCarloIntegrator(final Sequence sequence,
+                                     final int replicates,
+                                     final RandomGenerator rng,
+                                     final double relativeAccuracy,
+                                     final double absoluteAccuracy,
+                                     final int minimalIterationCount,
+                                     final int maximalIterationCount,
+                                     final ExecutorService executor)
+        throws NumberIsTooSmallException, NotStrictlyPositiveException, NullArgumentException {
+        super(relativeAccuracy, absoluteAccuracy, minimalIterationCount, maximalIterationCount,
+              executor);
+        MathUtils.checkNotNull(sequence);
+        // an unscrambled sequence would give identical replicates and a zero error estimate
+        MathUtils.checkNotNull(rng);
+        if (replicates < 2) {
+            throw new NumberIsTooSmallException(LocalizedFormats.NUMBER_OF_SAMPLES,
+                                                replicates, 2, true);
+        }
+        this.sequence   = sequence;
+        this.replicates = replicates;
+        this.rng        = rng;
+    }
+
+    /**
+     * Builds an integrator with {@link #DEFAULT_REPLICATES} scramblings,
+     * evaluating the integrand in the calling thread.
+     *
+     * @param sequence Low discrepancy sequence.
+     * @param relativeAccuracy Relative accuracy of the result.
+     * @param absoluteAccuracy Absolute accuracy of the result.
+     */
+    public QuasiMonteCarloIntegrator(final Sequence sequence,
+                                     final double relativeAccuracy,
+                                     final double absoluteAccuracy) {
+        this(sequence, DEFAULT_REPLICATES, new Well19937c(), relativeAccuracy, absoluteAccuracy,
+             DEFAULT_MIN_ITERATIONS_COUNT, DEFAULT_MAX_ITERATIONS_COUNT, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This is randomized quasi-Monte Carlo integration. The integral is
+     * estimated independently by several scramblings of the low discrepancy
+     * sequence; the result is the mean of these estimates and the error
+     * estimate is their standard error. Each iteration doubles the number
+     * of points of each replicate, which keeps Sobol points in balanced
+     * blocks of powers of two. All the new points of an iteration are
+     * evaluated in a single batch, concurrently if an executor was
+     * provided.
+     * </p>
+     * <p>
+     * The error of quasi-Monte Carlo decreases almost as {@code 1/n} for
+     * smooth integrands, instead of {@code 1/sqrt(n)} for Monte Carlo, and
+     * the cost does not grow exponentially with the dimension.
+     * </p>
+     */
+    @Override
+    protected double doIntegrate()
+        throws TooManyEvaluationsException, MaxCountExceededException {
+
+        final int d = getDimension();
+        final double[] lower = getLower();
+        final double[] upper = getUpper();
+        double volume = 1;
+        for (int i = 0; i < d; ++i) {
+            volume *= upper[i] - lower[i];
+        }
+
+        final RandomVectorGenerator[] generators = new RandomVectorGenerator[replicates];
+        for (int r = 0; r < replicates; ++r) {
+            generators[r] = sequence.create(d, rng);
+        }
+        final double[] sums = new double[replicates];
+        final double[] estimates = new double[replicates];
+
+        int total = 0;
+        int n = INITIAL_POINTS;
+        while (true) {
+
+            // evaluate the next points of all the replicates
+            checkEvaluations(replicates * n);
+            final double[][] points = new double[replicates * n][];
+            for (int r = 0; r < replicates; ++r) {
+                for (int k = 0; k < n; ++k) {
+                    final double[] p = generators[r].nextVector();
+                    for (int i = 0; i < d; ++i) {
+                        p[i] = lower[i] + p[i] * (upper[i] - lower[i]);
+                    }
+                    points[r * n + k] = p;
+                }
+            }
+            final double[] values = new double[points.length];
+            computeObjectiveValues(points, values);
+            total += n;
+
+            // combine the estimates of all the replicates
+            double mean = 0;
+            for (int r = 0; r < replicates; ++r) {
+                for (int k = 0; k < n; ++k) {
+                    sums[r] += values[r * n + k];
+                }
+                estimates[r] = volume * sums[r] / total;
+                mean += estimates[r];
+            }
+            mean /= replicates;
+            double variance = 0;
+            for (int r = 0; r < replicates; ++r) {
+                final double dev = estimates[r] - mean;
+                variance += dev * dev;
+            }
+            variance /= replicates - 1;
+            final double error = FastMath.sqrt(variance / replicates);
+            setErrorEstimate(error);
+
+            if (iterations.getCount() + 1 >= getMinimalIterationCount() &&
+                error <= FastMath.max(getAbsoluteAccuracy(), getRelativeAccuracy() * FastMath.abs(mean))) {
+                return mean;
+            }
+            iterations.incrementCount();
+
+            // double the number of points
+            n = total;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package analysis.integration;
+
+import java.util.concurrent.ExecutorService;
+
+import math.util.FastMath;
+import analysis.integration.gauss.GaussIntegrator;
+import analysis.integration.gauss.GaussIntegratorFactory;
+import exception.MaxCountExceededException;
+import exception.NotStrictlyPositiveException;
+import exception.NumberIsTooSmallException;
+import exception.TooManyEvaluationsException;
+
+public class TensorLegendreGaussIntegrator extends BaseAbstractMultivariateIntegrator {
+    /** Factory that computes the points and weights. */
+    private static final GaussIntegratorFactory FACTORY
+        = new GaussIntegratorFactory();
+    /** Number of integration points (per interval and per axis). */
+    private final int numberOfPoints;
+
+    /**
+     * Builds an integrator with given accuracies, iterations counts and
+     * executor.
+     *
+     * @param n Number of integration points per axis.
+     * @param relativeAccuracy Relative accuracy of the result.
+     * @param absoluteAccuracy Absolute accuracy of the result.
+     * @param minimalIterationCount Minimum number of iterations.
+     * @param maximalIterationCount Maximum number of iterations.
+     * @param executor Executor for the evaluations of the integrand (may
+     * be null to evaluate everything in the calling thread).
+     * @throws NotStrictlyPositiveException if minimal number of iterations
+     * or number of points is not strictly positive.
+     * @throws NumberIsTooSmallException if maximal number of iterations
+     * is smaller than or equal to the minimal number of iterations.
+     */
+    public TensorLegendreGaussIntegrator(final int n,
+                                         final double relativeAccuracy,
+                                         final double absoluteAccuracy,
+                                         final int minimalIterationCount,
+                                         final int maximalIterationCount,
+                                         final ExecutorService executor)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException {
+        super(relativeAccuracy, absoluteAccuracy, minimalIterationCount, maximalIterationCount,
+              executor);
+        if (n <= 0) {
+            throw new NotStrictlyPositiveException(n);
+        }
+        numberOfPoints = n;
+    }
+
+    /**
+     * Builds an integrator with given accuracies, evaluating the
+     * integrand in the calling thread.
+     *
+     * @param n Number of integration points per axis.
+     * @param relativeAccuracy Relative accuracy of the result.
+     * @param absoluteAccuracy Absolute accuracy of the result.
+     * @throws NotStrictlyPositiveException if the number of points is not
+     * strictly positive.
+     */
+    public TensorLegendreGaussIntegrator(final int n,
+                                         final double relativeAccuracy,
+                                         final double absoluteAccuracy)
+        throws NotStrictlyPositiveException {
+        this(n, relativeAccuracy, absoluteAccuracy,
+             DEFAULT_MIN_ITERATIONS_COUNT, DEFAULT_MAX_ITERATIONS_COUNT, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This is the multivariate counterpart of
+     * {@link IterativeLegendreGaussIntegrator}. Each stage splits every
+     * axis in {@code m} equal intervals and applies the tensor product of
+     * the Gauss-Legendre rules of {@link GaussIntegratorFactory} on the
+     * resulting {@code m^d} cells, using {@code (m n)^d} points evaluated
+     * in a single batch, concurrently if an executor was provided. The
+     * error is estimated by the difference between successive stages.
+     * </p>
+     * <p>
+     * The number of points grows exponentially with the dimension, so this
+     * integrator is suited to smooth integrands in low dimensions, say up
+     * to 3 or 4. Use {@link GenzMalikIntegrator} or
+     * {@link QuasiMonteCarloIntegrator} in higher dimensions.
+     * </p>
+     */
+    @Override
+    protected double doIntegrate()
+        throws TooManyEvaluationsException, MaxCountExceededException {
+        // Compute first estimate with a single cell.
+        double oldt = stage(1);
+
+        int m = 2;
+        while (true) {
+            // Improve integral with a larger number of cells.
+            final double t = stage(m);
+
+            // Estimate the error.
+            final double delta = FastMath.abs(t - oldt);
+            final double limit =
+                FastMath.max(getAbsoluteAccuracy(),
+                             getRelativeAccuracy() * (FastMath.abs(oldt) + FastMath.abs(t)) * 0.5);
+            setErrorEstimate(delta);
+
+            // check convergence
+            if (iterations.getCount() + 1 >= getMinimalIterationCount() &&
+                delta <= limit) {
+                return t;
+            }
+
+            // Prepare next iteration, the number of points grows as m^d.
+            final double ratio = FastMath.min(2, FastMath.pow(delta / limit, 0.5 / numberOfPoints));
+            m = FastMath.max((int) (ratio * m), m + 1);
+            oldt = t;
+            iterations.incrementCount();
+        }
+    }
+
+    /**
+     * Compute the stage integral with {@code m} intervals per axis.
+     *
+     * @param m Number of intervals per axis.
+     * @return the value of the stage integral.
+     * @throws TooManyEvaluationsException if the maximum number of evaluations
+     * is exceeded.
+     */
+    private double stage(final int m)
+        throws TooManyEvaluationsException {
+
+        final int d = getDimension();
+        final double[] lower = getLower();
+        final double[] upper = getUpper();
+
+        // composite one-dimensional rules along each axis
+        final int perAxis = m * numberOfPoints;
+        final double[][] nodes = new double[d][perAxis];
+        final double[][] weights = new double[d][perAxis];
+        for (int i = 0; i < d; ++i) {
+            final double step = (upper[i] - lower[i]) / m;
+            for (int k = 0; k < m; ++k) {
+                final double a = lower[i] + k * step;
+                final double b = (k == m - 1) ? upper[i] : a + step;
+                final GaussIntegrator g = FACTORY.legendre(numberOfPoints, a, b);
+                System.arraycopy(g.getPoints(),  0, nodes[i],   k * numberOfPoints, numberOfPoints);
+                System.arraycopy(g.getWeights(), 0, weights[i], k * numberOfPoints, numberOfPoints);
+            }
+        }
+
+        // tensor product grid, the last axis varying fastest
+        int size = 1;
+        for (int i = 0; i < d; ++i) {
+            if (size > Integer.MAX_VALUE / perAxis) {
+                throw new TooManyEvaluationsException(Integer.MAX_VALUE);
+            }
+            size *= perAxis;
+        }
+        checkEvaluations(size);
+        final double[][] points = new double[size][d];
+        final double[] w = new double[size];
+        final int[] index = new int[d];
+        for (int p = 0; p < size; ++p) {
+            double product = 1;
+            for (int i = 0; i < d; ++i) {
+                points[p][i] = nodes[i][index[i]];
+                product *= weights[i][index[i]];
+            }
+            w[p] = product;
+            for (int i = d - 1; i >= 0; --i) {
+                if (++index[i] < perAxis) {
+                    break;
+                }
+                index[i] = 0;
+            }
+        }
+
+        final double[] values = new double[size];
+        computeObjectiveValues(points, values);
+
+        double sum = 0;
+        for (int p = 0; p < size; ++p) {
+            sum += w[p] * values[p];
+        }
+        return sum;
+
+    }
+
+}
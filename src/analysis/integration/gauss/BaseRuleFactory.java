@@ -1,19 +1,25 @@
 package analysis.integration.gauss;
 
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import math.util.Pair;
 import exception.DimensionMismatchException;
+import exception.MathIllegalStateException;
 import exception.NotStrictlyPositiveException;
+import exception.NumberIsTooSmallException;
+import exception.util.LocalizedFormats;
 
 public abstract class BaseRuleFactory<T extends Number> {
-    /** List of points and weights, indexed by the order of the rule. */
-    private final Map<Integer, Pair<T[], T[]>> pointsAndWeights
-        = new TreeMap<Integer, Pair<T[], T[]>>();
+    /** Points and weights being computed or computed, indexed by the order of the rule. */
+    private final ConcurrentMap<Integer, FutureTask<Pair<T[], T[]>>> pointsAndWeights
+        = new ConcurrentHashMap<Integer, FutureTask<Pair<T[], T[]>>>();
     /** Cache for double-precision rules. */
-    private final Map<Integer, Pair<double[], double[]>> pointsAndWeightsDouble
-        = new TreeMap<Integer, Pair<double[], double[]>>();
+    private final ConcurrentMap<Integer, Pair<double[], double[]>> pointsAndWeightsDouble
+        = new ConcurrentHashMap<Integer, Pair<double[], double[]>>();
 
     /**
      * Gets a copy of the quadrature rule with the given number of integration
@@ -35,8 +41,12 @@ public abstract class BaseRuleFactory<T extends Number> {
             final Pair<T[], T[]> rule = getRuleInternal(numberOfPoints);
             cached = convertToDouble(rule);
 
-            // Cache it.
-            pointsAndWeightsDouble.put(numberOfPoints, cached);
+            // Cache it, unless another thread did it first.
+            final Pair<double[], double[]> previous =
+                pointsAndWeightsDouble.putIfAbsent(numberOfPoints, cached);
+            if (previous != null) {
+                cached = previous;
+            }
         }
 
         // Return a copy.
@@ -44,41 +54,119 @@ public abstract class BaseRuleFactory<T extends Number> {
                                             cached.getSecond().clone());
     }
 
+    /**
+     * Computes the rules for a range of orders, so that later calls to
+     * {@link #getRule(int)} for these orders only copy cached arrays.
+     *
+     * @param minNumberOfPoints Smallest order to compute.
+     * @param maxNumberOfPoints Largest order to compute.
+     * @throws NotStrictlyPositiveException if {@code minNumberOfPoints < 1}.
+     * @throws NumberIsTooSmallException if
+     * {@code maxNumberOfPoints < minNumberOfPoints}.
+     */
+    public void precompute(int minNumberOfPoints, int maxNumberOfPoints)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException {
+        if (minNumberOfPoints <= 0) {
+            throw new NotStrictlyPositiveException(LocalizedFormats.NUMBER_OF_POINTS,
+                                                   minNumberOfPoints);
+        }
+        if (maxNumberOfPoints < minNumberOfPoints) {
+            throw new NumberIsTooSmallException(maxNumberOfPoints, minNumberOfPoints, true);
+        }
+        for (int n = minNumberOfPoints; n <= maxNumberOfPoints; n++) {
+            if (!pointsAndWeightsDouble.containsKey(n)) {
+                pointsAndWeightsDouble.putIfAbsent(n, convertToDouble(getRuleInternal(n)));
+            }
+        }
+    }
+
     /**
      * Gets a rule.
-     * Synchronization ensures that rules will be computed and added to the
-     * cache at most once.
+     * Rules already computed are retrieved without locking. A rule is
+     * computed at most once: threads requesting a rule being computed by
+     * another thread wait for its completion, but threads requesting other
+     * rules are not blocked.
      * The returned rule is a reference into the cache.
      *
      * @param numberOfPoints Order of the rule to be retrieved.
      * @return the points and weights corresponding to the given order.
      * @throws NotStrictlyPositiveException if {@code numberOfPoints < 1}.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for another thread computing the rule.
      */
-    protected synchronized Pair<T[], T[]> getRuleInternal(int numberOfPoints)
-        throws NotStrictlyPositiveException {
-        final Pair<T[], T[]> rule = pointsAndWeights.get(numberOfPoints);
-        if (rule == null) {
-            addRule(computeRule(numberOfPoints));
-            // The rule should be available now.
-            return getRuleInternal(numberOfPoints);
+    protected Pair<T[], T[]> getRuleInternal(final int numberOfPoints)
+        throws NotStrictlyPositiveException, MathIllegalStateException {
+        FutureTask<Pair<T[], T[]>> task = pointsAndWeights.get(numberOfPoints);
+        if (task == null) {
+            final FutureTask<Pair<T[], T[]>> newTask =
+                new FutureTask<Pair<T[], T[]>>(new Callable<Pair<T[], T[]>>() {
+                    /** {@inheritDoc} */
+                    public Pair<T[], T[]> call() {
+                        final Pair<T[], T[]> rule = computeRule(numberOfPoints);
+                        checkRule(rule);
+                        return rule;
+                    }
+                });
+            task = pointsAndWeights.putIfAbsent(numberOfPoints, newTask);
+            if (task == null) {
+                // This thread is in charge of the computation.
+                task = newTask;
+                task.run();
+            }
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MathIllegalStateException(ie, LocalizedFormats.COMPUTATION_INTERRUPTED);
+        } catch (ExecutionException ee) {
+            // Do not cache failures.
+            pointsAndWeights.remove(numberOfPoints, task);
+            final Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MathIllegalStateException(cause, LocalizedFormats.USER_EXCEPTION);
         }
-        return rule;
     }
 
     /**
      * Stores a rule.
+     * If a rule with the same order is already stored or being computed,
+     * it is kept.
      *
      * @param rule Rule to be stored.
      * @throws DimensionMismatchException if the elements of the pair do not
      * have the same length.
      */
-    protected void addRule(Pair<T[], T[]> rule) {
+    protected void addRule(final Pair<T[], T[]> rule) {
+        checkRule(rule);
+        final FutureTask<Pair<T[], T[]>> task =
+            new FutureTask<Pair<T[], T[]>>(new Callable<Pair<T[], T[]>>() {
+                /** {@inheritDoc} */
+                public Pair<T[], T[]> call() {
+                    return rule;
+                }
+            });
+        task.run();
+        pointsAndWeights.putIfAbsent(rule.getFirst().length, task);
+    }
+
+    /**
+     * Checks that the points and weights of a rule have the same length.
+     *
+     * @param rule Rule to be checked.
+     * @throws DimensionMismatchException if the elements of the pair do not
+     * have the same length.
+     */
+    private static <T extends Number> void checkRule(final Pair<T[], T[]> rule) {
         if (rule.getFirst().length != rule.getSecond().length) {
             throw new DimensionMismatchException(rule.getFirst().length,
                                                  rule.getSecond().length);
         }
-
-        pointsAndWeights.put(rule.getFirst().length, rule);
     }
 
     /**
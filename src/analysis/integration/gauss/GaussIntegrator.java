@@ -82,4 +82,23 @@ public class GaussIntegrator {
     public int getNumberOfPoints() {
         return points.length;
     }
+
+    /**
+     * Gets the integration points, for example to build a tensor product
+     * rule in several dimensions.
+     *
+     * @return a copy of the integration points.
+     */
+    public double[] getPoints() {
+        return points.clone();
+    }
+
+    /**
+     * Gets the weights of the integration points.
+     *
+     * @return a copy of the weights.
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
 }
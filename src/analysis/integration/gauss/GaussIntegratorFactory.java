@@ -2,6 +2,8 @@ package analysis.integration.gauss;
 
 import java.math.BigDecimal;
 import math.util.Pair;
+import exception.NotStrictlyPositiveException;
+import exception.NumberIsTooSmallException;
 
 public class GaussIntegratorFactory {
     /** Generator of Gauss-Legendre integrators. */
@@ -69,6 +71,43 @@ public class GaussIntegratorFactory {
                                              lowerBound, upperBound));
     }
 
+    /**
+     * Computes in advance the Gauss-Legendre rules for a range of orders.
+     * <p>
+     * Integrators of these orders are then created without computing
+     * anything, which avoids a latency spike on the first request of
+     * each order. Rules are computed and cached at most once, and
+     * retrieving a cached rule never blocks, so the factory can be
+     * shared by many threads.
+     * </p>
+     *
+     * @param minNumberOfPoints Smallest order of the integration rules.
+     * @param maxNumberOfPoints Largest order of the integration rules.
+     * @throws NotStrictlyPositiveException if {@code minNumberOfPoints < 1}.
+     * @throws NumberIsTooSmallException if
+     * {@code maxNumberOfPoints < minNumberOfPoints}.
+     */
+    public void precomputeLegendre(int minNumberOfPoints, int maxNumberOfPoints)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException {
+        legendre.precompute(minNumberOfPoints, maxNumberOfPoints);
+    }
+
+    /**
+     * Computes in advance the high precision Gauss-Legendre rules for a
+     * range of orders.
+     *
+     * @param minNumberOfPoints Smallest order of the integration rules.
+     * @param maxNumberOfPoints Largest order of the integration rules.
+     * @throws NotStrictlyPositiveException if {@code minNumberOfPoints < 1}.
+     * @throws NumberIsTooSmallException if
+     * {@code maxNumberOfPoints < minNumberOfPoints}.
+     * @see #precomputeLegendre(int, int)
+     */
+    public void precomputeLegendreHighPrecision(int minNumberOfPoints, int maxNumberOfPoints)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException {
+        legendreHighPrecision.precompute(minNumberOfPoints, maxNumberOfPoints);
+    }
+
     /**
      * @param factory Integration rule factory.
      * @param numberOfPoints Order of the integration rule.
@@ -8,14 +8,12 @@ import exception.NotStrictlyPositiveException;
 import exception.util.LocalizedFormats;
 
 public class LegendreHighPrecisionRuleFactory extends BaseRuleFactory<BigDecimal> {
+    /** Maximal number of Newton iterations for one point. */
+    private static final int MAX_NEWTON_ITERATIONS = 20;
     /** Settings for enhanced precision computations. */
     private final MathContext mContext;
     /** The number {@code 2}. */
     private final BigDecimal two;
-    /** The number {@code -1}. */
-    private final BigDecimal minusOne;
-    /** The number {@code 0.5}. */
-    private final BigDecimal oneHalf;
 
     /**
      * Default precision is {@link MathContext#DECIMAL128 DECIMAL128}.
@@ -30,8 +28,6 @@ public class LegendreHighPrecisionRuleFactory extends BaseRuleFactory<BigDecimal
     public LegendreHighPrecisionRuleFactory(MathContext mContext) {
         this.mContext = mContext;
         two = new BigDecimal("2", mContext);
-        minusOne = new BigDecimal("-1", mContext);
-        oneHalf = new BigDecimal("0.5", mContext);
     }
 
     /**
@@ -47,111 +43,38 @@ public class LegendreHighPrecisionRuleFactory extends BaseRuleFactory<BigDecimal
         }
 
         if (numberOfPoints == 1) {
-            // Break recursion.
             return new Pair<BigDecimal[], BigDecimal[]>(new BigDecimal[] { BigDecimal.ZERO },
                                                         new BigDecimal[] { two });
         }
 
-        // Get previous rule.
-        // If it has not been computed yet it will trigger a recursive call
-        // to this method.
-        final BigDecimal[] previousPoints = getRuleInternal(numberOfPoints - 1).getFirst();
-
-        // Compute next rule.
+        // Refine the double precision points, which are accurate to
+        // about 16 digits, by Newton iterations at the enhanced precision.
+        final Double[] initial = LegendreRuleFactory.directRule(numberOfPoints).getFirst();
         final BigDecimal[] points = new BigDecimal[numberOfPoints];
         final BigDecimal[] weights = new BigDecimal[numberOfPoints];
+        final BigDecimal nP = new BigDecimal(numberOfPoints, mContext);
+        final BigDecimal[] p = new BigDecimal[2];
 
-        // Find i-th root of P[n+1] by bracketing.
         final int iMax = numberOfPoints / 2;
         for (int i = 0; i < iMax; i++) {
-            // Lower-bound of the interval.
-            BigDecimal a = (i == 0) ? minusOne : previousPoints[i - 1];
-            // Upper-bound of the interval.
-            BigDecimal b = (iMax == 1) ? BigDecimal.ONE : previousPoints[i];
-            // P[j-1](a)
-            BigDecimal pma = BigDecimal.ONE;
-            // P[j](a)
-            BigDecimal pa = a;
-            // P[j-1](b)
-            BigDecimal pmb = BigDecimal.ONE;
-            // P[j](b)
-            BigDecimal pb = b;
-            for (int j = 1; j < numberOfPoints; j++) {
-                final BigDecimal b_two_j_p_1 = new BigDecimal(2 * j + 1, mContext);
-                final BigDecimal b_j = new BigDecimal(j, mContext);
-                final BigDecimal b_j_p_1 = new BigDecimal(j + 1, mContext);
-
-                // Compute P[j+1](a)
-                // ppa = ((2 * j + 1) * a * pa - j * pma) / (j + 1);
-
-                BigDecimal tmp1 = a.multiply(b_two_j_p_1, mContext);
-                tmp1 = pa.multiply(tmp1, mContext);
-                BigDecimal tmp2 = pma.multiply(b_j, mContext);
-                // P[j+1](a)
-                BigDecimal ppa = tmp1.subtract(tmp2, mContext);
-                ppa = ppa.divide(b_j_p_1, mContext);
-
-                // Compute P[j+1](b)
-                // ppb = ((2 * j + 1) * b * pb - j * pmb) / (j + 1);
-
-                tmp1 = b.multiply(b_two_j_p_1, mContext);
-                tmp1 = pb.multiply(tmp1, mContext);
-                tmp2 = pmb.multiply(b_j, mContext);
-                // P[j+1](b)
-                BigDecimal ppb = tmp1.subtract(tmp2, mContext);
-                ppb = ppb.divide(b_j_p_1, mContext);
-
-                pma = pa;
-                pa = ppa;
-                pmb = pb;
-                pb = ppb;
-            }
-            // Now pa = P[n+1](a), and pma = P[n](a). Same holds for b.
-            // Middle of the interval.
-            BigDecimal c = a.add(b, mContext).multiply(oneHalf, mContext);
-            // P[j-1](c)
-            BigDecimal pmc = BigDecimal.ONE;
-            // P[j](c)
-            BigDecimal pc = c;
-            boolean done = false;
-            while (!done) {
-                BigDecimal tmp1 = b.subtract(a, mContext);
-                BigDecimal tmp2 = c.ulp().multiply(BigDecimal.TEN, mContext);
-                done = tmp1.compareTo(tmp2) <= 0;
-                pmc = BigDecimal.ONE;
-                pc = c;
-                for (int j = 1; j < numberOfPoints; j++) {
-                    final BigDecimal b_two_j_p_1 = new BigDecimal(2 * j + 1, mContext);
-                    final BigDecimal b_j = new BigDecimal(j, mContext);
-                    final BigDecimal b_j_p_1 = new BigDecimal(j + 1, mContext);
-
-                    // Compute P[j+1](c)
-                    tmp1 = c.multiply(b_two_j_p_1, mContext);
-                    tmp1 = pc.multiply(tmp1, mContext);
-                    tmp2 = pmc.multiply(b_j, mContext);
-                    // P[j+1](c)
-                    BigDecimal ppc = tmp1.subtract(tmp2, mContext);
-                    ppc = ppc.divide(b_j_p_1, mContext);
-
-                    pmc = pc;
-                    pc = ppc;
-                }
-                // Now pc = P[n+1](c) and pmc = P[n](c).
-                if (!done) {
-                    if (pa.signum() * pc.signum() <= 0) {
-                        b = c;
-                        pmb = pmc;
-                        pb = pc;
-                    } else {
-                        a = c;
-                        pma = pmc;
-                        pa = pc;
-                    }
-                    c = a.add(b, mContext).multiply(oneHalf, mContext);
+            BigDecimal c = new BigDecimal(initial[i].doubleValue(), mContext);
+            for (int k = 0; k < MAX_NEWTON_ITERATIONS; k++) {
+                legendre(numberOfPoints, c, p);
+                // delta = P[n](c) / P'[n](c)
+                //       = P[n](c) (1 - c^2) / (n (P[n-1](c) - c P[n](c)))
+                BigDecimal tmp1 = p[0].subtract(c.multiply(p[1], mContext), mContext);
+                tmp1 = tmp1.multiply(nP, mContext);
+                BigDecimal tmp2 = BigDecimal.ONE.subtract(c.pow(2, mContext), mContext);
+                tmp2 = p[1].multiply(tmp2, mContext);
+                final BigDecimal delta = tmp2.divide(tmp1, mContext);
+                c = c.subtract(delta, mContext);
+                if (delta.abs().compareTo(c.ulp().multiply(BigDecimal.TEN, mContext)) <= 0) {
+                    break;
                 }
             }
-            final BigDecimal nP = new BigDecimal(numberOfPoints, mContext);
-            BigDecimal tmp1 = pmc.subtract(c.multiply(pc, mContext), mContext);
+            legendre(numberOfPoints, c, p);
+
+            BigDecimal tmp1 = p[0].subtract(c.multiply(p[1], mContext), mContext);
             tmp1 = tmp1.multiply(nP);
             tmp1 = tmp1.pow(2, mContext);
             BigDecimal tmp2 = c.pow(2, mContext);
@@ -166,10 +89,6 @@ public class LegendreHighPrecisionRuleFactory extends BaseRuleFactory<BigDecimal
             points[idx] = c.negate(mContext);
             weights[idx] = tmp2;
         }
-        // If "numberOfPoints" is odd, 0 is a root.
-        // Note: as written, the test for oddness will work for negative
-        // integers too (although it is not necessary here), preventing
-        // a FindBugs warning.
         if (numberOfPoints % 2 != 0) {
             BigDecimal pmc = BigDecimal.ONE;
             for (int j = 1; j < numberOfPoints; j += 2) {
@@ -183,7 +102,6 @@ public class LegendreHighPrecisionRuleFactory extends BaseRuleFactory<BigDecimal
             }
 
             // 2 / pow(numberOfPoints * pmc, 2);
-            final BigDecimal nP = new BigDecimal(numberOfPoints, mContext);
             BigDecimal tmp1 = pmc.multiply(nP, mContext);
             tmp1 = tmp1.pow(2, mContext);
             BigDecimal tmp2 = two.divide(tmp1, mContext);
@@ -194,4 +112,34 @@ public class LegendreHighPrecisionRuleFactory extends BaseRuleFactory<BigDecimal
 
         return new Pair<BigDecimal[], BigDecimal[]>(points, weights);
     }
+
+    /**
+     * Evaluates Legendre polynomials by their three-term recurrence.
+     *
+     * @param numberOfPoints Degree {@code n} of the polynomial.
+     * @param c Point at which the polynomials are evaluated.
+     * @param p Array where to store {@code P[n-1](c)} and {@code P[n](c)}.
+     */
+    private void legendre(final int numberOfPoints, final BigDecimal c, final BigDecimal[] p) {
+        // P[j-1](c)
+        BigDecimal pmc = BigDecimal.ONE;
+        // P[j](c)
+        BigDecimal pc = c;
+        for (int j = 1; j < numberOfPoints; j++) {
+            final BigDecimal b_two_j_p_1 = new BigDecimal(2 * j + 1, mContext);
+            final BigDecimal b_j = new BigDecimal(j, mContext);
+            final BigDecimal b_j_p_1 = new BigDecimal(j + 1, mContext);
+
+            // P[j+1](c) = ((2 * j + 1) * c * pc - j * pmc) / (j + 1)
+            BigDecimal tmp1 = c.multiply(b_two_j_p_1, mContext);
+            tmp1 = pc.multiply(tmp1, mContext);
+            final BigDecimal tmp2 = pmc.multiply(b_j, mContext);
+            final BigDecimal ppc = tmp1.subtract(tmp2, mContext).divide(b_j_p_1, mContext);
+
+            pmc = pc;
+            pc = ppc;
+        }
+        p[0] = pmc;
+        p[1] = pc;
+    }
 }
@@ -1,10 +1,20 @@
 package analysis.integration.gauss;
 
+import math.util.FastMath;
 import math.util.Pair;
 import exception.NotStrictlyPositiveException;
 import exception.util.LocalizedFormats;
 
 public class LegendreRuleFactory extends BaseRuleFactory<Double> {
+    /**
+     * Number of points above which the rules are computed directly by
+     * Newton iterations rather than by bracketing between the points of
+     * the previous rule.
+     */
+    private static final int DIRECT_THRESHOLD = 64;
+    /** Maximal number of Newton iterations for one point. */
+    private static final int MAX_NEWTON_ITERATIONS = 100;
+
     /**
      * {@inheritDoc}
      */
@@ -22,6 +32,10 @@ public class LegendreRuleFactory extends BaseRuleFactory<Double> {
                                                 new Double[] { 2d });
         }
 
+        if (numberOfPoints > DIRECT_THRESHOLD) {
+            return directRule(numberOfPoints);
+        }
+
         // Get previous rule.
         // If it has not been computed yet it will trigger a recursive call
         // to this method.
@@ -118,4 +132,73 @@ public class LegendreRuleFactory extends BaseRuleFactory<Double> {
 
         return new Pair<Double[], Double[]>(points, weights);
     }
+
+    /**
+     * Computes a rule without using the rules of lower orders.
+     * <p>
+     * Each point is obtained by Newton iterations on the Legendre
+     * polynomial, evaluated by its three-term recurrence, starting from
+     * the asymptotic approximation of Tricomi
+     * {@code (1 - (n - 1) / (8 n<sup>3</sup>)) cos(pi (4k - 1) / (4n + 2))}.
+     * The approximation is close enough for the iterations to converge
+     * to the k-th root in a few steps, so the cost is {@code O(n<sup>2</sup>)}
+     * instead of the {@code O(n<sup>3</sup>)} of computing all the rules of
+     * lower orders. The points and weights are computed in the same
+     * order as the bracketing algorithm.
+     * </p>
+     *
+     * @param numberOfPoints Order of the rule to be computed.
+     * @return the computed rule.
+     */
+    static Pair<Double[], Double[]> directRule(final int numberOfPoints) {
+        final Double[] points = new Double[numberOfPoints];
+        final Double[] weights = new Double[numberOfPoints];
+
+        final int iMax = numberOfPoints / 2;
+        final double shrink = 1 - (numberOfPoints - 1) / (8.0 * numberOfPoints * numberOfPoints * numberOfPoints);
+        for (int i = 0; i < iMax; i++) {
+            // Initial approximation of the (i+1)-th largest root.
+            double c = shrink * FastMath.cos(FastMath.PI * (4 * i + 3) / (4 * numberOfPoints + 2));
+            // P[n-1](c)
+            double pmc;
+            // P[n](c)
+            double pc;
+            double delta;
+            int k = 0;
+            do {
+                pmc = 1;
+                pc = c;
+                for (int j = 1; j < numberOfPoints; j++) {
+                    final double ppc = ((2 * j + 1) * c * pc - j * pmc) / (j + 1);
+                    pmc = pc;
+                    pc = ppc;
+                }
+                // P'[n](c) = n (P[n-1](c) - c P[n](c)) / (1 - c^2)
+                delta = pc * (1 - c * c) / (numberOfPoints * (pmc - c * pc));
+                c -= delta;
+            } while (FastMath.abs(delta) > FastMath.ulp(c) && ++k < MAX_NEWTON_ITERATIONS);
+            final double d = numberOfPoints * (pmc - c * pc);
+            final double w = 2 * (1 - c * c) / (d * d);
+
+            points[i] = -c;
+            weights[i] = w;
+
+            final int idx = numberOfPoints - i - 1;
+            points[idx] = c;
+            weights[idx] = w;
+        }
+        if (numberOfPoints % 2 != 0) {
+            double pmc = 1;
+            for (int j = 1; j < numberOfPoints; j += 2) {
+                pmc = -j * pmc / (j + 1);
+            }
+            final double d = numberOfPoints * pmc;
+            final double w = 2 / (d * d);
+
+            points[iMax] = 0d;
+            weights[iMax] = w;
+        }
+
+        return new Pair<Double[], Double[]>(points, weights);
+    }
 }
@@ -9,6 +9,10 @@ import exception.OutOfRangeException;
 
 public class BicubicSplineInterpolatingFunction
     implements BivariateFunction {
+    /** Number of coefficients of the polynomial along each axis. */
+    private static final int N = 4;
+    /** Number of coefficients of a patch. */
+    private static final int PATCH_SIZE = N * N;
     /**
      * Matrix to compute the spline coefficients from the function values
      * and function derivatives values
@@ -36,18 +40,15 @@ public class BicubicSplineInterpolatingFunction
     private final double[] xval;
     /** Samples y-coordinates */
     private final double[] yval;
-    /** Set of cubic splines patching the whole data grid */
-    private final BicubicSplineFunction[][] splines;
     /**
-     * Partial derivatives
-     * The value of the first index determines the kind of derivatives:
-     * 0 = first partial derivatives wrt x
-     * 1 = first partial derivatives wrt y
-     * 2 = second partial derivatives wrt x
-     * 3 = second partial derivatives wrt y
-     * 4 = cross partial derivatives
+     * Coefficients of the bicubic splines patching the whole data grid.
+     * The 16 coefficients of patch (i, j) start at index
+     * {@code (i * (yval.length - 1) + j) * 16}; coefficient
+     * {@code k + 4 * l} multiplies x<sup>k</sup> y<sup>l</sup>.
+     * The array is never modified after construction, so instances can
+     * be shared between threads.
      */
-    private BivariateFunction[][][] partialDerivatives = null;
+    private final double[] coefficients;
 
     /**
      * @param x Sample values of the x-coordinate, in increasing order.
@@ -101,7 +102,8 @@ public class BicubicSplineInterpolatingFunction
 
         final int lastI = xLen - 1;
         final int lastJ = yLen - 1;
-        splines = new BicubicSplineFunction[lastI][lastJ];
+        coefficients = new double[lastI * lastJ * PATCH_SIZE];
+        final double[] beta = new double[PATCH_SIZE];
 
         for (int i = 0; i < lastI; i++) {
             if (f[i].length != yLen) {
@@ -119,14 +121,24 @@ public class BicubicSplineInterpolatingFunction
             final int ip1 = i + 1;
             for (int j = 0; j < lastJ; j++) {
                 final int jp1 = j + 1;
-                final double[] beta = new double[] {
-                    f[i][j], f[ip1][j], f[i][jp1], f[ip1][jp1],
-                    dFdX[i][j], dFdX[ip1][j], dFdX[i][jp1], dFdX[ip1][jp1],
-                    dFdY[i][j], dFdY[ip1][j], dFdY[i][jp1], dFdY[ip1][jp1],
-                    d2FdXdY[i][j], d2FdXdY[ip1][j], d2FdXdY[i][jp1], d2FdXdY[ip1][jp1]
-                };
-
-                splines[i][j] = new BicubicSplineFunction(computeSplineCoefficients(beta));
+                beta[0]  = f[i][j];
+                beta[1]  = f[ip1][j];
+                beta[2]  = f[i][jp1];
+                beta[3]  = f[ip1][jp1];
+                beta[4]  = dFdX[i][j];
+                beta[5]  = dFdX[ip1][j];
+                beta[6]  = dFdX[i][jp1];
+                beta[7]  = dFdX[ip1][jp1];
+                beta[8]  = dFdY[i][j];
+                beta[9]  = dFdY[ip1][j];
+                beta[10] = dFdY[i][jp1];
+                beta[11] = dFdY[ip1][jp1];
+                beta[12] = d2FdXdY[i][j];
+                beta[13] = d2FdXdY[ip1][j];
+                beta[14] = d2FdXdY[i][jp1];
+                beta[15] = d2FdXdY[ip1][jp1];
+
+                computeSplineCoefficients(beta, coefficients, (i * lastJ + j) * PATCH_SIZE);
             }
         }
     }
@@ -148,14 +160,136 @@ public class BicubicSplineInterpolatingFunction
         final double xN = (x - xval[i]) / (xval[i + 1] - xval[i]);
         final double yN = (y - yval[j]) / (yval[j + 1] - yval[j]);
 
-        return splines[i][j].value(xN, yN);
+        return apply(patchStart(i, j), xN, yN);
     }
 
     /**
+     * Compute the values of the function at many points.
+     * <p>
+     * Consecutive points falling in the same grid patch reuse its location,
+     * so points sorted along the grid, or clustered, avoid most of the
+     * searches. The results are the same as with {@link #value(double, double)}.
+     * </p>
+     *
+     * @param xs x-coordinates of the points.
+     * @param ys y-coordinates of the points.
+     * @param out Array where to store the values (may be {@code xs} or {@code ys}).
+     * @throws DimensionMismatchException if the arrays do not have the same length.
+     * @throws OutOfRangeException if a point is outside the range defined by
+     * the boundary values of {@code xval} and {@code yval}.
+     */
+    public void value(double[] xs, double[] ys, double[] out)
+        throws DimensionMismatchException, OutOfRangeException {
+        if (ys.length != xs.length) {
+            throw new DimensionMismatchException(ys.length, xs.length);
+        }
+        if (out.length != xs.length) {
+            throw new DimensionMismatchException(out.length, xs.length);
+        }
+
+        int i = 0;
+        int j = 0;
+        for (int p = 0; p < xs.length; p++) {
+            final double x = xs[p];
+            final double y = ys[p];
+            if (!inInterval(x, xval, i)) {
+                i = searchIndex(x, xval);
+                if (i == -1) {
+                    throw new OutOfRangeException(x, xval[0], xval[xval.length - 1]);
+                }
+            }
+            if (!inInterval(y, yval, j)) {
+                j = searchIndex(y, yval);
+                if (j == -1) {
+                    throw new OutOfRangeException(y, yval[0], yval[yval.length - 1]);
+                }
+            }
+
+            final double xN = (x - xval[i]) / (xval[i + 1] - xval[i]);
+            final double yN = (y - yval[j]) / (yval[j + 1] - yval[j]);
+
+            out[p] = apply(patchStart(i, j), xN, yN);
+        }
+    }
+
+    /**
+     * Compute the value and the first partial derivatives at the same point.
+     * <p>
+     * Unlike {@link #partialDerivativeX(double, double)} and {@link
+     * #partialDerivativeY(double, double)}, the derivatives are divided by
+     * the patch widths, so that they are taken with respect to x and y
+     * rather than to the normalized patch coordinates. The patch is located
+     * once and the powers of the coordinates are shared by the three results.
+     * </p>
+     *
+     * @param x x-coordinate.
+     * @param y y-coordinate.
+     * @param gradient Array where to store the first partial derivatives with
+     * respect to x and y (in this order).
+     * @return the value at point (x, y).
+     * @throws DimensionMismatchException if {@code gradient} does not have
+     * length 2.
+     * @throws OutOfRangeException if {@code x} (resp. {@code y}) is outside
+     * the range defined by the boundary values of {@code xval} (resp.
+     * {@code yval}).
+     */
+    public double valueAndGradient(double x, double y, double[] gradient)
+        throws DimensionMismatchException, OutOfRangeException {
+        if (gradient.length != 2) {
+            throw new DimensionMismatchException(gradient.length, 2);
+        }
+        final int i = searchIndex(x, xval);
+        if (i == -1) {
+            throw new OutOfRangeException(x, xval[0], xval[xval.length - 1]);
+        }
+        final int j = searchIndex(y, yval);
+        if (j == -1) {
+            throw new OutOfRangeException(y, yval[0], yval[yval.length - 1]);
+        }
+
+        final double xW = xval[i + 1] - xval[i];
+        final double yW = yval[j + 1] - yval[j];
+        final double xN = (x - xval[i]) / xW;
+        final double yN = (y - yval[j]) / yW;
+
+        final double x2 = xN * xN;
+        final double x3 = x2 * xN;
+        final double y2 = yN * yN;
+        final double y3 = y2 * yN;
+        final double[] pX  = {1, xN, x2, x3};
+        final double[] pY  = {1, yN, y2, y3};
+        final double[] dpX = {0, 1, xN, x2};
+        final double[] dpY = {0, 1, yN, y2};
+
+        final int start = patchStart(i, j);
+        double value = 0;
+        double dX = 0;
+        double dY = 0;
+        for (int k = 0; k < N; k++) {
+            for (int l = 0; l < N; l++) {
+                final double c = coefficients[start + k + N * l];
+                value += c * pX[k] * pY[l];
+                dX    += (k * c) * dpX[k] * pY[l];
+                dY    += (l * c) * pX[k] * dpY[l];
+            }
+        }
+        gradient[0] = dX / xW;
+        gradient[1] = dY / yW;
+
+        return value;
+    }
+
+    /**
+     * The partial derivatives getters keep their original behaviour: they
+     * are taken with respect to the normalized coordinates of the patch
+     * containing the point, in [0, 1] along each axis, so their scale changes
+     * with the patch widths. {@link #valueAndGradient(double, double, double[])}
+     * returns the first derivatives with respect to x and y.
+     *
      * @param x x-coordinate.
      * @param y y-coordinate.
      * @return the value at point (x, y) of the first partial derivative with
-     * respect to x.
+     * respect to the normalized x-coordinate of the patch.
      * @throws OutOfRangeException if {@code x} (resp. {@code y}) is outside
      * the range defined by the boundary values of {@code xval} (resp.
      * {@code yval}).
@@ -168,7 +302,7 @@ public class BicubicSplineInterpolatingFunction
      * @param x x-coordinate.
      * @param y y-coordinate.
      * @return the value at point (x, y) of the first partial derivative with
-     * respect to y.
+     * respect to the normalized y-coordinate of the patch.
      * @throws OutOfRangeException if {@code x} (resp. {@code y}) is outside
      * the range defined by the boundary values of {@code xval} (resp.
      * {@code yval}).
@@ -181,7 +315,7 @@ public class BicubicSplineInterpolatingFunction
      * @param x x-coordinate.
      * @param y y-coordinate.
      * @return the value at point (x, y) of the second partial derivative with
-     * respect to x.
+     * respect to the normalized x-coordinate of the patch.
      * @throws OutOfRangeException if {@code x} (resp. {@code y}) is outside
      * the range defined by the boundary values of {@code xval} (resp.
      * {@code yval}).
@@ -194,7 +328,7 @@ public class BicubicSplineInterpolatingFunction
      * @param x x-coordinate.
      * @param y y-coordinate.
      * @return the value at point (x, y) of the second partial derivative with
-     * respect to y.
+     * respect to the normalized y-coordinate of the patch.
      * @throws OutOfRangeException if {@code x} (resp. {@code y}) is outside
      * the range defined by the boundary values of {@code xval} (resp.
      * {@code yval}).
@@ -206,7 +340,8 @@ public class BicubicSplineInterpolatingFunction
     /**
      * @param x x-coordinate.
      * @param y y-coordinate.
-     * @return the value at point (x, y) of the second partial cross-derivative.
+     * @return the value at point (x, y) of the second partial cross-derivative
+     * with respect to the normalized coordinates of the patch.
      * @throws OutOfRangeException if {@code x} (resp. {@code y}) is outside
      * the range defined by the boundary values of {@code xval} (resp.
      * {@code yval}).
@@ -217,7 +352,9 @@ public class BicubicSplineInterpolatingFunction
     }
 
     /**
-     * @param which First index in {@link #partialDerivatives}.
+     * @param which Kind of derivative: 0 = first partial derivative wrt x,
+     * 1 = first partial derivative wrt y, 2 = second partial derivative
+     * wrt x, 3 = second partial derivative wrt y, 4 = cross partial derivative.
      * @param x x-coordinate.
      * @param y y-coordinate.
      * @return the value at point (x, y) of the selected partial derivative.
@@ -227,10 +364,6 @@ public class BicubicSplineInterpolatingFunction
      */
     private double partialDerivative(int which, double x, double y)
         throws OutOfRangeException {
-        if (partialDerivatives == null) {
-            computePartialDerivatives();
-        }
-
         final int i = searchIndex(x, xval);
         if (i == -1) {
             throw new OutOfRangeException(x, xval[0], xval[xval.length - 1]);
@@ -243,27 +376,107 @@ public class BicubicSplineInterpolatingFunction
         final double xN = (x - xval[i]) / (xval[i + 1] - xval[i]);
         final double yN = (y - yval[j]) / (yval[j + 1] - yval[j]);
 
-        return partialDerivatives[which][i][j].value(xN, yN);
+        final double x2 = xN * xN;
+        final double y2 = yN * yN;
+        final double[] pX;
+        final double[] pY;
+        switch (which) {
+        case 0 :
+            pX = new double[] {0, 1, xN, x2};
+            pY = new double[] {1, yN, y2, y2 * yN};
+            break;
+        case 1 :
+            pX = new double[] {1, xN, x2, x2 * xN};
+            pY = new double[] {0, 1, yN, y2};
+            break;
+        case 2 :
+            pX = new double[] {0, 0, 1, xN};
+            pY = new double[] {1, yN, y2, y2 * yN};
+            break;
+        case 3 :
+            pX = new double[] {1, xN, x2, x2 * xN};
+            pY = new double[] {0, 0, 1, yN};
+            break;
+        default :
+            pX = new double[] {0, 1, xN, x2};
+            pY = new double[] {0, 1, yN, y2};
+        }
+
+        final int start = patchStart(i, j);
+        double result = 0;
+        for (int k = 0; k < N; k++) {
+            for (int l = 0; l < N; l++) {
+                final double c = coefficients[start + k + N * l];
+                final double d;
+                switch (which) {
+                case 0 :
+                    d = k * c;
+                    break;
+                case 1 :
+                    d = l * c;
+                    break;
+                case 2 :
+                    d = (k - 1) * (k * c);
+                    break;
+                case 3 :
+                    d = (l - 1) * (l * c);
+                    break;
+                default :
+                    d = l * (k * c);
+                }
+                result += d * pX[k] * pY[l];
+            }
+        }
+
+        return result;
     }
 
     /**
-     * Compute all partial derivatives.
+     * @param i Index of the patch along x.
+     * @param j Index of the patch along y.
+     * @return the index of the first coefficient of the patch.
      */
-    private void computePartialDerivatives() {
-        final int lastI = xval.length - 1;
-        final int lastJ = yval.length - 1;
-        partialDerivatives = new BivariateFunction[5][lastI][lastJ];
+    private int patchStart(int i, int j) {
+        return (i * (yval.length - 1) + j) * PATCH_SIZE;
+    }
 
-        for (int i = 0; i < lastI; i++) {
-            for (int j = 0; j < lastJ; j++) {
-                final BicubicSplineFunction f = splines[i][j];
-                partialDerivatives[0][i][j] = f.partialDerivativeX();
-                partialDerivatives[1][i][j] = f.partialDerivativeY();
-                partialDerivatives[2][i][j] = f.partialDerivativeXX();
-                partialDerivatives[3][i][j] = f.partialDerivativeYY();
-                partialDerivatives[4][i][j] = f.partialDerivativeXY();
+    /**
+     * Compute the value of the bicubic polynomial of a patch.
+     *
+     * @param start Index of the first coefficient of the patch.
+     * @param x Normalized x-coordinate in the patch.
+     * @param y Normalized y-coordinate in the patch.
+     * @return the interpolated value.
+     */
+    private double apply(int start, double x, double y) {
+        final double x2 = x * x;
+        final double x3 = x2 * x;
+        final double[] pX = {1, x, x2, x3};
+
+        final double y2 = y * y;
+        final double y3 = y2 * y;
+        final double[] pY = {1, y, y2, y3};
+
+        double result = 0;
+        for (int k = 0; k < N; k++) {
+            for (int l = 0; l < N; l++) {
+                result += coefficients[start + k + N * l] * pX[k] * pY[l];
             }
         }
+
+        return result;
+    }
+
+    /**
+     * @param c Coordinate.
+     * @param val Coordinate samples.
+     * @param i Index of an interval.
+     * @return true if {@link #searchIndex(double, double[])} would return
+     * {@code i} for {@code c}.
+     */
+    private static boolean inInterval(double c, double[] val, int i) {
+        return i + 1 < val.length &&
+               c <= val[i + 1] && (c > val[i] || (i == 0 && c == val[0]));
     }
 
     /**
@@ -273,19 +486,25 @@ public class BicubicSplineInterpolatingFunction
      * containing {@code c}, or {@code -1} if {@code c} is out of the
      * range defined by the boundary values of {@code val}.
      */
-    private int searchIndex(double c, double[] val) {
-        if (c < val[0]) {
+    private static int searchIndex(double c, double[] val) {
+        final int max = val.length;
+        if (max < 2 || c < val[0] || !(c <= val[max - 1])) {
             return -1;
         }
 
-        final int max = val.length;
-        for (int i = 1; i < max; i++) {
-            if (c <= val[i]) {
-                return i - 1;
+        // smallest index i >= 1 such that c <= val[i]
+        int low = 1;
+        int high = max - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (c <= val[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
             }
         }
 
-        return -1;
+        return low - 1;
     }
 
     /**
@@ -315,235 +534,18 @@ public class BicubicSplineInterpolatingFunction
      *
      * @param beta List of function values and function partial derivatives
      * values.
-     * @return the spline coefficients.
+     * @param a Array where to store the spline coefficients.
+     * @param start Index of the first coefficient to store.
      */
-    private double[] computeSplineCoefficients(double[] beta) {
-        final double[] a = new double[16];
-
-        for (int i = 0; i < 16; i++) {
+    private static void computeSplineCoefficients(double[] beta, double[] a, int start) {
+        for (int i = 0; i < PATCH_SIZE; i++) {
             double result = 0;
             final double[] row = AINV[i];
-            for (int j = 0; j < 16; j++) {
+            for (int j = 0; j < PATCH_SIZE; j++) {
                 result += row[j] * beta[j];
             }
-            a[i] = result;
+            a[start + i] = result;
         }
-
-        return a;
     }
 }
 
-/**
- * 2D-spline function.
- *
- * @version $Id: BicubicSplineInterpolatingFunction.java 1379904 2012-09-01 23:54:52Z erans $
- */
-class BicubicSplineFunction
-    implements BivariateFunction {
-
-    /** Number of points. */
-    private static final short N = 4;
-
-    /** Coefficients */
-    private final double[][] a;
-
-    /** First partial derivative along x. */
-    private BivariateFunction partialDerivativeX;
-
-    /** First partial derivative along y. */
-    private BivariateFunction partialDerivativeY;
-
-    /** Second partial derivative along x. */
-    private BivariateFunction partialDerivativeXX;
-
-    /** Second partial derivative along y. */
-    private BivariateFunction partialDerivativeYY;
-
-    /** Second crossed partial derivative. */
-    private BivariateFunction partialDerivativeXY;
-
-    /**
-     * Simple constructor.
-     * @param a Spline coefficients
-     */
-    public BicubicSplineFunction(double[] a) {
-        this.a = new double[N][N];
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                this.a[i][j] = a[i + N * j];
-            }
-        }
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public double value(double x, double y) {
-        if (x < 0 || x > 1) {
-            throw new OutOfRangeException(x, 0, 1);
-        }
-        if (y < 0 || y > 1) {
-            throw new OutOfRangeException(y, 0, 1);
-        }
-
-        final double x2 = x * x;
-        final double x3 = x2 * x;
-        final double[] pX = {1, x, x2, x3};
-
-        final double y2 = y * y;
-        final double y3 = y2 * y;
-        final double[] pY = {1, y, y2, y3};
-
-        return apply(pX, pY, a);
-    }
-
-    /**
-     * Compute the value of the bicubic polynomial.
-     *
-     * @param pX Powers of the x-coordinate.
-     * @param pY Powers of the y-coordinate.
-     * @param coeff Spline coefficients.
-     * @return the interpolated value.
-     */
-    private double apply(double[] pX, double[] pY, double[][] coeff) {
-        double result = 0;
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                result += coeff[i][j] * pX[i] * pY[j];
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * @return the partial derivative wrt {@code x}.
-     */
-    public BivariateFunction partialDerivativeX() {
-        if (partialDerivativeX == null) {
-            computePartialDerivatives();
-        }
-
-        return partialDerivativeX;
-    }
-    /**
-     * @return the partial derivative wrt {@code y}.
-     */
-    public BivariateFunction partialDerivativeY() {
-        if (partialDerivativeY == null) {
-            computePartialDerivatives();
-        }
-
-        return partialDerivativeY;
-    }
-    /**
-     * @return the second partial derivative wrt {@code x}.
-     */
-    public BivariateFunction partialDerivativeXX() {
-        if (partialDerivativeXX == null) {
-            computePartialDerivatives();
-        }
-
-        return partialDerivativeXX;
-    }
-    /**
-     * @return the second partial derivative wrt {@code y}.
-     */
-    public BivariateFunction partialDerivativeYY() {
-        if (partialDerivativeYY == null) {
-            computePartialDerivatives();
-        }
-
-        return partialDerivativeYY;
-    }
-    /**
-     * @return the second partial cross-derivative.
-     */
-    public BivariateFunction partialDerivativeXY() {
-        if (partialDerivativeXY == null) {
-            computePartialDerivatives();
-        }
-
-        return partialDerivativeXY;
-    }
-
-    /**
-     * Compute all partial derivatives functions.
-     */
-    private void computePartialDerivatives() {
-        final double[][] aX = new double[N][N];
-        final double[][] aY = new double[N][N];
-        final double[][] aXX = new double[N][N];
-        final double[][] aYY = new double[N][N];
-        final double[][] aXY = new double[N][N];
-
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                final double c = a[i][j];
-                aX[i][j] = i * c;
-                aY[i][j] = j * c;
-                aXX[i][j] = (i - 1) * aX[i][j];
-                aYY[i][j] = (j - 1) * aY[i][j];
-                aXY[i][j] = j * aX[i][j];
-            }
-        }
-
-        partialDerivativeX = new BivariateFunction() {
-                public double value(double x, double y)  {
-                    final double x2 = x * x;
-                    final double[] pX = {0, 1, x, x2};
-
-                    final double y2 = y * y;
-                    final double y3 = y2 * y;
-                    final double[] pY = {1, y, y2, y3};
-
-                    return apply(pX, pY, aX);
-                }
-            };
-        partialDerivativeY = new BivariateFunction() {
-                public double value(double x, double y)  {
-                    final double x2 = x * x;
-                    final double x3 = x2 * x;
-                    final double[] pX = {1, x, x2, x3};
-
-                    final double y2 = y * y;
-                    final double[] pY = {0, 1, y, y2};
-
-                    return apply(pX, pY, aY);
-                }
-            };
-        partialDerivativeXX = new BivariateFunction() {
-                public double value(double x, double y)  {
-                    final double[] pX = {0, 0, 1, x};
-
-                    final double y2 = y * y;
-                    final double y3 = y2 * y;
-                    final double[] pY = {1, y, y2, y3};
-
-                    return apply(pX, pY, aXX);
-                }
-            };
-        partialDerivativeYY = new BivariateFunction() {
-                public double value(double x, double y)  {
-                    final double x2 = x * x;
-                    final double x3 = x2 * x;
-                    final double[] pX = {1, x, x2, x3};
-
-                    final double[] pY = {0, 0, 1, y};
-
-                    return apply(pX, pY, aYY);
-                }
-            };
-        partialDerivativeXY = new BivariateFunction() {
-                public double value(double x, double y)  {
-                    final double x2 = x * x;
-                    final double[] pX = {0, 1, x, x2};
-
-                    final double y2 = y * y;
-                    final double[] pY = {0, 1, y, y2};
-
-                    return apply(pX, pY, aXY);
-                }
-            };
-    }
-}
@@ -0,0 +1,264 @@
+package analysis.interpolation;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import math.util.FastMath;
+import math.util.MathArrays;
+import math.util.MathUtils;
+import exception.DimensionMismatchException;
+import exception.NonMonotonicSequenceException;
+import exception.NotFiniteNumberException;
+import exception.NotPositiveException;
+import exception.NumberIsTooSmallException;
+import exception.util.LocalizedFormats;
+
+public class IncrementalLoessSmoother {
+
+    /** Initial capacity of the data arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Number of points in a bandwidth interval. */
+    private final int bandwidthInPoints;
+
+    /** Number of robustness iterations. */
+    private final int robustnessIters;
+
+    /**
+     * If the median residual at a certain robustness iteration
+     * is less than this amount, no more iterations are done.
+     */
+    private final double accuracy;
+
+    /** Executor for the local regressions (may be null). */
+    private final ExecutorService executor;
+
+    /** Number of points. */
+    private int n;
+
+    /** Abscissae of the points. */
+    private double[] xval;
+
+    /** Values of the points. */
+    private double[] yval;
+
+    /** Weights of the points. */
+    private double[] weights;
+
+    /** Smoothed values. */
+    private double[] res;
+
+    /** Absolute residuals of each robustness iteration. */
+    private double[][] residuals;
+
+    /** Index of the last iteration done by the previous smoothing. */
+    private int lastIteration;
+
+    /**
+     * Build a smoother with no points.
+     * <p>
+     * Contrary to {@link LoessInterpolator}, the bandwidth is a number of
+     * points rather than a fraction of the data, so the local regressions
+     * at the beginning of the data do not change as points are appended.
+     * </p>
+     *
+     * @param bandwidthInPoints Number of points closest to each abscissa
+     * which are taken into account for computing the local regression.
+     * @param robustnessIters Number of robustness iterations.
+     * @param accuracy If the median residual at a certain robustness iteration
+     * is less than this amount, no more iterations are done.
+     * @param executor Executor for the local regressions (may be null to
+     * compute everything in the calling thread).
+     * @throws NumberIsTooSmallException if {@code bandwidthInPoints < 2}.
+     * @throws NotPositiveException if {@code robustnessIters} is negative.
+     * @see LoessInterpolator#smooth(double[], double[], double[], ExecutorService)
+     */
+    public IncrementalLoessSmoother(final int bandwidthInPoints, final int robustnessIters,
+                                    final double accuracy, final ExecutorService executor)
+        throws NumberIsTooSmallException, NotPositiveException {
+        if (bandwidthInPoints < 2) {
+            throw new NumberIsTooSmallException(LocalizedFormats.BANDWIDTH,
+                                                bandwidthInPoints, 2, true);
+        }
+        if (robustnessIters < 0) {
+            throw new NotPositiveException(LocalizedFormats.ROBUSTNESS_ITERATIONS, robustnessIters);
+        }
+        this.bandwidthInPoints = bandwidthInPoints;
+        this.robustnessIters   = robustnessIters;
+        this.accuracy          = accuracy;
+        this.executor          = executor;
+        this.n                 = 0;
+        this.xval              = new double[INITIAL_CAPACITY];
+        this.yval              = new double[INITIAL_CAPACITY];
+        this.weights           = new double[INITIAL_CAPACITY];
+        this.res               = new double[INITIAL_CAPACITY];
+        this.residuals         = new double[robustnessIters + 1][INITIAL_CAPACITY];
+        this.lastIteration     = -1;
+    }
+
+    /**
+     * Append points with unit weights and update the smoothed values.
+     *
+     * @param x Abscissae of the new points, in strictly increasing order
+     * and larger than the abscissae of the existing points.
+     * @param y Values of the new points.
+     * @return the index of the first smoothed value that was recomputed.
+     * @throws DimensionMismatchException if {@code x} and {@code y} have
+     * different sizes.
+     * @throws NonMonotonicSequenceException if the abscissae are not
+     * strictly increasing.
+     * @throws NotFiniteNumberException if any of the arguments and values are
+     * not finite real numbers.
+     * @see #append(double[], double[], double[])
+     */
+    public int append(final double[] x, final double[] y)
+        throws DimensionMismatchException,
+               NonMonotonicSequenceException,
+               NotFiniteNumberException {
+        final double[] unitWeights = new double[x.length];
+        Arrays.fill(unitWeights, 1.0);
+        return append(x, y, unitWeights);
+    }
+
+    /**
+     * Append weighted points and update the smoothed values.
+     * <p>
+     * Only the local regressions whose bandwidth interval reaches the new
+     * points are recomputed, so appending a few points to a long series
+     * costs a few bandwidths instead of a complete smoothing. Without
+     * robustness iterations, the result is exactly the one of a complete
+     * smoothing with the same bandwidth in points. With robustness
+     * iterations, the recomputed range grows backwards by one bandwidth per
+     * iteration and the median residual is updated with all the points,
+     * but the regressions before this range are not redone, although the
+     * change of the median residual slightly changes their robustness
+     * weights; use a new smoother for an exact smoothing.
+     * </p>
+     *
+     * @param x Abscissae of the new points, in strictly increasing order
+     * and larger than the abscissae of the existing points.
+     * @param y Values of the new points.
+     * @param w Weights of the new points: coefficients by which the
+     * robustness weight of a point is multiplied.
+     * @return the index of the first smoothed value that was recomputed.
+     * @throws DimensionMismatchException if the arrays have different sizes.
+     * @throws NonMonotonicSequenceException if the abscissae are not
+     * strictly increasing.
+     * @throws NotFiniteNumberException if any of the arguments and values are
+     * not finite real numbers.
+     */
+    public int append(final double[] x, final double[] y, final double[] w)
+        throws DimensionMismatchException,
+               NonMonotonicSequenceException,
+               NotFiniteNumberException {
+        if (x.length != y.length) {
+            throw new DimensionMismatchException(x.length, y.length);
+        }
+        if (x.length != w.length) {
+            throw new DimensionMismatchException(x.length, w.length);
+        }
+        for (int i = 0; i < x.length; ++i) {
+            MathUtils.checkFinite(x[i]);
+            MathUtils.checkFinite(y[i]);
+            MathUtils.checkFinite(w[i]);
+        }
+        MathArrays.checkOrder(x);
+        if (n > 0 && x.length > 0 && x[0] <= xval[n - 1]) {
+            throw new NonMonotonicSequenceException(x[0], xval[n - 1], n);
+        }
+        if (x.length == 0) {
+            return n;
+        }
+
+        // store the new points
+        final int n0 = n;
+        ensureCapacity(n0 + x.length);
+        System.arraycopy(x, 0, xval,    n0, x.length);
+        System.arraycopy(y, 0, yval,    n0, x.length);
+        System.arraycopy(w, 0, weights, n0, x.length);
+        n = n0 + x.length;
+
+        if (n <= 2) {
+            System.arraycopy(yval, 0, res, 0, n);
+            return 0;
+        }
+
+        // the bandwidth interval is the whole data until there are enough points
+        final int window = FastMath.min(bandwidthInPoints, n);
+        int from = (n0 <= 2 || n0 < bandwidthInPoints) ?
+                   0 : LoessInterpolator.firstReaching(xval, weights, n, window, n0);
+
+        final double[] robustnessWeights = new double[n];
+        Arrays.fill(robustnessWeights, 1);
+        final double[] work = new double[n];
+
+        int iter = 0;
+        while (true) {
+            if (iter > lastIteration) {
+                // the previous smoothing stopped before this iteration
+                from = 0;
+            }
+            LoessInterpolator.localFits(xval, yval, weights, robustnessWeights, n, window,
+                                        from, accuracy, res, residuals[iter], executor);
+
+            // No need to recompute the robustness weights at the last
+            // iteration, they won't be needed anymore
+            if (iter == robustnessIters) {
+                break;
+            }
+
+            // Recompute the robustness weights of all points.
+            final double medianResidual = LoessInterpolator.medianResidual(residuals[iter], work, n);
+            if (FastMath.abs(medianResidual) < accuracy) {
+                break;
+            }
+            LoessInterpolator.robustnessWeights(residuals[iter], medianResidual, 0, n,
+                                                robustnessWeights);
+
+            // The regressions using one of the recomputed residuals must be redone.
+            from = LoessInterpolator.firstReaching(xval, weights, n, window, from);
+            ++iter;
+        }
+        lastIteration = iter;
+
+        return from;
+    }
+
+    /**
+     * Get the number of points.
+     *
+     * @return the number of points.
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Get the smoothed values at all the abscissae appended so far.
+     *
+     * @return a copy of the smoothed values.
+     */
+    public double[] getSmoothedValues() {
+        return MathArrays.copyOf(res, n);
+    }
+
+    /**
+     * Ensure the data arrays can hold a number of points.
+     *
+     * @param capacity Number of points.
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= xval.length) {
+            return;
+        }
+        final int newCapacity = FastMath.max(capacity, 2 * xval.length);
+        xval    = MathArrays.copyOf(xval,    newCapacity);
+        yval    = MathArrays.copyOf(yval,    newCapacity);
+        weights = MathArrays.copyOf(weights, newCapacity);
+        res     = MathArrays.copyOf(res,     newCapacity);
+        for (int i = 0; i < residuals.length; ++i) {
+            residuals[i] = MathArrays.copyOf(residuals[i], newCapacity);
+        }
+    }
+
+}
@@ -1,7 +1,6 @@
 package analysis.interpolation;
 
 import math.util.MathArrays;
-import analysis.polynomials.PolynomialFunction;
 import analysis.polynomials.PolynomialSplineFunction;
 import exception.DimensionMismatchException;
 import exception.NonMonotonicSequenceException;
@@ -46,14 +45,12 @@ public class LinearInterpolator implements UnivariateInterpolator {
             m[i] = (y[i + 1] - y[i]) / (x[i + 1] - x[i]);
         }
 
-        final PolynomialFunction polynomials[] = new PolynomialFunction[n];
-        final double coefficients[] = new double[2];
+        final double coefficients[] = new double[2 * n];
         for (int i = 0; i < n; i++) {
-            coefficients[0] = y[i];
-            coefficients[1] = m[i];
-            polynomials[i] = new PolynomialFunction(coefficients);
+            coefficients[2 * i]     = y[i];
+            coefficients[2 * i + 1] = m[i];
         }
 
-        return new PolynomialSplineFunction(x, polynomials);
+        return new PolynomialSplineFunction(x, coefficients, 2);
     }
 }
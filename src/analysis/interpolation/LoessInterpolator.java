@@ -1,8 +1,13 @@
 package analysis.interpolation;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
+import math.util.ConcurrencyUtils;
 import math.util.FastMath;
 import math.util.MathArrays;
 import math.util.MathUtils;
@@ -29,6 +34,8 @@ public class LoessInterpolator
     public static final double DEFAULT_ACCURACY = 1e-12;
     /** serializable version identifier. */
     private static final long serialVersionUID = 5204927143605193821L;
+    /** Minimal number of points fitted by one concurrent task. */
+    private static final int MIN_CHUNK_POINTS = 1024;
     /**
      * The bandwidth parameter: when computing the loess fit at
      * a particular point, this fraction of source points closest
@@ -186,6 +193,45 @@ public class LoessInterpolator
                NoDataException,
                NotFiniteNumberException,
                NumberIsTooSmallException {
+        return smooth(xval, yval, weights, null);
+    }
+
+    /**
+     * Compute a weighted loess fit on the data at the original abscissae.
+     * <p>
+     * Within each robustness iteration, the local regressions at the
+     * different abscissae are independent. They are split in contiguous
+     * chunks of abscissae, each chunk sliding its own bandwidth interval,
+     * and the chunks are fitted in parallel if an executor is provided
+     * (a {@link java.util.concurrent.ForkJoinPool} can be used). The
+     * result does not depend on the executor.
+     * </p>
+     *
+     * @param xval Arguments for the interpolation points.
+     * @param yval Values for the interpolation points.
+     * @param weights point weights: coefficients by which the robustness weight
+     * of a point is multiplied.
+     * @param executor executor for the local regressions (may be null to
+     * compute everything in the calling thread)
+     * @return the values of the loess fit at corresponding original abscissae.
+     * @throws NonMonotonicSequenceException if {@code xval} not sorted in
+     * strictly increasing order.
+     * @throws DimensionMismatchException if {@code xval} and {@code yval} have
+     * different sizes.
+     * @throws NoDataException if {@code xval} or {@code yval} has zero size.
+     * @throws NotFiniteNumberException if any of the arguments and values are
+     not finite real numbers.
+     * @throws NumberIsTooSmallException if the bandwidth is too small to
+     * accomodate the size of the input data (i.e. the bandwidth must be
+     * larger than 2/n).
+     */
+    public final double[] smooth(final double[] xval, final double[] yval,
+                                 final double[] weights, final ExecutorService executor)
+        throws NonMonotonicSequenceException,
+               DimensionMismatchException,
+               NoDataException,
+               NotFiniteNumberException,
+               NumberIsTooSmallException {
         if (xval.length != yval.length) {
             throw new DimensionMismatchException(xval.length, yval.length);
         }
@@ -220,7 +266,7 @@ public class LoessInterpolator
         final double[] res = new double[n];
 
         final double[] residuals = new double[n];
-        final double[] sortedResiduals = new double[n];
+        final double[] work = new double[n];
 
         final double[] robustnessWeights = new double[n];
 
@@ -230,72 +276,8 @@ public class LoessInterpolator
         Arrays.fill(robustnessWeights, 1);
 
         for (int iter = 0; iter <= robustnessIters; ++iter) {
-            final int[] bandwidthInterval = {0, bandwidthInPoints - 1};
-            // At each x, compute a local weighted linear regression
-            for (int i = 0; i < n; ++i) {
-                final double x = xval[i];
-
-                // Find out the interval of source points on which
-                // a regression is to be made.
-                if (i > 0) {
-                    updateBandwidthInterval(xval, weights, i, bandwidthInterval);
-                }
-
-                final int ileft = bandwidthInterval[0];
-                final int iright = bandwidthInterval[1];
-
-                // Compute the point of the bandwidth interval that is
-                // farthest from x
-                final int edge;
-                if (xval[i] - xval[ileft] > xval[iright] - xval[i]) {
-                    edge = ileft;
-                } else {
-                    edge = iright;
-                }
-
-                // Compute a least-squares linear fit weighted by
-                // the product of robustness weights and the tricube
-                // weight function.
-                // See http://en.wikipedia.org/wiki/Linear_regression
-                // (section "Univariate linear case")
-                // and http://en.wikipedia.org/wiki/Weighted_least_squares
-                // (section "Weighted least squares")
-                double sumWeights = 0;
-                double sumX = 0;
-                double sumXSquared = 0;
-                double sumY = 0;
-                double sumXY = 0;
-                double denom = FastMath.abs(1.0 / (xval[edge] - x));
-                for (int k = ileft; k <= iright; ++k) {
-                    final double xk   = xval[k];
-                    final double yk   = yval[k];
-                    final double dist = (k < i) ? x - xk : xk - x;
-                    final double w    = tricube(dist * denom) * robustnessWeights[k] * weights[k];
-                    final double xkw  = xk * w;
-                    sumWeights += w;
-                    sumX += xkw;
-                    sumXSquared += xk * xkw;
-                    sumY += yk * w;
-                    sumXY += yk * xkw;
-                }
-
-                final double meanX = sumX / sumWeights;
-                final double meanY = sumY / sumWeights;
-                final double meanXY = sumXY / sumWeights;
-                final double meanXSquared = sumXSquared / sumWeights;
-
-                final double beta;
-                if (FastMath.sqrt(FastMath.abs(meanXSquared - meanX * meanX)) < accuracy) {
-                    beta = 0;
-                } else {
-                    beta = (meanXY - meanX * meanY) / (meanXSquared - meanX * meanX);
-                }
-
-                final double alpha = meanY - beta * meanX;
-
-                res[i] = beta * x + alpha;
-                residuals[i] = FastMath.abs(yval[i] - res[i]);
-            }
+            localFits(xval, yval, weights, robustnessWeights, n, bandwidthInPoints,
+                      0, accuracy, res, residuals, executor);
 
             // No need to recompute the robustness weights at the last
             // iteration, they won't be needed anymore
@@ -306,25 +288,13 @@ public class LoessInterpolator
             // Recompute the robustness weights.
 
             // Find the median residual.
-            // An arraycopy and a sort are completely tractable here,
-            // because the preceding loop is a lot more expensive
-            System.arraycopy(residuals, 0, sortedResiduals, 0, n);
-            Arrays.sort(sortedResiduals);
-            final double medianResidual = sortedResiduals[n / 2];
+            final double medianResidual = medianResidual(residuals, work, n);
 
             if (FastMath.abs(medianResidual) < accuracy) {
                 break;
             }
 
-            for (int i = 0; i < n; ++i) {
-                final double arg = residuals[i] / (6 * medianResidual);
-                if (arg >= 1) {
-                    robustnessWeights[i] = 0;
-                } else {
-                    final double w = 1 - arg * arg;
-                    robustnessWeights[i] = w * w;
-                }
-            }
+            robustnessWeights(residuals, medianResidual, 0, n, robustnessWeights);
         }
 
         return res;
@@ -363,6 +333,253 @@ public class LoessInterpolator
         return smooth(xval, yval, unitWeights);
     }
 
+    /**
+     * Compute the local weighted linear regressions at a range of abscissae.
+     * <p>
+     * The bandwidth intervals are slid once over the abscissae preceding
+     * each chunk to find its first interval, which is cheap compared to the
+     * regressions themselves; each chunk then slides its own interval.
+     * </p>
+     *
+     * @param xval Arguments for the interpolation points.
+     * @param yval Values for the interpolation points.
+     * @param weights Point weights.
+     * @param robustnessWeights Robustness weights of the points.
+     * @param n Number of points (the arrays may be longer).
+     * @param bandwidthInPoints Number of points in a bandwidth interval.
+     * @param from Index of the first abscissa where to compute the fit.
+     * @param accuracy Threshold below which the local regression is flat.
+     * @param res Array where to store the fitted values.
+     * @param residuals Array where to store the absolute residuals.
+     * @param executor Executor for the chunks (may be null).
+     */
+    static void localFits(final double[] xval, final double[] yval,
+                          final double[] weights, final double[] robustnessWeights,
+                          final int n, final int bandwidthInPoints, final int from,
+                          final double accuracy,
+                          final double[] res, final double[] residuals,
+                          final ExecutorService executor) {
+        if (from >= n) {
+            return;
+        }
+        final int[] bounds = (executor == null || n - from < 2 * MIN_CHUNK_POINTS) ?
+                             new int[] { from, n } :
+                             ConcurrencyUtils.splitRange(from, n,
+                                                         Runtime.getRuntime().availableProcessors(),
+                                                         MIN_CHUNK_POINTS);
+
+        // Find the bandwidth interval at the start of each chunk.
+        final int[][] seeds = new int[bounds.length - 1][];
+        final int[] bandwidthInterval = {0, bandwidthInPoints - 1};
+        int chunk = 0;
+        for (int i = 0; chunk < seeds.length; ++i) {
+            if (i > 0) {
+                updateBandwidthInterval(xval, weights, n, i, bandwidthInterval);
+            }
+            if (i == bounds[chunk]) {
+                seeds[chunk++] = bandwidthInterval.clone();
+            }
+        }
+
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(seeds.length);
+        for (int k = 0; k < seeds.length; ++k) {
+            final int begin = bounds[k];
+            final int end   = bounds[k + 1];
+            final int[] interval = seeds[k];
+            tasks.add(new Callable<Void>() {
+                /** {@inheritDoc} */
+                public Void call() {
+                    for (int i = begin; i < end; ++i) {
+                        if (i > begin) {
+                            updateBandwidthInterval(xval, weights, n, i, interval);
+                        }
+                        res[i] = localFit(xval, yval, weights, robustnessWeights,
+                                          i, interval[0], interval[1], accuracy);
+                        residuals[i] = FastMath.abs(yval[i] - res[i]);
+                    }
+                    return null;
+                }
+            });
+        }
+        ConcurrencyUtils.invokeAll(executor, tasks);
+    }
+
+    /**
+     * Find the median of the absolute residuals.
+     * <p>
+     * The median is selected by partitioning a copy of the residuals,
+     * in linear expected time, so appending a few points to a long series
+     * does not require sorting all residuals.
+     * </p>
+     *
+     * @param residuals Absolute residuals.
+     * @param work Work array, at least as long as the number of points.
+     * @param n Number of points (the arrays may be longer).
+     * @return the median residual, i.e. the element of rank {@code n / 2}.
+     */
+    static double medianResidual(final double[] residuals, final double[] work, final int n) {
+        System.arraycopy(residuals, 0, work, 0, n);
+        final int k = n / 2;
+        int begin = 0;
+        int end   = n - 1;
+        while (begin < end) {
+            // median of three pivot
+            final int middle = (begin + end) >>> 1;
+            final double a = work[begin];
+            final double b = work[middle];
+            final double c = work[end];
+            final double pivot = (a < b) ? ((b < c) ? b : ((a < c) ? c : a)) :
+                                           ((a < c) ? a : ((b < c) ? c : b));
+
+            // three-way partition: [begin, lt) < pivot, [lt, gt] == pivot, (gt, end] > pivot
+            int lt = begin;
+            int gt = end;
+            int i  = begin;
+            while (i <= gt) {
+                final double v = work[i];
+                if (v < pivot) {
+                    work[i++] = work[lt];
+                    work[lt++] = v;
+                } else if (v > pivot) {
+                    work[i] = work[gt];
+                    work[gt--] = v;
+                } else {
+                    ++i;
+                }
+            }
+
+            if (k < lt) {
+                end = lt - 1;
+            } else if (k > gt) {
+                begin = gt + 1;
+            } else {
+                return pivot;
+            }
+        }
+        return work[k];
+    }
+
+    /**
+     * Compute the bisquare robustness weights of a range of points.
+     *
+     * @param residuals Absolute residuals.
+     * @param medianResidual Median residual.
+     * @param from Index of the first point.
+     * @param to Index after the last point.
+     * @param robustnessWeights Array where to store the robustness weights.
+     */
+    static void robustnessWeights(final double[] residuals, final double medianResidual,
+                                  final int from, final int to,
+                                  final double[] robustnessWeights) {
+        for (int i = from; i < to; ++i) {
+            final double arg = residuals[i] / (6 * medianResidual);
+            if (arg >= 1) {
+                robustnessWeights[i] = 0;
+            } else {
+                final double w = 1 - arg * arg;
+                robustnessWeights[i] = w * w;
+            }
+        }
+    }
+
+    /**
+     * Find the first abscissa whose bandwidth interval reaches a given point.
+     *
+     * @param xval Arguments for the interpolation points.
+     * @param weights Point weights.
+     * @param n Number of points (the arrays may be longer).
+     * @param bandwidthInPoints Number of points in a bandwidth interval.
+     * @param index Index of the point to reach.
+     * @return the smallest index {@code i} such that the right end of the
+     * bandwidth interval of {@code xval[i]} is at least {@code index}
+     * (or {@code n} if there are none).
+     */
+    static int firstReaching(final double[] xval, final double[] weights,
+                             final int n, final int bandwidthInPoints,
+                             final int index) {
+        final int[] bandwidthInterval = {0, bandwidthInPoints - 1};
+        for (int i = 0; i < n; ++i) {
+            if (i > 0) {
+                updateBandwidthInterval(xval, weights, n, i, bandwidthInterval);
+            }
+            if (bandwidthInterval[1] >= index) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Compute the local weighted linear regression at one abscissa.
+     *
+     * @param xval Arguments for the interpolation points.
+     * @param yval Values for the interpolation points.
+     * @param weights Point weights.
+     * @param robustnessWeights Robustness weights of the points.
+     * @param i Index of the abscissa.
+     * @param ileft Left end of the bandwidth interval.
+     * @param iright Right end of the bandwidth interval.
+     * @param accuracy Threshold below which the local regression is flat.
+     * @return the fitted value at {@code xval[i]}.
+     */
+    private static double localFit(final double[] xval, final double[] yval,
+                                   final double[] weights, final double[] robustnessWeights,
+                                   final int i, final int ileft, final int iright,
+                                   final double accuracy) {
+        final double x = xval[i];
+
+        // Compute the point of the bandwidth interval that is
+        // farthest from x
+        final int edge;
+        if (xval[i] - xval[ileft] > xval[iright] - xval[i]) {
+            edge = ileft;
+        } else {
+            edge = iright;
+        }
+
+        // Compute a least-squares linear fit weighted by
+        // the product of robustness weights and the tricube
+        // weight function.
+        // See http://en.wikipedia.org/wiki/Linear_regression
+        // (section "Univariate linear case")
+        // and http://en.wikipedia.org/wiki/Weighted_least_squares
+        // (section "Weighted least squares")
+        double sumWeights = 0;
+        double sumX = 0;
+        double sumXSquared = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double denom = FastMath.abs(1.0 / (xval[edge] - x));
+        for (int k = ileft; k <= iright; ++k) {
+            final double xk   = xval[k];
+            final double yk   = yval[k];
+            final double dist = (k < i) ? x - xk : xk - x;
+            final double w    = tricube(dist * denom) * robustnessWeights[k] * weights[k];
+            final double xkw  = xk * w;
+            sumWeights += w;
+            sumX += xkw;
+            sumXSquared += xk * xkw;
+            sumY += yk * w;
+            sumXY += yk * xkw;
+        }
+
+        final double meanX = sumX / sumWeights;
+        final double meanY = sumY / sumWeights;
+        final double meanXY = sumXY / sumWeights;
+        final double meanXSquared = sumXSquared / sumWeights;
+
+        final double beta;
+        if (FastMath.sqrt(FastMath.abs(meanXSquared - meanX * meanX)) < accuracy) {
+            beta = 0;
+        } else {
+            beta = (meanXY - meanX * meanY) / (meanXSquared - meanX * meanX);
+        }
+
+        final double alpha = meanY - beta * meanX;
+
+        return beta * x + alpha;
+    }
+
     /**
      * Given an index interval into xval that embraces a certain number of
      * points closest to {@code xval[i-1]}, update the interval so that it
@@ -371,24 +588,25 @@ public class LoessInterpolator
      *
      * @param xval Arguments array.
      * @param weights Weights array.
+     * @param n Number of points (the arrays may be longer).
      * @param i Index around which the new interval should be computed.
      * @param bandwidthInterval a two-element array {left, right} such that:
      * {@code (left==0 or xval[i] - xval[left-1] > xval[right] - xval[i])}
      * and
-     * {@code (right==xval.length-1 or xval[right+1] - xval[i] > xval[i] - xval[left])}.
+     * {@code (right==n-1 or xval[right+1] - xval[i] > xval[i] - xval[left])}.
      * The array will be updated.
      */
     private static void updateBandwidthInterval(final double[] xval, final double[] weights,
-                                                final int i,
+                                                final int n, final int i,
                                                 final int[] bandwidthInterval) {
         final int left = bandwidthInterval[0];
         final int right = bandwidthInterval[1];
 
         // The right edge should be adjusted if the next point to the right
         // is closer to xval[i] than the leftmost point of the current interval
-        int nextRight = nextNonzero(weights, right);
-        if (nextRight < xval.length && xval[nextRight] - xval[i] < xval[i] - xval[left]) {
-            int nextLeft = nextNonzero(weights, bandwidthInterval[0]);
+        int nextRight = nextNonzero(weights, n, right);
+        if (nextRight < n && xval[nextRight] - xval[i] < xval[i] - xval[left]) {
+            int nextLeft = nextNonzero(weights, n, bandwidthInterval[0]);
             bandwidthInterval[0] = nextLeft;
             bandwidthInterval[1] = nextRight;
         }
@@ -396,15 +614,16 @@ public class LoessInterpolator
 
     /**
      * Return the smallest index {@code j} such that
-     * {@code j > i && (j == weights.length || weights[j] != 0)}.
+     * {@code j > i && (j == n || weights[j] != 0)}.
      *
      * @param weights Weights array.
+     * @param n Number of points (the array may be longer).
      * @param i Index from which to start search.
      * @return the smallest compliant index.
      */
-    private static int nextNonzero(final double[] weights, final int i) {
+    private static int nextNonzero(final double[] weights, final int n, final int i) {
         int j = i + 1;
-        while(j < weights.length && weights[j] == 0) {
+        while(j < n && weights[j] == 0) {
             ++j;
         }
         return j;
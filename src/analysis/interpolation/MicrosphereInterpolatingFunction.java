@@ -1,17 +1,22 @@
 package analysis.interpolation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import linear.ArrayRealVector;
 import linear.RealVector;
+import math.util.ConcurrencyUtils;
 import math.util.FastMath;
 import random.UnitSphereRandomVectorGenerator;
 import analysis.MultivariateFunction;
 import exception.DimensionMismatchException;
 import exception.NoDataException;
+import exception.NotPositiveException;
 import exception.NullArgumentException;
 
 public class MicrosphereInterpolatingFunction
@@ -21,84 +26,72 @@ public class MicrosphereInterpolatingFunction
      */
     private final int dimension;
     /**
-     * Internal accounting data for the interpolation algorithm.
-     * Each element of the list corresponds to one surface element of
-     * the microsphere.
+     * Number of distinct sample points.
      */
-    private final List<MicrosphereSurfaceElement> microsphere;
+    private final int size;
+    /**
+     * Number of surface elements of the microsphere.
+     */
+    private final int elements;
     /**
      * Exponent used in the power law that computes the weights of the
      * sample data.
      */
     private final double brightnessExponent;
     /**
-     * Sample data.
+     * Number of nearest samples used for each interpolation, or 0 to use
+     * all samples.
      */
-    private final Map<RealVector, Double> samples;
-
+    private final int nearestSamples;
     /**
-     * Class for storing the accounting data needed to perform the
-     * microsphere projection.
+     * Coordinates of the sample points: component {@code k} of sample
+     * {@code s} is at index {@code s * dimension + k}.
      */
-    private static class MicrosphereSurfaceElement {
-        /** Normal vector characterizing a surface element. */
-        private final RealVector normal;
-        /** Illumination received from the brightest sample. */
-        private double brightestIllumination;
-        /** Brightest sample. */
-        private Map.Entry<RealVector, Double> brightestSample;
-
-        /**
-         * @param n Normal vector characterizing a surface element
-         * of the microsphere.
-         */
-        MicrosphereSurfaceElement(double[] n) {
-            normal = new ArrayRealVector(n);
-        }
-
-        /**
-         * Return the normal vector.
-         * @return the normal vector
-         */
-        RealVector normal() {
-            return normal;
-        }
-
-        /**
-         * Reset "illumination" and "sampleIndex".
-         */
-        void reset() {
-            brightestIllumination = 0;
-            brightestSample = null;
-        }
-
-        /**
-         * Store the illumination and index of the brightest sample.
-         * @param illuminationFromSample illumination received from sample
-         * @param sample current sample illuminating the element
-         */
-        void store(final double illuminationFromSample,
-                   final Map.Entry<RealVector, Double> sample) {
-            if (illuminationFromSample > this.brightestIllumination) {
-                this.brightestIllumination = illuminationFromSample;
-                this.brightestSample = sample;
-            }
-        }
+    private final double[] sampleCoordinates;
+    /**
+     * Sample values.
+     */
+    private final double[] sampleValues;
+    /**
+     * Normal vectors characterizing the surface elements of the microsphere:
+     * component {@code k} of element {@code e} is at index
+     * {@code e * dimension + k}.
+     */
+    private final double[] normals;
+    /**
+     * Norms of the normal vectors.
+     */
+    private final double[] normalNorms;
 
-        /**
-         * Get the illumination of the element.
-         * @return the illumination.
-         */
-        double illumination() {
-            return brightestIllumination;
-        }
+    /**
+     * Scratch buffers for one interpolation.
+     * The function itself is never modified, so each thread evaluating it
+     * only needs its own workspace, which can be reused for many points.
+     */
+    private static class Workspace {
+        /** Vector between a sample point and the interpolation point. */
+        private final double[] diff;
+        /** Illumination received by each element from its brightest sample. */
+        private final double[] illumination;
+        /** Index of the brightest sample of each element, or -1. */
+        private final int[] brightest;
+        /** Distances of the selected nearest samples (a max-heap). */
+        private final double[] heapDistances;
+        /** Indices of the selected nearest samples. */
+        private final int[] heapIndices;
 
         /**
-         * Get the sample illuminating the element the most.
-         * @return the sample.
+         * @param dimension Space dimension.
+         * @param elements Number of surface elements of the microsphere.
+         * @param nearest Number of nearest samples to select (0 if all
+         * samples are used).
          */
-        Map.Entry<RealVector, Double> sample() {
-            return brightestSample;
+        Workspace(final int dimension, final int elements, final int nearest) {
+            diff          = new double[dimension];
+            illumination  = new double[elements];
+            brightest     = new int[elements];
+            heapDistances = new double[nearest];
+            heapIndices   = new int[nearest];
         }
     }
 
@@ -129,6 +122,50 @@ public class MicrosphereInterpolatingFunction
         throws DimensionMismatchException,
                NoDataException,
                NullArgumentException {
+        this(xval, yval, brightnessExponent, microsphereElements, rand, 0);
+    }
+
+    /**
+     * Build an interpolating function that only uses the samples nearest
+     * to each interpolation point.
+     * <p>
+     * As the weight of a sample decreases with its distance to the
+     * interpolation point, distant samples seldom are the brightest for
+     * any surface element of the microsphere. Restricting the illumination
+     * to the {@code nearestSamples} nearest samples, which are selected with
+     * one cheap distance pass, reduces the cost of an interpolation from
+     * (number of samples) &times; (number of elements) to (number of
+     * nearest samples) &times; (number of elements), at the price of a
+     * (usually small) approximation.
+     * </p>
+     *
+     * @param xval Arguments for the interpolation points.
+     * @param yval Values for the interpolation points.
+     * @param brightnessExponent Brightness dimming factor.
+     * @param microsphereElements Number of surface elements of the
+     * microsphere.
+     * @param rand Unit vector generator for creating the microsphere.
+     * @param nearestSamples Number of nearest samples used for each
+     * interpolation (0 to use all samples).
+     * @throws DimensionMismatchException if the lengths of {@code yval} and
+     * {@code xval} do not match, or the arrays {@code xval[i]} have
+     * different lengths.
+     * @throws NoDataException if there an array has zero-length.
+     * @throws NullArgumentException if an argument is {@code null}.
+     * @throws NotPositiveException if {@code nearestSamples < 0}.
+     * @see #MicrosphereInterpolatingFunction(double[][], double[], int, int,
+     * UnitSphereRandomVectorGenerator)
+     */
+    public MicrosphereInterpolatingFunction(double[][] xval,
+                                            double[] yval,
+                                            int brightnessExponent,
+                                            int microsphereElements,
+                                            UnitSphereRandomVectorGenerator rand,
+                                            int nearestSamples)
+        throws DimensionMismatchException,
+               NoDataException,
+               NullArgumentException,
+               NotPositiveException {
         if (xval == null ||
             yval == null) {
             throw new NullArgumentException();
@@ -142,12 +179,18 @@ public class MicrosphereInterpolatingFunction
         if (xval[0] == null) {
             throw new NullArgumentException();
         }
+        if (nearestSamples < 0) {
+            throw new NotPositiveException(nearestSamples);
+        }
 
         dimension = xval[0].length;
         this.brightnessExponent = brightnessExponent;
 
-        // Copy data samples.
-        samples = new HashMap<RealVector, Double>(yval.length);
+        // Copy data samples, the last value of a repeated point replacing
+        // the previous ones.
+        final Map<RealVector, Integer> index = new HashMap<RealVector, Integer>(yval.length);
+        final List<double[]> points = new ArrayList<double[]>(yval.length);
+        final List<Double> values = new ArrayList<Double>(yval.length);
         for (int i = 0; i < xval.length; ++i) {
             final double[] xvalI = xval[i];
             if (xvalI == null) {
@@ -157,57 +200,133 @@ public class MicrosphereInterpolatingFunction
                 throw new DimensionMismatchException(xvalI.length, dimension);
             }
 
-            samples.put(new ArrayRealVector(xvalI), yval[i]);
+            final RealVector key = new ArrayRealVector(xvalI);
+            final Integer previous = index.get(key);
+            if (previous == null) {
+                index.put(key, points.size());
+                points.add(xvalI);
+                values.add(yval[i]);
+            } else {
+                values.set(previous, yval[i]);
+            }
+        }
+        size = points.size();
+        sampleCoordinates = new double[size * dimension];
+        sampleValues = new double[size];
+        for (int s = 0; s < size; ++s) {
+            System.arraycopy(points.get(s), 0, sampleCoordinates, s * dimension, dimension);
+            sampleValues[s] = values.get(s);
         }
+        this.nearestSamples = (nearestSamples < size) ? nearestSamples : 0;
 
-        microsphere = new ArrayList<MicrosphereSurfaceElement>(microsphereElements);
         // Generate the microsphere, assuming that a fairly large number of
         // randomly generated normals will represent a sphere.
-        for (int i = 0; i < microsphereElements; i++) {
-            microsphere.add(new MicrosphereSurfaceElement(rand.nextVector()));
+        elements = microsphereElements;
+        normals = new double[elements * dimension];
+        normalNorms = new double[elements];
+        for (int e = 0; e < elements; e++) {
+            final double[] n = rand.nextVector();
+            System.arraycopy(n, 0, normals, e * dimension, dimension);
+            normalNorms[e] = norm(n, 0, dimension);
         }
     }
 
     /**
      * @param point Interpolation point.
      * @return the interpolated value.
+     * @throws DimensionMismatchException if the dimension of the point does
+     * not match the dimension of the samples.
      */
-    public double value(double[] point) {
-        final RealVector p = new ArrayRealVector(point);
+    public double value(double[] point) throws DimensionMismatchException {
+        return value(point, new Workspace(dimension, elements, nearestSamples));
+    }
 
-        // Reset.
-        for (MicrosphereSurfaceElement md : microsphere) {
-            md.reset();
+    /**
+     * Compute the interpolated values at many points.
+     * <p>
+     * The points are split in contiguous chunks, evaluated in parallel if an
+     * executor is provided. Each chunk allocates a single workspace, which
+     * is reused for all its points.
+     * </p>
+     *
+     * @param points Interpolation points.
+     * @param executor Executor for the chunks (may be null to compute
+     * everything in the calling thread).
+     * @return the interpolated values.
+     * @throws DimensionMismatchException if the dimension of a point does
+     * not match the dimension of the samples.
+     */
+    public double[] value(final double[][] points, final ExecutorService executor)
+        throws DimensionMismatchException {
+        final double[] result = new double[points.length];
+        final int[] bounds = (executor == null || points.length < 2) ?
+                             new int[] { 0, points.length } :
+                             ConcurrencyUtils.splitRange(0, points.length,
+                                                         Runtime.getRuntime().availableProcessors(),
+                                                         1);
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bounds.length - 1);
+        for (int k = 0; k + 1 < bounds.length; ++k) {
+            final int begin = bounds[k];
+            final int end   = bounds[k + 1];
+            tasks.add(new Callable<Void>() {
+                /** {@inheritDoc} */
+                public Void call() {
+                    final Workspace workspace = new Workspace(dimension, elements, nearestSamples);
+                    for (int i = begin; i < end; ++i) {
+                        result[i] = value(points[i], workspace);
+                    }
+                    return null;
+                }
+            });
         }
+        ConcurrencyUtils.invokeAll(executor, tasks);
+        return result;
+    }
 
-        // Compute contribution of each sample points to the microsphere elements illumination
-        for (Map.Entry<RealVector, Double> sd : samples.entrySet()) {
+    /**
+     * @param point Interpolation point.
+     * @param ws Workspace.
+     * @return the interpolated value.
+     * @throws DimensionMismatchException if the dimension of the point does
+     * not match the dimension of the samples.
+     */
+    private double value(final double[] point, final Workspace ws)
+        throws DimensionMismatchException {
+        if (point.length != dimension) {
+            throw new DimensionMismatchException(point.length, dimension);
+        }
 
-            // Vector between interpolation point and current sample point.
-            final RealVector diff = sd.getKey().subtract(p);
-            final double diffNorm = diff.getNorm();
+        // Reset.
+        Arrays.fill(ws.illumination, 0);
+        Arrays.fill(ws.brightest, -1);
 
-            if (FastMath.abs(diffNorm) < FastMath.ulp(1d)) {
-                // No need to interpolate, as the interpolation point is
-                // actually (very close to) one of the sampled points.
-                return sd.getValue();
+        // Compute contribution of each sample points to the microsphere elements illumination
+        if (nearestSamples == 0) {
+            for (int s = 0; s < size; ++s) {
+                if (!illuminate(s, point, ws)) {
+                    return sampleValues[s];
+                }
             }
-
-            for (MicrosphereSurfaceElement md : microsphere) {
-                final double w = FastMath.pow(diffNorm, -brightnessExponent);
-                md.store(cosAngle(diff, md.normal()) * w, sd);
+        } else {
+            final int hit = selectNearest(point, ws);
+            if (hit >= 0) {
+                return sampleValues[hit];
+            }
+            // process the selected samples in the same order as all samples
+            Arrays.sort(ws.heapIndices);
+            for (final int s : ws.heapIndices) {
+                illuminate(s, point, ws);
             }
-
         }
 
         // Interpolation calculation.
         double value = 0;
         double totalWeight = 0;
-        for (MicrosphereSurfaceElement md : microsphere) {
-            final double iV = md.illumination();
-            final Map.Entry<RealVector, Double> sd = md.sample();
-            if (sd != null) {
-                value += iV * sd.getValue();
+        for (int e = 0; e < elements; e++) {
+            final int s = ws.brightest[e];
+            if (s >= 0) {
+                final double iV = ws.illumination[e];
+                value += iV * sampleValues[s];
                 totalWeight += iV;
             }
         }
@@ -216,13 +335,129 @@ public class MicrosphereInterpolatingFunction
     }
 
     /**
-     * Compute the cosine of the angle between 2 vectors.
+     * Update the illumination of the microsphere elements by one sample.
      *
-     * @param v Vector.
-     * @param w Vector.
-     * @return the cosine of the angle between {@code v} and {@code w}.
+     * @param s Index of the sample.
+     * @param point Interpolation point.
+     * @param ws Workspace.
+     * @return false if the interpolation point is (very close to) the
+     * sample point, in which case the illumination is not updated.
      */
-    private double cosAngle(final RealVector v, final RealVector w) {
-        return v.dotProduct(w) / (v.getNorm() * w.getNorm());
+    private boolean illuminate(final int s, final double[] point, final Workspace ws) {
+
+        // Vector between interpolation point and current sample point.
+        final double[] diff = ws.diff;
+        final int start = s * dimension;
+        for (int k = 0; k < dimension; ++k) {
+            diff[k] = sampleCoordinates[start + k] - point[k];
+        }
+        final double diffNorm = norm(diff, 0, dimension);
+
+        if (FastMath.abs(diffNorm) < FastMath.ulp(1d)) {
+            // No need to interpolate, as the interpolation point is
+            // actually (very close to) one of the sampled points.
+            return false;
+        }
+
+        final double w = FastMath.pow(diffNorm, -brightnessExponent);
+        final double[] illumination = ws.illumination;
+        final int[] brightest = ws.brightest;
+        for (int e = 0; e < elements; e++) {
+            // cosine of the angle between the difference and the normal
+            final int nStart = e * dimension;
+            double dot = 0;
+            for (int k = 0; k < dimension; ++k) {
+                dot += diff[k] * normals[nStart + k];
+            }
+            final double illuminationFromSample = dot / (diffNorm * normalNorms[e]) * w;
+            if (illuminationFromSample > illumination[e]) {
+                illumination[e] = illuminationFromSample;
+                brightest[e] = s;
+            }
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Select the samples nearest to the interpolation point.
+     * <p>
+     * The indices of the selected samples are stored in the workspace.
+     * </p>
+     *
+     * @param point Interpolation point.
+     * @param ws Workspace.
+     * @return the index of the first sample (very close to) the interpolation
+     * point, or -1 if there are none.
+     */
+    private int selectNearest(final double[] point, final Workspace ws) {
+        final double[] distances = ws.heapDistances;
+        final int[] indices = ws.heapIndices;
+        int count = 0;
+        for (int s = 0; s < size; ++s) {
+            final int start = s * dimension;
+            double sum = 0;
+            for (int k = 0; k < dimension; ++k) {
+                final double d = sampleCoordinates[start + k] - point[k];
+                sum += d * d;
+            }
+            if (sum < 1 && FastMath.sqrt(sum) < FastMath.ulp(1d)) {
+                return s;
+            }
+
+            if (count < nearestSamples) {
+                // grow the heap
+                int i = count++;
+                while (i > 0) {
+                    final int parent = (i - 1) / 2;
+                    if (distances[parent] >= sum) {
+                        break;
+                    }
+                    distances[i] = distances[parent];
+                    indices[i]   = indices[parent];
+                    i = parent;
+                }
+                distances[i] = sum;
+                indices[i]   = s;
+            } else if (sum < distances[0]) {
+                // replace the farthest selected sample
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= count) {
+                        break;
+                    }
+                    if (child + 1 < count && distances[child + 1] > distances[child]) {
+                        ++child;
+                    }
+                    if (distances[child] <= sum) {
+                        break;
+                    }
+                    distances[i] = distances[child];
+                    indices[i]   = indices[child];
+                    i = child;
+                }
+                distances[i] = sum;
+                indices[i]   = s;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compute the Euclidean norm of a vector.
+     *
+     * @param v Array containing the vector.
+     * @param start Index of the first component.
+     * @param length Number of components.
+     * @return the norm.
+     */
+    private static double norm(final double[] v, final int start, final int length) {
+        double sum = 0;
+        for (int k = start; k < start + length; ++k) {
+            sum += v[k] * v[k];
+        }
+        return FastMath.sqrt(sum);
     }
 }
@@ -1,7 +1,6 @@
 package analysis.interpolation;
 
 import math.util.MathArrays;
-import analysis.polynomials.PolynomialFunction;
 import analysis.polynomials.PolynomialSplineFunction;
 import exception.DimensionMismatchException;
 import exception.NonMonotonicSequenceException;
@@ -71,16 +70,14 @@ public class SplineInterpolator implements UnivariateInterpolator {
             d[j] = (c[j + 1] - c[j]) / (3d * h[j]);
         }
 
-        final PolynomialFunction polynomials[] = new PolynomialFunction[n];
-        final double coefficients[] = new double[4];
+        final double coefficients[] = new double[4 * n];
         for (int i = 0; i < n; i++) {
-            coefficients[0] = y[i];
-            coefficients[1] = b[i];
-            coefficients[2] = c[i];
-            coefficients[3] = d[i];
-            polynomials[i] = new PolynomialFunction(coefficients);
+            coefficients[4 * i]     = y[i];
+            coefficients[4 * i + 1] = b[i];
+            coefficients[4 * i + 2] = c[i];
+            coefficients[4 * i + 3] = d[i];
         }
 
-        return new PolynomialSplineFunction(x, polynomials);
+        return new PolynomialSplineFunction(x, coefficients, 4);
     }
 }
@@ -9,6 +9,10 @@ import exception.OutOfRangeException;
 
 public class TricubicSplineInterpolatingFunction
     implements TrivariateFunction {
+    /** Number of coefficients of the polynomial along each axis. */
+    private static final int N = 4;
+    /** Number of coefficients of a patch. */
+    private static final int PATCH_SIZE = N * N * N;
     /**
      * Matrix to compute the spline coefficients from the function values
      * and function derivatives values
@@ -86,8 +90,16 @@ public class TricubicSplineInterpolatingFunction
     private final double[] yval;
     /** Samples z-coordinates */
     private final double[] zval;
-    /** Set of cubic splines pacthing the whole data grid */
-    private final TricubicSplineFunction[][][] splines;
+    /**
+     * Coefficients of the tricubic splines patching the whole data grid.
+     * The 64 coefficients of patch (i, j, k) start at index
+     * {@code ((i * (yval.length - 1) + j) * (zval.length - 1) + k) * 64};
+     * coefficient {@code p + 4 * (q + 4 * r)} multiplies
+     * x<sup>p</sup> y<sup>q</sup> z<sup>r</sup>.
+     * The array is never modified after construction, so instances can
+     * be shared between threads.
+     */
+    private final double[] coefficients;
 
     /**
      * @param x Sample values of the x-coordinate, in increasing order.
@@ -162,7 +174,7 @@ public class TricubicSplineInterpolatingFunction
         final int lastI = xLen - 1;
         final int lastJ = yLen - 1;
         final int lastK = zLen - 1;
-        splines = new TricubicSplineFunction[lastI][lastJ][lastK];
+        coefficients = new double[lastI * lastJ * lastK * PATCH_SIZE];
 
         for (int i = 0; i < lastI; i++) {
             if (f[i].length != yLen) {
@@ -263,7 +275,7 @@ public class TricubicSplineInterpolatingFunction
                         d3FdXdYdZ[i][jp1][kp1], d3FdXdYdZ[ip1][jp1][kp1],
                     };
 
-                    splines[i][j][k] = new TricubicSplineFunction(computeSplineCoefficients(beta));
+                    computeSplineCoefficients(beta, coefficients, ((i * lastJ + j) * lastK + k) * PATCH_SIZE);
                 }
             }
         }
@@ -293,7 +305,203 @@ public class TricubicSplineInterpolatingFunction
         final double yN = (y - yval[j]) / (yval[j + 1] - yval[j]);
         final double zN = (z - zval[k]) / (zval[k + 1] - zval[k]);
 
-        return splines[i][j][k].value(xN, yN, zN);
+        return apply(patchStart(i, j, k), xN, yN, zN);
+    }
+
+    /**
+     * Compute the values of the function at many points.
+     * <p>
+     * Consecutive points falling in the same grid patch reuse its location,
+     * so points sorted along the grid, or clustered, avoid most of the
+     * searches. The results are the same as with {@link
+     * #value(double, double, double)}.
+     * </p>
+     *
+     * @param xs x-coordinates of the points.
+     * @param ys y-coordinates of the points.
+     * @param zs z-coordinates of the points.
+     * @param out Array where to store the values (may be one of the coordinates arrays).
+     * @throws DimensionMismatchException if the arrays do not have the same length.
+     * @throws OutOfRangeException if a point is outside its interpolation range.
+     */
+    public void value(double[] xs, double[] ys, double[] zs, double[] out)
+        throws DimensionMismatchException, OutOfRangeException {
+        if (ys.length != xs.length) {
+            throw new DimensionMismatchException(ys.length, xs.length);
+        }
+        if (zs.length != xs.length) {
+            throw new DimensionMismatchException(zs.length, xs.length);
+        }
+        if (out.length != xs.length) {
+            throw new DimensionMismatchException(out.length, xs.length);
+        }
+
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        for (int p = 0; p < xs.length; p++) {
+            final double x = xs[p];
+            final double y = ys[p];
+            final double z = zs[p];
+            if (!inInterval(x, xval, i)) {
+                i = searchIndex(x, xval);
+                if (i == -1) {
+                    throw new OutOfRangeException(x, xval[0], xval[xval.length - 1]);
+                }
+            }
+            if (!inInterval(y, yval, j)) {
+                j = searchIndex(y, yval);
+                if (j == -1) {
+                    throw new OutOfRangeException(y, yval[0], yval[yval.length - 1]);
+                }
+            }
+            if (!inInterval(z, zval, k)) {
+                k = searchIndex(z, zval);
+                if (k == -1) {
+                    throw new OutOfRangeException(z, zval[0], zval[zval.length - 1]);
+                }
+            }
+
+            final double xN = (x - xval[i]) / (xval[i + 1] - xval[i]);
+            final double yN = (y - yval[j]) / (yval[j + 1] - yval[j]);
+            final double zN = (z - zval[k]) / (zval[k + 1] - zval[k]);
+
+            out[p] = apply(patchStart(i, j, k), xN, yN, zN);
+        }
+    }
+
+    /**
+     * Compute the value and the first partial derivatives at the same point.
+     * <p>
+     * The derivatives are those of the tricubic polynomial of the patch
+     * containing the point, divided by the patch widths so that they are
+     * taken with respect to x, y and z rather than to the normalized patch
+     * coordinates. The patch is located once and the powers of the
+     * coordinates are shared by the four results.
+     * </p>
+     *
+     * @param x x-coordinate.
+     * @param y y-coordinate.
+     * @param z z-coordinate.
+     * @param gradient Array where to store the first partial derivatives with
+     * respect to x, y and z (in this order).
+     * @return the value at point (x, y, z).
+     * @throws DimensionMismatchException if {@code gradient} does not have
+     * length 3.
+     * @throws OutOfRangeException if any of the variables is outside its interpolation range.
+     */
+    public double valueAndGradient(double x, double y, double z, double[] gradient)
+        throws DimensionMismatchException, OutOfRangeException {
+        if (gradient.length != 3) {
+            throw new DimensionMismatchException(gradient.length, 3);
+        }
+        final int i = searchIndex(x, xval);
+        if (i == -1) {
+            throw new OutOfRangeException(x, xval[0], xval[xval.length - 1]);
+        }
+        final int j = searchIndex(y, yval);
+        if (j == -1) {
+            throw new OutOfRangeException(y, yval[0], yval[yval.length - 1]);
+        }
+        final int k = searchIndex(z, zval);
+        if (k == -1) {
+            throw new OutOfRangeException(z, zval[0], zval[zval.length - 1]);
+        }
+
+        final double xW = xval[i + 1] - xval[i];
+        final double yW = yval[j + 1] - yval[j];
+        final double zW = zval[k + 1] - zval[k];
+        final double xN = (x - xval[i]) / xW;
+        final double yN = (y - yval[j]) / yW;
+        final double zN = (z - zval[k]) / zW;
+
+        final double x2 = xN * xN;
+        final double y2 = yN * yN;
+        final double z2 = zN * zN;
+        final double[] pX  = { 1, xN, x2, x2 * xN };
+        final double[] pY  = { 1, yN, y2, y2 * yN };
+        final double[] pZ  = { 1, zN, z2, z2 * zN };
+        final double[] dpX = { 0, 1, 2 * xN, 3 * x2 };
+        final double[] dpY = { 0, 1, 2 * yN, 3 * y2 };
+        final double[] dpZ = { 0, 1, 2 * zN, 3 * z2 };
+
+        final int start = patchStart(i, j, k);
+        double value = 0;
+        double dX = 0;
+        double dY = 0;
+        double dZ = 0;
+        for (int p = 0; p < N; p++) {
+            for (int q = 0; q < N; q++) {
+                for (int r = 0; r < N; r++) {
+                    final double c = coefficients[start + p + N * (q + N * r)];
+                    value += c * pX[p]  * pY[q]  * pZ[r];
+                    dX    += c * dpX[p] * pY[q]  * pZ[r];
+                    dY    += c * pX[p]  * dpY[q] * pZ[r];
+                    dZ    += c * pX[p]  * pY[q]  * dpZ[r];
+                }
+            }
+        }
+        gradient[0] = dX / xW;
+        gradient[1] = dY / yW;
+        gradient[2] = dZ / zW;
+
+        return value;
+    }
+
+    /**
+     * @param i Index of the patch along x.
+     * @param j Index of the patch along y.
+     * @param k Index of the patch along z.
+     * @return the index of the first coefficient of the patch.
+     */
+    private int patchStart(int i, int j, int k) {
+        return ((i * (yval.length - 1) + j) * (zval.length - 1) + k) * PATCH_SIZE;
+    }
+
+    /**
+     * Compute the value of the tricubic polynomial of a patch.
+     *
+     * @param start Index of the first coefficient of the patch.
+     * @param x Normalized x-coordinate in the patch.
+     * @param y Normalized y-coordinate in the patch.
+     * @param z Normalized z-coordinate in the patch.
+     * @return the interpolated value.
+     */
+    private double apply(int start, double x, double y, double z) {
+        final double x2 = x * x;
+        final double x3 = x2 * x;
+        final double[] pX = { 1, x, x2, x3 };
+
+        final double y2 = y * y;
+        final double y3 = y2 * y;
+        final double[] pY = { 1, y, y2, y3 };
+
+        final double z2 = z * z;
+        final double z3 = z2 * z;
+        final double[] pZ = { 1, z, z2, z3 };
+
+        double result = 0;
+        for (int p = 0; p < N; p++) {
+            for (int q = 0; q < N; q++) {
+                for (int r = 0; r < N; r++) {
+                    result += coefficients[start + p + N * (q + N * r)] * pX[p] * pY[q] * pZ[r];
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param c Coordinate.
+     * @param val Coordinate samples.
+     * @param i Index of an interval.
+     * @return true if {@link #searchIndex(double, double[])} would return
+     * {@code i} for {@code c}.
+     */
+    private static boolean inInterval(double c, double[] val, int i) {
+        return i + 1 < val.length &&
+               c <= val[i + 1] && (c > val[i] || (i == 0 && c == val[0]));
     }
 
     /**
@@ -302,19 +510,25 @@ public class TricubicSplineInterpolatingFunction
      * @return the index in {@code val} corresponding to the interval containing {@code c}, or {@code -1}
      *   if {@code c} is out of the range defined by the end values of {@code val}.
      */
-    private int searchIndex(double c, double[] val) {
-        if (c < val[0]) {
+    private static int searchIndex(double c, double[] val) {
+        final int max = val.length;
+        if (max < 2 || c < val[0] || !(c <= val[max - 1])) {
             return -1;
         }
 
-        final int max = val.length;
-        for (int i = 1; i < max; i++) {
-            if (c <= val[i]) {
-                return i - 1;
+        // smallest index i >= 1 such that c <= val[i]
+        int low = 1;
+        int high = max - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (c <= val[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
             }
         }
 
-        return -1;
+        return low - 1;
     }
 
     /**
@@ -363,91 +577,18 @@ public class TricubicSplineInterpolatingFunction
      * the corresponding variable(s).
      *
      * @param beta List of function values and function partial derivatives values.
-     * @return the spline coefficients.
+     * @param a Array where to store the spline coefficients.
+     * @param start Index of the first coefficient to store.
      */
-    private double[] computeSplineCoefficients(double[] beta) {
-        final int sz = 64;
-        final double[] a = new double[sz];
-
-        for (int i = 0; i < sz; i++) {
+    private static void computeSplineCoefficients(double[] beta, double[] a, int start) {
+        for (int i = 0; i < PATCH_SIZE; i++) {
             double result = 0;
             final double[] row = AINV[i];
-            for (int j = 0; j < sz; j++) {
+            for (int j = 0; j < PATCH_SIZE; j++) {
                 result += row[j] * beta[j];
             }
-            a[i] = result;
+            a[start + i] = result;
         }
-
-        return a;
     }
 }
 
-/**
- * 3D-spline function.
- *
- * @version $Id: TricubicSplineInterpolatingFunction.java 1385314 2012-09-16 16:35:49Z tn $
- */
-class TricubicSplineFunction
-    implements TrivariateFunction {
-    /** Number of points. */
-    private static final short N = 4;
-    /** Coefficients */
-    private final double[][][] a = new double[N][N][N];
-
-    /**
-     * @param aV List of spline coefficients.
-     */
-    public TricubicSplineFunction(double[] aV) {
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                for (int k = 0; k < N; k++) {
-                    a[i][j][k] = aV[i + N * (j + N * k)];
-                }
-            }
-        }
-    }
-
-    /**
-     * @param x x-coordinate of the interpolation point.
-     * @param y y-coordinate of the interpolation point.
-     * @param z z-coordinate of the interpolation point.
-     * @return the interpolated value.
-     * @throws OutOfRangeException if {@code x}, {@code y} or
-     * {@code z} are not in the interval {@code [0, 1]}.
-     */
-    public double value(double x, double y, double z)
-        throws OutOfRangeException {
-        if (x < 0 || x > 1) {
-            throw new OutOfRangeException(x, 0, 1);
-        }
-        if (y < 0 || y > 1) {
-            throw new OutOfRangeException(y, 0, 1);
-        }
-        if (z < 0 || z > 1) {
-            throw new OutOfRangeException(z, 0, 1);
-        }
-
-        final double x2 = x * x;
-        final double x3 = x2 * x;
-        final double[] pX = { 1, x, x2, x3 };
-
-        final double y2 = y * y;
-        final double y3 = y2 * y;
-        final double[] pY = { 1, y, y2, y3 };
-
-        final double z2 = z * z;
-        final double z3 = z2 * z;
-        final double[] pZ = { 1, z, z2, z3 };
-
-        double result = 0;
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                for (int k = 0; k < N; k++) {
-                    result += a[i][j][k] * pX[i] * pY[j] * pZ[k];
-                }
-            }
-        }
-
-        return result;
-    }
-}
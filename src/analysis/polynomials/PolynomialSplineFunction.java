@@ -2,42 +2,61 @@ package analysis.polynomials;
 
 import java.util.Arrays;
 
+import math.util.FastMath;
 import math.util.MathArrays;
 import analysis.UnivariateFunction;
 import analysis.differentiation.DerivativeStructure;
 import analysis.differentiation.UnivariateDifferentiableFunction;
 import exception.DimensionMismatchException;
+import exception.NonMonotonicSequenceException;
+import exception.NotStrictlyPositiveException;
 import exception.NullArgumentException;
 import exception.NumberIsTooSmallException;
 import exception.OutOfRangeException;
 import exception.util.LocalizedFormats;
 
 public class PolynomialSplineFunction implements UnivariateDifferentiableFunction {
+    /**
+     * Maximal deviation of the knots from a regular grid, as a fraction
+     * of the grid step, for the segments to be located by direct indexing.
+     */
+    private static final double UNIFORM_TOLERANCE = 0.25;
     /**
      * Spline segment interval delimiters (knots).
      * Size is n + 1 for n segments.
      */
     private final double knots[];
     /**
-     * The polynomial functions that make up the spline.  The first element
-     * determines the value of the spline over the first subinterval, the
-     * second over the second, etc.   Spline function values are determined by
-     * evaluating these functions at {@code (x - knot[i])} where i is the
-     * knot segment to which x belongs.
+     * The coefficients of the polynomials that make up the spline, stored
+     * segment after segment in a single array. The coefficients of the
+     * polynomial for segment i are at indices {@code i * order} (constant
+     * term) to {@code (i + 1) * order - 1} (highest degree term). Spline
+     * function values are determined by evaluating these polynomials at
+     * {@code (x - knot[i])} where i is the knot segment to which x belongs.
      */
-    private final PolynomialFunction polynomials[];
+    private final double coefficients[];
+    /**
+     * Number of coefficients of each polynomial, i.e. the highest degree
+     * of the polynomials + 1.
+     */
+    private final int order;
     /**
      * Number of spline segments. It is equal to the number of polynomials and
      * to the number of partition points - 1.
      */
     private final int n;
+    /**
+     * Inverse of the grid step if the knots are (almost) uniformly spaced,
+     * 0 otherwise.
+     */
+    private final double inverseStep;
 
 
     /**
      * Construct a polynomial spline function with the given segment delimiters
      * and interpolating polynomials.
-     * The constructor copies both arrays and assigns the copies to the knots
-     * and polynomials properties, respectively.
+     * The constructor copies the knots array and the coefficients of the
+     * polynomials.
      *
      * @param knots Spline segment interval delimiters.
      * @param polynomials Polynomial functions that make up the spline.
@@ -65,8 +84,82 @@ public class PolynomialSplineFunction implements UnivariateDifferentiableFunctio
         this.n = knots.length -1;
         this.knots = new double[n + 1];
         System.arraycopy(knots, 0, this.knots, 0, n + 1);
-        this.polynomials = new PolynomialFunction[n];
-        System.arraycopy(polynomials, 0, this.polynomials, 0, n);
+
+        int maxOrder = 1;
+        for (int i = 0; i < n; i++) {
+            maxOrder = FastMath.max(maxOrder, polynomials[i].degree() + 1);
+        }
+        this.order = maxOrder;
+        this.coefficients = new double[n * order];
+        for (int i = 0; i < n; i++) {
+            final double c[] = polynomials[i].getCoefficients();
+            System.arraycopy(c, 0, coefficients, i * order, c.length);
+        }
+        this.inverseStep = computeInverseStep(this.knots);
+    }
+
+    /**
+     * Construct a polynomial spline function with the given segment delimiters
+     * and the coefficients of the interpolating polynomials.
+     * <p>
+     * The coefficients of the polynomial for segment i, which is evaluated
+     * at {@code (x - knots[i])}, are {@code coefficients[i * order]} (constant
+     * term) to {@code coefficients[(i + 1) * order - 1]} (highest degree
+     * term). This avoids building one {@link PolynomialFunction} per segment
+     * when the spline has many knots. The constructor copies both arrays.
+     * </p>
+     *
+     * @param knots Spline segment interval delimiters.
+     * @param coefficients Coefficients of the polynomials, segment after segment.
+     * @param order Number of coefficients of each polynomial.
+     * @throws NullArgumentException if either of the input arrays is {@code null}.
+     * @throws NotStrictlyPositiveException if {@code order} is not strictly positive.
+     * @throws NumberIsTooSmallException if knots has length less than 2.
+     * @throws DimensionMismatchException if
+     * {@code coefficients.length != (knots.length - 1) * order}.
+     * @throws NonMonotonicSequenceException if the {@code knots} array is not
+     * strictly increasing.
+     */
+    public PolynomialSplineFunction(double knots[], double coefficients[], int order) {
+        if (knots == null ||
+            coefficients == null) {
+            throw new NullArgumentException();
+        }
+        if (order <= 0) {
+            throw new NotStrictlyPositiveException(order);
+        }
+        if (knots.length < 2) {
+            throw new NumberIsTooSmallException(LocalizedFormats.NOT_ENOUGH_POINTS_IN_SPLINE_PARTITION,
+                                                2, knots.length, false);
+        }
+        if ((knots.length - 1) * order != coefficients.length) {
+            throw new DimensionMismatchException(coefficients.length, (knots.length - 1) * order);
+        }
+        MathArrays.checkOrder(knots);
+
+        this.n = knots.length - 1;
+        this.order = order;
+        this.knots = knots.clone();
+        this.coefficients = coefficients.clone();
+        this.inverseStep = computeInverseStep(this.knots);
+    }
+
+    /**
+     * Construct a polynomial spline function from already checked arrays,
+     * without copying them.
+     *
+     * @param knots Spline segment interval delimiters.
+     * @param coefficients Coefficients of the polynomials, segment after segment.
+     * @param order Number of coefficients of each polynomial.
+     * @param inverseStep Inverse of the grid step of uniform knots, 0 otherwise.
+     */
+    private PolynomialSplineFunction(double knots[], double coefficients[],
+                                     int order, double inverseStep) {
+        this.n = knots.length - 1;
+        this.order = order;
+        this.knots = knots;
+        this.coefficients = coefficients;
+        this.inverseStep = inverseStep;
     }
 
     /**
@@ -84,17 +177,76 @@ public class PolynomialSplineFunction implements UnivariateDifferentiableFunctio
         if (v < knots[0] || v > knots[n]) {
             throw new OutOfRangeException(v, knots[0], knots[n]);
         }
-        int i = Arrays.binarySearch(knots, v);
-        if (i < 0) {
-            i = -i - 2;
+        final int i = segment(v);
+        return evaluate(i * order, v - knots[i]);
+    }
+
+    /**
+     * Compute the values of the function at sorted points.
+     *
+     * @param sortedX Points for which the function value should be computed,
+     * sorted in increasing order.
+     * @param out Array where to store the values.
+     * @throws OutOfRangeException if a point is outside of the domain of the
+     * spline function.
+     * @throws NonMonotonicSequenceException if the points are not sorted
+     * in increasing order.
+     * @see #value(double[], double[], int, int)
+     */
+    public void value(double sortedX[], double out[]) {
+        value(sortedX, out, 0, sortedX.length);
+    }
+
+    /**
+     * Compute the values of the function at sorted points.
+     * <p>
+     * The segments are walked in increasing order along with the points,
+     * so each segment boundary is crossed only once instead of searching
+     * the knots for each point. Points sparser than the knots skip segments
+     * by exponential search. The results are the same as with {@link
+     * #value(double)}. {@code sortedX} and {@code out} may be the same array.
+     * </p>
+     *
+     * @param sortedX Points for which the function value should be computed,
+     * sorted in increasing order.
+     * @param out Array where to store the values.
+     * @param off Index of the first element to process in both arrays.
+     * @param len Number of elements to process.
+     * @throws OutOfRangeException if a point is outside of the domain of the
+     * spline function.
+     * @throws NonMonotonicSequenceException if the points are not sorted
+     * in increasing order.
+     */
+    public void value(double sortedX[], double out[], int off, int len) {
+        if (len <= 0) {
+            return;
+        }
+
+        double previous = sortedX[off];
+        if (previous < knots[0] || previous > knots[n]) {
+            throw new OutOfRangeException(previous, knots[0], knots[n]);
         }
-        // This will handle the case where v is the last knot value
-        // There are only n-1 polynomials, so if v is the last knot
-        // then we will use the last polynomial to calculate the value.
-        if ( i >= polynomials.length ) {
-            i--;
+        int i = segment(previous);
+        double lower = knots[i];
+        double upper = (i < n - 1) ? knots[i + 1] : Double.POSITIVE_INFINITY;
+
+        for (int j = off; j < off + len; j++) {
+            final double v = sortedX[j];
+            if (v < previous) {
+                throw new NonMonotonicSequenceException(v, previous, j,
+                                                        MathArrays.OrderDirection.INCREASING, false);
+            }
+            if (v > knots[n]) {
+                throw new OutOfRangeException(v, knots[0], knots[n]);
+            }
+            if (v >= upper) {
+                i = advance(i, v);
+                lower = knots[i];
+                upper = (i < n - 1) ? knots[i + 1] : Double.POSITIVE_INFINITY;
+            }
+            out[j] = evaluate(i * order, v - lower);
+            previous = v;
         }
-        return polynomials[i].value(v - knots[i]);
     }
 
     /**
@@ -112,11 +264,17 @@ public class PolynomialSplineFunction implements UnivariateDifferentiableFunctio
      * @return the derivative function.
      */
     public PolynomialSplineFunction polynomialSplineDerivative() {
-        PolynomialFunction derivativePolynomials[] = new PolynomialFunction[n];
+        if (order == 1) {
+            return new PolynomialSplineFunction(knots, new double[n], 1, inverseStep);
+        }
+        final int dOrder = order - 1;
+        final double derivativeCoefficients[] = new double[n * dOrder];
         for (int i = 0; i < n; i++) {
-            derivativePolynomials[i] = polynomials[i].polynomialDerivative();
+            for (int k = 1; k < order; k++) {
+                derivativeCoefficients[i * dOrder + k - 1] = k * coefficients[i * order + k];
+            }
         }
-        return new PolynomialSplineFunction(knots, derivativePolynomials);
+        return new PolynomialSplineFunction(knots, derivativeCoefficients, dOrder, inverseStep);
     }
 
 
@@ -128,17 +286,19 @@ public class PolynomialSplineFunction implements UnivariateDifferentiableFunctio
         if (t0 < knots[0] || t0 > knots[n]) {
             throw new OutOfRangeException(t0, knots[0], knots[n]);
         }
-        int i = Arrays.binarySearch(knots, t0);
-        if (i < 0) {
-            i = -i - 2;
+        final int i = segment(t0);
+        final int start = i * order;
+        int end = start + order;
+        while ((end > start + 1) && (coefficients[end - 1] == 0)) {
+            --end;
         }
-        // This will handle the case where t is the last knot value
-        // There are only n-1 polynomials, so if t is the last knot
-        // then we will use the last polynomial to calculate the value.
-        if ( i >= polynomials.length ) {
-            i--;
+        final DerivativeStructure dt = t.subtract(knots[i]);
+        DerivativeStructure result =
+                new DerivativeStructure(t.getFreeParameters(), t.getOrder(), coefficients[end - 1]);
+        for (int j = end - 2; j >= start; j--) {
+            result = result.multiply(dt).add(coefficients[j]);
         }
-        return polynomials[i].value(t.subtract(knots[i]));
+        return result;
     }
 
     /**
@@ -160,7 +320,11 @@ public class PolynomialSplineFunction implements UnivariateDifferentiableFunctio
      */
     public PolynomialFunction[] getPolynomials() {
         PolynomialFunction p[] = new PolynomialFunction[n];
-        System.arraycopy(polynomials, 0, p, 0, n);
+        final double c[] = new double[order];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(coefficients, i * order, c, 0, order);
+            p[i] = new PolynomialFunction(c);
+        }
         return p;
     }
 
@@ -176,4 +340,107 @@ public class PolynomialSplineFunction implements UnivariateDifferentiableFunctio
         System.arraycopy(knots, 0, out, 0, n + 1);
         return out;
     }
+
+    /**
+     * Evaluate one of the polynomials using Horner's method.
+     *
+     * @param start Index of the constant term of the polynomial.
+     * @param x Offset of the point with respect to the segment start.
+     * @return the value of the polynomial.
+     */
+    private double evaluate(final int start, final double x) {
+        double result = coefficients[start + order - 1];
+        for (int j = start + order - 2; j >= start; j--) {
+            result = x * result + coefficients[j];
+        }
+        return result;
+    }
+
+    /**
+     * Find the segment containing a point of the domain.
+     * <p>
+     * If the knots are (almost) uniformly spaced, the segment is found
+     * directly from the grid step and corrected by at most one step,
+     * otherwise it is found by binary search.
+     * </p>
+     *
+     * @param v Point, in the domain of the spline.
+     * @return the index i of the segment such that {@code knots[i] <= v < knots[i + 1]},
+     * or n - 1 if v is the last knot.
+     */
+    private int segment(final double v) {
+        int i;
+        if (inverseStep > 0) {
+            i = (int) ((v - knots[0]) * inverseStep);
+            if (i < 0) {
+                i = 0;
+            } else if (i >= n) {
+                i = n - 1;
+            }
+            while (i > 0 && v < knots[i]) {
+                i--;
+            }
+            while (i < n - 1 && v >= knots[i + 1]) {
+                i++;
+            }
+        } else {
+            i = Arrays.binarySearch(knots, v);
+            if (i < 0) {
+                i = -i - 2;
+            }
+            // This will handle the case where v is the last knot value
+            // There are only n-1 polynomials, so if v is the last knot
+            // then we will use the last polynomial to calculate the value.
+            if ( i >= n ) {
+                i--;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Find the segment containing a point beyond the current segment.
+     * <p>
+     * The knots following the current segment are searched with an
+     * exponentially increasing step, then by binary search.
+     * </p>
+     *
+     * @param i Index of the current segment.
+     * @param v Point, not smaller than {@code knots[i + 1]} and not larger
+     * than the last knot.
+     * @return the index of the segment containing v.
+     */
+    private int advance(final int i, final double v) {
+        int low = i + 1;
+        int step = 1;
+        while (low + step < n && knots[low + step] <= v) {
+            low += step;
+            step <<= 1;
+        }
+        int k = Arrays.binarySearch(knots, low, FastMath.min(low + step, n), v);
+        if (k < 0) {
+            k = -k - 2;
+        }
+        return FastMath.min(k, n - 1);
+    }
+
+    /**
+     * Check if knots are (almost) uniformly spaced.
+     *
+     * @param knots Knots, in strictly increasing order.
+     * @return the inverse of the grid step if all knots are within
+     * {@link #UNIFORM_TOLERANCE} steps of a regular grid, 0 otherwise.
+     */
+    private static double computeInverseStep(final double knots[]) {
+        final int n = knots.length - 1;
+        final double step = (knots[n] - knots[0]) / n;
+        final double tolerance = UNIFORM_TOLERANCE * step;
+        for (int i = 1; i < n; i++) {
+            if (FastMath.abs(knots[i] - (knots[0] + i * step)) > tolerance) {
+                return 0;
+            }
+        }
+        final double inverse = 1.0 / step;
+        return (inverse > 0 && inverse < Double.POSITIVE_INFINITY) ? inverse : 0;
+    }
 }
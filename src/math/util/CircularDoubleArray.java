@@ -0,0 +1,332 @@
+package math.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import exception.MathIllegalArgumentException;
+import exception.MathIllegalStateException;
+import exception.NotStrictlyPositiveException;
+import exception.util.LocalizedFormats;
+
+public class CircularDoubleArray implements WindowedDoubleArray, Serializable {
+
+    /** Default initial capacity. */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /** Serializable version identifier. */
+    private static final long serialVersionUID = 20121019L;
+
+    /**
+     * Internal storage, holding two copies of a circular buffer whose
+     * capacity is a power of two. Element {@code i} is stored both at
+     * {@code p = (head + i) & (capacity - 1)} and at {@code p + capacity},
+     * so the elements are always contiguous from {@link #head}.
+     */
+    private double[] buffer;
+
+    /** Index of the first element in {@link #buffer}, smaller than the capacity. */
+    private int head;
+
+    /** Number of elements. */
+    private int numElements;
+
+    /**
+     * Creates an instance with the default initial capacity.
+     */
+    public CircularDoubleArray() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an instance with the specified initial capacity.
+     * <p>
+     * The capacity is rounded up to the next power of two. When elements
+     * are only added through {@link #addElementRolling(double)} once the
+     * array holds {@code n} elements, the capacity never grows beyond the
+     * power of two just above {@code n}. The internal storage holds two
+     * copies of the buffer, so that the elements are always contiguous.
+     * </p>
+     *
+     * @param initialCapacity Initial size of the internal storage array.
+     * @throws NotStrictlyPositiveException if {@code initialCapacity <= 0}.
+     */
+    public CircularDoubleArray(final int initialCapacity)
+        throws NotStrictlyPositiveException {
+        if (initialCapacity <= 0) {
+            throw new NotStrictlyPositiveException(LocalizedFormats.INITIAL_CAPACITY_NOT_POSITIVE,
+                                                   initialCapacity);
+        }
+        buffer = new double[2 * roundUpToPowerOfTwo(initialCapacity)];
+    }
+
+    /**
+     * Creates an instance from an existing {@code double[]}.
+     * The input array is copied, not referenced.
+     *
+     * @param initialArray initial array (may be null, in which case
+     * the instance is empty with the default initial capacity)
+     */
+    public CircularDoubleArray(final double[] initialArray) {
+        this(initialArray == null ?
+             DEFAULT_INITIAL_CAPACITY :
+             FastMath.max(initialArray.length, DEFAULT_INITIAL_CAPACITY));
+        if (initialArray != null) {
+            System.arraycopy(initialArray, 0, buffer, 0, initialArray.length);
+            System.arraycopy(initialArray, 0, buffer, getCapacity(), initialArray.length);
+            numElements = initialArray.length;
+        }
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param original array to copy
+     */
+    public CircularDoubleArray(final CircularDoubleArray original) {
+        buffer      = original.buffer.clone();
+        head        = original.head;
+        numElements = original.numElements;
+    }
+
+    /** {@inheritDoc} */
+    public int getNumElements() {
+        return numElements;
+    }
+
+    /**
+     * Gets the currently allocated size of the internal data structure.
+     *
+     * @return the length of the internal storage array.
+     */
+    public int getCapacity() {
+        return buffer.length >> 1;
+    }
+
+    /** {@inheritDoc} */
+    public double getElement(final int index) {
+        if (index >= numElements || index < 0) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return buffer[head + index];
+    }
+
+    /** {@inheritDoc} */
+    public void setElement(final int index, final double value) {
+        if (index < 0) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        if (index >= numElements) {
+            ensureCapacity(index + 1);
+            for (int i = numElements; i < index; ++i) {
+                store(i, 0);
+            }
+            numElements = index + 1;
+        }
+        store(index, value);
+    }
+
+    /** {@inheritDoc} */
+    public void addElement(final double value) {
+        if (numElements == getCapacity()) {
+            ensureCapacity(numElements + 1);
+        }
+        store(numElements, value);
+        ++numElements;
+    }
+
+    /** {@inheritDoc} */
+    public void addElements(final double[] values) {
+        ensureCapacity(numElements + values.length);
+        for (final double value : values) {
+            store(numElements, value);
+            ++numElements;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This operation only moves the start of the circular buffer, it never
+     * copies the stored elements (the new value is written in both copies
+     * of the buffer). On an empty array, the value is simply added and 0
+     * is returned.
+     * </p>
+     */
+    public double addElementRolling(final double value) {
+        if (numElements == 0) {
+            addElement(value);
+            return 0;
+        }
+        final double discarded = buffer[head];
+        store(numElements, value);
+        head = (head + 1) & (getCapacity() - 1);
+        return discarded;
+    }
+
+    /**
+     * Substitutes <code>value</code> for the most recently added value.
+     * Returns the value that has been replaced.
+     *
+     * @param value New value to substitute for the most recently added value
+     * @return the value that has been replaced in the array.
+     * @throws MathIllegalStateException if the array is empty
+     */
+    public double substituteMostRecentElement(final double value)
+        throws MathIllegalStateException {
+        if (numElements < 1) {
+            throw new MathIllegalStateException(
+                    LocalizedFormats.CANNOT_SUBSTITUTE_ELEMENT_FROM_EMPTY_ARRAY);
+        }
+        final double discarded = buffer[head + numElements - 1];
+        store(numElements - 1, value);
+        return discarded;
+    }
+
+    /**
+     * Discards the <code>i</code> initial elements of the array.
+     *
+     * @param i  the number of elements to discard from the front of the array
+     * @throws MathIllegalArgumentException if i is greater than numElements.
+     */
+    public void discardFrontElements(final int i)
+        throws MathIllegalArgumentException {
+        checkDiscard(i);
+        head = (head + i) & (getCapacity() - 1);
+        numElements -= i;
+    }
+
+    /**
+     * Discards the <code>i</code> last elements of the array.
+     *
+     * @param i  the number of elements to discard from the end of the array
+     * @throws MathIllegalArgumentException if i is greater than numElements.
+     */
+    public void discardMostRecentElements(final int i)
+        throws MathIllegalArgumentException {
+        checkDiscard(i);
+        numElements -= i;
+    }
+
+    /** {@inheritDoc} */
+    public double[] getElements() {
+        final double[] elementArray = new double[numElements];
+        System.arraycopy(buffer, head, elementArray, 0, numElements);
+        return elementArray;
+    }
+
+    /**
+     * Performs an operation on the addressable elements of the array.
+     * <p>
+     * The elements are always contiguous in the internal storage, so the
+     * function is applied in place, without any copy or rotation.
+     * </p>
+     *
+     * @param f Function to be applied on this array.
+     * @return the result.
+     */
+    public double compute(final Function f) {
+        return f.evaluate(buffer, head, numElements);
+    }
+
+    /** {@inheritDoc} */
+    public void clear() {
+        head        = 0;
+        numElements = 0;
+    }
+
+    /**
+     * Returns a copy of the array.
+     *
+     * @return a new CircularDoubleArray with the same data as this
+     */
+    public CircularDoubleArray copy() {
+        return new CircularDoubleArray(this);
+    }
+
+    /**
+     * Returns true iff object is a CircularDoubleArray with the same elements as this.
+     *
+     * @param object object to be compared for equality with this
+     * @return true iff object is a CircularDoubleArray with the same elements as this
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (object == this ) {
+            return true;
+        }
+        if (object instanceof CircularDoubleArray == false) {
+            return false;
+        }
+        return Arrays.equals(getElements(), ((CircularDoubleArray) object).getElements());
+    }
+
+    /**
+     * Returns a hash code consistent with equals.
+     *
+     * @return the hash code representing this {@code CircularDoubleArray}.
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(getElements());
+    }
+
+    /**
+     * Check the number of elements to discard.
+     *
+     * @param i number of elements to discard
+     * @throws MathIllegalArgumentException if i is negative or greater than numElements.
+     */
+    private void checkDiscard(final int i) throws MathIllegalArgumentException {
+        if (i > numElements) {
+            throw new MathIllegalArgumentException(
+                    LocalizedFormats.TOO_MANY_ELEMENTS_TO_DISCARD_FROM_ARRAY,
+                    i, numElements);
+        } else if (i < 0) {
+            throw new MathIllegalArgumentException(
+                    LocalizedFormats.CANNOT_DISCARD_NEGATIVE_NUMBER_OF_ELEMENTS,
+                    i);
+        }
+    }
+
+    /**
+     * Store an element in both copies of the circular buffer.
+     *
+     * @param index index of the element, at most the capacity
+     * @param value value to store
+     */
+    private void store(final int index, final double value) {
+        final int capacity = getCapacity();
+        final int p = (head + index) & (capacity - 1);
+        buffer[p]            = value;
+        buffer[p + capacity] = value;
+    }
+
+    /**
+     * Grow the internal storage so that it can hold at least the specified number of elements.
+     * The elements are unwrapped to the start of both copies of the new buffer.
+     *
+     * @param size number of elements to hold
+     */
+    private void ensureCapacity(final int size) {
+        if (size > getCapacity()) {
+            final int capacity = roundUpToPowerOfTwo(size);
+            final double[] tempArray = new double[2 * capacity];
+            System.arraycopy(buffer, head, tempArray, 0, numElements);
+            System.arraycopy(buffer, head, tempArray, capacity, numElements);
+            buffer = tempArray;
+            head   = 0;
+        }
+    }
+
+    /**
+     * Round a size up to the next power of two.
+     *
+     * @param size size to round
+     * @return smallest power of two greater than or equal to size
+     */
+    private static int roundUpToPowerOfTwo(final int size) {
+        final int highest = Integer.highestOneBit(size);
+        return (highest == size) ? size : highest << 1;
+    }
+
+}
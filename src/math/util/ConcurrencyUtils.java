@@ -0,0 +1,106 @@
+package math.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import exception.MathIllegalStateException;
+import exception.util.LocalizedFormats;
+
+public class ConcurrencyUtils {
+
+    /**
+     * Private constructor.
+     */
+    private ConcurrencyUtils() {}
+
+    /**
+     * Run a list of tasks and collect their results in submission order.
+     * <p>
+     * If {@code executor} is {@code null}, the tasks are run one after
+     * the other in the calling thread. Otherwise they are all submitted
+     * to the executor and this method waits for all of them to complete.
+     * </p>
+     * <p>
+     * Unchecked exceptions and errors thrown by a task are propagated
+     * unchanged to the caller, so user code sees the same exceptions
+     * whether the tasks ran sequentially or concurrently.
+     * </p>
+     *
+     * @param <T> Type of the task results.
+     * @param executor Executor running the tasks (may be {@code null}).
+     * @param tasks Tasks to run.
+     * @return the results of the tasks, in the same order as {@code tasks}.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting or if a task throws a checked exception.
+     */
+    public static <T> List<T> invokeAll(final ExecutorService executor,
+                                        final List<? extends Callable<T>> tasks)
+        throws MathIllegalStateException {
+
+        final List<T> results = new ArrayList<T>(tasks.size());
+
+        if (executor == null || tasks.size() < 2) {
+            for (final Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new MathIllegalStateException(e, LocalizedFormats.USER_EXCEPTION);
+                }
+            }
+            return results;
+        }
+
+        try {
+            for (final Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MathIllegalStateException(ie, LocalizedFormats.COMPUTATION_INTERRUPTED);
+        } catch (ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MathIllegalStateException(cause, LocalizedFormats.USER_EXCEPTION);
+        }
+
+        return results;
+
+    }
+
+    /**
+     * Split a range of indices into contiguous chunks.
+     * <p>
+     * The chunks boundaries are returned as an array {@code b} of length
+     * {@code n + 1} where chunk {@code k} covers indices {@code b[k]}
+     * (included) to {@code b[k + 1]} (excluded). The chunks have
+     * sizes differing by at most one.
+     * </p>
+     *
+     * @param begin First index of the range (included).
+     * @param end Last index of the range (excluded).
+     * @param maxChunks Maximal number of chunks.
+     * @param minChunkSize Minimal number of indices in one chunk.
+     * @return the chunks boundaries.
+     */
+    public static int[] splitRange(final int begin, final int end,
+                                   final int maxChunks, final int minChunkSize) {
+        final int length = end - begin;
+        final int n = FastMath.max(1, FastMath.min(maxChunks, length / FastMath.max(1, minChunkSize)));
+        final int[] bounds = new int[n + 1];
+        for (int k = 0; k <= n; ++k) {
+            bounds[k] = begin + (int) (((long) length * k) / n);
+        }
+        return bounds;
+    }
+
+}
@@ -756,6 +756,48 @@ public class FastMath {
         return exp(x, 0.0, null);
     }
 
+    /**
+     * Exponential function of an array of numbers.
+     * <p>
+     * Arguments in the range (-709, 709) are processed by a straight-line
+     * version of the table-based algorithm of {@link #exp(double)}, without
+     * the special cases and extra precision handling, the other arguments
+     * are delegated to the scalar function. Results are the same as
+     * {@link #exp(double)}. {@code src} and {@code dst} may be the same array.
+     * </p>
+     *
+     * @param src arguments
+     * @param dst array where to store the results
+     * @param off index of the first element to process in both arrays
+     * @param len number of elements to process
+     */
+    public static void exp(final double[] src, final double[] dst, final int off, final int len) {
+        for (int i = off; i < off + len; ++i) {
+            final double x = src[i];
+            if (x > -709.0 && x < 709.0) {
+                // same computation as in exp(x, 0.0, null), with a branch-free integer part
+                final int intVal = (int) x - ((x < 0.0) ? 1 : 0);
+                final double intPartA = ExpIntTable.EXP_INT_TABLE_A[EXP_INT_TABLE_MAX_INDEX + intVal];
+                final double intPartB = ExpIntTable.EXP_INT_TABLE_B[EXP_INT_TABLE_MAX_INDEX + intVal];
+                final int intFrac = (int) ((x - intVal) * 1024.0);
+                final double fracPartA = ExpFracTable.EXP_FRAC_TABLE_A[intFrac];
+                final double fracPartB = ExpFracTable.EXP_FRAC_TABLE_B[intFrac];
+                final double epsilon = x - (intVal + intFrac / 1024.0);
+                double z = 0.04168701738764507;
+                z = z * epsilon + 0.1666666505023083;
+                z = z * epsilon + 0.5000000000042687;
+                z = z * epsilon + 1.0;
+                z = z * epsilon + -3.940510424527919E-20;
+                final double tempA = intPartA * fracPartA;
+                final double tempB = intPartA * fracPartB + intPartB * fracPartA + intPartB * fracPartB;
+                final double tempC = tempB + tempA;
+                dst[i] = tempC * z + tempB + tempA;
+            } else {
+                dst[i] = exp(x, 0.0, null);
+            }
+        }
+    }
+
     /**
      * Internal helper method for exponential function.
      * @param x original argument of the exponential function
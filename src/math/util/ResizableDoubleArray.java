@@ -11,7 +11,7 @@ import exception.NullArgumentException;
 import exception.NumberIsTooSmallException;
 import exception.util.LocalizedFormats;
 
-public class ResizableDoubleArray implements DoubleArray, Serializable {
+public class ResizableDoubleArray implements WindowedDoubleArray, Serializable {
     /** Additive expansion mode.
      * @deprecated As of 3.1. Please use {@link ExpansionMode#ADDITIVE} instead.
      */
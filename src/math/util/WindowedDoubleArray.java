@@ -0,0 +1,49 @@
+package math.util;
+
+import exception.MathIllegalArgumentException;
+import exception.MathIllegalStateException;
+
+public interface WindowedDoubleArray extends DoubleArray {
+
+    /**
+     * Substitutes <code>value</code> for the most recently added value.
+     * Returns the value that has been replaced.
+     *
+     * @param value New value to substitute for the most recently added value
+     * @return the value that has been replaced in the array.
+     * @throws MathIllegalStateException if the array is empty
+     */
+    double substituteMostRecentElement(double value) throws MathIllegalStateException;
+
+    /**
+     * Discards the <code>i</code> initial elements of the array.
+     *
+     * @param i  the number of elements to discard from the front of the array
+     * @throws MathIllegalArgumentException if i is greater than numElements.
+     */
+    void discardFrontElements(int i) throws MathIllegalArgumentException;
+
+    /**
+     * Discards the <code>i</code> last elements of the array.
+     *
+     * @param i  the number of elements to discard from the end of the array
+     * @throws MathIllegalArgumentException if i is greater than numElements.
+     */
+    void discardMostRecentElements(int i) throws MathIllegalArgumentException;
+
+    /**
+     * Performs an operation on the addressable elements of the array.
+     *
+     * @param f Function to be applied on this array.
+     * @return the result.
+     */
+    double compute(Function f);
+
+    /**
+     * Returns a copy of the array.
+     *
+     * @return a new array with the same data as this
+     */
+    WindowedDoubleArray copy();
+
+}
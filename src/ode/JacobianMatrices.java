@@ -4,7 +4,11 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
+import math.util.ConcurrencyUtils;
+import analysis.differentiation.FiniteDifferencesJacobian;
 import exception.DimensionMismatchException;
 import exception.MathIllegalArgumentException;
 import exception.MaxCountExceededException;
@@ -60,7 +64,43 @@ public class JacobianMatrices {
     public JacobianMatrices(final FirstOrderDifferentialEquations fode, final double[] hY,
                             final String... parameters)
         throws DimensionMismatchException {
-        this(new MainStateJacobianWrapper(fode, hY), parameters);
+        this(new MainStateJacobianWrapper(fode, hY, null, null), parameters);
+    }
+
+    /** Simple constructor for a secondary equations set computing Jacobian matrices
+     * with sparse and concurrent finite differences.
+     * <p>
+     * State components that never affect the same derivative component
+     * (according to the {@code sparsity} pattern) are perturbed together,
+     * so a single call to {@link FirstOrderDifferentialEquations#computeDerivatives(double,
+     * double[], double[]) computeDerivatives} provides several columns of the
+     * main state Jacobian. If {@code executor} is not null, the perturbed
+     * evaluations are run concurrently, so the equations must then be safe for
+     * use by several threads at once.
+     * </p>
+     * <p>
+     * Parameters must belong to the supported ones given by {@link
+     * Parameterizable#getParametersNames()}, so the primary set of differential
+     * equations must be {@link Parameterizable}.
+     * </p>
+     * <p>Note that each selection clears the previous selected parameters.</p>
+     *
+     * @param fode the primary first order differential equations set to extend
+     * @param hY step used for finite difference computation with respect to state vector
+     * @param sparsity sparsity pattern of the main state Jacobian, {@code sparsity[i][j]}
+     * must be true if {@code yDot[i]} depends on {@code y[j]} (may be null for a dense Jacobian)
+     * @param executor executor for the perturbed evaluations (may be null
+     * to evaluate all points in the calling thread)
+     * @param parameters parameters to consider for Jacobian matrices processing
+     * (may be null if parameters Jacobians is not desired)
+     * @exception DimensionMismatchException if there is a dimension mismatch between
+     * the steps array {@code hY} or the sparsity pattern and the equation dimension
+     */
+    public JacobianMatrices(final FirstOrderDifferentialEquations fode, final double[] hY,
+                            final boolean[][] sparsity, final ExecutorService executor,
+                            final String... parameters)
+        throws DimensionMismatchException {
+        this(new MainStateJacobianWrapper(fode, hY, sparsity, executor), parameters);
     }
 
     /** Simple constructor for a secondary equations set computing Jacobian matrices.
@@ -382,21 +422,54 @@ public class JacobianMatrices {
         /** Steps for finite difference computation of the jacobian df/dy w.r.t. state. */
         private final double[] hY;
 
+        /** Sparsity pattern of the jacobian df/dy (may be null). */
+        private final boolean[][] sparsity;
+
+        /** Groups of state components perturbed together. */
+        private final int[][] groups;
+
+        /** Executor for the perturbed evaluations (may be null). */
+        private final ExecutorService executor;
+
         /** Wrap a {@link FirstOrderDifferentialEquations} into a {@link MainStateJacobianProvider}.
          * @param ode original ODE problem, without jacobians computation skill
          * @param hY step sizes to compute the jacobian df/dy
+         * @param sparsity sparsity pattern of the jacobian df/dy (may be null)
+         * @param executor executor for the perturbed evaluations (may be null)
          * @see JacobianMatrices#setMainStateSteps(double[])
          * @exception DimensionMismatchException if there is a dimension mismatch between
-         * the steps array {@code hY} and the equation dimension
+         * the steps array {@code hY} or the sparsity pattern and the equation dimension
          */
         public MainStateJacobianWrapper(final FirstOrderDifferentialEquations ode,
-                                        final double[] hY)
+                                        final double[] hY, final boolean[][] sparsity,
+                                        final ExecutorService executor)
             throws DimensionMismatchException {
             this.ode = ode;
             this.hY = hY.clone();
-            if (hY.length != ode.getDimension()) {
-                throw new DimensionMismatchException(ode.getDimension(), hY.length);
+            final int n = ode.getDimension();
+            if (hY.length != n) {
+                throw new DimensionMismatchException(n, hY.length);
+            }
+            if (sparsity == null) {
+                this.sparsity = null;
+                this.groups   = new int[n][];
+                for (int j = 0; j < n; ++j) {
+                    groups[j] = new int[] { j };
+                }
+            } else {
+                if (sparsity.length != n) {
+                    throw new DimensionMismatchException(n, sparsity.length);
+                }
+                this.sparsity = new boolean[n][];
+                for (int i = 0; i < n; ++i) {
+                    if (sparsity[i].length != n) {
+                        throw new DimensionMismatchException(n, sparsity[i].length);
+                    }
+                    this.sparsity[i] = sparsity[i].clone();
+                }
+                this.groups = FiniteDifferencesJacobian.groupColumns(this.sparsity, n);
             }
+            this.executor = executor;
         }
 
         /** {@inheritDoc} */
@@ -411,21 +484,53 @@ public class JacobianMatrices {
         }
 
         /** {@inheritDoc} */
-        public void computeMainStateJacobian(double t, double[] y, double[] yDot, double[][] dFdY)
+        public void computeMainStateJacobian(final double t, final double[] y,
+                                             final double[] yDot, final double[][] dFdY)
             throws MaxCountExceededException, DimensionMismatchException {
 
             final int n = ode.getDimension();
-            final double[] tmpDot = new double[n];
 
-            for (int j = 0; j < n; ++j) {
-                final double savedYj = y[j];
-                y[j] += hY[j];
-                ode.computeDerivatives(t, y, tmpDot);
-                for (int i = 0; i < n; ++i) {
-                    dFdY[i][j] = (tmpDot[i] - yDot[i]) / hY[j];
+            if (executor == null && sparsity == null) {
+                final double[] tmpDot = new double[n];
+                for (int j = 0; j < n; ++j) {
+                    final double savedYj = y[j];
+                    y[j] += hY[j];
+                    ode.computeDerivatives(t, y, tmpDot);
+                    for (int i = 0; i < n; ++i) {
+                        dFdY[i][j] = (tmpDot[i] - yDot[i]) / hY[j];
+                    }
+                    y[j] = savedYj;
+                }
+                return;
+            }
+
+            final List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>(groups.length);
+            for (final int[] group : groups) {
+                tasks.add(new Callable<double[]>() {
+                    /** {@inheritDoc} */
+                    public double[] call() {
+                        final double[] shifted = y.clone();
+                        for (final int j : group) {
+                            shifted[j] += hY[j];
+                        }
+                        final double[] tmpDot = new double[n];
+                        ode.computeDerivatives(t, shifted, tmpDot);
+                        return tmpDot;
+                    }
+                });
+            }
+            final List<double[]> perturbed = ConcurrencyUtils.invokeAll(executor, tasks);
+
+            for (int g = 0; g < groups.length; ++g) {
+                final double[] tmpDot = perturbed.get(g);
+                for (final int j : groups[g]) {
+                    for (int i = 0; i < n; ++i) {
+                        dFdY[i][j] = (sparsity == null || sparsity[i][j]) ?
+                                     (tmpDot[i] - yDot[i]) / hY[j] : 0.0;
+                    }
                 }
-                y[j] = savedYj;
             }
+
         }
 
     }
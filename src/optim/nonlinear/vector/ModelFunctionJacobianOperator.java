@@ -0,0 +1,27 @@
+package optim.nonlinear.vector;
+
+import optim.OptimizationData;
+import analysis.MultivariateLinearOperatorFunction;
+
+public class ModelFunctionJacobianOperator implements OptimizationData {
+    /** Jacobian of the function to be optimized, as a linear operator. */
+    private final MultivariateLinearOperatorFunction jacobian;
+
+    /**
+     * @param j Jacobian of the model function to be optimized. The returned
+     * operators must either be {@link linear.RealLinearOperator#isTransposable()
+     * transposable} or implement {@link linear.RealMatrix}.
+     */
+    public ModelFunctionJacobianOperator(MultivariateLinearOperatorFunction j) {
+        jacobian = j;
+    }
+
+    /**
+     * Gets the Jacobian of the model function to be optimized.
+     *
+     * @return the model function Jacobian operator.
+     */
+    public MultivariateLinearOperatorFunction getModelFunctionJacobianOperator() {
+        return jacobian;
+    }
+}
@@ -0,0 +1,24 @@
+package optim.nonlinear.vector;
+
+import optim.OptimizationData;
+
+public class StreamingModel implements OptimizationData {
+    /** Model emitting residuals and Jacobian rows in blocks. */
+    private final StreamingModelFunction model;
+
+    /**
+     * @param m Model emitting residuals and Jacobian rows in blocks.
+     */
+    public StreamingModel(StreamingModelFunction m) {
+        model = m;
+    }
+
+    /**
+     * Gets the streaming model.
+     *
+     * @return the streaming model.
+     */
+    public StreamingModelFunction getStreamingModelFunction() {
+        return model;
+    }
+}
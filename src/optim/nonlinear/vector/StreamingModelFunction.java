@@ -0,0 +1,36 @@
+package optim.nonlinear.vector;
+
+public interface StreamingModelFunction {
+
+    /**
+     * Evaluate the model residuals and Jacobian at the given point, block by block.
+     * <p>
+     * The implementation must call {@link BlockHandler#handleBlock(double[], double[][], double[])
+     * handler.handleBlock} once for each block of observations, so that the
+     * complete set of residuals never needs to be held in memory at once.
+     * The arrays passed to the handler may be reused by the implementation
+     * after the call returns.
+     * </p>
+     * @param point point at which the model must be evaluated
+     * @param handler handler receiving the blocks
+     * @exception IllegalArgumentException if points dimension is wrong
+     */
+    void value(double[] point, BlockHandler handler)
+        throws IllegalArgumentException;
+
+    /** Handler for blocks of residuals. */
+    interface BlockHandler {
+
+        /**
+         * Handle one block of observations.
+         * @param residuals residuals of the block, observed value minus model value
+         * @param jacobianRows rows of the model Jacobian for the block, one row
+         * per residual and one column per parameter
+         * @param weights weights of the residuals, finite and non-negative
+         * (may be null for unit weights)
+         */
+        void handleBlock(double[] residuals, double[][] jacobianRows, double[] weights);
+
+    }
+
+}
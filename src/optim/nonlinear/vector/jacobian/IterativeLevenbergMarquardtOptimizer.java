@@ -0,0 +1,522 @@
+package optim.nonlinear.vector.jacobian;
+
+import linear.ArrayRealVector;
+import linear.ConjugateGradient;
+import linear.DiagonalMatrix;
+import linear.RealLinearOperator;
+import linear.RealMatrix;
+import linear.RealVector;
+import math.util.FastMath;
+import optim.ConvergenceChecker;
+import optim.OptimizationData;
+import optim.PointVectorValuePair;
+import optim.nonlinear.vector.ModelFunctionJacobianOperator;
+import optim.nonlinear.vector.MultivariateVectorOptimizer;
+import random.RandomGenerator;
+import random.Well19937c;
+import analysis.MultivariateLinearOperatorFunction;
+import exception.ConvergenceException;
+import exception.DimensionMismatchException;
+import exception.MaxCountExceededException;
+import exception.MathUnsupportedOperationException;
+import exception.NotPositiveException;
+import exception.NullArgumentException;
+import exception.TooManyEvaluationsException;
+import exception.util.LocalizedFormats;
+
+public class IterativeLevenbergMarquardtOptimizer
+    extends MultivariateVectorOptimizer {
+    /** Default relative tolerance of the inner conjugate gradient solver. */
+    private static final double DEFAULT_CG_TOLERANCE = 1.0e-6;
+    /** Default maximal number of inner conjugate gradient iterations. */
+    private static final int DEFAULT_CG_MAX_ITERATIONS = 1000;
+    /** Number of random probes estimating the scaling diagonal of operator Jacobians. */
+    private static final int SCALE_PROBES = 16;
+    /** Seed of the probes generator, fixed so that runs are reproducible. */
+    private static final long SCALE_PROBES_SEED = 0x4c4d5363616c65L;
+    /** Jacobian of the model function, as a linear operator. */
+    private MultivariateLinearOperatorFunction jacobian;
+    /** Positive input variable used in determining the initial damping. */
+    private final double initialDampingFactor;
+    /** Desired relative error in the sum of squares. */
+    private final double costRelativeTolerance;
+    /**  Desired relative error in the approximate solution parameters. */
+    private final double parRelativeTolerance;
+    /** Desired max norm of the gradient of the sum of squares. */
+    private final double gradientTolerance;
+    /** Maximal number of conjugate gradient iterations per step. */
+    private final int maxInnerIterations;
+    /** Relative tolerance of the conjugate gradient solver. */
+    private final double innerTolerance;
+    /** Cost value (square root of the weighted sum of squared residuals). */
+    private double cost;
+
+    /**
+     * Build an optimizer for least squares problems with default values
+     * for all the tuning parameters.
+     * The default values for the algorithm settings are:
+     * <ul>
+     *  <li>Initial damping factor: 1e-3</li>
+     *  <li>Cost relative tolerance: 1e-10</li>
+     *  <li>Parameters relative tolerance: 1e-10</li>
+     *  <li>Gradient tolerance: 1e-10</li>
+     *  <li>Maximal inner iterations: 1000</li>
+     *  <li>Inner relative tolerance: 1e-6</li>
+     * </ul>
+     */
+    public IterativeLevenbergMarquardtOptimizer() {
+        this(1e-3, null, 1e-10, 1e-10, 1e-10,
+             DEFAULT_CG_MAX_ITERATIONS, DEFAULT_CG_TOLERANCE);
+    }
+
+    /**
+     * Constructor that allows the specification of a custom convergence
+     * checker, in addition to the standard ones.
+     *
+     * @param initialDampingFactor Positive input variable used in
+     * determining the initial damping parameter. The initial damping is
+     * set to the product of this factor and an estimate of the largest
+     * eigenvalue of D<sup>-1</sup>J<sup>T</sup>WJ, where D is the scaling
+     * diagonal. {@code 1e-3} is a generally recommended value for good
+     * initial guesses, {@code 1} for poor ones.
+     * @param checker Convergence checker (may be null).
+     * @param costRelativeTolerance Desired relative error in the sum of
+     * squares.
+     * @param parRelativeTolerance Desired relative error in the approximate
+     * solution parameters.
+     * @param gradientTolerance Desired max norm of the gradient
+     * J<sup>T</sup>Wr of the sum of squares.
+     * @param maxInnerIterations Maximal number of conjugate gradient
+     * iterations used to solve the damped normal equations at each step.
+     * @param innerTolerance Relative residual tolerance of the conjugate
+     * gradient solver.
+     */
+    public IterativeLevenbergMarquardtOptimizer(double initialDampingFactor,
+                                                ConvergenceChecker<PointVectorValuePair> checker,
+                                                double costRelativeTolerance,
+                                                double parRelativeTolerance,
+                                                double gradientTolerance,
+                                                int maxInnerIterations,
+                                                double innerTolerance) {
+        super(checker);
+        this.initialDampingFactor  = initialDampingFactor;
+        this.costRelativeTolerance = costRelativeTolerance;
+        this.parRelativeTolerance  = parRelativeTolerance;
+        this.gradientTolerance     = gradientTolerance;
+        this.maxInnerIterations    = maxInnerIterations;
+        this.innerTolerance        = innerTolerance;
+    }
+
+    /**
+     * Gets the root-mean-square (RMS) value.
+     *
+     * The RMS the root of the arithmetic mean of the square of all weighted
+     * residuals.
+     *
+     * @return the RMS value.
+     */
+    public double getRMS() {
+        return FastMath.sqrt(getChiSquare() / getTargetSize());
+    }
+
+    /**
+     * Get a Chi-Square-like value assuming the N residuals follow N
+     * distinct normal distributions centered on 0 and whose variances are
+     * the reciprocal of the weights.
+     * @return chi-square value
+     */
+    public double getChiSquare() {
+        return cost * cost;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param optData Optimization data. The following data will be looked for:
+     * <ul>
+     *  <li>{@link optim.MaxEval}</li>
+     *  <li>{@link optim.InitialGuess}</li>
+     *  <li>{@link optim.nonlinear.vector.Target}</li>
+     *  <li>{@link optim.nonlinear.vector.Weight}</li>
+     *  <li>{@link optim.nonlinear.vector.ModelFunction}</li>
+     *  <li>{@link ModelFunctionJacobianOperator}</li>
+     * </ul>
+     * The weight matrix must be diagonal, with non-negative entries.
+     * <p>
+     * The damped normal equations (J<sup>T</sup>WJ + &lambda;D) dX =
+     * J<sup>T</sup>Wr are solved by conjugate gradient, where the scaling
+     * diagonal D is the running maximum of the diagonal of J<sup>T</sup>WJ,
+     * as in {@link LevenbergMarquardtOptimizer}. It is computed exactly when
+     * the Jacobian is a {@link RealMatrix}, and estimated from random
+     * J<sup>T</sup> products otherwise.
+     * </p>
+     * @return {@inheritDoc}
+     * @throws TooManyEvaluationsException if the maximal number of
+     * evaluations is exceeded.
+     * @throws DimensionMismatchException if the initial guess, target, and weight
+     * arguments have inconsistent dimensions.
+     * @throws ConvergenceException if the damping grows so large that the
+     * steps become negligible before the parameters tolerance is met.
+     * @throws MathUnsupportedOperationException if the weight matrix has
+     * non-zero off-diagonal entries.
+     * @throws NotPositiveException if a weight is negative.
+     */
+    @Override
+    public PointVectorValuePair optimize(OptimizationData... optData)
+        throws TooManyEvaluationsException {
+        // Retrieve settings.
+        parseOptimizationData(optData);
+        // Set up base class and perform computation.
+        return super.optimize(optData);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected PointVectorValuePair doOptimize() {
+        if (jacobian == null) {
+            throw new NullArgumentException();
+        }
+
+        final double[] target = getTarget();
+        final int nR = target.length;
+        final double[] currentPoint = getStartPoint();
+        final int nC = currentPoint.length;
+
+        final double[] w = diagonalWeights(getWeight());
+        final double[] sqrtW = new double[nR];
+        for (int i = 0; i < nR; ++i) {
+            sqrtW[i] = FastMath.sqrt(w[i]);
+        }
+        final double[] scale = new double[nC];
+        final RandomGenerator probes = new Well19937c(SCALE_PROBES_SEED);
+
+        final ConjugateGradient solver =
+            new ConjugateGradient(maxInnerIterations, innerTolerance, false);
+        final ConvergenceChecker<PointVectorValuePair> checker = getConvergenceChecker();
+
+        // evaluate the function at the starting point
+        double[] currentObjective = computeObjectiveValue(currentPoint);
+        RealVector residuals = residuals(target, currentObjective);
+        double currentCost = weightedSquaredNorm(residuals, w);
+        PointVectorValuePair current = new PointVectorValuePair(currentPoint, currentObjective);
+
+        double lambda = Double.NaN;
+        double nu = 2;
+        int iter = 0;
+        boolean newJacobian = true;
+        RealLinearOperator j = null;
+        RealVector g = null;
+        while (true) {
+            ++iter;
+
+            if (newJacobian) {
+                j = jacobian.value(currentPoint);
+                if (!(j.isTransposable() || j instanceof RealMatrix)) {
+                    throw new MathUnsupportedOperationException();
+                }
+                if (j.getRowDimension() != nR) {
+                    throw new DimensionMismatchException(j.getRowDimension(), nR);
+                }
+                if (j.getColumnDimension() != nC) {
+                    throw new DimensionMismatchException(j.getColumnDimension(), nC);
+                }
+
+                // gradient of the half sum of squares: J^T W r
+                g = multiplyTranspose(j, weighted(residuals, w));
+                if (g.getLInfNorm() <= gradientTolerance) {
+                    cost = FastMath.sqrt(currentCost);
+                    return current;
+                }
+
+                updateScale(j, sqrtW, scale, probes, Double.isNaN(lambda));
+
+                if (Double.isNaN(lambda)) {
+                    // initial damping from the generalized Rayleigh quotient
+                    // of (J^T W J, D) along g
+                    final double gDg = weightedSquaredNorm(g, scale);
+                    final double jg2 = weightedSquaredNorm(j.operate(g), w);
+                    lambda = initialDampingFactor * ((jg2 > 0) ? jg2 / gDg : 1.0);
+                }
+                newJacobian = false;
+            }
+
+            // solve the damped normal equations (J^T W J + lambda D) dX = J^T W r
+            final RealLinearOperator normal = dampedNormalOperator(j, w, scale, lambda);
+            final RealVector dX = new ArrayRealVector(nC);
+            try {
+                solver.solveInPlace(normal, null, g, dX);
+            } catch (MaxCountExceededException e) {
+                // truncated inner solve, dX holds the last conjugate gradient iterate
+            }
+
+            final double[] trialPoint = currentPoint.clone();
+            for (int k = 0; k < nC; ++k) {
+                trialPoint[k] += dX.getEntry(k);
+            }
+            final double[] trialObjective = computeObjectiveValue(trialPoint);
+            final RealVector trialResiduals = residuals(target, trialObjective);
+            final double trialCost = weightedSquaredNorm(trialResiduals, w);
+
+            // ratio of actual to predicted reduction
+            final double predicted = dX.dotProduct(g) + lambda * weightedSquaredNorm(dX, scale);
+            final double rho = (predicted > 0) ? (currentCost - trialCost) / predicted : -1;
+            final double dXNorm = dX.getNorm();
+
+            if (rho > 0) {
+                // successful step
+                final PointVectorValuePair previous = current;
+                final double previousCost = currentCost;
+                System.arraycopy(trialPoint, 0, currentPoint, 0, nC);
+                currentObjective = trialObjective;
+                residuals        = trialResiduals;
+                currentCost      = trialCost;
+                current = new PointVectorValuePair(currentPoint, currentObjective);
+
+                final double t = 2 * rho - 1;
+                lambda *= FastMath.max(1.0 / 3.0, 1 - t * t * t);
+                nu = 2;
+                newJacobian = true;
+
+                // convergence tests
+                final double xNorm  = new ArrayRealVector(currentPoint, false).getNorm();
+                final boolean costConverged =
+                    FastMath.abs(previousCost - currentCost) <= costRelativeTolerance * previousCost;
+                final boolean parConverged =
+                    dXNorm <= parRelativeTolerance * (xNorm + parRelativeTolerance);
+                if (costConverged || parConverged ||
+                    (checker != null && checker.converged(iter, previous, current))) {
+                    cost = FastMath.sqrt(currentCost);
+                    return current;
+                }
+            } else {
+                // rejected step, near the optimum rounding errors may prevent
+                // any decrease, so the step size is checked here too
+                final double xNorm = new ArrayRealVector(currentPoint, false).getNorm();
+                if (dXNorm <= parRelativeTolerance * (xNorm + parRelativeTolerance)) {
+                    cost = FastMath.sqrt(currentCost);
+                    return current;
+                }
+
+                // increase damping and retry with the same Jacobian
+                lambda *= nu;
+                nu     *= 2;
+                // (2.2204e-16 is the machine epsilon for IEEE754)
+                if (Double.isInfinite(lambda) || dXNorm <= 2.2204e-16 * xNorm) {
+                    throw new ConvergenceException(LocalizedFormats.TOO_SMALL_PARAMETERS_RELATIVE_TOLERANCE,
+                                                   parRelativeTolerance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the diagonal of a weight matrix.
+     *
+     * @param weight Weight matrix.
+     * @return the diagonal weights.
+     * @throws MathUnsupportedOperationException if the matrix has non-zero
+     * off-diagonal entries.
+     * @throws NotPositiveException if a diagonal entry is negative.
+     */
+    private static double[] diagonalWeights(final RealMatrix weight) {
+        final int n = weight.getRowDimension();
+        if (!(weight instanceof DiagonalMatrix)) {
+            for (int i = 0; i < n; ++i) {
+                for (int k = 0; k < n; ++k) {
+                    if (k != i && weight.getEntry(i, k) != 0) {
+                        throw new MathUnsupportedOperationException();
+                    }
+                }
+            }
+        }
+        final double[] w = new double[n];
+        for (int i = 0; i < n; ++i) {
+            w[i] = weight.getEntry(i, i);
+            if (w[i] < 0) {
+                throw new NotPositiveException(w[i]);
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Updates the scaling diagonal with the diagonal of J<sup>T</sup>WJ.
+     * <p>
+     * Each entry is raised to the squared weighted norm of the
+     * corresponding Jacobian column, so that the scaling never decreases.
+     * For a {@link RealMatrix} Jacobian the norms are exact. For other
+     * operators they are estimated as the mean of
+     * (J<sup>T</sup>W<sup>1/2</sup>z)<sub>k</sub><sup>2</sup> over random
+     * vectors z with &plusmn;1 entries, an unbiased and non-negative
+     * estimate that only needs transposed products.
+     * </p>
+     *
+     * @param j Jacobian operator.
+     * @param sqrtW Square roots of the diagonal weights.
+     * @param scale Scaling diagonal, updated in place.
+     * @param probes Generator for the random probes.
+     * @param first if true, zero entries are replaced by 1.
+     */
+    private static void updateScale(final RealLinearOperator j, final double[] sqrtW,
+                                    final double[] scale, final RandomGenerator probes,
+                                    final boolean first) {
+        final int nR = j.getRowDimension();
+        final int nC = j.getColumnDimension();
+        final double[] norms = new double[nC];
+        if (j instanceof RealMatrix) {
+            final RealMatrix m = (RealMatrix) j;
+            for (int i = 0; i < nR; ++i) {
+                for (int k = 0; k < nC; ++k) {
+                    final double jik = sqrtW[i] * m.getEntry(i, k);
+                    norms[k] += jik * jik;
+                }
+            }
+        } else {
+            final double[] z = new double[nR];
+            for (int p = 0; p < SCALE_PROBES; ++p) {
+                for (int i = 0; i < nR; ++i) {
+                    z[i] = probes.nextBoolean() ? sqrtW[i] : -sqrtW[i];
+                }
+                final RealVector jz = multiplyTranspose(j, new ArrayRealVector(z, false));
+                for (int k = 0; k < nC; ++k) {
+                    final double jzk = jz.getEntry(k);
+                    norms[k] += jzk * jzk;
+                }
+            }
+            for (int k = 0; k < nC; ++k) {
+                norms[k] /= SCALE_PROBES;
+            }
+        }
+        for (int k = 0; k < nC; ++k) {
+            if (first && norms[k] == 0) {
+                scale[k] = 1;
+            } else {
+                scale[k] = FastMath.max(scale[k], norms[k]);
+            }
+        }
+    }
+
+    /**
+     * Computes the residuals {@code target - objective}.
+     *
+     * @param target Target values.
+     * @param objective Model values.
+     * @return the residuals.
+     * @throws DimensionMismatchException if the arrays lengths differ.
+     */
+    private RealVector residuals(final double[] target, final double[] objective) {
+        if (objective.length != target.length) {
+            throw new DimensionMismatchException(target.length, objective.length);
+        }
+        final double[] r = new double[target.length];
+        for (int i = 0; i < r.length; ++i) {
+            r[i] = target[i] - objective[i];
+        }
+        return new ArrayRealVector(r, false);
+    }
+
+    /**
+     * Multiplies a vector entry by entry by diagonal weights.
+     *
+     * @param v Vector.
+     * @param w Diagonal weights.
+     * @return the vector of w<sub>i</sub> v<sub>i</sub>.
+     */
+    private static RealVector weighted(final RealVector v, final double[] w) {
+        final double[] wv = new double[w.length];
+        for (int i = 0; i < w.length; ++i) {
+            wv[i] = w[i] * v.getEntry(i);
+        }
+        return new ArrayRealVector(wv, false);
+    }
+
+    /**
+     * Computes the weighted squared norm of a vector.
+     *
+     * @param v Vector.
+     * @param w Diagonal weights.
+     * @return &sum; w<sub>i</sub> v<sub>i</sub><sup>2</sup>.
+     */
+    private static double weightedSquaredNorm(final RealVector v, final double[] w) {
+        double sum = 0;
+        for (int i = 0; i < w.length; ++i) {
+            final double vi = v.getEntry(i);
+            sum += w[i] * vi * vi;
+        }
+        return sum;
+    }
+
+    /**
+     * Multiplies a vector by the transpose of an operator.
+     *
+     * @param j Operator, either transposable or a {@link RealMatrix}.
+     * @param x Vector to operate on.
+     * @return J<sup>T</sup>x.
+     */
+    private static RealVector multiplyTranspose(final RealLinearOperator j, final RealVector x) {
+        if (j.isTransposable()) {
+            return j.operateTranspose(x);
+        }
+        return ((RealMatrix) j).preMultiply(x);
+    }
+
+    /**
+     * Builds the matrix-free operator J<sup>T</sup>WJ + &lambda;D.
+     *
+     * @param j Jacobian operator.
+     * @param w Diagonal weights.
+     * @param scale Scaling diagonal D.
+     * @param lambda Damping parameter.
+     * @return the damped normal equations operator.
+     */
+    private static RealLinearOperator dampedNormalOperator(final RealLinearOperator j,
+                                                           final double[] w,
+                                                           final double[] scale,
+                                                           final double lambda) {
+        return new RealLinearOperator() {
+            /** {@inheritDoc} */
+            @Override
+            public int getRowDimension() {
+                return j.getColumnDimension();
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public int getColumnDimension() {
+                return j.getColumnDimension();
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public RealVector operate(final RealVector x) {
+                final RealVector jtwjx = multiplyTranspose(j, weighted(j.operate(x), w));
+                for (int k = 0; k < scale.length; ++k) {
+                    jtwjx.addToEntry(k, lambda * scale[k] * x.getEntry(k));
+                }
+                return jtwjx;
+            }
+        };
+    }
+
+    /**
+     * Scans the list of (required and optional) optimization data that
+     * characterize the problem.
+     *
+     * @param optData Optimization data. The following data will be looked for:
+     * <ul>
+     *  <li>{@link ModelFunctionJacobianOperator}</li>
+     * </ul>
+     */
+    private void parseOptimizationData(OptimizationData... optData) {
+        // The existing values (as set by the previous call) are reused if
+        // not provided in the argument list.
+        for (OptimizationData data : optData) {
+            if (data instanceof ModelFunctionJacobianOperator) {
+                jacobian = ((ModelFunctionJacobianOperator) data).getModelFunctionJacobianOperator();
+                // If more data must be parsed, this statement _must_ be
+                // changed to "continue".
+                break;
+            }
+        }
+    }
+}
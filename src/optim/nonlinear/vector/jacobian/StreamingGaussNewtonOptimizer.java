@@ -0,0 +1,370 @@
+package optim.nonlinear.vector.jacobian;
+
+import java.util.Arrays;
+
+import linear.ArrayRealVector;
+import linear.BlockRealMatrix;
+import linear.LUDecomposition;
+import linear.RealMatrix;
+import linear.SingularMatrixException;
+import math.util.FastMath;
+import optim.BaseMultivariateOptimizer;
+import optim.ConvergenceChecker;
+import optim.OptimizationData;
+import optim.PointValuePair;
+import optim.nonlinear.vector.StreamingModel;
+import optim.nonlinear.vector.StreamingModelFunction;
+import stat.regression.MillerUpdatingRegression;
+import exception.ConvergenceException;
+import exception.DimensionMismatchException;
+import exception.MathIllegalArgumentException;
+import exception.MathInternalError;
+import exception.NotPositiveException;
+import exception.NullArgumentException;
+import exception.TooManyEvaluationsException;
+import exception.util.LocalizedFormats;
+
+public class StreamingGaussNewtonOptimizer
+    extends BaseMultivariateOptimizer<PointValuePair> {
+    /** Indicator for using an updating QR decomposition. */
+    private final boolean useUpdatingQR;
+    /** Model emitting residuals and Jacobian rows in blocks. */
+    private StreamingModelFunction model;
+    /** Number of observations seen during the last pass. */
+    private long observations;
+
+    /**
+     * Simple constructor with default settings.
+     * The normal equations will be accumulated and solved using LU decomposition.
+     *
+     * @param checker Convergence checker.
+     */
+    public StreamingGaussNewtonOptimizer(ConvergenceChecker<PointValuePair> checker) {
+        this(false, checker);
+    }
+
+    /**
+     * @param useUpdatingQR If {@code true}, each linearized problem is solved
+     * with a Givens-rotations updating QR decomposition (as in {@link
+     * MillerUpdatingRegression}), which avoids squaring the condition number
+     * of the Jacobian. Otherwise J<sup>T</sup>WJ and J<sup>T</sup>Wr are
+     * accumulated and solved using LU decomposition, which is faster.
+     * @param checker Convergence checker. The value checked is the weighted
+     * sum of squared residuals.
+     */
+    public StreamingGaussNewtonOptimizer(final boolean useUpdatingQR,
+                                         ConvergenceChecker<PointValuePair> checker) {
+        super(checker);
+        this.useUpdatingQR = useUpdatingQR;
+    }
+
+    /**
+     * Gets the number of observations seen during the last pass over the data.
+     *
+     * @return the number of residuals.
+     */
+    public long getObservations() {
+        return observations;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param optData Optimization data. The following data will be looked for:
+     * <ul>
+     *  <li>{@link optim.MaxEval}</li>
+     *  <li>{@link optim.InitialGuess}</li>
+     *  <li>{@link StreamingModel}</li>
+     * </ul>
+     * <p>
+     * Both solving modes need at least as many observations as parameters.
+     * With fewer observations the linearized problem is singular and a
+     * {@link ConvergenceException} is thrown, whatever the mode.
+     * </p>
+     * @return the point/value pair, where the value is the weighted sum of
+     * squared residuals at the point.
+     * @throws TooManyEvaluationsException if the maximal number of
+     * evaluations (passes over the data) is exceeded.
+     * @throws ConvergenceException if a linearized problem is singular, in
+     * particular if there are fewer observations than parameters.
+     * @throws NotPositiveException if a weight is negative.
+     * @throws MathIllegalArgumentException if a weight is not a finite number.
+     */
+    @Override
+    public PointValuePair optimize(OptimizationData... optData)
+        throws TooManyEvaluationsException {
+        // Retrieve settings.
+        parseOptimizationData(optData);
+        // Set up base class and perform computation.
+        return super.optimize(optData);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected PointValuePair doOptimize() {
+        final ConvergenceChecker<PointValuePair> checker
+            = getConvergenceChecker();
+
+        // Computation will be useless without a checker (see "for-loop").
+        if (checker == null || model == null) {
+            throw new NullArgumentException();
+        }
+
+        final double[] currentPoint = getStartPoint();
+        final int nC = currentPoint.length;
+
+        // iterate until convergence is reached
+        PointValuePair current = null;
+        int iter = 0;
+        for (boolean converged = false; !converged;) {
+            ++iter;
+
+            // accumulate the linear problem, one block at a time
+            incrementEvaluationCount();
+            final Accumulator accumulator = useUpdatingQR ?
+                                            new QRAccumulator(nC) :
+                                            new NormalEquationsAccumulator(nC);
+            model.value(currentPoint.clone(), accumulator);
+            observations = accumulator.getObservations();
+
+            PointValuePair previous = current;
+            current = new PointValuePair(currentPoint, accumulator.getCost());
+
+            // solve the linearized least squares problem
+            if (observations < nC) {
+                throw new ConvergenceException(LocalizedFormats.UNABLE_TO_SOLVE_SINGULAR_PROBLEM);
+            }
+            final double[] dX = accumulator.solve();
+            for (int i = 0; i < nC; ++i) {
+                currentPoint[i] += dX[i];
+            }
+
+            // Check convergence.
+            if (previous != null) {
+                converged = checker.converged(iter, previous, current);
+                if (converged) {
+                    return current;
+                }
+            }
+        }
+        // Must never happen.
+        throw new MathInternalError();
+    }
+
+    /**
+     * Scans the list of (required and optional) optimization data that
+     * characterize the problem.
+     *
+     * @param optData Optimization data. The following data will be looked for:
+     * <ul>
+     *  <li>{@link StreamingModel}</li>
+     * </ul>
+     */
+    private void parseOptimizationData(OptimizationData... optData) {
+        // The existing values (as set by the previous call) are reused if
+        // not provided in the argument list.
+        for (OptimizationData data : optData) {
+            if (data instanceof StreamingModel) {
+                model = ((StreamingModel) data).getStreamingModelFunction();
+                // If more data must be parsed, this statement _must_ be
+                // changed to "continue".
+                break;
+            }
+        }
+    }
+
+    /** Base class for the accumulation of the linearized problem. */
+    private abstract static class Accumulator implements StreamingModelFunction.BlockHandler {
+
+        /** Number of parameters. */
+        protected final int nC;
+
+        /** Weighted sum of squared residuals. */
+        private double cost;
+
+        /** Number of observations. */
+        private long n;
+
+        /**
+         * @param nC Number of parameters.
+         */
+        protected Accumulator(final int nC) {
+            this.nC = nC;
+        }
+
+        /** {@inheritDoc} */
+        public void handleBlock(final double[] residuals, final double[][] jacobianRows,
+                                final double[] weights) {
+            if (jacobianRows.length != residuals.length) {
+                throw new DimensionMismatchException(jacobianRows.length, residuals.length);
+            }
+            if (weights != null) {
+                if (weights.length != residuals.length) {
+                    throw new DimensionMismatchException(weights.length, residuals.length);
+                }
+                // negative weights have no square root in the QR mode, and
+                // would make the normal equations indefinite in the LU mode
+                for (int i = 0; i < weights.length; ++i) {
+                    if (Double.isNaN(weights[i]) || Double.isInfinite(weights[i])) {
+                        throw new MathIllegalArgumentException(LocalizedFormats.NON_REAL_FINITE_WEIGHT,
+                                                               i, weights[i]);
+                    }
+                    if (weights[i] < 0) {
+                        throw new NotPositiveException(weights[i]);
+                    }
+                }
+            }
+            for (int i = 0; i < residuals.length; ++i) {
+                final double[] grad = jacobianRows[i];
+                if (grad.length != nC) {
+                    throw new DimensionMismatchException(grad.length, nC);
+                }
+                final double weight   = (weights == null) ? 1.0 : weights[i];
+                final double residual = residuals[i];
+                cost += weight * residual * residual;
+                addRow(grad, weight, residual);
+            }
+            n += residuals.length;
+        }
+
+        /**
+         * Add one row to the linearized problem.
+         * @param grad Jacobian row.
+         * @param weight Weight of the residual.
+         * @param residual Residual.
+         */
+        protected abstract void addRow(double[] grad, double weight, double residual);
+
+        /**
+         * Solve the linearized problem.
+         * @return the parameters increment.
+         * @throws ConvergenceException if the problem is singular.
+         */
+        public abstract double[] solve() throws ConvergenceException;
+
+        /**
+         * Get the weighted sum of squared residuals.
+         * @return the cost.
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * Get the number of observations.
+         * @return the number of residuals handled.
+         */
+        public long getObservations() {
+            return n;
+        }
+
+    }
+
+    /** Accumulator for the normal equations J<sup>T</sup>WJ dX = J<sup>T</sup>Wr. */
+    private static class NormalEquationsAccumulator extends Accumulator {
+
+        /** Right hand side J<sup>T</sup>Wr. */
+        private final double[] b;
+
+        /** Upper triangle of J<sup>T</sup>WJ. */
+        private final double[][] a;
+
+        /**
+         * @param nC Number of parameters.
+         */
+        public NormalEquationsAccumulator(final int nC) {
+            super(nC);
+            b = new double[nC];
+            a = new double[nC][nC];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void addRow(final double[] grad, final double weight, final double residual) {
+
+            // compute the normal equation
+            final double wr = weight * residual;
+            for (int j = 0; j < nC; ++j) {
+                b[j] += wr * grad[j];
+            }
+
+            // build the contribution matrix for the measurement, upper triangle only
+            for (int k = 0; k < nC; ++k) {
+                final double[] ak = a[k];
+                final double wgk = weight * grad[k];
+                for (int l = k; l < nC; ++l) {
+                    ak[l] += wgk * grad[l];
+                }
+            }
+
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double[] solve() throws ConvergenceException {
+            for (int k = 0; k < nC; ++k) {
+                for (int l = 0; l < k; ++l) {
+                    a[k][l] = a[l][k];
+                }
+            }
+            try {
+                final RealMatrix mA = new BlockRealMatrix(a);
+                return new LUDecomposition(mA).getSolver().solve(new ArrayRealVector(b, false)).toArray();
+            } catch (SingularMatrixException e) {
+                throw new ConvergenceException(LocalizedFormats.UNABLE_TO_SOLVE_SINGULAR_PROBLEM);
+            }
+        }
+
+    }
+
+    /** Accumulator for an updating QR decomposition of W<sup>1/2</sup>J. */
+    private static class QRAccumulator extends Accumulator {
+
+        /** Updating regression holding the triangular factor. */
+        private final MillerUpdatingRegression regression;
+
+        /** Scratch row. */
+        private final double[] row;
+
+        /**
+         * @param nC Number of parameters.
+         */
+        public QRAccumulator(final int nC) {
+            super(nC);
+            regression = new MillerUpdatingRegression(nC, false);
+            row        = new double[nC];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void addRow(final double[] grad, final double weight, final double residual) {
+            final double sqrtW = FastMath.sqrt(weight);
+            for (int j = 0; j < nC; ++j) {
+                row[j] = sqrtW * grad[j];
+            }
+            regression.addObservation(row, sqrtW * residual);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double[] solve() throws ConvergenceException {
+            if (regression.getN() <= nC) {
+                // regress() needs more observations than parameters for its
+                // variance estimates, which are not used here; a zero row
+                // leaves the triangular factor unchanged, so square problems
+                // are solved as in the normal equations mode
+                Arrays.fill(row, 0.0);
+                regression.addObservation(row, 0.0);
+            }
+            final double[] dX = regression.regress().getParameterEstimates();
+            for (final double d : dX) {
+                if (Double.isNaN(d)) {
+                    throw new ConvergenceException(LocalizedFormats.UNABLE_TO_SOLVE_SINGULAR_PROBLEM);
+                }
+            }
+            return dX;
+        }
+
+    }
+
+}
@@ -0,0 +1,156 @@
+package random;
+
+import math.util.FastMath;
+import math.util.Precision;
+import exception.NotStrictlyPositiveException;
+import exception.util.LocalizedFormats;
+
+public class HaltonSequenceGenerator implements RandomVectorGenerator {
+
+    /** Space dimension. */
+    private final int dimension;
+
+    /** Bases of the dimensions (the first prime numbers). */
+    private final int[] base;
+
+    /**
+     * Digit permutations, indexed by dimension, then by digit position
+     * and digit (null if not scrambled).
+     */
+    private final int[][][] permutations;
+
+    /** Index of the next point. */
+    private int count;
+
+    /**
+     * Construct a generator of the Halton sequence.
+     *
+     * @param dimension Space dimension.
+     * @throws NotStrictlyPositiveException if the dimension is not positive.
+     */
+    public HaltonSequenceGenerator(final int dimension) throws NotStrictlyPositiveException {
+        this(dimension, null);
+    }
+
+    /**
+     * Construct a generator of a scrambled Halton sequence.
+     * <p>
+     * The scrambling applies to each digit position of each dimension an
+     * independent random permutation of the digits, including the zero
+     * digits beyond the last significant one, down to the double precision.
+     * This breaks the correlations between the dimensions with large bases,
+     * and makes each point uniformly distributed in the unit hypercube, so
+     * independent scramblings give independent unbiased estimates of an
+     * integral, from which an error can be estimated.
+     * </p>
+     *
+     * @param dimension Space dimension.
+     * @param rng Generator for the scrambling (may be null for the
+     * original sequence).
+     * @throws NotStrictlyPositiveException if the dimension is not positive.
+     */
+    public HaltonSequenceGenerator(final int dimension, final RandomGenerator rng)
+        throws NotStrictlyPositiveException {
+        if (dimension < 1) {
+            throw new NotStrictlyPositiveException(LocalizedFormats.DIMENSION, dimension);
+        }
+        this.dimension = dimension;
+        this.base      = new int[dimension];
+        this.count     = 0;
+
+        int candidate = 2;
+        for (int d = 0; d < dimension; ++d) {
+            while (!isPrime(candidate)) {
+                ++candidate;
+            }
+            base[d] = candidate++;
+        }
+
+        if (rng == null) {
+            permutations = null;
+        } else {
+            permutations = new int[dimension][][];
+            for (int d = 0; d < dimension; ++d) {
+                final int b = base[d];
+                // number of digits needed to reach the double precision
+                final int digits = (int) FastMath.ceil(53 * FastMath.log(2) / FastMath.log(b));
+                permutations[d] = new int[digits][b];
+                for (int j = 0; j < digits; ++j) {
+                    final int[] p = permutations[d][j];
+                    for (int i = 0; i < b; ++i) {
+                        p[i] = i;
+                    }
+                    // Fisher-Yates shuffle
+                    for (int i = b - 1; i > 0; --i) {
+                        final int k = rng.nextInt(i + 1);
+                        final int tmp = p[i];
+                        p[i] = p[k];
+                        p[k] = tmp;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generate the next point of the sequence.
+     * <p>
+     * The coordinate of dimension {@code d} is the radical inverse of the
+     * point index in base {@code base[d]}. The first point is the origin
+     * (or its scrambled image).
+     * </p>
+     *
+     * @return a new array holding the coordinates of the point, in [0, 1).
+     */
+    public double[] nextVector() {
+        final double[] v = new double[dimension];
+        for (int d = 0; d < dimension; ++d) {
+            final int b = base[d];
+            int index = count;
+            double factor = 1.0 / b;
+            double sum = 0;
+            if (permutations == null) {
+                while (index > 0) {
+                    sum += (index % b) * factor;
+                    index /= b;
+                    factor /= b;
+                }
+            } else {
+                for (final int[] p : permutations[d]) {
+                    sum += p[index % b] * factor;
+                    index /= b;
+                    factor /= b;
+                }
+            }
+            // the sum of the scrambled digits may round up to 1
+            v[d] = FastMath.min(sum, 1 - Precision.EPSILON);
+        }
+        ++count;
+        return v;
+    }
+
+    /**
+     * Get the index of the next point.
+     *
+     * @return the number of points generated so far.
+     */
+    public int getNextIndex() {
+        return count;
+    }
+
+    /**
+     * Check whether a number is prime.
+     *
+     * @param n Number to check, at least 2.
+     * @return true if {@code n} is prime.
+     */
+    private static boolean isPrime(final int n) {
+        for (int k = 2; k * k <= n; ++k) {
+            if (n % k == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,166 @@
+package random;
+
+import math.util.FastMath;
+import exception.OutOfRangeException;
+import exception.util.LocalizedFormats;
+
+public class SobolSequenceGenerator implements RandomVectorGenerator {
+
+    /** Number of bits of the generated coordinates. */
+    private static final int BITS = 52;
+
+    /** Scale of the integer coordinates. */
+    private static final double SCALE = FastMath.pow(2, BITS);
+
+    /**
+     * Degree {@code s} and coefficients {@code a} of the primitive
+     * polynomials, followed by the initial direction numbers
+     * {@code m[1..s]}, for dimensions 2 to 21 (S. Joe and F. Y. Kuo,
+     * "Constructing Sobol sequences with better two-dimensional
+     * projections", SIAM J. Sci. Comput. 30, 2008).
+     */
+    private static final int[][] DIRECTION_DATA = {
+        { 1,  0, 1 },
+        { 2,  1, 1, 3 },
+        { 3,  1, 1, 3, 1 },
+        { 3,  2, 1, 1, 1 },
+        { 4,  1, 1, 1, 3, 3 },
+        { 4,  4, 1, 3, 5, 13 },
+        { 5,  2, 1, 1, 5, 5, 17 },
+        { 5,  4, 1, 1, 5, 5, 5 },
+        { 5,  7, 1, 1, 7, 11, 19 },
+        { 5, 11, 1, 1, 5, 1, 1 },
+        { 5, 13, 1, 1, 1, 3, 11 },
+        { 5, 14, 1, 3, 5, 5, 31 },
+        { 6,  1, 1, 3, 3, 9, 7, 49 },
+        { 6, 13, 1, 1, 1, 15, 21, 21 },
+        { 6, 16, 1, 3, 1, 13, 27, 49 },
+        { 6, 19, 1, 1, 1, 15, 7, 5 },
+        { 6, 22, 1, 3, 1, 15, 13, 25 },
+        { 6, 25, 1, 1, 5, 5, 19, 61 },
+        { 7,  1, 1, 3, 7, 11, 23, 15, 103 },
+        { 7,  4, 1, 3, 7, 13, 13, 15, 69 }
+    };
+
+    /** Maximal supported dimension. */
+    public static final int MAX_DIMENSION = DIRECTION_DATA.length + 1;
+
+    /** Space dimension. */
+    private final int dimension;
+
+    /** Direction numbers, indexed by dimension and bit (starting at 1). */
+    private final long[][] direction;
+
+    /** Integer coordinates of the last generated point. */
+    private final long[] x;
+
+    /** Digital shift of each dimension (all zero if not scrambled). */
+    private final long[] shift;
+
+    /** Index of the next point. */
+    private int count;
+
+    /**
+     * Construct a generator of the Sobol sequence.
+     *
+     * @param dimension Space dimension.
+     * @throws OutOfRangeException if the dimension is not in the
+     * range [1, {@link #MAX_DIMENSION}].
+     */
+    public SobolSequenceGenerator(final int dimension) throws OutOfRangeException {
+        this(dimension, null);
+    }
+
+    /**
+     * Construct a generator of a scrambled Sobol sequence.
+     * <p>
+     * The scrambling is a random digital shift: all the coordinates of a
+     * dimension are combined by exclusive or with the same random bits.
+     * Each point of the scrambled sequence is uniformly distributed in
+     * the unit hypercube, while the sequence keeps its low discrepancy, so
+     * independent scramblings give independent unbiased estimates of an
+     * integral, from which an error can be estimated.
+     * </p>
+     *
+     * @param dimension Space dimension.
+     * @param rng Generator for the scrambling (may be null for the
+     * original sequence).
+     * @throws OutOfRangeException if the dimension is not in the
+     * range [1, {@link #MAX_DIMENSION}].
+     */
+    public SobolSequenceGenerator(final int dimension, final RandomGenerator rng)
+        throws OutOfRangeException {
+        if (dimension < 1 || dimension > MAX_DIMENSION) {
+            throw new OutOfRangeException(LocalizedFormats.DIMENSION, dimension, 1, MAX_DIMENSION);
+        }
+        this.dimension = dimension;
+        this.direction = new long[dimension][BITS + 1];
+        this.x         = new long[dimension];
+        this.shift     = new long[dimension];
+        this.count     = 0;
+
+        // the first dimension is the van der Corput sequence in base 2
+        for (int k = 1; k <= BITS; ++k) {
+            direction[0][k] = 1l << (BITS - k);
+        }
+
+        for (int d = 1; d < dimension; ++d) {
+            final int[] data = DIRECTION_DATA[d - 1];
+            final int s = data[0];
+            final int a = data[1];
+            final long[] v = direction[d];
+            for (int k = 1; k <= s; ++k) {
+                v[k] = ((long) data[k + 1]) << (BITS - k);
+            }
+            for (int k = s + 1; k <= BITS; ++k) {
+                v[k] = v[k - s] ^ (v[k - s] >> s);
+                for (int j = 1; j < s; ++j) {
+                    if (((a >> (s - 1 - j)) & 0x1) != 0) {
+                        v[k] ^= v[k - j];
+                    }
+                }
+            }
+        }
+
+        if (rng != null) {
+            for (int d = 0; d < dimension; ++d) {
+                shift[d] = rng.nextLong() & ((1l << BITS) - 1);
+            }
+        }
+    }
+
+    /**
+     * Generate the next point of the sequence.
+     * <p>
+     * Points are generated in Gray code order (Antonov and Saleev), which
+     * changes a single direction number per point and dimension. The first
+     * point is the origin (or its digital shift).
+     * </p>
+     *
+     * @return a new array holding the coordinates of the point, in [0, 1).
+     */
+    public double[] nextVector() {
+        final double[] v = new double[dimension];
+        if (count > 0) {
+            final int c = 1 + Integer.numberOfTrailingZeros(count);
+            for (int d = 0; d < dimension; ++d) {
+                x[d] ^= direction[d][c];
+            }
+        }
+        for (int d = 0; d < dimension; ++d) {
+            v[d] = (x[d] ^ shift[d]) / SCALE;
+        }
+        ++count;
+        return v;
+    }
+
+    /**
+     * Get the index of the next point.
+     *
+     * @return the number of points generated so far.
+     */
+    public int getNextIndex() {
+        return count;
+    }
+
+}
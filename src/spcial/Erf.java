@@ -16,6 +16,9 @@ public class Erf {
      */
     private static final double X_CRIT = 0.4769362762044697;
 
+    /** Regularized gamma functions for a = 1/2, used to compute erf and erfc. */
+    private static final RegularizedGamma HALF_GAMMA = new RegularizedGamma(0.5, 1.0e-15, 10000);
+
     /**
      * Default constructor.  Prohibit instantiation.
      */
@@ -45,7 +48,7 @@ public class Erf {
         if (FastMath.abs(x) > 40) {
             return x > 0 ? 1 : -1;
         }
-        final double ret = Gamma.regularizedGammaP(0.5, x * x, 1.0e-15, 10000);
+        final double ret = HALF_GAMMA.regularizedGammaP(x * x);
         return x < 0 ? -ret : ret;
     }
 
@@ -76,10 +79,52 @@ public class Erf {
         if (FastMath.abs(x) > 40) {
             return x > 0 ? 0 : 2;
         }
-        final double ret = Gamma.regularizedGammaQ(0.5, x * x, 1.0e-15, 10000);
+        final double ret = HALF_GAMMA.regularizedGammaQ(x * x);
         return x < 0 ? 2 - ret : ret;
     }
 
+    /**
+     * Computes the error function for an array of values.
+     * <p>
+     * {@code x} and {@code result} may be the same array.
+     * </p>
+     *
+     * @param x the values
+     * @param result array where to store erf(x)
+     * @param off index of the first element to process in both arrays
+     * @param len number of elements to process
+     * @throws exception.MaxCountExceededException
+     * if the algorithm fails to converge.
+     * @see #erf(double)
+     */
+    public static void erf(final double[] x, final double[] result,
+                           final int off, final int len) {
+        for (int i = off; i < off + len; ++i) {
+            result[i] = erf(x[i]);
+        }
+    }
+
+    /**
+     * Computes the complementary error function for an array of values.
+     * <p>
+     * {@code x} and {@code result} may be the same array.
+     * </p>
+     *
+     * @param x the values
+     * @param result array where to store erfc(x)
+     * @param off index of the first element to process in both arrays
+     * @param len number of elements to process
+     * @throws exception.MaxCountExceededException
+     * if the algorithm fails to converge.
+     * @see #erfc(double)
+     */
+    public static void erfc(final double[] x, final double[] result,
+                            final int off, final int len) {
+        for (int i = off; i < off + len; ++i) {
+            result[i] = erfc(x[i]);
+        }
+    }
+
     /**
      * Returns the difference between erf(x1) and erf(x2).
      *
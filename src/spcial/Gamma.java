@@ -1,6 +1,5 @@
 package spcial;
 
-import math.util.ContinuedFraction;
 import math.util.FastMath;
 import exception.MaxCountExceededException;
 import exception.NumberIsTooLargeException;
@@ -267,41 +266,7 @@ public class Gamma {
                                            double x,
                                            double epsilon,
                                            int maxIterations) {
-        double ret;
-
-        if (Double.isNaN(a) || Double.isNaN(x) || (a <= 0.0) || (x < 0.0)) {
-            ret = Double.NaN;
-        } else if (x == 0.0) {
-            ret = 0.0;
-        } else if (x >= a + 1) {
-            // use regularizedGammaQ because it should converge faster in this
-            // case.
-            ret = 1.0 - regularizedGammaQ(a, x, epsilon, maxIterations);
-        } else {
-            // calculate series
-            double n = 0.0; // current element index
-            double an = 1.0 / a; // n-th element in the series
-            double sum = an; // partial sum
-            while (FastMath.abs(an/sum) > epsilon &&
-                   n < maxIterations &&
-                   sum < Double.POSITIVE_INFINITY) {
-                // compute next element in the series
-                n = n + 1.0;
-                an = an * (x / (a + n));
-
-                // update partial sum
-                sum = sum + an;
-            }
-            if (n >= maxIterations) {
-                throw new MaxCountExceededException(maxIterations);
-            } else if (Double.isInfinite(sum)) {
-                ret = 1.0;
-            } else {
-                ret = FastMath.exp(-x + (a * FastMath.log(x)) - logGamma(a)) * sum;
-            }
-        }
-
-        return ret;
+        return RegularizedGamma.regularizedGammaP(a, x, epsilon, maxIterations);
     }
 
     /**
@@ -345,36 +310,7 @@ public class Gamma {
                                            double x,
                                            double epsilon,
                                            int maxIterations) {
-        double ret;
-
-        if (Double.isNaN(a) || Double.isNaN(x) || (a <= 0.0) || (x < 0.0)) {
-            ret = Double.NaN;
-        } else if (x == 0.0) {
-            ret = 1.0;
-        } else if (x < a + 1.0) {
-            // use regularizedGammaP because it should converge faster in this
-            // case.
-            ret = 1.0 - regularizedGammaP(a, x, epsilon, maxIterations);
-        } else {
-            // create continued fraction
-            ContinuedFraction cf = new ContinuedFraction() {
-
-                @Override
-                protected double getA(int n, double x) {
-                    return ((2.0 * n) + 1.0) - a + x;
-                }
-
-                @Override
-                protected double getB(int n, double x) {
-                    return n * (a - n);
-                }
-            };
-
-            ret = 1.0 / cf.evaluate(x, epsilon, maxIterations);
-            ret = FastMath.exp(-x + (a * FastMath.log(x)) - logGamma(a)) * ret;
-        }
-
-        return ret;
+        return RegularizedGamma.regularizedGammaQ(a, x, epsilon, maxIterations);
     }
 
 
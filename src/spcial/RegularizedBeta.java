@@ -0,0 +1,238 @@
+package spcial;
+
+import analysis.UnivariateFunction;
+import math.util.ContinuedFraction;
+import math.util.FastMath;
+
+public class RegularizedBeta implements UnivariateFunction {
+
+    /** Maximum allowed numerical error. */
+    private static final double DEFAULT_EPSILON = 1E-14;
+
+    /** Parameter {@code a}. */
+    private final double a;
+
+    /** Parameter {@code b}. */
+    private final double b;
+
+    /** Value of {@code log(a)}. */
+    private final double logA;
+
+    /** Value of {@code log(b)}. */
+    private final double logB;
+
+    /** Value of {@code log(Beta(a, b))}, which is also {@code log(Beta(b, a))}. */
+    private final double logBeta;
+
+    /** Convergence criterion of the continued fractions. */
+    private final double epsilon;
+
+    /** Maximum number of iterations of the continued fractions. */
+    private final int maxIterations;
+
+    /** Continued fraction used to compute I(x, a, b). */
+    private final ContinuedFraction fraction;
+
+    /** Continued fraction used to compute I(1 - x, b, a). */
+    private final ContinuedFraction swappedFraction;
+
+    /**
+     * Create an evaluator for fixed parameters {@code a} and {@code b},
+     * with default convergence settings.
+     *
+     * @param a Parameter {@code a}.
+     * @param b Parameter {@code b}.
+     */
+    public RegularizedBeta(final double a, final double b) {
+        this(a, b, DEFAULT_EPSILON, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create an evaluator for fixed parameters {@code a} and {@code b}.
+     * <p>
+     * The constants depending only on {@code a} and {@code b}, like
+     * {@code log(Beta(a, b))}, are computed once here, and the continued
+     * fractions are shared by all evaluations, so repeated calls with the
+     * same parameters only pay for the continued fraction itself. Instances
+     * are immutable and can be shared between threads.
+     * </p>
+     *
+     * @param a Parameter {@code a}.
+     * @param b Parameter {@code b}.
+     * @param epsilon When the absolute value of the nth item in the
+     * series is less than epsilon the approximation ceases to calculate
+     * further elements in the series.
+     * @param maxIterations Maximum number of "iterations" to complete.
+     */
+    public RegularizedBeta(final double a, final double b,
+                           final double epsilon, final int maxIterations) {
+        this.a               = a;
+        this.b               = b;
+        this.logA            = FastMath.log(a);
+        this.logB            = FastMath.log(b);
+        this.logBeta         = Beta.logBeta(a, b);
+        this.epsilon         = epsilon;
+        this.maxIterations   = maxIterations;
+        this.fraction        = createFraction(a, b);
+        this.swappedFraction = createFraction(b, a);
+    }
+
+    /**
+     * Get the parameter {@code a}.
+     *
+     * @return the parameter {@code a}.
+     */
+    public double getA() {
+        return a;
+    }
+
+    /**
+     * Get the parameter {@code b}.
+     *
+     * @return the parameter {@code b}.
+     */
+    public double getB() {
+        return b;
+    }
+
+    /**
+     * Returns the regularized beta function I(x, a, b).
+     *
+     * @param x Value.
+     * @return the regularized beta function I(x, a, b).
+     * @throws exception.MaxCountExceededException
+     * if the algorithm fails to converge.
+     * @see Beta#regularizedBeta(double, double, double, double, int)
+     */
+    public double value(final double x) {
+        return value(x, a, b, epsilon, maxIterations, this, false);
+    }
+
+    /**
+     * Computes the regularized beta function I(x, a, b) for an array of values.
+     * <p>
+     * {@code x} and {@code result} may be the same array.
+     * </p>
+     *
+     * @param x Values.
+     * @param result Array where to store I(x, a, b).
+     * @param off Index of the first element to process in both arrays.
+     * @param len Number of elements to process.
+     * @throws exception.MaxCountExceededException
+     * if the algorithm fails to converge.
+     */
+    public void value(final double[] x, final double[] result,
+                      final int off, final int len) {
+        for (int i = off; i < off + len; ++i) {
+            result[i] = value(x[i]);
+        }
+    }
+
+    /**
+     * Returns the regularized beta function I(x, a, b) for a single evaluation.
+     * <p>
+     * Unlike an evaluator instance, this computes {@code log(Beta(a, b))} and
+     * builds the continued fraction only if the arguments are valid, and only
+     * for the orientation actually used.
+     * </p>
+     *
+     * @param x Value.
+     * @param a Parameter {@code a}.
+     * @param b Parameter {@code b}.
+     * @param epsilon When the absolute value of the nth item in the
+     * series is less than epsilon the approximation ceases to calculate
+     * further elements in the series.
+     * @param maxIterations Maximum number of "iterations" to complete.
+     * @return the regularized beta function I(x, a, b).
+     * @throws exception.MaxCountExceededException
+     * if the algorithm fails to converge.
+     */
+    static double value(final double x, final double a, final double b,
+                        final double epsilon, final int maxIterations) {
+        return value(x, a, b, epsilon, maxIterations, null, false);
+    }
+
+    /**
+     * Returns the regularized beta function I(x, p, q).
+     *
+     * @param x Value.
+     * @param p First parameter.
+     * @param q Second parameter.
+     * @param epsilon Convergence criterion.
+     * @param maxIterations Maximum number of iterations.
+     * @param bound evaluator holding the constants of {@code p} and
+     * {@code q}, or null to compute them when needed
+     * @param swapped if true, {@code p} and {@code q} are the parameters
+     * {@code b} and {@code a} of {@code bound}.
+     * @return the regularized beta function.
+     */
+    private static double value(final double x, final double p, final double q,
+                                final double epsilon, final int maxIterations,
+                                final RegularizedBeta bound, final boolean swapped) {
+        double ret;
+
+        if (Double.isNaN(x) ||
+            Double.isNaN(p) ||
+            Double.isNaN(q) ||
+            x < 0 ||
+            x > 1 ||
+            p <= 0.0 ||
+            q <= 0.0) {
+            ret = Double.NaN;
+        } else if (x > (p + 1.0) / (p + q + 2.0)) {
+            ret = 1.0 - value(1.0 - x, q, p, epsilon, maxIterations, bound, !swapped);
+        } else {
+            final double logP;
+            final double logBeta;
+            final ContinuedFraction cf;
+            if (bound == null) {
+                logP    = FastMath.log(p);
+                logBeta = Beta.logBeta(p, q);
+                cf      = createFraction(p, q);
+            } else {
+                logP    = swapped ? bound.logB : bound.logA;
+                logBeta = bound.logBeta;
+                cf      = swapped ? bound.swappedFraction : bound.fraction;
+            }
+            ret = FastMath.exp((p * FastMath.log(x)) + (q * FastMath.log(1.0 - x)) -
+                logP - logBeta) *
+                1.0 / cf.evaluate(x, epsilon, maxIterations);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Create the continued fraction of the regularized beta function.
+     *
+     * @param a Parameter {@code a}.
+     * @param b Parameter {@code b}.
+     * @return continued fraction for I(x, a, b).
+     */
+    private static ContinuedFraction createFraction(final double a, final double b) {
+        return new ContinuedFraction() {
+
+            @Override
+            protected double getB(int n, double x) {
+                double ret;
+                double m;
+                if (n % 2 == 0) { // even
+                    m = n / 2.0;
+                    ret = (m * (b - m) * x) /
+                        ((a + (2 * m) - 1) * (a + (2 * m)));
+                } else {
+                    m = (n - 1.0) / 2.0;
+                    ret = -((a + m) * (a + b + m) * x) /
+                            ((a + (2 * m)) * (a + (2 * m) + 1.0));
+                }
+                return ret;
+            }
+
+            @Override
+            protected double getA(int n, double x) {
+                return 1.0;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,287 @@
+package spcial;
+
+import math.util.ContinuedFraction;
+import math.util.FastMath;
+import exception.MaxCountExceededException;
+
+public class RegularizedGamma {
+
+    /** Maximum allowed numerical error. */
+    private static final double DEFAULT_EPSILON = 10e-15;
+
+    /** Parameter {@code a}. */
+    private final double a;
+
+    /** Value of {@code log(Gamma(a))}. */
+    private final double logGammaA;
+
+    /** Convergence criterion of the series and continued fraction. */
+    private final double epsilon;
+
+    /** Maximum number of iterations of the series and continued fraction. */
+    private final int maxIterations;
+
+    /** Continued fraction used to compute Q(a, x). */
+    private final ContinuedFraction fraction;
+
+    /**
+     * Create an evaluator for a fixed parameter {@code a}, with default
+     * convergence settings.
+     *
+     * @param a Parameter.
+     */
+    public RegularizedGamma(final double a) {
+        this(a, DEFAULT_EPSILON, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create an evaluator for a fixed parameter {@code a}.
+     * <p>
+     * The constants depending only on {@code a}, like {@code log(Gamma(a))},
+     * are computed once here, and the continued fraction is shared by all
+     * evaluations, so repeated calls with the same {@code a} only pay for
+     * the series or continued fraction themselves. Instances are immutable
+     * and can be shared between threads.
+     * </p>
+     *
+     * @param a Parameter.
+     * @param epsilon When the absolute value of the nth item in the
+     * series is less than epsilon the approximation ceases to calculate
+     * further elements in the series.
+     * @param maxIterations Maximum number of "iterations" to complete.
+     */
+    public RegularizedGamma(final double a, final double epsilon, final int maxIterations) {
+        this.a             = a;
+        this.logGammaA     = Gamma.logGamma(a);
+        this.epsilon       = epsilon;
+        this.maxIterations = maxIterations;
+        this.fraction      = createFraction(a);
+    }
+
+    /**
+     * Get the parameter {@code a}.
+     *
+     * @return the parameter {@code a}.
+     */
+    public double getA() {
+        return a;
+    }
+
+    /**
+     * Returns the regularized gamma function P(a, x).
+     *
+     * @param x Value.
+     * @return the regularized gamma function P(a, x).
+     * @throws MaxCountExceededException if the algorithm fails to converge.
+     * @see Gamma#regularizedGammaP(double, double, double, int)
+     */
+    public double regularizedGammaP(final double x) {
+        return regularizedGammaP(a, x, epsilon, maxIterations, this);
+    }
+
+    /**
+     * Returns the regularized gamma function Q(a, x) = 1 - P(a, x).
+     *
+     * @param x Value.
+     * @return the regularized gamma function Q(a, x).
+     * @throws MaxCountExceededException if the algorithm fails to converge.
+     * @see Gamma#regularizedGammaQ(double, double, double, int)
+     */
+    public double regularizedGammaQ(final double x) {
+        return regularizedGammaQ(a, x, epsilon, maxIterations, this);
+    }
+
+    /**
+     * Computes the regularized gamma function P(a, x) for an array of values.
+     * <p>
+     * {@code x} and {@code result} may be the same array.
+     * </p>
+     *
+     * @param x Values.
+     * @param result Array where to store P(a, x).
+     * @param off Index of the first element to process in both arrays.
+     * @param len Number of elements to process.
+     * @throws MaxCountExceededException if the algorithm fails to converge.
+     */
+    public void regularizedGammaP(final double[] x, final double[] result,
+                                  final int off, final int len) {
+        for (int i = off; i < off + len; ++i) {
+            result[i] = regularizedGammaP(x[i]);
+        }
+    }
+
+    /**
+     * Computes the regularized gamma function Q(a, x) for an array of values.
+     * <p>
+     * {@code x} and {@code result} may be the same array.
+     * </p>
+     *
+     * @param x Values.
+     * @param result Array where to store Q(a, x).
+     * @param off Index of the first element to process in both arrays.
+     * @param len Number of elements to process.
+     * @throws MaxCountExceededException if the algorithm fails to converge.
+     */
+    public void regularizedGammaQ(final double[] x, final double[] result,
+                                  final int off, final int len) {
+        for (int i = off; i < off + len; ++i) {
+            result[i] = regularizedGammaQ(x[i]);
+        }
+    }
+
+    /**
+     * Returns the regularized gamma function P(a, x) for a single evaluation.
+     * <p>
+     * Unlike an evaluator instance, this computes {@code log(Gamma(a))} and
+     * builds the continued fraction only if the selected branch needs them.
+     * </p>
+     *
+     * @param a Parameter.
+     * @param x Value.
+     * @param epsilon Convergence criterion.
+     * @param maxIterations Maximum number of iterations.
+     * @return the regularized gamma function P(a, x).
+     * @throws MaxCountExceededException if the algorithm fails to converge.
+     */
+    static double regularizedGammaP(final double a, final double x,
+                                    final double epsilon, final int maxIterations) {
+        return regularizedGammaP(a, x, epsilon, maxIterations, null);
+    }
+
+    /**
+     * Returns the regularized gamma function Q(a, x) = 1 - P(a, x) for a
+     * single evaluation.
+     * <p>
+     * Unlike an evaluator instance, this computes {@code log(Gamma(a))} and
+     * builds the continued fraction only if the selected branch needs them.
+     * </p>
+     *
+     * @param a Parameter.
+     * @param x Value.
+     * @param epsilon Convergence criterion.
+     * @param maxIterations Maximum number of iterations.
+     * @return the regularized gamma function Q(a, x).
+     * @throws MaxCountExceededException if the algorithm fails to converge.
+     */
+    static double regularizedGammaQ(final double a, final double x,
+                                    final double epsilon, final int maxIterations) {
+        return regularizedGammaQ(a, x, epsilon, maxIterations, null);
+    }
+
+    /**
+     * Returns the regularized gamma function P(a, x).
+     *
+     * @param a Parameter.
+     * @param x Value.
+     * @param epsilon Convergence criterion.
+     * @param maxIterations Maximum number of iterations.
+     * @param bound evaluator holding the constants of {@code a}, or null
+     * to compute them when needed
+     * @return the regularized gamma function P(a, x).
+     * @throws MaxCountExceededException if the algorithm fails to converge.
+     */
+    private static double regularizedGammaP(final double a, final double x,
+                                            final double epsilon, final int maxIterations,
+                                            final RegularizedGamma bound) {
+        double ret;
+
+        if (Double.isNaN(a) || Double.isNaN(x) || (a <= 0.0) || (x < 0.0)) {
+            ret = Double.NaN;
+        } else if (x == 0.0) {
+            ret = 0.0;
+        } else if (x >= a + 1) {
+            // use regularizedGammaQ because it should converge faster in this
+            // case.
+            ret = 1.0 - regularizedGammaQ(a, x, epsilon, maxIterations, bound);
+        } else {
+            // calculate series
+            double n = 0.0; // current element index
+            double an = 1.0 / a; // n-th element in the series
+            double sum = an; // partial sum
+            while (FastMath.abs(an/sum) > epsilon &&
+                   n < maxIterations &&
+                   sum < Double.POSITIVE_INFINITY) {
+                // compute next element in the series
+                n = n + 1.0;
+                an = an * (x / (a + n));
+
+                // update partial sum
+                sum = sum + an;
+            }
+            if (n >= maxIterations) {
+                throw new MaxCountExceededException(maxIterations);
+            } else if (Double.isInfinite(sum)) {
+                ret = 1.0;
+            } else {
+                final double logGammaA = (bound == null) ? Gamma.logGamma(a) : bound.logGammaA;
+                ret = FastMath.exp(-x + (a * FastMath.log(x)) - logGammaA) * sum;
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the regularized gamma function Q(a, x) = 1 - P(a, x).
+     *
+     * @param a Parameter.
+     * @param x Value.
+     * @param epsilon Convergence criterion.
+     * @param maxIterations Maximum number of iterations.
+     * @param bound evaluator holding the constants of {@code a}, or null
+     * to compute them when needed
+     * @return the regularized gamma function Q(a, x).
+     * @throws MaxCountExceededException if the algorithm fails to converge.
+     */
+    private static double regularizedGammaQ(final double a, final double x,
+                                            final double epsilon, final int maxIterations,
+                                            final RegularizedGamma bound) {
+        double ret;
+
+        if (Double.isNaN(a) || Double.isNaN(x) || (a <= 0.0) || (x < 0.0)) {
+            ret = Double.NaN;
+        } else if (x == 0.0) {
+            ret = 1.0;
+        } else if (x < a + 1.0) {
+            // use regularizedGammaP because it should converge faster in this
+            // case.
+            ret = 1.0 - regularizedGammaP(a, x, epsilon, maxIterations, bound);
+        } else {
+            final ContinuedFraction cf;
+            final double logGammaA;
+            if (bound == null) {
+                cf        = createFraction(a);
+                logGammaA = Gamma.logGamma(a);
+            } else {
+                cf        = bound.fraction;
+                logGammaA = bound.logGammaA;
+            }
+            ret = 1.0 / cf.evaluate(x, epsilon, maxIterations);
+            ret = FastMath.exp(-x + (a * FastMath.log(x)) - logGammaA) * ret;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Create the continued fraction of the regularized gamma function Q.
+     *
+     * @param a Parameter.
+     * @return continued fraction for Q(a, x).
+     */
+    private static ContinuedFraction createFraction(final double a) {
+        return new ContinuedFraction() {
+
+            @Override
+            protected double getA(int n, double x) {
+                return ((2.0 * n) + 1.0) - a + x;
+            }
+
+            @Override
+            protected double getB(int n, double x) {
+                return n * (a - n);
+            }
+        };
+    }
+
+}
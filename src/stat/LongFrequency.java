@@ -0,0 +1,607 @@
+package stat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import math.util.FastMath;
+import math.util.MathUtils;
+import exception.NotStrictlyPositiveException;
+import exception.NullArgumentException;
+
+public class LongFrequency implements Serializable {
+
+    /** Serializable version identifier */
+    private static final long serialVersionUID = 20121019L;
+
+    /** Tables, each holding the keys whose hash selects it. */
+    private final Table[] stripes;
+
+    /** Indicator for concurrent mode, where each table is guarded by its own lock. */
+    private final boolean concurrent;
+
+    /** Sum of the tables modification counters at the time of the last sorted snapshot. */
+    private transient long snapshotModifications;
+
+    /** Sorted keys of the last snapshot (null if no snapshot has been taken). */
+    private transient long[] sortedKeys;
+
+    /** Cumulative counts of the last snapshot, in key order. */
+    private transient long[] cumulativeCounts;
+
+    /**
+     * Build a frequency table for use by a single thread.
+     */
+    public LongFrequency() {
+        this(1, false);
+    }
+
+    /**
+     * Build a frequency table allowing concurrent updates.
+     * <p>
+     * Keys are spread over {@code stripes} independent tables (rounded up
+     * to a power of two), each guarded by its own lock, so threads
+     * counting different keys rarely contend. Queries may be called
+     * concurrently with updates; they see each table in a consistent state.
+     * </p>
+     *
+     * @param stripes number of independent tables
+     * @throws NotStrictlyPositiveException if {@code stripes <= 0}
+     */
+    public LongFrequency(final int stripes) throws NotStrictlyPositiveException {
+        this(stripes, true);
+    }
+
+    /**
+     * Build a frequency table.
+     * @param stripes number of independent tables
+     * @param concurrent if true, tables are guarded by locks
+     * @throws NotStrictlyPositiveException if {@code stripes <= 0}
+     */
+    private LongFrequency(final int stripes, final boolean concurrent)
+        throws NotStrictlyPositiveException {
+        if (stripes <= 0) {
+            throw new NotStrictlyPositiveException(stripes);
+        }
+        final int highest = Integer.highestOneBit(stripes);
+        this.stripes    = new Table[(highest == stripes) ? stripes : highest << 1];
+        this.concurrent = concurrent;
+        for (int i = 0; i < this.stripes.length; ++i) {
+            this.stripes[i] = new Table();
+        }
+    }
+
+    /**
+     * Adds 1 to the frequency count for v.
+     *
+     * @param v the value to add.
+     */
+    public void addValue(final int v) {
+        incrementValue(v, 1);
+    }
+
+    /**
+     * Adds 1 to the frequency count for v.
+     *
+     * @param v the value to add.
+     */
+    public void addValue(final long v) {
+        incrementValue(v, 1);
+    }
+
+    /**
+     * Adds 1 to the frequency count of each value of an array.
+     * <p>
+     * In concurrent mode, the values are first grouped by table in a
+     * single pass, then the lock of each table is acquired only once
+     * for the whole array.
+     * </p>
+     *
+     * @param values the values to add.
+     */
+    public void addValues(final long[] values) {
+        if (!concurrent) {
+            final Table table = stripes[0];
+            for (final long v : values) {
+                table.increment(v, 1);
+            }
+        } else {
+            // counting sort of the values by table
+            final int[] stripeIndex = new int[values.length];
+            final int[] start = new int[stripes.length + 1];
+            for (int i = 0; i < values.length; ++i) {
+                stripeIndex[i] = stripeOf(values[i]);
+                ++start[stripeIndex[i] + 1];
+            }
+            for (int s = 0; s < stripes.length; ++s) {
+                start[s + 1] += start[s];
+            }
+            final int[] next = start.clone();
+            final long[] grouped = new long[values.length];
+            for (int i = 0; i < values.length; ++i) {
+                grouped[next[stripeIndex[i]]++] = values[i];
+            }
+
+            for (int s = 0; s < stripes.length; ++s) {
+                if (start[s] < start[s + 1]) {
+                    final Table table = stripes[s];
+                    synchronized (table) {
+                        for (int i = start[s]; i < start[s + 1]; ++i) {
+                            table.increment(grouped[i], 1);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Increments the frequency count for v.
+     *
+     * @param v the value to add.
+     * @param increment the amount by which the value should be incremented
+     */
+    public void incrementValue(final long v, final long increment) {
+        final Table table = stripes[stripeOf(v)];
+        if (concurrent) {
+            synchronized (table) {
+                table.increment(v, increment);
+            }
+        } else {
+            table.increment(v, increment);
+        }
+    }
+
+    /** Clears the frequency table */
+    public void clear() {
+        for (final Table table : stripes) {
+            if (concurrent) {
+                synchronized (table) {
+                    table.clear();
+                }
+            } else {
+                table.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of all frequencies.
+     *
+     * @return the total frequency count.
+     */
+    public long getSumFreq() {
+        long result = 0;
+        for (final Table table : stripes) {
+            if (concurrent) {
+                synchronized (table) {
+                    result += table.total;
+                }
+            } else {
+                result += table.total;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of values = v.
+     *
+     * @param v the value to lookup.
+     * @return the frequency of v.
+     */
+    public long getCount(final int v) {
+        return getCount((long) v);
+    }
+
+    /**
+     * Returns the number of values = v.
+     *
+     * @param v the value to lookup.
+     * @return the frequency of v.
+     */
+    public long getCount(final long v) {
+        final Table table = stripes[stripeOf(v)];
+        if (concurrent) {
+            synchronized (table) {
+                return table.get(v);
+            }
+        }
+        return table.get(v);
+    }
+
+    /**
+     * Returns the number of values in the frequency table.
+     *
+     * @return the number of unique values that have been added to the frequency table.
+     */
+    public int getUniqueCount() {
+        int result = 0;
+        for (final Table table : stripes) {
+            if (concurrent) {
+                synchronized (table) {
+                    result += table.size;
+                }
+            } else {
+                result += table.size;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the percentage of values that are equal to v
+     * (as a proportion between 0 and 1).
+     * <p>
+     * Returns <code>Double.NaN</code> if no values have been added.</p>
+     *
+     * @param v the value to lookup
+     * @return the proportion of values equal to v
+     */
+    public double getPct(final int v) {
+        return getPct((long) v);
+    }
+
+    /**
+     * Returns the percentage of values that are equal to v
+     * (as a proportion between 0 and 1).
+     * <p>
+     * Returns <code>Double.NaN</code> if no values have been added.</p>
+     *
+     * @param v the value to lookup
+     * @return the proportion of values equal to v
+     */
+    public double getPct(final long v) {
+        final long sumFreq = getSumFreq();
+        if (sumFreq == 0) {
+            return Double.NaN;
+        }
+        return (double) getCount(v) / (double) sumFreq;
+    }
+
+    /**
+     * Returns the cumulative frequency of values less than or equal to v.
+     *
+     * @param v the value to lookup.
+     * @return the number of values less than or equal to v
+     */
+    public long getCumFreq(final int v) {
+        return getCumFreq((long) v);
+    }
+
+    /**
+     * Returns the cumulative frequency of values less than or equal to v.
+     * <p>
+     * The keys are sorted only when a cumulative query is made after the
+     * table has been modified; subsequent queries on an unmodified table
+     * only perform a binary search.
+     * </p>
+     *
+     * @param v the value to lookup.
+     * @return the number of values less than or equal to v
+     */
+    public synchronized long getCumFreq(final long v) {
+        if (sortedKeys == null || snapshotModifications != getModifications()) {
+            takeSnapshot();
+        }
+        if (sortedKeys.length == 0) {
+            return 0;
+        }
+        final int index = Arrays.binarySearch(sortedKeys, v);
+        if (index >= 0) {
+            return cumulativeCounts[index];
+        }
+        final int insertion = -index - 1;
+        return (insertion == 0) ? 0 : cumulativeCounts[insertion - 1];
+    }
+
+    /**
+     * Returns the cumulative percentage of values less than or equal to v
+     * (as a proportion between 0 and 1).
+     * <p>
+     * Returns <code>Double.NaN</code> if no values have been added.</p>
+     *
+     * @param v the value to lookup
+     * @return the proportion of values less than or equal to v
+     */
+    public double getCumPct(final int v) {
+        return getCumPct((long) v);
+    }
+
+    /**
+     * Returns the cumulative percentage of values less than or equal to v
+     * (as a proportion between 0 and 1).
+     * <p>
+     * Returns <code>Double.NaN</code> if no values have been added.</p>
+     *
+     * @param v the value to lookup
+     * @return the proportion of values less than or equal to v
+     */
+    public synchronized double getCumPct(final long v) {
+        final long cumFreq = getCumFreq(v);
+        final long sumFreq = cumulativeCounts.length == 0 ? 0 : cumulativeCounts[cumulativeCounts.length - 1];
+        if (sumFreq == 0) {
+            return Double.NaN;
+        }
+        return (double) cumFreq / (double) sumFreq;
+    }
+
+    /**
+     * Returns the distinct values in the table, in increasing order.
+     *
+     * @return sorted values
+     */
+    public synchronized long[] getSortedValues() {
+        if (sortedKeys == null || snapshotModifications != getModifications()) {
+            takeSnapshot();
+        }
+        return sortedKeys.clone();
+    }
+
+    /**
+     * Merge another table's counts into this instance.
+     *
+     * @param other the other table to be merged
+     * @throws NullArgumentException if other is null
+     */
+    public void merge(final LongFrequency other) throws NullArgumentException {
+        MathUtils.checkNotNull(other);
+        for (final Table table : other.stripes) {
+            final long[] keys;
+            final long[] counts;
+            if (other.concurrent) {
+                synchronized (table) {
+                    keys   = table.keys.clone();
+                    counts = table.counts.clone();
+                }
+            } else {
+                keys   = table.keys;
+                counts = table.counts;
+            }
+            for (int i = 0; i < keys.length; ++i) {
+                if (counts[i] != 0) {
+                    incrementValue(keys[i], counts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Convert this table to a general {@link Frequency}.
+     *
+     * @return a frequency table with the same counts, keyed by {@code Long} values
+     */
+    public Frequency toFrequency() {
+        final Frequency frequency = new Frequency();
+        final long[] keys = getSortedValues();
+        for (final long key : keys) {
+            final long count = getCount(key);
+            if (count != 0) {
+                frequency.incrementValue(Long.valueOf(key), count);
+            }
+        }
+        return frequency;
+    }
+
+    /**
+     * Get the total number of modifications of the tables.
+     * @return sum of the tables modification counters
+     */
+    private long getModifications() {
+        long result = 0;
+        for (final Table table : stripes) {
+            if (concurrent) {
+                synchronized (table) {
+                    result += table.modifications;
+                }
+            } else {
+                result += table.modifications;
+            }
+        }
+        return result;
+    }
+
+    /** Sort the keys and accumulate the counts. */
+    private void takeSnapshot() {
+        final long current = getModifications();
+        int n = 0;
+        long[] keys = new long[16];
+        for (final Table table : stripes) {
+            if (concurrent) {
+                synchronized (table) {
+                    keys = table.appendKeys(keys, n);
+                    n   += table.size;
+                }
+            } else {
+                keys = table.appendKeys(keys, n);
+                n   += table.size;
+            }
+        }
+        if (keys.length != n) {
+            final long[] trimmed = new long[n];
+            System.arraycopy(keys, 0, trimmed, 0, n);
+            keys = trimmed;
+        }
+        Arrays.sort(keys);
+        final long[] cumulative = new long[n];
+        long sum = 0;
+        for (int i = 0; i < n; ++i) {
+            sum += getCount(keys[i]);
+            cumulative[i] = sum;
+        }
+        sortedKeys            = keys;
+        cumulativeCounts      = cumulative;
+        snapshotModifications = current;
+    }
+
+    /**
+     * Select the table holding a key.
+     * @param key key
+     * @return index of the table
+     */
+    private int stripeOf(final long key) {
+        return (stripes.length == 1) ? 0 : (hashOf(key) * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(stripes.length));
+    }
+
+    /**
+     * Compute the hash value of a key
+     * @param key key to hash
+     * @return hash value of the key
+     */
+    private static int hashOf(final long key) {
+        final int k = (int) (key ^ (key >>> 32));
+        final int h = k ^ ((k >>> 20) ^ (k >>> 12));
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    /**
+     * Open addressed map from primitive long keys to primitive long counts.
+     * <p>
+     * Probing follows {@link math.util.OpenIntToDoubleHashMap}. Entries are
+     * never removed, so only free and full slots need to be distinguished.
+     * </p>
+     */
+    private static class Table implements Serializable {
+
+        /** Serializable version identifier */
+        private static final long serialVersionUID = 20121019L;
+
+        /** Default starting size. */
+        private static final int DEFAULT_CAPACITY = 32;
+
+        /** Load factor for the map. */
+        private static final float LOAD_FACTOR = 0.5f;
+
+        /** Number of bits to perturb the index when probing for collision resolution. */
+        private static final int PERTURB_SHIFT = 5;
+
+        /** Keys table. */
+        private long[] keys;
+
+        /** Counts table, 0 for free slots. */
+        private long[] counts;
+
+        /** Indicator for occupied slots. */
+        private boolean[] full;
+
+        /** Current size of the map. */
+        private int size;
+
+        /** Sum of the counts. */
+        private long total;
+
+        /** Bit mask for hash values. */
+        private int mask;
+
+        /** Modification counter. */
+        private long modifications;
+
+        /** Build an empty table. */
+        public Table() {
+            clear();
+        }
+
+        /** Remove all entries. */
+        public void clear() {
+            keys   = new long[DEFAULT_CAPACITY];
+            counts = new long[DEFAULT_CAPACITY];
+            full   = new boolean[DEFAULT_CAPACITY];
+            mask   = DEFAULT_CAPACITY - 1;
+            size   = 0;
+            total  = 0;
+            ++modifications;
+        }
+
+        /**
+         * Get the count associated with a key.
+         * @param key key
+         * @return count of the key (0 if the key is not present)
+         */
+        public long get(final long key) {
+            final int index = find(keys, full, key, mask);
+            return full[index] ? counts[index] : 0;
+        }
+
+        /**
+         * Increment the count associated with a key.
+         * @param key key
+         * @param increment increment
+         */
+        public void increment(final long key, final long increment) {
+            final int index = find(keys, full, key, mask);
+            counts[index] += increment;
+            total         += increment;
+            ++modifications;
+            if (!full[index]) {
+                keys[index] = key;
+                full[index] = true;
+                if (++size > (mask + 1) * LOAD_FACTOR) {
+                    grow();
+                }
+            }
+        }
+
+        /**
+         * Append the keys of the table to an array.
+         * @param array array to fill, grown if needed
+         * @param offset index of the first key in the array
+         * @return array holding the keys (may be {@code array} itself)
+         */
+        public long[] appendKeys(final long[] array, final int offset) {
+            long[] result = array;
+            if (offset + size > result.length) {
+                result = new long[FastMath.max(2 * array.length, offset + size)];
+                System.arraycopy(array, 0, result, 0, offset);
+            }
+            int k = offset;
+            for (int i = 0; i < keys.length; ++i) {
+                if (full[i]) {
+                    result[k++] = keys[i];
+                }
+            }
+            return result;
+        }
+
+        /** Grow the tables. */
+        private void grow() {
+            final int newLength = 2 * keys.length;
+            final long[] newKeys     = new long[newLength];
+            final long[] newCounts   = new long[newLength];
+            final boolean[] newFull  = new boolean[newLength];
+            final int newMask = newLength - 1;
+            for (int i = 0; i < keys.length; ++i) {
+                if (full[i]) {
+                    final int index = find(newKeys, newFull, keys[i], newMask);
+                    newKeys[index]   = keys[i];
+                    newCounts[index] = counts[i];
+                    newFull[index]   = true;
+                }
+            }
+            keys   = newKeys;
+            counts = newCounts;
+            full   = newFull;
+            mask   = newMask;
+        }
+
+        /**
+         * Find the slot holding a key, or the free slot where it should be inserted.
+         * @param keys keys table
+         * @param full occupation table
+         * @param key key to lookup
+         * @param mask bit mask for hash values
+         * @return index of the slot
+         */
+        private static int find(final long[] keys, final boolean[] full,
+                                final long key, final int mask) {
+            final int hash = hashOf(key);
+            int index = hash & mask;
+            int j = index;
+            for (int perturb = hash & 0x7fffffff; full[index] && keys[index] != key; perturb >>= PERTURB_SHIFT) {
+                j = (j << 2) + j + perturb + 1;
+                index = j & mask;
+            }
+            return index;
+        }
+
+    }
+
+}
@@ -1,6 +1,15 @@
 package stat;
 
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import math.util.ConcurrencyUtils;
+import math.util.FastMath;
 import stat.descriptive.DescriptiveStatistics;
+import stat.descriptive.StatisticalSummaryValues;
 import stat.descriptive.UnivariateStatistic;
 import stat.descriptive.moment.GeometricMean;
 import stat.descriptive.moment.Mean;
@@ -15,6 +24,9 @@ import stat.descriptive.summary.SumOfSquares;
 import exception.DimensionMismatchException;
 import exception.MathIllegalArgumentException;
 import exception.NoDataException;
+import exception.NotPositiveException;
+import exception.NullArgumentException;
+import exception.NumberIsTooLargeException;
 import exception.NumberIsTooSmallException;
 import exception.util.LocalizedFormats;
 
@@ -50,6 +62,12 @@ public final class StatUtils {
     /** geometric mean */
     private static final GeometricMean GEOMETRIC_MEAN = new GeometricMean();
 
+    /** Number of values summarized by one pass of the fused summary kernel. */
+    private static final int SUMMARY_BLOCK = 1024;
+
+    /** Minimal number of values handled by one task of the parallel summary. */
+    private static final int SUMMARY_MIN_CHUNK = 1 << 16;
+
     /**
      * Private Constructor
      */
@@ -769,4 +787,475 @@ public final class StatUtils {
         }
         return standardizedSample;
     }
+
+    /**
+     * Computes the sum, sum of squares, mean, variance, minimum and maximum of the input
+     * array in a single pass over the data.
+     *
+     * @param values input array
+     * @return summary of the values (all statistics are <code>Double.NaN</code>
+     * if the array is empty)
+     * @throws MathIllegalArgumentException if the array is null
+     * @see #summary(double[], int, int, ExecutorService)
+     */
+    public static Summary summary(final double[] values)
+    throws MathIllegalArgumentException {
+        if (values == null) {
+            throw new NullArgumentException(LocalizedFormats.INPUT_ARRAY);
+        }
+        return summary(values, 0, values.length, null);
+    }
+
+    /**
+     * Computes the sum, sum of squares, mean, variance, minimum and maximum of the entries
+     * in the specified portion of the input array in a single pass over the data.
+     *
+     * @param values the input array
+     * @param begin index of the first array element to include
+     * @param length the number of elements to include
+     * @return summary of the values (all statistics are <code>Double.NaN</code>
+     * if length = 0)
+     * @throws MathIllegalArgumentException if the array is null or the array index
+     *  parameters are not valid
+     * @see #summary(double[], int, int, ExecutorService)
+     */
+    public static Summary summary(final double[] values, final int begin,
+            final int length) throws MathIllegalArgumentException {
+        return summary(values, begin, length, null);
+    }
+
+    /**
+     * Computes the sum, sum of squares, mean, variance, minimum and maximum of the entries
+     * in the specified portion of the input array in a single pass over the data.
+     * <p>
+     * Calling {@link #sum(double[])}, {@link #sumSq(double[])},
+     * {@link #mean(double[])}, {@link #variance(double[])}, {@link #min(double[])}
+     * and {@link #max(double[])} reads the data seven times, which is memory
+     * bound for large arrays. This method reads it only once. The values
+     * are processed by cache-sized blocks: all statistics of a block are
+     * accumulated with several independent accumulators, the variance being
+     * computed by the same corrected two-pass algorithm as {@link Variance}
+     * on the cached block, and the block moments are then combined using
+     * the pairwise update formulas of Chan, Golub and LeVeque.
+     * </p>
+     * <p>
+     * If an executor is provided and the range is large enough, it is split
+     * in contiguous chunks that are summarized concurrently, and the partial
+     * results are merged in order.
+     * </p>
+     * <p>
+     * The variance is the bias-corrected sample variance. As in {@link #min(double[])}
+     * and {@link #max(double[])}, <code>NaN</code> values are ignored by the
+     * minimum and maximum, unless all values are <code>NaN</code>.
+     * </p>
+     *
+     * @param values the input array
+     * @param begin index of the first array element to include
+     * @param length the number of elements to include
+     * @param executor executor for the chunks (may be null to compute
+     * everything in the calling thread)
+     * @return summary of the values (all statistics are <code>Double.NaN</code>
+     * if length = 0)
+     * @throws MathIllegalArgumentException if the array is null or the array index
+     *  parameters are not valid
+     */
+    public static Summary summary(final double[] values, final int begin,
+            final int length, final ExecutorService executor)
+    throws MathIllegalArgumentException {
+
+        if (values == null) {
+            throw new NullArgumentException(LocalizedFormats.INPUT_ARRAY);
+        }
+        if (begin < 0) {
+            throw new NotPositiveException(LocalizedFormats.START_POSITION, begin);
+        }
+        if (length < 0) {
+            throw new NotPositiveException(LocalizedFormats.LENGTH, length);
+        }
+        if (begin + length > values.length) {
+            throw new NumberIsTooLargeException(LocalizedFormats.SUBARRAY_ENDS_AFTER_ARRAY_END,
+                                                begin + length, values.length, true);
+        }
+
+        double firstBlockSum = 0;
+        final int firstBlockLength = FastMath.min(SUMMARY_BLOCK, length);
+        for (int i = begin; i < begin + firstBlockLength; ++i) {
+            firstBlockSum += values[i];
+        }
+        final double shift = summaryShift(firstBlockSum, firstBlockLength);
+
+        final List<Callable<SummaryMoments>> tasks = new ArrayList<Callable<SummaryMoments>>();
+        final int[] bounds = summaryChunks(begin, length, executor);
+        for (int k = 0; k + 1 < bounds.length; ++k) {
+            final int from = bounds[k];
+            final int to   = bounds[k + 1];
+            tasks.add(new Callable<SummaryMoments>() {
+                /** {@inheritDoc} */
+                public SummaryMoments call() {
+                    final SummaryMoments moments = new SummaryMoments(shift);
+                    for (int i = from; i < to; i += SUMMARY_BLOCK) {
+                        moments.addBlock(values, i, FastMath.min(SUMMARY_BLOCK, to - i));
+                    }
+                    return moments;
+                }
+            });
+        }
+        return mergeSummaries(shift, ConcurrencyUtils.invokeAll(executor, tasks));
+
+    }
+
+    /**
+     * Computes the sum, sum of squares, mean, variance, minimum and maximum of the remaining
+     * elements of a buffer in a single pass over the data.
+     *
+     * @param buffer buffer containing the values (the values between its
+     * position and its limit are used, the position is not changed)
+     * @return summary of the values (all statistics are <code>Double.NaN</code>
+     * if the buffer has no remaining elements)
+     * @throws MathIllegalArgumentException if the buffer is null
+     * @see #summary(DoubleBuffer, ExecutorService)
+     */
+    public static Summary summary(final DoubleBuffer buffer)
+    throws MathIllegalArgumentException {
+        return summary(buffer, null);
+    }
+
+    /**
+     * Computes the sum, sum of squares, mean, variance, minimum and maximum of the remaining
+     * elements of a buffer in a single pass over the data.
+     * <p>
+     * This method uses the same kernel as {@link #summary(double[], int, int,
+     * ExecutorService)}. Buffers backed by an accessible array are processed
+     * in place, other buffers (for example direct or memory-mapped buffers)
+     * are read by blocks into a small work array.
+     * </p>
+     *
+     * @param buffer buffer containing the values (the values between its
+     * position and its limit are used, the position is not changed)
+     * @param executor executor for the chunks (may be null to compute
+     * everything in the calling thread)
+     * @return summary of the values (all statistics are <code>Double.NaN</code>
+     * if the buffer has no remaining elements)
+     * @throws MathIllegalArgumentException if the buffer is null
+     */
+    public static Summary summary(final DoubleBuffer buffer,
+                                             final ExecutorService executor)
+    throws MathIllegalArgumentException {
+
+        if (buffer == null) {
+            throw new NullArgumentException(LocalizedFormats.INPUT_ARRAY);
+        }
+        if (buffer.hasArray()) {
+            return summary(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                           buffer.remaining(), executor);
+        }
+
+        double firstBlockSum = 0;
+        final int firstBlockLength = FastMath.min(SUMMARY_BLOCK, buffer.remaining());
+        for (int i = buffer.position(); i < buffer.position() + firstBlockLength; ++i) {
+            firstBlockSum += buffer.get(i);
+        }
+        final double shift = summaryShift(firstBlockSum, firstBlockLength);
+
+        final List<Callable<SummaryMoments>> tasks = new ArrayList<Callable<SummaryMoments>>();
+        final int[] bounds = summaryChunks(buffer.position(), buffer.remaining(), executor);
+        for (int k = 0; k + 1 < bounds.length; ++k) {
+            final int from = bounds[k];
+            final int to   = bounds[k + 1];
+            tasks.add(new Callable<SummaryMoments>() {
+                /** {@inheritDoc} */
+                public SummaryMoments call() {
+                    final SummaryMoments moments = new SummaryMoments(shift);
+                    final DoubleBuffer view = buffer.duplicate();
+                    view.position(from);
+                    final double[] block = new double[SUMMARY_BLOCK];
+                    for (int i = from; i < to; i += SUMMARY_BLOCK) {
+                        final int blockLength = FastMath.min(SUMMARY_BLOCK, to - i);
+                        view.get(block, 0, blockLength);
+                        moments.addBlock(block, 0, blockLength);
+                    }
+                    return moments;
+                }
+            });
+        }
+        return mergeSummaries(shift, ConcurrencyUtils.invokeAll(executor, tasks));
+
+    }
+
+    /**
+     * Select the shift subtracted from all values by the summary kernel.
+     * <p>
+     * Moments are accumulated for the shifted values, so that the means
+     * merged across blocks are small compared to the values themselves
+     * and do not lose the accuracy of the deviations.
+     * </p>
+     *
+     * @param firstBlockSum sum of the first block of values
+     * @param firstBlockLength number of values in the first block
+     * @return approximate mean of the first block, or 0 if it is not finite
+     */
+    private static double summaryShift(final double firstBlockSum, final int firstBlockLength) {
+        final double shift = firstBlockSum / firstBlockLength;
+        return (Double.isNaN(shift) || Double.isInfinite(shift)) ? 0.0 : shift;
+    }
+
+    /**
+     * Split a range of values into the chunks of a summary computation.
+     *
+     * @param begin index of the first element to include
+     * @param length the number of elements to include
+     * @param executor executor for the chunks (may be null)
+     * @return the chunks boundaries
+     */
+    private static int[] summaryChunks(final int begin, final int length,
+                                       final ExecutorService executor) {
+        if (executor == null || length < 2 * SUMMARY_MIN_CHUNK) {
+            return new int[] { begin, begin + length };
+        }
+        return ConcurrencyUtils.splitRange(begin, begin + length,
+                                           Runtime.getRuntime().availableProcessors(),
+                                           SUMMARY_MIN_CHUNK);
+    }
+
+    /**
+     * Merge partial summaries in order.
+     *
+     * @param shift shift subtracted from all values
+     * @param partials partial summaries of consecutive chunks
+     * @return summary of all the chunks
+     */
+    private static Summary mergeSummaries(final double shift,
+                                                     final List<SummaryMoments> partials) {
+        final SummaryMoments moments = new SummaryMoments(shift);
+        for (final SummaryMoments partial : partials) {
+            moments.merge(partial);
+        }
+        if (moments.n == 0) {
+            return new Summary(Double.NaN, Double.NaN, 0,
+                               Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+        final double variance = (moments.n == 1) ? 0.0 : moments.m2 / (moments.n - 1);
+        // min and max are only left in reverse order if all values are NaN
+        final boolean allNaN = moments.min > moments.max;
+        return new Summary(shift + moments.mean, variance, moments.n,
+                           allNaN ? Double.NaN : moments.max,
+                           allNaN ? Double.NaN : moments.min,
+                           moments.sum, moments.sumsq);
+    }
+
+    /**
+     * Summary computed by the fused summary kernel.
+     * <p>
+     * In addition to the statistics of {@link StatisticalSummaryValues},
+     * it provides the sum of the squared values, which is accumulated
+     * in the same pass over the data.
+     * </p>
+     */
+    public static class Summary extends StatisticalSummaryValues {
+
+        /** Serialization id */
+        private static final long serialVersionUID = 20261019L;
+
+        /** The sum of the squared values */
+        private final double sumsq;
+
+        /**
+         * Constructor
+         *
+         * @param mean  the sample mean
+         * @param variance  the sample variance
+         * @param n  the number of observations in the sample
+         * @param max  the maximum value
+         * @param min  the minimum value
+         * @param sum  the sum of the values
+         * @param sumsq  the sum of the squared values
+         */
+        public Summary(double mean, double variance, long n,
+                       double max, double min, double sum, double sumsq) {
+            super(mean, variance, n, max, min, sum);
+            this.sumsq = sumsq;
+        }
+
+        /**
+         * @return Returns the sum of the squared values.
+         */
+        public double getSumsq() {
+            return sumsq;
+        }
+
+    }
+
+    /** Moments accumulated by the fused summary kernel. */
+    private static class SummaryMoments {
+
+        /** Shift subtracted from the values before computing their moments. */
+        private final double shift;
+
+        /** Number of values. */
+        private long n;
+
+        /** Sum of the values. */
+        private double sum;
+
+        /** Sum of the squared values. */
+        private double sumsq;
+
+        /** Mean of the shifted values. */
+        private double mean;
+
+        /** Sum of squared deviations from the mean. */
+        private double m2;
+
+        /** Smallest non-NaN value. */
+        private double min = Double.POSITIVE_INFINITY;
+
+        /** Largest non-NaN value. */
+        private double max = Double.NEGATIVE_INFINITY;
+
+        /**
+         * Simple constructor.
+         * @param shift shift subtracted from the values before computing their moments
+         */
+        SummaryMoments(final double shift) {
+            this.shift = shift;
+        }
+
+        /**
+         * Add a block of values.
+         * <p>
+         * The block is read twice, the second pass hitting the cache.
+         * Four independent accumulators are used in each pass so that
+         * consecutive additions do not wait for each other.
+         * </p>
+         * @param values array containing the block
+         * @param begin index of the first value of the block
+         * @param length number of values in the block (must be positive)
+         */
+        void addBlock(final double[] values, final int begin, final int length) {
+
+            final int end = begin + length;
+            final int end4 = begin + (length & ~0x3);
+
+            // first pass: sums, min and max
+            double s0 = 0;
+            double s1 = 0;
+            double s2 = 0;
+            double s3 = 0;
+            double q0 = 0;
+            double q1 = 0;
+            double q2 = 0;
+            double q3 = 0;
+            double t0 = 0;
+            double t1 = 0;
+            double t2 = 0;
+            double t3 = 0;
+            double min0 = Double.POSITIVE_INFINITY;
+            double min1 = Double.POSITIVE_INFINITY;
+            double max0 = Double.NEGATIVE_INFINITY;
+            double max1 = Double.NEGATIVE_INFINITY;
+            int i = begin;
+            for (; i < end4; i += 4) {
+                final double x0 = values[i];
+                final double x1 = values[i + 1];
+                final double x2 = values[i + 2];
+                final double x3 = values[i + 3];
+                s0 += x0;
+                s1 += x1;
+                s2 += x2;
+                s3 += x3;
+                q0 += x0 * x0;
+                q1 += x1 * x1;
+                q2 += x2 * x2;
+                q3 += x3 * x3;
+                t0 += x0 - shift;
+                t1 += x1 - shift;
+                t2 += x2 - shift;
+                t3 += x3 - shift;
+                min0 = (x0 < min0) ? x0 : min0;
+                min1 = (x1 < min1) ? x1 : min1;
+                min0 = (x2 < min0) ? x2 : min0;
+                min1 = (x3 < min1) ? x3 : min1;
+                max0 = (x0 > max0) ? x0 : max0;
+                max1 = (x1 > max1) ? x1 : max1;
+                max0 = (x2 > max0) ? x2 : max0;
+                max1 = (x3 > max1) ? x3 : max1;
+            }
+            for (; i < end; ++i) {
+                final double x = values[i];
+                s0 += x;
+                q0 += x * x;
+                t0 += x - shift;
+                min0 = (x < min0) ? x : min0;
+                max0 = (x > max0) ? x : max0;
+            }
+            final double blockSum = (s0 + s1) + (s2 + s3);
+            final double blockSumsq = (q0 + q1) + (q2 + q3);
+            final double xbar = ((t0 + t1) + (t2 + t3)) / length;
+
+            // second pass: corrected sum of squared deviations
+            double d0 = 0;
+            double d1 = 0;
+            double c0 = 0;
+            double c1 = 0;
+            i = begin;
+            for (; i < end4; i += 4) {
+                final double dev0 = (values[i]     - shift) - xbar;
+                final double dev1 = (values[i + 1] - shift) - xbar;
+                final double dev2 = (values[i + 2] - shift) - xbar;
+                final double dev3 = (values[i + 3] - shift) - xbar;
+                d0 += dev0 * dev0 + dev2 * dev2;
+                d1 += dev1 * dev1 + dev3 * dev3;
+                c0 += dev0 + dev2;
+                c1 += dev1 + dev3;
+            }
+            for (; i < end; ++i) {
+                final double dev = (values[i] - shift) - xbar;
+                d0 += dev * dev;
+                c0 += dev;
+            }
+            final double correction = c0 + c1;
+
+            final SummaryMoments block = new SummaryMoments(shift);
+            block.n    = length;
+            block.sum  = blockSum;
+            block.sumsq = blockSumsq;
+            block.mean = xbar + correction / length;
+            block.m2   = (d0 + d1) - correction * correction / length;
+            block.min  = FastMath.min(min0, min1);
+            block.max  = FastMath.max(max0, max1);
+            merge(block);
+
+        }
+
+        /**
+         * Merge the moments of another set of values.
+         * @param other moments of the other set
+         */
+        void merge(final SummaryMoments other) {
+            if (other.n == 0) {
+                return;
+            }
+            if (n == 0) {
+                n    = other.n;
+                sum  = other.sum;
+                sumsq = other.sumsq;
+                mean = other.mean;
+                m2   = other.m2;
+                min  = other.min;
+                max  = other.max;
+                return;
+            }
+            final double total = n + other.n;
+            final double delta = other.mean - mean;
+            mean += delta * other.n / total;
+            m2   += other.m2 + delta * delta * n * other.n / total;
+            sum  += other.sum;
+            sumsq += other.sumsq;
+            min   = (other.min < min) ? other.min : min;
+            max   = (other.max > max) ? other.max : max;
+            n    += other.n;
+        }
+
+    }
+
 }
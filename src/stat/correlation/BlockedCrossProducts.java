@@ -0,0 +1,227 @@
+package stat.correlation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import linear.RealMatrix;
+import math.util.ConcurrencyUtils;
+import math.util.FastMath;
+
+class BlockedCrossProducts {
+
+    /** Number of columns in a tile. */
+    private static final int TILE_COLUMNS = 32;
+
+    /** Number of rows processed at once in a tile, so the tile columns chunks stay in cache. */
+    private static final int CHUNK_ROWS = 1024;
+
+    /** Private constructor for a utility class. */
+    private BlockedCrossProducts() {
+    }
+
+    /**
+     * Extract the columns of a matrix.
+     * @param matrix matrix
+     * @return columns of the matrix, as contiguous arrays
+     */
+    public static double[][] columns(final RealMatrix matrix) {
+        final double[][] columns = new double[matrix.getColumnDimension()][];
+        for (int j = 0; j < columns.length; ++j) {
+            columns[j] = matrix.getColumn(j);
+        }
+        return columns;
+    }
+
+    /**
+     * Extract the columns of a block of rows.
+     * @param rows rows (must all have the same length)
+     * @return columns of the block, as contiguous arrays
+     */
+    public static double[][] columns(final double[][] rows) {
+        final int p = rows[0].length;
+        final double[][] columns = new double[p][rows.length];
+        for (int k = 0; k < rows.length; ++k) {
+            final double[] row = rows[k];
+            for (int j = 0; j < p; ++j) {
+                columns[j][k] = row[j];
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Center columns in place.
+     * <p>
+     * Means are computed with the same two-pass corrected algorithm as
+     * {@link stat.descriptive.moment.Mean}.
+     * </p>
+     * @param columns columns to center
+     * @return means of the columns
+     */
+    public static double[] center(final double[][] columns) {
+        final double[] means = new double[columns.length];
+        for (int j = 0; j < columns.length; ++j) {
+            final double[] c = columns[j];
+            double sum = 0;
+            for (final double x : c) {
+                sum += x;
+            }
+            double xbar = sum / c.length;
+            double correction = 0;
+            for (final double x : c) {
+                correction += x - xbar;
+            }
+            xbar += correction / c.length;
+            for (int k = 0; k < c.length; ++k) {
+                c[k] -= xbar;
+            }
+            means[j] = xbar;
+        }
+        return means;
+    }
+
+    /**
+     * Compute the cross products matrix C<sub>ij</sub> = &sum;<sub>k</sub> x<sub>ik</sub> x<sub>jk</sub>
+     * of a set of columns (i.e. X<sup>T</sup>X where the columns of X are the arrays).
+     * <p>
+     * The upper triangle is split in square tiles of columns, and each tile
+     * is accumulated over chunks of rows so the columns chunks involved stay
+     * in cache. Tiles are independent and are computed in parallel if an
+     * executor is provided.
+     * </p>
+     * @param columns columns (must all have the same length)
+     * @param executor executor for the tiles (may be null to compute
+     * everything in the calling thread)
+     * @return symmetric cross products matrix
+     */
+    public static double[][] compute(final double[][] columns, final ExecutorService executor) {
+
+        final int p = columns.length;
+        final int n = (p == 0) ? 0 : columns[0].length;
+        final double[][] products = new double[p][p];
+
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int iStart = 0; iStart < p; iStart += TILE_COLUMNS) {
+            for (int jStart = iStart; jStart < p; jStart += TILE_COLUMNS) {
+                final int i0 = iStart;
+                final int j0 = jStart;
+                tasks.add(new Callable<Void>() {
+                    /** {@inheritDoc} */
+                    public Void call() {
+                        computeTile(columns, n, products, i0, FastMath.min(p, i0 + TILE_COLUMNS),
+                                    j0, FastMath.min(p, j0 + TILE_COLUMNS));
+                        return null;
+                    }
+                });
+            }
+        }
+        ConcurrencyUtils.invokeAll(executor, tasks);
+
+        // fill the lower triangle
+        for (int i = 0; i < p; ++i) {
+            for (int j = 0; j < i; ++j) {
+                products[i][j] = products[j][i];
+            }
+        }
+
+        return products;
+
+    }
+
+    /**
+     * Pack the lower triangle of a symmetric matrix.
+     * <p>
+     * Entry (i, j) with j &le; i is stored at index i(i+1)/2 + j.
+     * </p>
+     * @param matrix symmetric matrix
+     * @return packed lower triangle
+     */
+    public static double[] pack(final double[][] matrix) {
+        final double[] packed = new double[matrix.length * (matrix.length + 1) / 2];
+        int k = 0;
+        for (int i = 0; i < matrix.length; ++i) {
+            for (int j = 0; j <= i; ++j) {
+                packed[k++] = matrix[i][j];
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Merge the means and packed co-moments of two samples.
+     * <p>
+     * The co-moments are the sums of products of deviations from the means,
+     * packed as by {@link #pack(double[][])}. They are combined using the
+     * pairwise update formulas of Chan, Golub and LeVeque, which have the
+     * same stability as one-at-a-time (Welford) updates.
+     * </p>
+     * @param means means of the first sample, updated in place
+     * @param comoments packed co-moments of the first sample, updated in place
+     * @param n size of the first sample
+     * @param otherMeans means of the second sample
+     * @param otherComoments packed co-moments of the second sample
+     * @param otherN size of the second sample
+     */
+    public static void merge(final double[] means, final double[] comoments, final double n,
+                             final double[] otherMeans, final double[] otherComoments,
+                             final double otherN) {
+        if (otherN == 0) {
+            return;
+        }
+        final double total = n + otherN;
+        final double scale = n * otherN / total;
+        final double[] delta = new double[means.length];
+        for (int i = 0; i < means.length; ++i) {
+            delta[i] = otherMeans[i] - means[i];
+        }
+        int k = 0;
+        for (int i = 0; i < means.length; ++i) {
+            final double sDi = scale * delta[i];
+            for (int j = 0; j <= i; ++j) {
+                comoments[k] += otherComoments[k] + sDi * delta[j];
+                ++k;
+            }
+        }
+        for (int i = 0; i < means.length; ++i) {
+            means[i] += delta[i] * otherN / total;
+        }
+    }
+
+    /**
+     * Accumulate one tile of the upper triangle of the cross products matrix.
+     * @param columns columns
+     * @param n length of the columns
+     * @param products cross products matrix to update
+     * @param iStart first row of the tile (included)
+     * @param iEnd last row of the tile (excluded)
+     * @param jStart first column of the tile (included)
+     * @param jEnd last column of the tile (excluded)
+     */
+    private static void computeTile(final double[][] columns, final int n, final double[][] products,
+                                    final int iStart, final int iEnd, final int jStart, final int jEnd) {
+        for (int kStart = 0; kStart < n; kStart += CHUNK_ROWS) {
+            final int kEnd = FastMath.min(n, kStart + CHUNK_ROWS);
+            for (int i = iStart; i < iEnd; ++i) {
+                final double[] xi = columns[i];
+                final double[] pi = products[i];
+                for (int j = FastMath.max(i, jStart); j < jEnd; ++j) {
+                    final double[] xj = columns[j];
+                    double s0 = 0;
+                    double s1 = 0;
+                    int k = kStart;
+                    for (; k < kEnd - 1; k += 2) {
+                        s0 += xi[k]     * xj[k];
+                        s1 += xi[k + 1] * xj[k + 1];
+                    }
+                    if (k < kEnd) {
+                        s0 += xi[k] * xj[k];
+                    }
+                    pi[j] += s0 + s1;
+                }
+            }
+        }
+    }
+
+}
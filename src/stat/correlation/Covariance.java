@@ -1,9 +1,10 @@
 package stat.correlation;
 
+import java.util.concurrent.ExecutorService;
+
 import linear.BlockRealMatrix;
 import linear.RealMatrix;
 import stat.descriptive.moment.Mean;
-import stat.descriptive.moment.Variance;
 import exception.MathIllegalArgumentException;
 import exception.util.LocalizedFormats;
 
@@ -83,6 +84,30 @@ public class Covariance {
        covarianceMatrix = computeCovarianceMatrix(matrix, biasCorrected);
     }
 
+    /**
+     * Create a covariance matrix from a matrix whose columns
+     * represent covariates, computing tiles of the matrix in parallel.
+     *
+     * <p>The <code>biasCorrected</code> parameter determines whether or not
+     * covariance estimates are bias-corrected.</p>
+     *
+     * <p>The matrix must have at least two columns and two rows</p>
+     *
+     * @param matrix matrix with columns representing covariates
+     * @param biasCorrected true means covariances are bias-corrected
+     * @param executor executor for the tiles of the covariance matrix (may be
+     * null to compute everything in the calling thread)
+     * @throws MathIllegalArgumentException if the input matrix does not have
+     * at least two rows and two columns
+     * @see #computeCovarianceMatrix(RealMatrix, boolean, ExecutorService)
+     */
+    public Covariance(RealMatrix matrix, boolean biasCorrected, ExecutorService executor)
+    throws MathIllegalArgumentException {
+       checkSufficientData(matrix);
+       n = matrix.getRowDimension();
+       covarianceMatrix = computeCovarianceMatrix(matrix, biasCorrected, executor);
+    }
+
     /**
      * Create a covariance matrix from a matrix whose columns
      * represent covariates.
@@ -125,18 +150,39 @@ public class Covariance {
      */
     protected RealMatrix computeCovarianceMatrix(RealMatrix matrix, boolean biasCorrected)
     throws MathIllegalArgumentException {
-        int dimension = matrix.getColumnDimension();
-        Variance variance = new Variance(biasCorrected);
-        RealMatrix outMatrix = new BlockRealMatrix(dimension, dimension);
-        for (int i = 0; i < dimension; i++) {
-            for (int j = 0; j < i; j++) {
-              double cov = covariance(matrix.getColumn(i), matrix.getColumn(j), biasCorrected);
-              outMatrix.setEntry(i, j, cov);
-              outMatrix.setEntry(j, i, cov);
+        return computeCovarianceMatrix(matrix, biasCorrected, null);
+    }
+
+    /**
+     * Compute a covariance matrix from a matrix whose columns represent
+     * covariates.
+     * <p>
+     * The columns are extracted and centered once, then the matrix is
+     * computed as the X<sup>T</sup>X product of the centered columns, by
+     * square tiles accumulated over cache-sized chunks of rows. Tiles are
+     * independent and are computed in parallel if an executor is provided.
+     * </p>
+     * @param matrix input matrix (must have at least two columns and two rows)
+     * @param biasCorrected determines whether or not covariance estimates are bias-corrected
+     * @param executor executor for the tiles of the covariance matrix (may be
+     * null to compute everything in the calling thread)
+     * @return covariance matrix
+     * @throws MathIllegalArgumentException if the matrix does not contain sufficient data
+     */
+    protected RealMatrix computeCovarianceMatrix(RealMatrix matrix, boolean biasCorrected,
+                                                 ExecutorService executor)
+    throws MathIllegalArgumentException {
+        final int length = matrix.getRowDimension();
+        final double[][] columns = BlockedCrossProducts.columns(matrix);
+        BlockedCrossProducts.center(columns);
+        final double[][] products = BlockedCrossProducts.compute(columns, executor);
+        final double divisor = biasCorrected ? length - 1.0 : length;
+        for (final double[] row : products) {
+            for (int j = 0; j < row.length; ++j) {
+                row[j] /= divisor;
             }
-            outMatrix.setEntry(i, i, variance.evaluate(matrix.getColumn(i)));
         }
-        return outMatrix;
+        return new BlockRealMatrix(products);
     }
 
     /**
@@ -1,5 +1,7 @@
 package stat.correlation;
 
+import java.util.concurrent.ExecutorService;
+
 import linear.BlockRealMatrix;
 import linear.RealMatrix;
 import math.util.FastMath;
@@ -51,6 +53,22 @@ public class PearsonsCorrelation {
         correlationMatrix = computeCorrelationMatrix(matrix);
     }
 
+    /**
+     * Create a PearsonsCorrelation from a RealMatrix whose columns
+     * represent variables to be correlated, computing tiles of the
+     * correlation matrix in parallel.
+     *
+     * @param matrix matrix with columns representing variables to correlate
+     * @param executor executor for the tiles of the correlation matrix (may be
+     * null to compute everything in the calling thread)
+     * @see #computeCorrelationMatrix(RealMatrix, ExecutorService)
+     */
+    public PearsonsCorrelation(RealMatrix matrix, ExecutorService executor) {
+        checkSufficientData(matrix);
+        nObs = matrix.getRowDimension();
+        correlationMatrix = computeCorrelationMatrix(matrix, executor);
+    }
+
     /**
      * Create a PearsonsCorrelation from a {@link Covariance}.  The correlation
      * matrix is computed by scaling the Covariance's covariance matrix.
@@ -156,17 +174,28 @@ public class PearsonsCorrelation {
      * @return correlation matrix
      */
     public RealMatrix computeCorrelationMatrix(RealMatrix matrix) {
-        int nVars = matrix.getColumnDimension();
-        RealMatrix outMatrix = new BlockRealMatrix(nVars, nVars);
-        for (int i = 0; i < nVars; i++) {
-            for (int j = 0; j < i; j++) {
-              double corr = correlation(matrix.getColumn(i), matrix.getColumn(j));
-              outMatrix.setEntry(i, j, corr);
-              outMatrix.setEntry(j, i, corr);
-            }
-            outMatrix.setEntry(i, i, 1d);
-        }
-        return outMatrix;
+        return computeCorrelationMatrix(matrix, null);
+    }
+
+    /**
+     * Computes the correlation matrix for the columns of the
+     * input matrix.
+     * <p>
+     * The columns are extracted and centered once, then the cross products
+     * of the centered columns are computed by square tiles accumulated over
+     * cache-sized chunks of rows, and normalized by the column norms. Tiles
+     * are independent and are computed in parallel if an executor is provided.
+     * </p>
+     *
+     * @param matrix matrix with columns representing variables to correlate
+     * @param executor executor for the tiles of the correlation matrix (may be
+     * null to compute everything in the calling thread)
+     * @return correlation matrix
+     */
+    public RealMatrix computeCorrelationMatrix(RealMatrix matrix, ExecutorService executor) {
+        final double[][] columns = BlockedCrossProducts.columns(matrix);
+        BlockedCrossProducts.center(columns);
+        return crossProductsToCorrelation(BlockedCrossProducts.compute(columns, executor));
     }
 
     /**
@@ -235,6 +264,26 @@ public class PearsonsCorrelation {
         return outMatrix;
     }
 
+    /**
+     * Derives a correlation matrix from a cross products matrix of centered variables.
+     *
+     * @param products cross products matrix (will be overwritten)
+     * @return correlation matrix
+     */
+    RealMatrix crossProductsToCorrelation(final double[][] products) {
+        final int nVars = products.length;
+        final double[] norms = new double[nVars];
+        for (int i = 0; i < nVars; i++) {
+            norms[i] = FastMath.sqrt(products[i][i]);
+        }
+        for (int i = 0; i < nVars; i++) {
+            for (int j = 0; j < nVars; j++) {
+                products[i][j] = (i == j) ? 1d : products[i][j] / (norms[i] * norms[j]);
+            }
+        }
+        return new BlockRealMatrix(products);
+    }
+
     /**
      * Throws IllegalArgumentException of the matrix does not have at least
      * two columns and two rows
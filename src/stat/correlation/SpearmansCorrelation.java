@@ -1,7 +1,13 @@
 package stat.correlation;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
 import linear.BlockRealMatrix;
 import linear.RealMatrix;
+import math.util.ConcurrencyUtils;
 import stat.ranking.NaturalRanking;
 import stat.ranking.RankingAlgorithm;
 import exception.DimensionMismatchException;
@@ -57,10 +63,32 @@ public class SpearmansCorrelation {
      * @param rankingAlgorithm ranking algorithm
      */
     public SpearmansCorrelation(final RealMatrix dataMatrix, final RankingAlgorithm rankingAlgorithm) {
+        this(dataMatrix, rankingAlgorithm, null);
+    }
+
+    /**
+     * Create a SpearmansCorrelation with the given input data matrix
+     * and ranking algorithm, ranking the columns and computing the
+     * correlation matrix in parallel.
+     * <p>
+     * When an executor is provided, several columns are ranked at the same
+     * time, so the ranking algorithm must be thread-safe. {@link NaturalRanking}
+     * is, unless it uses {@link stat.ranking.TiesStrategy#RANDOM RANDOM} ties
+     * resolution, as its random generator is shared.
+     * </p>
+     *
+     * @param dataMatrix matrix of data with columns representing
+     * variables to correlate
+     * @param rankingAlgorithm ranking algorithm
+     * @param executor executor for the ranking of the columns and the tiles of
+     * the correlation matrix (may be null to compute everything in the calling thread)
+     */
+    public SpearmansCorrelation(final RealMatrix dataMatrix, final RankingAlgorithm rankingAlgorithm,
+                                final ExecutorService executor) {
         this.data = dataMatrix.copy();
         this.rankingAlgorithm = rankingAlgorithm;
-        rankTransform(data);
-        rankCorrelation = new PearsonsCorrelation(data);
+        rankTransform(data, executor);
+        rankCorrelation = new PearsonsCorrelation(data, executor);
     }
 
     /**
@@ -96,9 +124,29 @@ public class SpearmansCorrelation {
      * @return correlation matrix
      */
     public RealMatrix computeCorrelationMatrix(RealMatrix matrix) {
-        RealMatrix matrixCopy = matrix.copy();
-        rankTransform(matrixCopy);
-        return new PearsonsCorrelation().computeCorrelationMatrix(matrixCopy);
+        return computeCorrelationMatrix(matrix, null);
+    }
+
+    /**
+     * Computes the Spearman's rank correlation matrix for the columns of the
+     * input matrix.
+     * <p>
+     * The ranked columns are used directly by the same blocked kernel as
+     * {@link PearsonsCorrelation#computeCorrelationMatrix(RealMatrix, ExecutorService)},
+     * without being copied back into a matrix. Columns are ranked in parallel
+     * if an executor is provided, in which case the ranking algorithm must be
+     * thread-safe.
+     * </p>
+     *
+     * @param matrix matrix with columns representing variables to correlate
+     * @param executor executor for the ranking of the columns and the tiles of
+     * the correlation matrix (may be null to compute everything in the calling thread)
+     * @return correlation matrix
+     */
+    public RealMatrix computeCorrelationMatrix(RealMatrix matrix, ExecutorService executor) {
+        final double[][] columns = rankColumns(matrix, executor);
+        BlockedCrossProducts.center(columns);
+        return new PearsonsCorrelation().crossProductsToCorrelation(BlockedCrossProducts.compute(columns, executor));
     }
 
     /**
@@ -139,10 +187,42 @@ public class SpearmansCorrelation {
      * using the current <code>rankingAlgorithm</code>
      *
      * @param matrix matrix to transform
+     * @param executor executor for the ranking of the columns (may be null)
+     */
+    private void rankTransform(RealMatrix matrix, ExecutorService executor) {
+        final double[][] columns = rankColumns(matrix, executor);
+        for (int i = 0; i < columns.length; i++) {
+            matrix.setColumn(i, columns[i]);
+        }
+    }
+
+    /**
+     * Ranks each of the columns of <code>matrix</code> using the current
+     * <code>rankingAlgorithm</code>, without modifying the matrix.
+     *
+     * @param matrix matrix whose columns should be ranked
+     * @param executor executor for the ranking of the columns (may be null
+     * to rank all columns in the calling thread)
+     * @return ranked columns
+     * @throws DimensionMismatchException if the ranking algorithm changes
+     * the length of a column
      */
-    private void rankTransform(RealMatrix matrix) {
+    private double[][] rankColumns(final RealMatrix matrix, final ExecutorService executor) {
+        final int nRows = matrix.getRowDimension();
+        final List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
         for (int i = 0; i < matrix.getColumnDimension(); i++) {
-            matrix.setColumn(i, rankingAlgorithm.rank(matrix.getColumn(i)));
+            final int column = i;
+            tasks.add(new Callable<double[]>() {
+                /** {@inheritDoc} */
+                public double[] call() {
+                    final double[] ranks = rankingAlgorithm.rank(matrix.getColumn(column));
+                    if (ranks.length != nRows) {
+                        throw new DimensionMismatchException(ranks.length, nRows);
+                    }
+                    return ranks;
+                }
+            });
         }
+        return ConcurrencyUtils.invokeAll(executor, tasks).toArray(new double[tasks.size()][]);
     }
 }
@@ -1,15 +1,32 @@
 package stat.correlation;
 
+import java.util.concurrent.ExecutorService;
+
 import linear.MatrixUtils;
 import linear.RealMatrix;
 import exception.DimensionMismatchException;
-import exception.MathUnsupportedOperationException;
 import exception.NumberIsTooSmallException;
+import exception.util.LocalizedFormats;
 
 public class StorelessCovariance extends Covariance {
 
-    /** the square covariance matrix (upper triangular part) */
-    private StorelessBivariateCovariance[] covMatrix;
+    /** means of the variables */
+    private final double[] means;
+
+    /**
+     * sums of products of deviations from the means, i.e. the covariance
+     * numerators (packed lower triangular part of the symmetric matrix)
+     */
+    private final double[] comoments;
+
+    /** number of observations */
+    private double n;
+
+    /** work array for the deviations of a new row */
+    private final double[] delta;
+
+    /** flag for bias correction */
+    private final boolean biasCorrected;
 
     /** dimension of the square covariance matrix */
     private int dimension;
@@ -33,28 +50,17 @@ public class StorelessCovariance extends Covariance {
      * i.e. n in the denominator.
      */
     public StorelessCovariance(final int dim, final boolean biasCorrected) {
-        dimension = dim;
-        covMatrix = new StorelessBivariateCovariance[dimension * (dimension + 1) / 2];
-        initializeMatrix(biasCorrected);
-    }
-
-    /**
-     * Initialize the internal two-dimensional array of
-     * {@link StorelessBivariateCovariance} instances.
-     *
-     * @param biasCorrected if the covariance estimate shall be corrected for bias
-     */
-    private void initializeMatrix(final boolean biasCorrected) {
-        for(int i = 0; i < dimension; i++){
-            for(int j = 0; j < dimension; j++){
-                setElement(i, j, new StorelessBivariateCovariance(biasCorrected));
-            }
-        }
+        dimension          = dim;
+        means              = new double[dimension];
+        comoments          = new double[dimension * (dimension + 1) / 2];
+        delta              = new double[dimension];
+        n                  = 0;
+        this.biasCorrected = biasCorrected;
     }
 
     /**
      * Returns the index (i, j) translated into the one-dimensional
-     * array used to store the upper triangular part of the symmetric
+     * array used to store the lower triangular part of the symmetric
      * covariance matrix.
      *
      * @param i the row index
@@ -65,27 +71,6 @@ public class StorelessCovariance extends Covariance {
         return j < i ? i * (i + 1) / 2 + j : j * (j + 1) / 2 + i;
     }
 
-    /**
-     * Gets the element at index (i, j) from the covariance matrix
-     * @param i the row index
-     * @param j the column index
-     * @return the {@link StorelessBivariateCovariance} element at the given index
-     */
-    private StorelessBivariateCovariance getElement(final int i, final int j) {
-        return covMatrix[indexOf(i, j)];
-    }
-
-    /**
-     * Sets the covariance element at index (i, j) in the covariance matrix
-     * @param i the row index
-     * @param j the column index
-     * @param cov the {@link StorelessBivariateCovariance} element to be set
-     */
-    private void setElement(final int i, final int j,
-                            final StorelessBivariateCovariance cov) {
-        covMatrix[indexOf(i, j)] = cov;
-    }
-
     /**
      * Get the covariance for an individual element of the covariance matrix.
      *
@@ -93,13 +78,17 @@ public class StorelessCovariance extends Covariance {
      * @param yIndex column index in the covariance matrix
      * @return the covariance of the given element
      * @throws NumberIsTooSmallException if the number of observations
-     * in the cell is &lt; 2
+     * is &lt; 2
      */
     public double getCovariance(final int xIndex,
                                 final int yIndex)
         throws NumberIsTooSmallException {
 
-        return getElement(xIndex, yIndex).getResult();
+        if (n < 2) {
+            throw new NumberIsTooSmallException(LocalizedFormats.INSUFFICIENT_DIMENSION,
+                                                n, 2, true);
+        }
+        return comoments[indexOf(xIndex, yIndex)] / (biasCorrected ? n - 1d : n);
 
     }
 
@@ -118,20 +107,100 @@ public class StorelessCovariance extends Covariance {
             throw new DimensionMismatchException(length, dimension);
         }
 
-        // only update the upper triangular part of the covariance matrix
-        // as only these parts are actually stored
-        for (int i = 0; i < length; i++){
-            for (int j = i; j < length; j++){
-                getElement(i, j).increment(data[i], data[j]);
+        // Welford update, with deviations from the previous means
+        n++;
+        final double factor = (n - 1.0) / n;
+        for (int i = 0; i < length; i++) {
+            delta[i] = data[i] - means[i];
+            means[i] += delta[i] / n;
+        }
+        int k = 0;
+        for (int i = 0; i < length; i++) {
+            final double fDi = factor * delta[i];
+            for (int j = 0; j <= i; j++) {
+                comoments[k++] += fDi * delta[j];
             }
         }
 
     }
 
+    /**
+     * Increment the covariance matrix with a block of rows of data.
+     *
+     * @param rows array of rows of data
+     * @throws DimensionMismatchException if the length of a row
+     * does not match with the covariance matrix
+     * @see #increment(double[][], ExecutorService)
+     */
+    public void increment(final double[][] rows)
+        throws DimensionMismatchException {
+        increment(rows, null);
+    }
+
+    /**
+     * Increment the covariance matrix with a block of rows of data.
+     * <p>
+     * The block is centered on its own means and its cross products matrix
+     * is computed by cache-sized tiles (in parallel if an executor is
+     * provided). This rank-k update is then combined with the current
+     * estimate using the pairwise formulas of Chan, Golub and LeVeque, which
+     * are as stable as row by row updates, for a much lower cost per row
+     * than {@link #increment(double[])}.
+     * </p>
+     *
+     * @param rows array of rows of data
+     * @param executor executor for the tiles of the cross products matrix
+     * (may be null to compute everything in the calling thread)
+     * @throws DimensionMismatchException if the length of a row
+     * does not match with the covariance matrix
+     */
+    public void increment(final double[][] rows, final ExecutorService executor)
+        throws DimensionMismatchException {
+
+        if (rows.length == 0) {
+            return;
+        }
+        for (final double[] row : rows) {
+            if (row.length != dimension) {
+                throw new DimensionMismatchException(row.length, dimension);
+            }
+        }
+
+        final double[][] columns    = BlockedCrossProducts.columns(rows);
+        final double[]   blockMeans = BlockedCrossProducts.center(columns);
+        final double[][] products   = BlockedCrossProducts.compute(columns, executor);
+        BlockedCrossProducts.merge(means, comoments, n,
+                                   blockMeans, BlockedCrossProducts.pack(products), rows.length);
+        n += rows.length;
+
+    }
+
+    /**
+     * Merge the observations of another instance into this one.
+     * <p>
+     * This allows several threads to accumulate their own partial covariance
+     * matrices independently, and to combine them at the end. The result is
+     * the same as if all observations had been added to this instance.
+     * The bias correction setting of this instance is kept.
+     * </p>
+     *
+     * @param other other covariance matrix
+     * @throws DimensionMismatchException if the dimensions do not match
+     */
+    public void append(final StorelessCovariance other)
+        throws DimensionMismatchException {
+        if (other.dimension != dimension) {
+            throw new DimensionMismatchException(other.dimension, dimension);
+        }
+        BlockedCrossProducts.merge(means, comoments, n,
+                                   other.means, other.comoments, other.n);
+        n += other.n;
+    }
+
     /**
      * {@inheritDoc}
      * @throws NumberIsTooSmallException if the number of observations
-     * in a cell is &lt; 2
+     * is &lt; 2
      */
     @Override
     public RealMatrix getCovarianceMatrix() throws NumberIsTooSmallException {
@@ -143,30 +212,29 @@ public class StorelessCovariance extends Covariance {
      *
      * @return a two-dimensional double array of covariance values
      * @throws NumberIsTooSmallException if the number of observations
-     * for a cell is &lt; 2
+     * is &lt; 2
      */
     public double[][] getData() throws NumberIsTooSmallException {
         final double[][] data = new double[dimension][dimension];
         for (int i = 0; i < dimension; i++) {
             for (int j = 0; j < dimension; j++) {
-                data[i][j] = getElement(i, j).getResult();
+                data[i][j] = getCovariance(i, j);
             }
         }
         return data;
     }
 
     /**
-     * This {@link Covariance} method is not supported by a {@link StorelessCovariance},
-     * since the number of bivariate observations does not have to be the same for different
-     * pairs of covariates - i.e., N as defined in {@link Covariance#getN()} is undefined.
+     * Returns the number of observations added so far.
+     * <p>
+     * All rows have the same length, so every pair of covariates has been
+     * observed the same number of times.
+     * </p>
      *
-     * @return nothing as this implementation always throws a
-     * {@link MathUnsupportedOperationException}
-     * @throws MathUnsupportedOperationException in all cases
+     * @return number of observations
      */
     @Override
-    public int getN()
-        throws MathUnsupportedOperationException {
-        throw new MathUnsupportedOperationException();
+    public int getN() {
+        return (int) n;
     }
 }
@@ -0,0 +1,366 @@
+package stat.descriptive;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import linear.RealMatrix;
+import math.util.FastMath;
+import stat.descriptive.moment.VectorialCovariance;
+import exception.DimensionMismatchException;
+
+public class ConcurrentMultivariateSummaryStatistics
+    implements StatisticalMultivariateSummary {
+
+    /** Dimension of the data. */
+    private final int k;
+
+    /** Indicator for bias correction of the covariance. */
+    private final boolean isCovarianceBiasCorrected;
+
+    /**
+     * Partial statistics, shared by the threads whose identifiers map to the
+     * same stripe (null until a value is added to the stripe).
+     */
+    private final AtomicReferenceArray<Partial> partials;
+
+    /**
+     * Construct a ConcurrentMultivariateSummaryStatistics instance
+     * <p>
+     * Values are accumulated in a fixed number of partial statistics, twice
+     * the number of available processors rounded up to a power of two, and
+     * each thread adds its values to the one selected by its identifier.
+     * Writers therefore rarely wait for each other, and the memory used does
+     * not grow with the number of threads that ever added values, partial
+     * statistics being only allocated for stripes actually used. The
+     * partial statistics are merged each time a statistic is read,
+     * using the pairwise update formulas of Chan, Golub and LeVeque for the
+     * means and covariance. Reading is therefore more expensive than with
+     * {@link SynchronizedMultivariateSummaryStatistics}; use {@link #getSummary()}
+     * to read several statistics from a single merge.
+     * </p>
+     * @param k dimension of the data
+     * @param isCovarianceBiasCorrected if true, the unbiased sample
+     * covariance is computed, otherwise the biased population covariance
+     * is computed
+     */
+    public ConcurrentMultivariateSummaryStatistics(final int k,
+                                                   final boolean isCovarianceBiasCorrected) {
+        this.k                         = k;
+        this.isCovarianceBiasCorrected = isCovarianceBiasCorrected;
+        final int target = 2 * Runtime.getRuntime().availableProcessors();
+        final int highest = Integer.highestOneBit(target);
+        this.partials = new AtomicReferenceArray<Partial>((highest == target) ? target : highest << 1);
+    }
+
+    /**
+     * Add an n-tuple to the data
+     * <p>
+     * This method can be called concurrently by any number of threads.
+     * </p>
+     *
+     * @param value  the n-tuple to add
+     * @throws DimensionMismatchException if the length of the array
+     * does not match the one used at construction
+     */
+    public void addValue(final double[] value) throws DimensionMismatchException {
+        if (value.length != k) {
+            throw new DimensionMismatchException(value.length, k);
+        }
+        final long id = Thread.currentThread().getId();
+        final int stripe = (int) (id ^ (id >>> 32)) & (partials.length() - 1);
+        Partial partial = partials.get(stripe);
+        if (partial == null) {
+            partials.compareAndSet(stripe, null, new Partial(k, isCovarianceBiasCorrected));
+            partial = partials.get(stripe);
+        }
+        synchronized (partial) {
+            partial.addValue(value);
+        }
+    }
+
+    /**
+     * Get a snapshot of the statistics of all values added so far.
+     * <p>
+     * The snapshot is not updated when new values are added. Values added
+     * concurrently with this call may or may not be included.
+     * </p>
+     * @return snapshot of the statistics
+     */
+    public StatisticalMultivariateSummary getSummary() {
+        final Partial merged = new Partial(k, isCovarianceBiasCorrected);
+        for (int i = 0; i < partials.length(); ++i) {
+            final Partial partial = partials.get(i);
+            if (partial != null) {
+                synchronized (partial) {
+                    merged.merge(partial);
+                }
+            }
+        }
+        return merged;
+    }
+
+    /** {@inheritDoc} */
+    public int getDimension() {
+        return k;
+    }
+
+    /** {@inheritDoc} */
+    public long getN() {
+        return getSummary().getN();
+    }
+
+    /** {@inheritDoc} */
+    public double[] getSum() {
+        return getSummary().getSum();
+    }
+
+    /** {@inheritDoc} */
+    public double[] getSumSq() {
+        return getSummary().getSumSq();
+    }
+
+    /** {@inheritDoc} */
+    public double[] getSumLog() {
+        return getSummary().getSumLog();
+    }
+
+    /** {@inheritDoc} */
+    public double[] getMean() {
+        return getSummary().getMean();
+    }
+
+    /** {@inheritDoc} */
+    public double[] getStandardDeviation() {
+        return getSummary().getStandardDeviation();
+    }
+
+    /** {@inheritDoc} */
+    public RealMatrix getCovariance() {
+        return getSummary().getCovariance();
+    }
+
+    /** {@inheritDoc} */
+    public double[] getMax() {
+        return getSummary().getMax();
+    }
+
+    /** {@inheritDoc} */
+    public double[] getMin() {
+        return getSummary().getMin();
+    }
+
+    /** {@inheritDoc} */
+    public double[] getGeometricMean() {
+        return getSummary().getGeometricMean();
+    }
+
+    /**
+     * Resets all statistics.
+     * <p>
+     * Values added concurrently with this call may or may not be kept.
+     * </p>
+     */
+    public void clear() {
+        for (int i = 0; i < partials.length(); ++i) {
+            final Partial partial = partials.get(i);
+            if (partial != null) {
+                synchronized (partial) {
+                    partial.clear();
+                }
+            }
+        }
+    }
+
+    /** Statistics of a subset of the values. */
+    private static class Partial implements StatisticalMultivariateSummary {
+
+        /** Dimension of the data. */
+        private final int k;
+
+        /** Count of values. */
+        private long n;
+
+        /** Sums of the components. */
+        private final double[] sum;
+
+        /** Sums of squares of the components. */
+        private final double[] sumSq;
+
+        /** Sums of logarithms of the components. */
+        private final double[] sumLog;
+
+        /** Minima of the components. */
+        private final double[] min;
+
+        /** Maxima of the components. */
+        private final double[] max;
+
+        /** Means of the components. */
+        private final double[] means;
+
+        /** Covariance of the components. */
+        private final VectorialCovariance covariance;
+
+        /**
+         * Simple constructor.
+         * @param k dimension of the data
+         * @param isCovarianceBiasCorrected indicator for bias correction of the covariance
+         */
+        Partial(final int k, final boolean isCovarianceBiasCorrected) {
+            this.k     = k;
+            sum        = new double[k];
+            sumSq      = new double[k];
+            sumLog     = new double[k];
+            min        = new double[k];
+            max        = new double[k];
+            means      = new double[k];
+            covariance = new VectorialCovariance(k, isCovarianceBiasCorrected);
+            clear();
+        }
+
+        /**
+         * Add an n-tuple.
+         * @param value the n-tuple to add
+         */
+        void addValue(final double[] value) {
+            n++;
+            for (int i = 0; i < k; ++i) {
+                final double v = value[i];
+                sum[i]    += v;
+                sumSq[i]  += v * v;
+                sumLog[i] += FastMath.log(v);
+                if (v < min[i] || Double.isNaN(min[i])) {
+                    min[i] = v;
+                }
+                if (v > max[i] || Double.isNaN(max[i])) {
+                    max[i] = v;
+                }
+                means[i] += (v - means[i]) / n;
+            }
+            covariance.increment(value);
+        }
+
+        /**
+         * Merge the statistics of another subset.
+         * @param other statistics of the other subset
+         */
+        void merge(final Partial other) {
+            if (other.n == 0) {
+                return;
+            }
+            final double total = n + other.n;
+            covariance.append(other.covariance);
+            for (int i = 0; i < k; ++i) {
+                means[i]  += (other.means[i] - means[i]) * other.n / total;
+                sum[i]    += other.sum[i];
+                sumSq[i]  += other.sumSq[i];
+                sumLog[i] += other.sumLog[i];
+                if (other.min[i] < min[i] || Double.isNaN(min[i])) {
+                    min[i] = other.min[i];
+                }
+                if (other.max[i] > max[i] || Double.isNaN(max[i])) {
+                    max[i] = other.max[i];
+                }
+            }
+            n += other.n;
+        }
+
+        /** Reset the statistics. */
+        void clear() {
+            n = 0;
+            Arrays.fill(sum,       0.0);
+            Arrays.fill(sumSq,     0.0);
+            Arrays.fill(sumLog,    0.0);
+            Arrays.fill(min,       Double.NaN);
+            Arrays.fill(max,       Double.NaN);
+            Arrays.fill(means,     0.0);
+            covariance.clear();
+        }
+
+        /** {@inheritDoc} */
+        public int getDimension() {
+            return k;
+        }
+
+        /** {@inheritDoc} */
+        public long getN() {
+            return n;
+        }
+
+        /** {@inheritDoc} */
+        public double[] getSum() {
+            return sum.clone();
+        }
+
+        /** {@inheritDoc} */
+        public double[] getSumSq() {
+            return sumSq.clone();
+        }
+
+        /** {@inheritDoc} */
+        public double[] getSumLog() {
+            return sumLog.clone();
+        }
+
+        /** {@inheritDoc} */
+        public double[] getMean() {
+            if (n == 0) {
+                return nans();
+            }
+            return means.clone();
+        }
+
+        /** {@inheritDoc} */
+        public double[] getStandardDeviation() {
+            double[] stdDev = new double[k];
+            if (n < 1) {
+                Arrays.fill(stdDev, Double.NaN);
+            } else if (n > 1) {
+                final RealMatrix matrix = covariance.getResult();
+                for (int i = 0; i < k; ++i) {
+                    stdDev[i] = FastMath.sqrt(matrix.getEntry(i, i));
+                }
+            }
+            return stdDev;
+        }
+
+        /** {@inheritDoc} */
+        public RealMatrix getCovariance() {
+            return covariance.getResult();
+        }
+
+        /** {@inheritDoc} */
+        public double[] getMax() {
+            return max.clone();
+        }
+
+        /** {@inheritDoc} */
+        public double[] getMin() {
+            return min.clone();
+        }
+
+        /** {@inheritDoc} */
+        public double[] getGeometricMean() {
+            if (n == 0) {
+                return nans();
+            }
+            final double[] geoMean = new double[k];
+            for (int i = 0; i < k; ++i) {
+                geoMean[i] = FastMath.exp(sumLog[i] / n);
+            }
+            return geoMean;
+        }
+
+        /**
+         * Build an array filled with NaN.
+         * @return array filled with NaN
+         */
+        private double[] nans() {
+            final double[] array = new double[k];
+            Arrays.fill(array, Double.NaN);
+            return array;
+        }
+
+    }
+
+}
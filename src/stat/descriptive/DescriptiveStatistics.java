@@ -4,9 +4,11 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
 
+import math.util.CircularDoubleArray;
 import math.util.FastMath;
 import math.util.MathUtils;
 import math.util.ResizableDoubleArray;
+import math.util.WindowedDoubleArray;
 import stat.descriptive.moment.GeometricMean;
 import stat.descriptive.moment.Kurtosis;
 import stat.descriptive.moment.Mean;
@@ -41,9 +43,9 @@ public class DescriptiveStatistics implements StatisticalSummary, Serializable {
     protected int windowSize = INFINITE_WINDOW;
 
     /**
-     *  Stored data values
+     *  Stored data values, either a {@link ResizableDoubleArray} or a {@link CircularDoubleArray}
      */
-    private ResizableDoubleArray eDA = new ResizableDoubleArray();
+    private WindowedDoubleArray eDA = new ResizableDoubleArray();
 
     /** Mean statistic implementation - can be reset by setter. */
     private UnivariateStatistic meanImpl = new Mean();
@@ -92,6 +94,31 @@ public class DescriptiveStatistics implements StatisticalSummary, Serializable {
         setWindowSize(window);
     }
 
+    /**
+     * Construct a DescriptiveStatistics instance with the specified window,
+     * storing the values in a circular buffer.
+     * <p>
+     * Unlike the default storage, the circular buffer is not synchronized
+     * and never copies the stored values when the window rolls, so this
+     * constructor should be preferred when the instance is confined to a
+     * single thread. The storage is referenced, not copied, and must not
+     * be modified by the caller afterwards.
+     * </p>
+     *
+     * @param window the window size.
+     * @param storage storage for the values (its current elements become
+     * the initial values of the dataset)
+     * @throws MathIllegalArgumentException if window size is less than 1 but
+     * not equal to {@link #INFINITE_WINDOW}
+     * @throws NullArgumentException if storage is null
+     */
+    public DescriptiveStatistics(int window, CircularDoubleArray storage)
+        throws MathIllegalArgumentException, NullArgumentException {
+        MathUtils.checkNotNull(storage);
+        eDA = storage;
+        setWindowSize(window);
+    }
+
     /**
      * Construct a DescriptiveStatistics instance with an infinite window
      * and the initial data values in double[] initialDoubleArray.
@@ -0,0 +1,223 @@
+package stat.descriptive;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import math.util.FastMath;
+import exception.NotStrictlyPositiveException;
+
+public class RollingSummaryStatistics implements StatisticalSummary, Serializable {
+
+    /** Serialization UID */
+    private static final long serialVersionUID = 20121019L;
+
+    /** Duration covered by each bucket. */
+    private final long bucketWidth;
+
+    /** Sub-summaries, indexed by bucket number modulo their count. */
+    private final SummaryStatistics[] buckets;
+
+    /** Bucket numbers of the sub-summaries. */
+    private final long[] epochs;
+
+    /** Most recent bucket number. */
+    private long current;
+
+    /** Scratch list of the non-empty sub-summaries in the window. */
+    private final List<SummaryStatistics> active;
+
+    /** Merged statistics of the window, or null if they must be recomputed. */
+    private transient StatisticalSummaryValues summary;
+
+    /**
+     * Construct a rolling summary over a time window.
+     * <p>
+     * The window is split into {@code bucketCount} buckets, each covering
+     * {@code bucketWidth} time units and holding its own {@link
+     * SummaryStatistics}. Adding a value only updates the sub-summary of
+     * its bucket, and buckets are recycled (cleared, not reallocated) as
+     * the window moves, so updates take constant time and do not allocate.
+     * Statistics are obtained by merging the sub-summaries on read with
+     * {@link AggregateSummaryStatistics#aggregate(java.util.Collection)}.
+     * The merged statistics are cached until the next value is added or the
+     * window moves, so reading several statistics costs a single merge.
+     * The time span actually covered varies between
+     * {@code (bucketCount - 1) * bucketWidth} and
+     * {@code bucketCount * bucketWidth} depending on the position in the
+     * current bucket.
+     * </p>
+     * <p>
+     * This class is not thread-safe. Even the getters update the cached
+     * statistics, so concurrent reads must also be synchronized externally.
+     * </p>
+     *
+     * @param bucketCount number of buckets
+     * @param bucketWidth duration covered by each bucket, in the same unit
+     * as the timestamps passed to {@link #addValue(double, long)}
+     * @throws NotStrictlyPositiveException if {@code bucketCount} or
+     * {@code bucketWidth} is not strictly positive
+     */
+    public RollingSummaryStatistics(final int bucketCount, final long bucketWidth)
+        throws NotStrictlyPositiveException {
+        if (bucketCount <= 0) {
+            throw new NotStrictlyPositiveException(bucketCount);
+        }
+        if (bucketWidth <= 0) {
+            throw new NotStrictlyPositiveException(bucketWidth);
+        }
+        this.bucketWidth = bucketWidth;
+        this.buckets     = new SummaryStatistics[bucketCount];
+        this.epochs      = new long[bucketCount];
+        this.active      = new ArrayList<SummaryStatistics>(bucketCount);
+        for (int i = 0; i < bucketCount; ++i) {
+            buckets[i] = new SummaryStatistics();
+        }
+        clear();
+    }
+
+    /**
+     * Add a value timestamped with {@link System#currentTimeMillis()}.
+     * <p>
+     * This method should only be used if the bucket width is expressed
+     * in milliseconds.
+     * </p>
+     *
+     * @param value the value to add
+     */
+    public void addValue(final double value) {
+        addValue(value, System.currentTimeMillis());
+    }
+
+    /**
+     * Add a timestamped value.
+     * <p>
+     * If the timestamp is later than the current bucket, the window is
+     * first moved forward as with {@link #advance(long)}. Values older
+     * than the window are ignored.
+     * </p>
+     *
+     * @param value the value to add
+     * @param time timestamp of the value
+     */
+    public void addValue(final double value, final long time) {
+        final long epoch = advance(time);
+        if (epoch > current - buckets.length) {
+            buckets[slot(epoch)].addValue(value);
+            summary = null;
+        }
+    }
+
+    /**
+     * Move the window forward, so that it ends with the bucket containing the specified time.
+     * <p>
+     * Buckets falling out of the window are cleared. Nothing is done if the
+     * time belongs to the current bucket or to an earlier one.
+     * </p>
+     *
+     * @param time end of the window
+     * @return bucket number of the specified time
+     */
+    public long advance(final long time) {
+        final long q = time / bucketWidth;
+        final long epoch = (time % bucketWidth < 0) ? q - 1 : q;
+        if (epoch > current) {
+            final long first = FastMath.max(current + 1, epoch - buckets.length + 1);
+            for (long e = first; e <= epoch; ++e) {
+                final int slot = slot(e);
+                buckets[slot].clear();
+                epochs[slot] = e;
+            }
+            current = epoch;
+            summary = null;
+        }
+        return epoch;
+    }
+
+    /**
+     * Resets all statistics.
+     */
+    public void clear() {
+        current = Long.MIN_VALUE + buckets.length;
+        for (int i = 0; i < buckets.length; ++i) {
+            buckets[i].clear();
+            epochs[i] = Long.MIN_VALUE;
+        }
+        summary = null;
+    }
+
+    /**
+     * Return a {@link StatisticalSummaryValues} instance reporting the
+     * statistics of the values in the window, merged from the buckets.
+     * <p>
+     * The buckets are merged only on the first call after a value is added
+     * or the window moves, later calls return the same instance.
+     * </p>
+     *
+     * @return statistics of the values in the window
+     */
+    public StatisticalSummaryValues getSummary() {
+        if (summary == null) {
+            active.clear();
+            for (int i = 0; i < buckets.length; ++i) {
+                if (epochs[i] > current - buckets.length && buckets[i].getN() > 0) {
+                    active.add(buckets[i]);
+                }
+            }
+            if (active.isEmpty()) {
+                summary = new StatisticalSummaryValues(Double.NaN, Double.NaN, 0,
+                                                       Double.NaN, Double.NaN, 0);
+            } else {
+                summary = AggregateSummaryStatistics.aggregate(active);
+            }
+        }
+        return summary;
+    }
+
+    /** {@inheritDoc} */
+    public double getMean() {
+        return getSummary().getMean();
+    }
+
+    /** {@inheritDoc} */
+    public double getVariance() {
+        return getSummary().getVariance();
+    }
+
+    /** {@inheritDoc} */
+    public double getStandardDeviation() {
+        return getSummary().getStandardDeviation();
+    }
+
+    /** {@inheritDoc} */
+    public double getMax() {
+        return getSummary().getMax();
+    }
+
+    /** {@inheritDoc} */
+    public double getMin() {
+        return getSummary().getMin();
+    }
+
+    /** {@inheritDoc} */
+    public long getN() {
+        return getSummary().getN();
+    }
+
+    /** {@inheritDoc} */
+    public double getSum() {
+        return getSummary().getSum();
+    }
+
+    /**
+     * Get the slot of a bucket.
+     *
+     * @param epoch bucket number
+     * @return index of the bucket in {@link #buckets}
+     */
+    private int slot(final long epoch) {
+        final long r = epoch % buckets.length;
+        return (int) ((r < 0) ? r + buckets.length : r);
+    }
+
+}
@@ -0,0 +1,473 @@
+package stat.descriptive;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import math.util.FastMath;
+import exception.MathIllegalArgumentException;
+import exception.OutOfRangeException;
+import exception.util.LocalizedFormats;
+
+public class SlidingWindowStatistics implements StatisticalSummary, Serializable {
+
+    /** Serialization UID */
+    private static final long serialVersionUID = 20121019L;
+
+    /** Ring buffer holding the values of the window, oldest first from {@link #start}. */
+    private final double[] ring;
+
+    /** Index of the oldest value in the ring buffer. */
+    private int start;
+
+    /** Number of values in the window. */
+    private int n;
+
+    /** Mean of the values in the window. */
+    private double mean;
+
+    /** Sum of squared deviations from the mean of the values in the window. */
+    private double m2;
+
+    /** Number of evictions since the moments were last recomputed from scratch. */
+    private int evictions;
+
+    /** Values of the window, in sorted order. */
+    private final OrderStatisticSkipList sorted;
+
+    /**
+     * Construct a statistics instance over a sliding window.
+     * <p>
+     * Each {@link #addValue(double)} updates the mean and variance in
+     * constant time and the order statistics in logarithmic time, evicting
+     * the oldest value once the window is full. Queries do not scan the
+     * window: moments are read directly and percentiles, minimum and
+     * maximum are selected by rank in logarithmic time. Moments are
+     * recomputed from the window once every {@code windowSize} evictions,
+     * which bounds the rounding drift of the incremental updates for an
+     * amortized constant cost.
+     * </p>
+     *
+     * @param windowSize the window size.
+     * @throws MathIllegalArgumentException if window size is less than 1
+     */
+    public SlidingWindowStatistics(final int windowSize) throws MathIllegalArgumentException {
+        if (windowSize < 1) {
+            throw new MathIllegalArgumentException(
+                    LocalizedFormats.NOT_POSITIVE_WINDOW_SIZE, windowSize);
+        }
+        ring   = new double[windowSize];
+        sorted = new OrderStatisticSkipList(windowSize);
+        clear();
+    }
+
+    /**
+     * Adds the value to the window. If the window is full, the oldest
+     * value is discarded to make room for the new value.
+     *
+     * @param v the value to be added
+     */
+    public void addValue(final double v) {
+        if (n == ring.length) {
+            final double old = ring[start];
+            ring[start] = v;
+            start = (start + 1 == ring.length) ? 0 : start + 1;
+            sorted.remove(old);
+            sorted.insert(v);
+            if (++evictions >= ring.length) {
+                recomputeMoments();
+            } else {
+                // replace old by v, keeping n constant
+                final double oldMean = mean;
+                mean += (v - old) / n;
+                m2   += (v - old) * (v - mean + old - oldMean);
+                if (m2 < 0) {
+                    m2 = 0;
+                }
+            }
+        } else {
+            int end = start + n;
+            if (end >= ring.length) {
+                end -= ring.length;
+            }
+            ring[end] = v;
+            ++n;
+            sorted.insert(v);
+            final double d = v - mean;
+            mean += d / n;
+            m2   += d * (v - mean);
+        }
+    }
+
+    /**
+     * Resets all statistics and storage.
+     */
+    public void clear() {
+        start     = 0;
+        n         = 0;
+        mean      = 0;
+        m2        = 0;
+        evictions = 0;
+        sorted.clear();
+    }
+
+    /**
+     * Returns the maximum number of values that can be stored in the window.
+     *
+     * @return the window size
+     */
+    public int getWindowSize() {
+        return ring.length;
+    }
+
+    /** {@inheritDoc} */
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * Returns the arithmetic mean of the values in the window.
+     * @return The mean or Double.NaN if no values have been added.
+     */
+    public double getMean() {
+        return (n == 0) ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the (sample) variance of the values in the window.
+     *
+     * <p>This method returns the bias-corrected sample variance (using {@code n - 1} in
+     * the denominator).  Use {@link #getPopulationVariance()} for the non-bias-corrected
+     * population variance.</p>
+     *
+     * @return The variance, Double.NaN if no values have been added
+     * or 0.0 for a single value set.
+     */
+    public double getVariance() {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return (n == 1) ? 0.0 : m2 / (n - 1);
+    }
+
+    /**
+     * Returns the population variance of the values in the window.
+     *
+     * @return The population variance, Double.NaN if no values have been added,
+     * or 0.0 for a single value set.
+     */
+    public double getPopulationVariance() {
+        return (n == 0) ? Double.NaN : m2 / n;
+    }
+
+    /**
+     * Returns the standard deviation of the values in the window.
+     * @return The standard deviation, Double.NaN if no values have been added
+     * or 0.0 for a single value set.
+     */
+    public double getStandardDeviation() {
+        return FastMath.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the maximum of the values in the window.
+     * @return The max or Double.NaN if no values have been added.
+     */
+    public double getMax() {
+        return (n == 0) ? Double.NaN : sorted.select(n - 1);
+    }
+
+    /**
+     * Returns the minimum of the values in the window.
+     * @return The min or Double.NaN if no values have been added.
+     */
+    public double getMin() {
+        return (n == 0) ? Double.NaN : sorted.select(0);
+    }
+
+    /**
+     * Returns the sum of the values in the window.
+     * @return The sum or Double.NaN if no values have been added
+     */
+    public double getSum() {
+        return (n == 0) ? Double.NaN : mean * n;
+    }
+
+    /**
+     * Returns an estimate for the pth percentile of the values in the window.
+     * <p>
+     * The estimate is the same as the one computed by
+     * {@link stat.descriptive.rank.Percentile}, but it only selects the two
+     * order statistics it needs by rank, without copying the window.
+     * </p>
+     *
+     * @param p the requested percentile (scaled from 0 - 100)
+     * @return An estimate for the pth percentile of the values in the window,
+     * or Double.NaN if no values have been added
+     * @throws OutOfRangeException if p is not in the range (0, 100]
+     */
+    public double getPercentile(final double p) throws OutOfRangeException {
+        if ((p > 100) || (p <= 0)) {
+            throw new OutOfRangeException(
+                    LocalizedFormats.OUT_OF_BOUNDS_QUANTILE_VALUE, p, 0, 100);
+        }
+        if (n == 0) {
+            return Double.NaN;
+        }
+        if (n == 1) {
+            return sorted.select(0);
+        }
+        final double pos  = p * (n + 1) / 100;
+        final double fpos = FastMath.floor(pos);
+        final int intPos  = (int) fpos;
+        final double dif  = pos - fpos;
+        if (pos < 1) {
+            return sorted.select(0);
+        }
+        if (pos >= n) {
+            return sorted.select(n - 1);
+        }
+        final double lower = sorted.select(intPos - 1);
+        final double upper = sorted.select(intPos);
+        return lower + dif * (upper - lower);
+    }
+
+    /**
+     * Returns the values of the window in the order in which they were added.
+     *
+     * @return a fresh copy of the window values, oldest first
+     */
+    public double[] getValues() {
+        final double[] values = new double[n];
+        final int first = FastMath.min(n, ring.length - start);
+        System.arraycopy(ring, start, values, 0, first);
+        System.arraycopy(ring, 0, values, first, n - first);
+        return values;
+    }
+
+    /** Recompute the moments of the window with the two-pass algorithm. */
+    private void recomputeMoments() {
+        double sum = 0;
+        for (int i = 0; i < n; ++i) {
+            sum += ring[i];
+        }
+        double xbar = sum / n;
+        double accum  = 0;
+        double accum2 = 0;
+        for (int i = 0; i < n; ++i) {
+            final double dev = ring[i] - xbar;
+            accum  += dev * dev;
+            accum2 += dev;
+        }
+        xbar += accum2 / n;
+        mean      = xbar;
+        m2        = FastMath.max(0, accum - accum2 * accum2 / n);
+        evictions = 0;
+    }
+
+    /**
+     * Indexable skip list of doubles, supporting insertion, removal and
+     * selection by rank in logarithmic expected time.
+     * <p>
+     * Nodes are kept in primitive arrays and recycled through a free list,
+     * so a list with a bounded number of elements stops allocating once
+     * it has been filled.
+     * </p>
+     */
+    private static class OrderStatisticSkipList implements Serializable {
+
+        /** Serialization UID */
+        private static final long serialVersionUID = 20121019L;
+
+        /** Maximal number of levels (enough for 4<sup>16</sup> elements). */
+        private static final int MAX_LEVEL = 16;
+
+        /** Index of the head node. */
+        private static final int HEAD = 0;
+
+        /** Marker for the end of a level. */
+        private static final int NIL = -1;
+
+        /** Values of the nodes. */
+        private final double[] value;
+
+        /** Forward links of the nodes, per level. */
+        private final int[][] next;
+
+        /** Number of elements skipped by the forward links, per level. */
+        private final int[][] width;
+
+        /** Heights of the nodes. */
+        private final int[] height;
+
+        /** Stack of free node indices. */
+        private final int[] free;
+
+        /** Number of free nodes. */
+        private int nFree;
+
+        /** Number of elements. */
+        private int size;
+
+        /** Predecessors on each level, scratch space for updates. */
+        private final int[] update;
+
+        /** Ranks of the predecessors on each level, scratch space for updates. */
+        private final int[] rank;
+
+        /** State of the level generator. */
+        private long seed;
+
+        /**
+         * @param capacity maximal number of elements
+         */
+        public OrderStatisticSkipList(final int capacity) {
+            value  = new double[capacity + 1];
+            next   = new int[capacity + 1][];
+            width  = new int[capacity + 1][];
+            height = new int[capacity + 1];
+            free   = new int[capacity];
+            update = new int[MAX_LEVEL];
+            rank   = new int[MAX_LEVEL];
+            next[HEAD]   = new int[MAX_LEVEL];
+            width[HEAD]  = new int[MAX_LEVEL];
+            height[HEAD] = MAX_LEVEL;
+            clear();
+        }
+
+        /** Remove all elements. */
+        public void clear() {
+            size = 0;
+            Arrays.fill(next[HEAD], NIL);
+            Arrays.fill(width[HEAD], 1);
+            nFree = free.length;
+            for (int i = 0; i < nFree; ++i) {
+                free[i] = free.length - i;
+            }
+            seed = 0x2545F4914F6CDD1DL;
+        }
+
+        /**
+         * Insert a value.
+         * @param v value to insert
+         */
+        public void insert(final double v) {
+
+            // find the last node smaller than or equal to v on each level
+            int node = HEAD;
+            int pos  = 0;
+            for (int l = MAX_LEVEL - 1; l >= 0; --l) {
+                int nx = next[node][l];
+                while (nx != NIL && Double.compare(value[nx], v) <= 0) {
+                    pos += width[node][l];
+                    node = nx;
+                    nx   = next[node][l];
+                }
+                update[l] = node;
+                rank[l]   = pos;
+            }
+
+            // create the node
+            final int h = randomHeight();
+            final int created = free[--nFree];
+            if (next[created] == null || next[created].length < h) {
+                next[created]  = new int[h];
+                width[created] = new int[h];
+            }
+            value[created]  = v;
+            height[created] = h;
+
+            // link it
+            for (int l = 0; l < MAX_LEVEL; ++l) {
+                final int u = update[l];
+                if (l < h) {
+                    next[created][l]  = next[u][l];
+                    width[created][l] = rank[l] + width[u][l] - pos;
+                    next[u][l]        = created;
+                    width[u][l]       = pos + 1 - rank[l];
+                } else {
+                    ++width[u][l];
+                }
+            }
+            ++size;
+
+        }
+
+        /**
+         * Remove one occurrence of a value.
+         * @param v value to remove
+         * @return true if the value was found and removed
+         */
+        public boolean remove(final double v) {
+
+            // find the last node strictly smaller than v on each level
+            int node = HEAD;
+            for (int l = MAX_LEVEL - 1; l >= 0; --l) {
+                int nx = next[node][l];
+                while (nx != NIL && Double.compare(value[nx], v) < 0) {
+                    node = nx;
+                    nx   = next[node][l];
+                }
+                update[l] = node;
+            }
+
+            final int target = next[update[0]][0];
+            if (target == NIL || Double.compare(value[target], v) != 0) {
+                return false;
+            }
+
+            // unlink it
+            for (int l = 0; l < MAX_LEVEL; ++l) {
+                final int u = update[l];
+                if (l < height[target]) {
+                    next[u][l]   = next[target][l];
+                    width[u][l] += width[target][l] - 1;
+                } else {
+                    --width[u][l];
+                }
+            }
+            free[nFree++] = target;
+            --size;
+            return true;
+
+        }
+
+        /**
+         * Select an element by rank.
+         * @param k rank of the element, 0 for the smallest
+         * @return k<sup>th</sup> smallest element
+         */
+        public double select(final int k) {
+            final int target = k + 1;
+            int node = HEAD;
+            int pos  = 0;
+            for (int l = MAX_LEVEL - 1; l >= 0; --l) {
+                int nx = next[node][l];
+                while (nx != NIL && pos + width[node][l] <= target) {
+                    pos += width[node][l];
+                    node = nx;
+                    nx   = next[node][l];
+                }
+            }
+            return value[node];
+        }
+
+        /**
+         * Draw a random node height, with probability 1/4 of growing by one level.
+         * @return node height
+         */
+        private int randomHeight() {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            long bits = seed;
+            int h = 1;
+            while (h < MAX_LEVEL && (bits & 0x3L) == 0) {
+                ++h;
+                bits >>>= 2;
+            }
+            return h;
+        }
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package stat.descriptive.moment;
+
+import java.io.Serializable;
+
+import math.util.FastMath;
+import math.util.MathUtils;
+import stat.descriptive.AbstractStorelessUnivariateStatistic;
+import exception.NotStrictlyPositiveException;
+import exception.NullArgumentException;
+
+public class ExponentialMovingMean extends AbstractStorelessUnivariateStatistic
+    implements Serializable {
+
+    /** Serializable version identifier */
+    private static final long serialVersionUID = 20121019L;
+
+    /** Half-life, as a number of observations. */
+    private double halfLife;
+
+    /** Factor applied to the weights of previous observations at each increment. */
+    private double decay;
+
+    /** Count of values that have been added */
+    private long n;
+
+    /** Sum of the weights of the values that have been added. */
+    private double weight;
+
+    /** Weighted mean of the values that have been added. */
+    private double mean;
+
+    /**
+     * Constructs an exponentially weighted mean.
+     * <p>
+     * The weight of each value is halved every {@code halfLife} increments,
+     * so the most recent value has weight 1, the value added {@code halfLife}
+     * increments before has weight 1/2 and so on. The mean is normalized by
+     * the sum of the weights actually seen, so it is not biased towards 0
+     * during the first increments. Each increment takes constant time and
+     * does not allocate.
+     * </p>
+     *
+     * @param halfLife half-life, as a number of observations
+     * @throws NotStrictlyPositiveException if {@code halfLife <= 0}
+     */
+    public ExponentialMovingMean(final double halfLife) throws NotStrictlyPositiveException {
+        if (!(halfLife > 0)) {
+            throw new NotStrictlyPositiveException(halfLife);
+        }
+        this.halfLife = halfLife;
+        this.decay    = FastMath.pow(0.5, 1.0 / halfLife);
+        clear();
+    }
+
+    /**
+     * Copy constructor, creates a new {@code ExponentialMovingMean} identical
+     * to the {@code original}
+     *
+     * @param original the {@code ExponentialMovingMean} instance to copy
+     * @throws NullArgumentException if original is null
+     */
+    public ExponentialMovingMean(ExponentialMovingMean original) throws NullArgumentException {
+        copy(original, this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void increment(final double d) {
+        weight = decay * weight + 1;
+        mean  += (d - mean) / weight;
+        n++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        n      = 0;
+        weight = 0;
+        mean   = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getResult() {
+        return (n == 0) ? Double.NaN : mean;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * Returns the half-life of the weights.
+     *
+     * @return the half-life, as a number of observations
+     */
+    public double getHalfLife() {
+        return halfLife;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExponentialMovingMean copy() {
+        ExponentialMovingMean result = new ExponentialMovingMean(halfLife);
+        // No try-catch or advertised exception because args are guaranteed non-null
+        copy(this, result);
+        return result;
+    }
+
+    /**
+     * Copies source to dest.
+     * <p>Neither source nor dest can be null.</p>
+     *
+     * @param source ExponentialMovingMean to copy
+     * @param dest ExponentialMovingMean to copy to
+     * @throws NullArgumentException if either source or dest is null
+     */
+    public static void copy(ExponentialMovingMean source, ExponentialMovingMean dest)
+        throws NullArgumentException {
+        MathUtils.checkNotNull(source);
+        MathUtils.checkNotNull(dest);
+        dest.setData(source.getDataRef());
+        dest.halfLife = source.halfLife;
+        dest.decay    = source.decay;
+        dest.n        = source.n;
+        dest.weight   = source.weight;
+        dest.mean     = source.mean;
+    }
+
+}
@@ -0,0 +1,209 @@
+package stat.descriptive.moment;
+
+import java.io.Serializable;
+
+import math.util.FastMath;
+import math.util.MathUtils;
+import stat.descriptive.AbstractStorelessUnivariateStatistic;
+import exception.NotStrictlyPositiveException;
+import exception.NullArgumentException;
+
+public class ExponentialMovingVariance extends AbstractStorelessUnivariateStatistic
+    implements Serializable {
+
+    /** Serializable version identifier */
+    private static final long serialVersionUID = 20121019L;
+
+    /** Half-life, as a number of observations. */
+    private double halfLife;
+
+    /** Factor applied to the weights of previous observations at each increment. */
+    private double decay;
+
+    /** Whether or not bias correction is applied when computing the value of the statistic. */
+    private boolean isBiasCorrected;
+
+    /** Count of values that have been added */
+    private long n;
+
+    /** Sum of the weights of the values that have been added. */
+    private double weight;
+
+    /** Sum of the squared weights of the values that have been added. */
+    private double weight2;
+
+    /** Weighted mean of the values that have been added. */
+    private double mean;
+
+    /** Weighted sum of squared deviations from the mean. */
+    private double m2;
+
+    /**
+     * Constructs a bias-corrected exponentially weighted variance.
+     *
+     * @param halfLife half-life, as a number of observations
+     * @throws NotStrictlyPositiveException if {@code halfLife <= 0}
+     * @see #ExponentialMovingVariance(double, boolean)
+     */
+    public ExponentialMovingVariance(final double halfLife) throws NotStrictlyPositiveException {
+        this(halfLife, true);
+    }
+
+    /**
+     * Constructs an exponentially weighted variance.
+     * <p>
+     * The weight of each value is halved every {@code halfLife} increments,
+     * as in {@link ExponentialMovingMean}. The weighted sum of squared
+     * deviations is updated with West's incremental algorithm, after
+     * decaying the previous weights, so each increment takes constant
+     * time and does not allocate.
+     * </p>
+     * <p>
+     * If {@code isBiasCorrected} is true, the sum of squared deviations
+     * is divided by {@code W - W2 / W}, where {@code W} is the sum of the
+     * weights and {@code W2} the sum of their squares (reliability weights
+     * correction, which reduces to {@code n - 1} when no value has decayed).
+     * Otherwise, it is divided by {@code W}.
+     * </p>
+     *
+     * @param halfLife half-life, as a number of observations
+     * @param isBiasCorrected whether or not the variance is bias-corrected
+     * @throws NotStrictlyPositiveException if {@code halfLife <= 0}
+     */
+    public ExponentialMovingVariance(final double halfLife, final boolean isBiasCorrected)
+        throws NotStrictlyPositiveException {
+        if (!(halfLife > 0)) {
+            throw new NotStrictlyPositiveException(halfLife);
+        }
+        this.halfLife        = halfLife;
+        this.decay           = FastMath.pow(0.5, 1.0 / halfLife);
+        this.isBiasCorrected = isBiasCorrected;
+        clear();
+    }
+
+    /**
+     * Copy constructor, creates a new {@code ExponentialMovingVariance} identical
+     * to the {@code original}
+     *
+     * @param original the {@code ExponentialMovingVariance} instance to copy
+     * @throws NullArgumentException if original is null
+     */
+    public ExponentialMovingVariance(ExponentialMovingVariance original) throws NullArgumentException {
+        copy(original, this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void increment(final double d) {
+        weight  = decay * weight + 1;
+        weight2 = decay * decay * weight2 + 1;
+        final double dev = d - mean;
+        mean += dev / weight;
+        m2    = decay * m2 + dev * (d - mean);
+        n++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        n       = 0;
+        weight  = 0;
+        weight2 = 0;
+        mean    = 0;
+        m2      = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getResult() {
+        if (n == 0) {
+            return Double.NaN;
+        } else if (n == 1) {
+            return 0d;
+        } else if (isBiasCorrected) {
+            return m2 / (weight - weight2 / weight);
+        } else {
+            return m2 / weight;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * Returns the exponentially weighted mean of the values that have been added.
+     *
+     * @return the weighted mean, or Double.NaN if no values have been added
+     */
+    public double getMean() {
+        return (n == 0) ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the half-life of the weights.
+     *
+     * @return the half-life, as a number of observations
+     */
+    public double getHalfLife() {
+        return halfLife;
+    }
+
+    /**
+     * @return Returns the isBiasCorrected.
+     */
+    public boolean isBiasCorrected() {
+        return isBiasCorrected;
+    }
+
+    /**
+     * @param biasCorrected The isBiasCorrected to set.
+     */
+    public void setBiasCorrected(boolean biasCorrected) {
+        this.isBiasCorrected = biasCorrected;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExponentialMovingVariance copy() {
+        ExponentialMovingVariance result = new ExponentialMovingVariance(halfLife);
+        // No try-catch or advertised exception because parameters are guaranteed non-null
+        copy(this, result);
+        return result;
+    }
+
+    /**
+     * Copies source to dest.
+     * <p>Neither source nor dest can be null.</p>
+     *
+     * @param source ExponentialMovingVariance to copy
+     * @param dest ExponentialMovingVariance to copy to
+     * @throws NullArgumentException if either source or dest is null
+     */
+    public static void copy(ExponentialMovingVariance source, ExponentialMovingVariance dest)
+        throws NullArgumentException {
+        MathUtils.checkNotNull(source);
+        MathUtils.checkNotNull(dest);
+        dest.setData(source.getDataRef());
+        dest.halfLife        = source.halfLife;
+        dest.decay           = source.decay;
+        dest.isBiasCorrected = source.isBiasCorrected;
+        dest.n               = source.n;
+        dest.weight          = source.weight;
+        dest.weight2         = source.weight2;
+        dest.mean            = source.mean;
+        dest.m2              = source.m2;
+    }
+
+}
@@ -11,13 +11,13 @@ import exception.DimensionMismatchException;
 public class VectorialCovariance implements Serializable {
 
     /** Serializable version identifier */
-    private static final long serialVersionUID = 4118372414238930270L;
+    private static final long serialVersionUID = 8652595752693675241L;
 
-    /** Sums for each component. */
-    private final double[] sums;
+    /** Means of each component. */
+    private final double[] means;
 
-    /** Sums of products for each component. */
-    private final double[] productsSums;
+    /** Sums of products of deviations from the means for each pair of components. */
+    private final double[] comoments;
 
     /** Indicator for bias correction. */
     private final boolean isBiasCorrected;
@@ -25,14 +25,17 @@ public class VectorialCovariance implements Serializable {
     /** Number of vectors in the sample. */
     private long n;
 
+    /** Work array for the deviations of a new vector. */
+    private transient double[] delta;
+
     /** Constructs a VectorialCovariance.
      * @param dimension vectors dimension
      * @param isBiasCorrected if true, computed the unbiased sample covariance,
      * otherwise computes the biased population covariance
      */
     public VectorialCovariance(int dimension, boolean isBiasCorrected) {
-        sums         = new double[dimension];
-        productsSums = new double[dimension * (dimension + 1) / 2];
+        means        = new double[dimension];
+        comoments    = new double[dimension * (dimension + 1) / 2];
         n            = 0;
         this.isBiasCorrected = isBiasCorrected;
     }
@@ -43,34 +46,161 @@ public class VectorialCovariance implements Serializable {
      * @throws DimensionMismatchException if the vector does not have the right dimension
      */
     public void increment(double[] v) throws DimensionMismatchException {
-        if (v.length != sums.length) {
-            throw new DimensionMismatchException(v.length, sums.length);
+        if (v.length != means.length) {
+            throw new DimensionMismatchException(v.length, means.length);
+        }
+        if (delta == null) {
+            delta = new double[means.length];
+        }
+        n++;
+        final double factor = (n - 1.0) / n;
+        for (int i = 0; i < v.length; ++i) {
+            delta[i] = v[i] - means[i];
+            means[i] += delta[i] / n;
         }
         int k = 0;
         for (int i = 0; i < v.length; ++i) {
-            sums[i] += v[i];
+            final double fDi = factor * delta[i];
             for (int j = 0; j <= i; ++j) {
-                productsSums[k++] += v[i] * v[j];
+                comoments[k++] += fDi * delta[j];
             }
         }
-        n++;
     }
 
+    /**
+     * Add a block of vectors to the sample.
+     * <p>
+     * The block is centered on its own means and its co-moments are
+     * accumulated without any division, then combined with the current
+     * sample using the pairwise update formulas of Chan, Golub and LeVeque.
+     * This is faster than adding the vectors one at a time, with the same
+     * accuracy.
+     * </p>
+     * @param vectors vectors to add
+     * @throws DimensionMismatchException if a vector does not have the right dimension
+     */
+    public void increment(double[][] vectors) throws DimensionMismatchException {
+        if (vectors.length == 0) {
+            return;
+        }
+        for (final double[] v : vectors) {
+            if (v.length != means.length) {
+                throw new DimensionMismatchException(v.length, means.length);
+            }
+        }
+        final int m = vectors.length;
+
+        // means of the block, with the same two-pass correction as Mean
+        final double[] blockMeans = new double[means.length];
+        for (final double[] v : vectors) {
+            for (int i = 0; i < v.length; ++i) {
+                blockMeans[i] += v[i];
+            }
+        }
+        for (int i = 0; i < blockMeans.length; ++i) {
+            blockMeans[i] /= m;
+        }
+        final double[] correction = new double[means.length];
+        for (final double[] v : vectors) {
+            for (int i = 0; i < v.length; ++i) {
+                correction[i] += v[i] - blockMeans[i];
+            }
+        }
+        for (int i = 0; i < blockMeans.length; ++i) {
+            blockMeans[i] += correction[i] / m;
+        }
+
+        // co-moments of the block
+        final double[] blockComoments = new double[comoments.length];
+        final double[] d = new double[means.length];
+        for (final double[] v : vectors) {
+            for (int i = 0; i < v.length; ++i) {
+                d[i] = v[i] - blockMeans[i];
+            }
+            int k = 0;
+            for (int i = 0; i < d.length; ++i) {
+                final double di = d[i];
+                for (int j = 0; j <= i; ++j) {
+                    blockComoments[k++] += di * d[j];
+                }
+            }
+        }
+
+        merge(means, comoments, n, blockMeans, blockComoments, m);
+        n += m;
+    }
+
+    /**
+     * Add all the vectors of another sample to this one.
+     * <p>
+     * The bias correction setting of this instance is kept.
+     * </p>
+     * @param other other sample
+     * @throws DimensionMismatchException if the samples do not have the same dimension
+     */
+    public void append(VectorialCovariance other) throws DimensionMismatchException {
+        if (other.means.length != means.length) {
+            throw new DimensionMismatchException(other.means.length, means.length);
+        }
+        merge(means, comoments, n, other.means, other.comoments, other.n);
+        n += other.n;
+    }
+
+    /**
+     * Merge the means and co-moments of two samples.
+     * <p>
+     * The co-moments are combined using the pairwise update formulas of
+     * Chan, Golub and LeVeque, which have the same stability as
+     * one-at-a-time (Welford) updates.
+     * </p>
+     * @param means means of the first sample, updated in place
+     * @param comoments packed co-moments of the first sample, updated in place
+     * @param n size of the first sample
+     * @param otherMeans means of the second sample
+     * @param otherComoments packed co-moments of the second sample
+     * @param otherN size of the second sample
+     */
+    private static void merge(final double[] means, final double[] comoments, final double n,
+                              final double[] otherMeans, final double[] otherComoments,
+                              final double otherN) {
+        if (otherN == 0) {
+            return;
+        }
+        final double total = n + otherN;
+        final double scale = n * otherN / total;
+        final double[] delta = new double[means.length];
+        for (int i = 0; i < means.length; ++i) {
+            delta[i] = otherMeans[i] - means[i];
+        }
+        int k = 0;
+        for (int i = 0; i < means.length; ++i) {
+            final double sDi = scale * delta[i];
+            for (int j = 0; j <= i; ++j) {
+                comoments[k] += otherComoments[k] + sDi * delta[j];
+                ++k;
+            }
+        }
+        for (int i = 0; i < means.length; ++i) {
+            means[i] += delta[i] * otherN / total;
+        }
+    }
+
+
     /**
      * Get the covariance matrix.
      * @return covariance matrix
      */
     public RealMatrix getResult() {
 
-        int dimension = sums.length;
+        int dimension = means.length;
         RealMatrix result = MatrixUtils.createRealMatrix(dimension, dimension);
 
         if (n > 1) {
-            double c = 1.0 / (n * (isBiasCorrected ? (n - 1) : n));
+            double c = 1.0 / (isBiasCorrected ? (n - 1) : n);
             int k = 0;
             for (int i = 0; i < dimension; ++i) {
                 for (int j = 0; j <= i; ++j) {
-                    double e = c * (n * productsSums[k++] - sums[i] * sums[j]);
+                    double e = c * comoments[k++];
                     result.setEntry(i, j, e);
                     result.setEntry(j, i, e);
                 }
@@ -94,8 +224,8 @@ public class VectorialCovariance implements Serializable {
      */
     public void clear() {
         n = 0;
-        Arrays.fill(sums, 0.0);
-        Arrays.fill(productsSums, 0.0);
+        Arrays.fill(means, 0.0);
+        Arrays.fill(comoments, 0.0);
     }
 
     /** {@inheritDoc} */
@@ -105,8 +235,8 @@ public class VectorialCovariance implements Serializable {
         int result = 1;
         result = prime * result + (isBiasCorrected ? 1231 : 1237);
         result = prime * result + (int) (n ^ (n >>> 32));
-        result = prime * result + Arrays.hashCode(productsSums);
-        result = prime * result + Arrays.hashCode(sums);
+        result = prime * result + Arrays.hashCode(comoments);
+        result = prime * result + Arrays.hashCode(means);
         return result;
     }
 
@@ -126,10 +256,10 @@ public class VectorialCovariance implements Serializable {
         if (n != other.n) {
             return false;
         }
-        if (!Arrays.equals(productsSums, other.productsSums)) {
+        if (!Arrays.equals(comoments, other.comoments)) {
             return false;
         }
-        if (!Arrays.equals(sums, other.sums)) {
+        if (!Arrays.equals(means, other.means)) {
             return false;
         }
         return true;
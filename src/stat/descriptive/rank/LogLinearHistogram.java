@@ -0,0 +1,650 @@
+package stat.descriptive.rank;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import math.util.FastMath;
+import math.util.MathUtils;
+import stat.descriptive.AbstractStorelessUnivariateStatistic;
+import exception.MathIllegalArgumentException;
+import exception.NotANumberException;
+import exception.NotStrictlyPositiveException;
+import exception.NullArgumentException;
+import exception.NumberIsTooLargeException;
+import exception.NumberIsTooSmallException;
+import exception.OutOfRangeException;
+import exception.util.LocalizedFormats;
+
+public class LogLinearHistogram extends AbstractStorelessUnivariateStatistic
+    implements Serializable {
+
+    /** Serializable version identifier */
+    private static final long serialVersionUID = 20121019L;
+
+    /** Maximal number of sub-buckets bits. */
+    private static final int MAX_PRECISION_BITS = 20;
+
+    /** Number of explicit bits in the significand of a double. */
+    private static final int SIGNIFICAND_BITS = 52;
+
+    /** Number of bits of the significand used to select a sub-bucket. */
+    private final int precisionBits;
+
+    /** Exponent of the smallest tracked magnitude. */
+    private final int minExponent;
+
+    /** Exponent of the largest tracked magnitude. */
+    private final int maxExponent;
+
+    /**
+     * Number of buckets for each sign. Counts are stored in ascending value
+     * order: negative buckets first, then the zero bucket at index
+     * {@code halfSize}, then positive buckets.
+     */
+    private final int halfSize;
+
+    /** Bucket counts. */
+    private final AtomicLongArray counts;
+
+    /** Number of recorded values. */
+    private final AtomicLong n;
+
+    /** Bits of the smallest recorded value. */
+    private final AtomicLong minBits;
+
+    /** Bits of the largest recorded value. */
+    private final AtomicLong maxBits;
+
+    /** Percentile returned by {@link #getResult()}. */
+    private double quantile;
+
+    /**
+     * Constructs a histogram returning the median.
+     * <p>
+     * Magnitudes are split into power of two ranges, each range being
+     * split into 2<sup>precisionBits</sup> linear sub-buckets, so a recorded
+     * value is reported with a relative error smaller than
+     * 2<sup>-(precisionBits + 1)</sup>. Magnitudes below {@code lowest}
+     * are counted as zero. Memory is fixed at construction and does not
+     * depend on the number of recorded values.
+     * </p>
+     * <p>
+     * Recording is lock-free, so {@link #increment(double)} and {@link
+     * #merge(LogLinearHistogram)} may be called concurrently from several
+     * threads. Queries made during concurrent updates see a consistent
+     * state for each bucket but not necessarily across buckets.
+     * </p>
+     *
+     * @param lowest smallest magnitude distinguished from zero
+     * @param highest largest magnitude that can be recorded
+     * @param precisionBits number of bits of relative precision
+     * (between 0 and 20)
+     * @throws NotStrictlyPositiveException if {@code lowest} is not
+     * strictly positive
+     * @throws NumberIsTooSmallException if {@code highest < lowest}
+     * @throws OutOfRangeException if {@code precisionBits} is not
+     * between 0 and 20
+     * @throws NumberIsTooLargeException if the number of buckets needed for
+     * the range from {@code lowest} to {@code highest} with {@code precisionBits}
+     * bits of precision exceeds {@code Integer.MAX_VALUE / 2}
+     */
+    public LogLinearHistogram(final double lowest, final double highest, final int precisionBits)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException,
+               OutOfRangeException, NumberIsTooLargeException {
+        this(checkedMinExponent(lowest, highest),
+             FastMath.max(FastMath.getExponent(highest), Double.MIN_EXPONENT),
+             precisionBits, 50.0);
+    }
+
+    /**
+     * Build an empty histogram.
+     * @param minExponent exponent of the smallest tracked magnitude
+     * @param maxExponent exponent of the largest tracked magnitude
+     * @param precisionBits number of bits of relative precision
+     * @param quantile percentile returned by {@link #getResult()}
+     * @throws OutOfRangeException if {@code precisionBits} is not
+     * between 0 and 20
+     * @throws NumberIsTooLargeException if the number of buckets exceeds
+     * {@code Integer.MAX_VALUE / 2}
+     */
+    private LogLinearHistogram(final int minExponent, final int maxExponent,
+                               final int precisionBits, final double quantile)
+        throws OutOfRangeException, NumberIsTooLargeException {
+        if (precisionBits < 0 || precisionBits > MAX_PRECISION_BITS) {
+            throw new OutOfRangeException(precisionBits, 0, MAX_PRECISION_BITS);
+        }
+        final long size = ((long) maxExponent - minExponent + 1) << precisionBits;
+        if (size > Integer.MAX_VALUE / 2) {
+            throw new NumberIsTooLargeException(size, Integer.MAX_VALUE / 2, true);
+        }
+        this.precisionBits = precisionBits;
+        this.minExponent   = minExponent;
+        this.maxExponent   = maxExponent;
+        this.halfSize      = (int) size;
+        this.counts        = new AtomicLongArray(2 * halfSize + 1);
+        this.n             = new AtomicLong();
+        this.minBits       = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+        this.maxBits       = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+        this.quantile      = quantile;
+    }
+
+    /**
+     * Check the bounds of the histogram.
+     * @param lowest smallest magnitude distinguished from zero
+     * @param highest largest magnitude that can be recorded
+     * @return exponent of the smallest tracked magnitude
+     * @throws NotStrictlyPositiveException if {@code lowest} is not
+     * strictly positive
+     * @throws NumberIsTooSmallException if {@code highest < lowest}
+     */
+    private static int checkedMinExponent(final double lowest, final double highest)
+        throws NotStrictlyPositiveException, NumberIsTooSmallException {
+        if (!(lowest > 0)) {
+            throw new NotStrictlyPositiveException(lowest);
+        }
+        if (!(highest >= lowest) || Double.isInfinite(highest)) {
+            throw new NumberIsTooSmallException(highest, lowest, true);
+        }
+        return FastMath.max(FastMath.getExponent(lowest), Double.MIN_EXPONENT);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws NotANumberException if d is NaN
+     * @throws OutOfRangeException if the magnitude of d is larger than
+     * the largest trackable magnitude
+     */
+    @Override
+    public void increment(final double d)
+        throws NotANumberException, OutOfRangeException {
+        counts.incrementAndGet(index(d));
+        n.incrementAndGet();
+        updateMin(d);
+        updateMax(d);
+    }
+
+    /**
+     * Merge the counts of another histogram into this one.
+     * <p>
+     * Both histograms must have been built with the same bounds and precision.
+     * </p>
+     *
+     * @param other histogram to merge
+     * @throws NullArgumentException if other is null
+     * @throws MathIllegalArgumentException if the histograms do not have the
+     * same layout
+     */
+    public void merge(final LogLinearHistogram other)
+        throws NullArgumentException, MathIllegalArgumentException {
+        MathUtils.checkNotNull(other);
+        checkLayout(other);
+        long added = 0;
+        for (int i = 0; i < other.counts.length(); ++i) {
+            final long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+                added += c;
+            }
+        }
+        if (added > 0) {
+            n.addAndGet(added);
+            updateMin(Double.longBitsToDouble(other.minBits.get()));
+            updateMax(Double.longBitsToDouble(other.maxBits.get()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>This method is not atomic with respect to concurrent increments.</p>
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < counts.length(); ++i) {
+            counts.set(i, 0);
+        }
+        n.set(0);
+        minBits.set(Double.doubleToLongBits(Double.NaN));
+        maxBits.set(Double.doubleToLongBits(Double.NaN));
+    }
+
+    /**
+     * Returns an estimate of the configured percentile.
+     * @return estimate of the percentile set by {@link #setQuantile(double)}
+     * (50 by default)
+     * @see #getPercentile(double)
+     */
+    @Override
+    public double getResult() {
+        return getPercentile(quantile);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getN() {
+        return n.get();
+    }
+
+    /**
+     * Returns an estimate of the p<sup>th</sup> percentile of the recorded values.
+     * <p>
+     * The estimate follows the same definition as {@link Percentile}, where
+     * the sorted values are replaced by the representative values (centers)
+     * of their buckets, clamped to the exact recorded minimum and maximum:
+     * with {@code pos = p * (N + 1) / 100}, the exact minimum is returned if
+     * {@code pos < 1}, the exact maximum if {@code pos >= N}, and otherwise
+     * the linear interpolation between the values of ranks
+     * {@code floor(pos)} and {@code floor(pos) + 1}.
+     * </p>
+     *
+     * @param p the requested percentile (scaled from 0 - 100)
+     * @return an estimate of the percentile, or Double.NaN if no values
+     * have been recorded
+     * @throws OutOfRangeException if p is not in the range (0, 100]
+     */
+    public double getPercentile(final double p) throws OutOfRangeException {
+        if (p <= 0 || p > 100) {
+            throw new OutOfRangeException(
+                    LocalizedFormats.OUT_OF_BOUNDS_QUANTILE_VALUE, p, 0, 100);
+        }
+        long total = 0;
+        for (int i = 0; i < counts.length(); ++i) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return Double.NaN;
+        }
+        final double min = getMin();
+        final double max = getMax();
+        final double pos = p * (total + 1) / 100;
+        if (pos < 1) {
+            return min;
+        }
+        if (pos >= total) {
+            return max;
+        }
+        final double fpos = FastMath.floor(pos);
+        final long rank = (long) fpos;
+
+        // buckets holding the values of ranks floor(pos) and floor(pos) + 1
+        long cumulated = 0;
+        int lowerIndex = -1;
+        int upperIndex = counts.length() - 1;
+        for (int i = 0; i < counts.length(); ++i) {
+            cumulated += counts.get(i);
+            if (lowerIndex < 0 && cumulated >= rank) {
+                lowerIndex = i;
+            }
+            if (cumulated > rank) {
+                upperIndex = i;
+                break;
+            }
+        }
+        final double lower = FastMath.min(max, FastMath.max(min, representative(lowerIndex)));
+        final double upper = FastMath.min(max, FastMath.max(min, representative(upperIndex)));
+        return lower + (pos - fpos) * (upper - lower);
+    }
+
+    /**
+     * Returns an estimate of the arithmetic mean of the recorded values,
+     * computed from the representative values of the buckets.
+     *
+     * @return an estimate of the mean, or Double.NaN if no values have
+     * been recorded
+     */
+    public double getMean() {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < counts.length(); ++i) {
+            final long c = counts.get(i);
+            if (c != 0) {
+                total += c;
+                sum   += c * representative(i);
+            }
+        }
+        return (total == 0) ? Double.NaN : sum / total;
+    }
+
+    /**
+     * Returns the exact smallest recorded value.
+     * @return smallest value, or Double.NaN if no values have been recorded
+     */
+    public double getMin() {
+        return Double.longBitsToDouble(minBits.get());
+    }
+
+    /**
+     * Returns the exact largest recorded value.
+     * @return largest value, or Double.NaN if no values have been recorded
+     */
+    public double getMax() {
+        return Double.longBitsToDouble(maxBits.get());
+    }
+
+    /**
+     * Returns the value of the quantile field (determines what percentile is
+     * computed when {@link #getResult()} is called).
+     *
+     * @return quantile
+     */
+    public double getQuantile() {
+        return quantile;
+    }
+
+    /**
+     * Sets the value of the quantile field (determines what percentile is
+     * computed when {@link #getResult()} is called).
+     *
+     * @param p a value between 0 < p <= 100
+     * @throws OutOfRangeException if p is not greater than 0 and less
+     * than or equal to 100
+     */
+    public void setQuantile(final double p) throws OutOfRangeException {
+        if (p <= 0 || p > 100) {
+            throw new OutOfRangeException(
+                    LocalizedFormats.OUT_OF_BOUNDS_QUANTILE_VALUE, p, 0, 100);
+        }
+        quantile = p;
+    }
+
+    /**
+     * Encode the histogram in a compact binary form.
+     * <p>
+     * The encoding contains the layout, the exact minimum and maximum and
+     * the non-zero buckets only, with run-length encoded positions and
+     * variable-length counts, so its size depends on the number of
+     * occupied buckets rather than on the configured range. The configured
+     * quantile is not encoded.
+     * </p>
+     *
+     * @return encoded histogram
+     * @see #decode(byte[])
+     */
+    public byte[] encode() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarLong(out, precisionBits);
+        writeVarLong(out, zigZag(minExponent));
+        writeVarLong(out, zigZag(maxExponent));
+        writeFixedLong(out, minBits.get());
+        writeFixedLong(out, maxBits.get());
+        final long[] snapshot = new long[counts.length()];
+        int occupied = 0;
+        for (int i = 0; i < snapshot.length; ++i) {
+            snapshot[i] = counts.get(i);
+            if (snapshot[i] != 0) {
+                ++occupied;
+            }
+        }
+        writeVarLong(out, occupied);
+        int previous = -1;
+        for (int i = 0; i < snapshot.length; ++i) {
+            if (snapshot[i] != 0) {
+                writeVarLong(out, i - previous - 1);
+                writeVarLong(out, snapshot[i]);
+                previous = i;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a histogram encoded by {@link #encode()}.
+     *
+     * @param encoded encoded histogram
+     * @return decoded histogram, returning the median
+     * @throws NullArgumentException if encoded is null
+     * @throws MathIllegalArgumentException if the encoding is invalid
+     */
+    public static LogLinearHistogram decode(final byte[] encoded)
+        throws NullArgumentException, MathIllegalArgumentException {
+        MathUtils.checkNotNull(encoded);
+        final int[] position = new int[1];
+        final LogLinearHistogram histogram;
+        try {
+            // check the header before allocating anything, the precision
+            // and the number of buckets being checked by the constructor
+            final long bits = readVarLong(encoded, position);
+            final long minE = unZigZag(readVarLong(encoded, position));
+            final long maxE = unZigZag(readVarLong(encoded, position));
+            if (bits != (int) bits ||
+                minE < Double.MIN_EXPONENT || maxE > Double.MAX_EXPONENT || maxE < minE) {
+                throw new MathIllegalArgumentException(LocalizedFormats.INVALID_HISTOGRAM_ENCODING);
+            }
+            try {
+                histogram = new LogLinearHistogram((int) minE, (int) maxE, (int) bits, 50.0);
+            } catch (OutOfRangeException e) {
+                throw new MathIllegalArgumentException(LocalizedFormats.INVALID_HISTOGRAM_ENCODING);
+            } catch (NumberIsTooLargeException e) {
+                throw new MathIllegalArgumentException(LocalizedFormats.INVALID_HISTOGRAM_ENCODING);
+            }
+            final long min = readFixedLong(encoded, position);
+            final long max = readFixedLong(encoded, position);
+            final long occupied = readVarLong(encoded, position);
+            long index = -1;
+            long total = 0;
+            for (long k = 0; k < occupied; ++k) {
+                index += readVarLong(encoded, position) + 1;
+                final long c = readVarLong(encoded, position);
+                if (index >= histogram.counts.length() || c <= 0) {
+                    throw new MathIllegalArgumentException(LocalizedFormats.INVALID_HISTOGRAM_ENCODING);
+                }
+                histogram.counts.set((int) index, c);
+                total += c;
+            }
+            if (position[0] != encoded.length) {
+                throw new MathIllegalArgumentException(LocalizedFormats.INVALID_HISTOGRAM_ENCODING);
+            }
+            histogram.n.set(total);
+            histogram.minBits.set(min);
+            histogram.maxBits.set(max);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new MathIllegalArgumentException(LocalizedFormats.INVALID_HISTOGRAM_ENCODING);
+        }
+        return histogram;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LogLinearHistogram copy() {
+        final LogLinearHistogram result =
+            new LogLinearHistogram(minExponent, maxExponent, precisionBits, quantile);
+        // No try-catch or advertised exception because args are guaranteed non-null
+        copy(this, result);
+        return result;
+    }
+
+    /**
+     * Copies source to dest.
+     * <p>Neither source nor dest can be null.</p>
+     *
+     * @param source LogLinearHistogram to copy
+     * @param dest LogLinearHistogram to copy to
+     * @throws NullArgumentException if either source or dest is null
+     * @throws MathIllegalArgumentException if the histograms do not have the
+     * same layout
+     */
+    public static void copy(LogLinearHistogram source, LogLinearHistogram dest)
+        throws NullArgumentException, MathIllegalArgumentException {
+        MathUtils.checkNotNull(source);
+        MathUtils.checkNotNull(dest);
+        dest.checkLayout(source);
+        dest.setData(source.getDataRef());
+        for (int i = 0; i < source.counts.length(); ++i) {
+            dest.counts.set(i, source.counts.get(i));
+        }
+        dest.n.set(source.n.get());
+        dest.minBits.set(source.minBits.get());
+        dest.maxBits.set(source.maxBits.get());
+        dest.quantile = source.quantile;
+    }
+
+    /**
+     * Check another histogram has the same layout as this one.
+     * @param other other histogram
+     * @throws MathIllegalArgumentException if the histograms do not have the
+     * same layout
+     */
+    private void checkLayout(final LogLinearHistogram other)
+        throws MathIllegalArgumentException {
+        if (other.precisionBits != precisionBits ||
+            other.minExponent   != minExponent   ||
+            other.maxExponent   != maxExponent) {
+            throw new MathIllegalArgumentException(LocalizedFormats.INCOMPATIBLE_HISTOGRAM_LAYOUTS);
+        }
+    }
+
+    /**
+     * Get the index of the bucket containing a value.
+     * @param d value
+     * @return index of the bucket
+     * @throws NotANumberException if d is NaN
+     * @throws OutOfRangeException if the magnitude of d is larger than
+     * the largest trackable magnitude
+     */
+    private int index(final double d) throws NotANumberException, OutOfRangeException {
+        if (Double.isNaN(d)) {
+            throw new NotANumberException();
+        }
+        final double a = FastMath.abs(d);
+        final int e = FastMath.getExponent(a);
+        if (e < minExponent) {
+            return halfSize;
+        }
+        if (e > maxExponent) {
+            final double limit = FastMath.scalb(2.0, maxExponent);
+            throw new OutOfRangeException(d, -limit, limit);
+        }
+        final long significand = Double.doubleToRawLongBits(a) >>> (SIGNIFICAND_BITS - precisionBits);
+        final int k = ((e - minExponent) << precisionBits) +
+                      (int) (significand & ((1l << precisionBits) - 1));
+        return (d > 0) ? halfSize + 1 + k : halfSize - 1 - k;
+    }
+
+    /**
+     * Get the representative value of a bucket.
+     * @param i index of the bucket
+     * @return center of the bucket
+     */
+    private double representative(final int i) {
+        if (i == halfSize) {
+            return 0;
+        }
+        final int k = (i > halfSize) ? i - halfSize - 1 : halfSize - 1 - i;
+        final int e = minExponent + (k >> precisionBits);
+        final int sub = k & ((1 << precisionBits) - 1);
+        final double center = FastMath.scalb(1 + (sub + 0.5) / (1 << precisionBits), e);
+        return (i > halfSize) ? center : -center;
+    }
+
+    /**
+     * Atomically update the minimum.
+     * @param d candidate value (ignored if NaN)
+     */
+    private void updateMin(final double d) {
+        while (true) {
+            final long current = minBits.get();
+            final double min = Double.longBitsToDouble(current);
+            if (!(d < min || Double.isNaN(min)) || Double.isNaN(d) ||
+                minBits.compareAndSet(current, Double.doubleToLongBits(d))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Atomically update the maximum.
+     * @param d candidate value (ignored if NaN)
+     */
+    private void updateMax(final double d) {
+        while (true) {
+            final long current = maxBits.get();
+            final double max = Double.longBitsToDouble(current);
+            if (!(d > max || Double.isNaN(max)) || Double.isNaN(d) ||
+                maxBits.compareAndSet(current, Double.doubleToLongBits(d))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Map a signed value to a non-negative one (zig-zag encoding).
+     * @param v signed value
+     * @return encoded value
+     */
+    private static long zigZag(final long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    /**
+     * Reverse zig-zag encoding.
+     * @param v encoded value
+     * @return signed value
+     */
+    private static long unZigZag(final long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Write a non-negative value with 7 bits per byte.
+     * @param out output stream
+     * @param v value to write
+     */
+    private static void writeVarLong(final ByteArrayOutputStream out, final long v) {
+        long remaining = v;
+        while ((remaining & ~0x7FL) != 0) {
+            out.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    /**
+     * Write a value on 8 bytes, most significant byte first.
+     * @param out output stream
+     * @param v value to write
+     */
+    private static void writeFixedLong(final ByteArrayOutputStream out, final long v) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (v >>> shift) & 0xFF);
+        }
+    }
+
+    /**
+     * Read a value written by {@link #writeVarLong(ByteArrayOutputStream, long)}.
+     * @param in encoded bytes
+     * @param position current position, updated by the method
+     * @return value read
+     * @throws MathIllegalArgumentException if the value is too long
+     */
+    private static long readVarLong(final byte[] in, final int[] position)
+        throws MathIllegalArgumentException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in[position[0]++];
+            v |= ((long) (b & 0x7F)) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new MathIllegalArgumentException(LocalizedFormats.INVALID_HISTOGRAM_ENCODING);
+    }
+
+    /**
+     * Read a value written by {@link #writeFixedLong(ByteArrayOutputStream, long)}.
+     * @param in encoded bytes
+     * @param position current position, updated by the method
+     * @return value read
+     */
+    private static long readFixedLong(final byte[] in, final int[] position) {
+        long v = 0;
+        for (int k = 0; k < 8; ++k) {
+            v = (v << 8) | (in[position[0]++] & 0xFF);
+        }
+        return v;
+    }
+
+}
@@ -1,10 +1,5 @@
 package stat.ranking;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
-
 import math.util.FastMath;
 import random.RandomDataGenerator;
 import random.RandomGenerator;
@@ -20,6 +15,9 @@ public class NaturalRanking implements RankingAlgorithm {
     /** default ties strategy */
     public static final TiesStrategy DEFAULT_TIES_STRATEGY = TiesStrategy.AVERAGE;
 
+    /** Length of the runs sorted by insertion before merging. */
+    private static final int INSERTION_SORT_RUN = 32;
+
     /** NaN strategy - defaults to NaNs maximal */
     private final NaNStrategy nanStrategy;
 
@@ -127,6 +125,10 @@ public class NaturalRanking implements RankingAlgorithm {
      * Rank <code>data</code> using the natural ordering on Doubles, with
      * NaN values handled according to <code>nanStrategy</code> and ties
      * resolved using <code>tiesStrategy.</code>
+     * <p>
+     * The values are sorted together with their original positions in
+     * primitive arrays, so no object is created per element.
+     * </p>
      *
      * @param data array to be ranked
      * @return array of ranks
@@ -135,30 +137,22 @@ public class NaturalRanking implements RankingAlgorithm {
      */
     public double[] rank(double[] data) {
 
-        // Array recording initial positions of data to be ranked
-        IntDoublePair[] ranks = new IntDoublePair[data.length];
-        for (int i = 0; i < data.length; i++) {
-            ranks[i] = new IntDoublePair(data[i], i);
-        }
-
-        // Recode, remove or record positions of NaNs
-        List<Integer> nanPositions = null;
+        // Copy of the values to be ranked, with NaNs recoded or removed
+        double[] values = data.clone();
         switch (nanStrategy) {
             case MAXIMAL: // Replace NaNs with +INFs
-                recodeNaNs(ranks, Double.POSITIVE_INFINITY);
+                recodeNaNs(values, Double.POSITIVE_INFINITY);
                 break;
             case MINIMAL: // Replace NaNs with -INFs
-                recodeNaNs(ranks, Double.NEGATIVE_INFINITY);
+                recodeNaNs(values, Double.NEGATIVE_INFINITY);
                 break;
             case REMOVED: // Drop NaNs from data
-                ranks = removeNaNs(ranks);
+                values = removeNaNs(values);
                 break;
-            case FIXED:   // Record positions of NaNs
-                nanPositions = getNanPositions(ranks);
+            case FIXED:   // NaNs are sorted last and restored at the end
                 break;
             case FAILED:
-                nanPositions = getNanPositions(ranks);
-                if (nanPositions.size() > 0) {
+                if (containsNaNs(values)) {
                     throw new NotANumberException();
                 }
                 break;
@@ -166,95 +160,156 @@ public class NaturalRanking implements RankingAlgorithm {
                 throw new MathInternalError();
         }
 
-        // Sort the IntDoublePairs
-        Arrays.sort(ranks);
+        // Sort the values, keeping track of their initial positions
+        final int[] positions = new int[values.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        sort(values, positions);
 
         // Walk the sorted array, filling output array using sorted positions,
         // resolving ties as we go
-        double[] out = new double[ranks.length];
-        int pos = 1;  // position in sorted array
-        out[ranks[0].getPosition()] = pos;
-        List<Integer> tiesTrace = new ArrayList<Integer>();
-        tiesTrace.add(ranks[0].getPosition());
-        for (int i = 1; i < ranks.length; i++) {
-            if (Double.compare(ranks[i].getValue(), ranks[i - 1].getValue()) > 0) {
-                // tie sequence has ended (or had length 1)
-                pos = i + 1;
-                if (tiesTrace.size() > 1) {  // if seq is nontrivial, resolve
-                    resolveTie(out, tiesTrace);
+        final double[] out = new double[values.length];
+        int start = 0;
+        for (int i = 1; i <= values.length; i++) {
+            if (i == values.length || Double.compare(values[i], values[start]) > 0) {
+                // tie sequence [start, i) has ended (or had length 1)
+                if (i - start > 1) {
+                    resolveTie(out, positions, start, i);
+                } else {
+                    out[positions[start]] = start + 1;
                 }
-                tiesTrace = new ArrayList<Integer>();
-                tiesTrace.add(ranks[i].getPosition());
-            } else {
-                // tie sequence continues
-                tiesTrace.add(ranks[i].getPosition());
+                start = i;
             }
-            out[ranks[i].getPosition()] = pos;
-        }
-        if (tiesTrace.size() > 1) {  // handle tie sequence at end
-            resolveTie(out, tiesTrace);
         }
         if (nanStrategy == NaNStrategy.FIXED) {
-            restoreNaNs(out, nanPositions);
+            restoreNaNs(out, data);
         }
         return out;
     }
 
     /**
-     * Returns an array that is a copy of the input array with IntDoublePairs
-     * having NaN values removed.
+     * Sort values in increasing order, applying the same permutation to
+     * their positions.
+     * <p>
+     * Values are compared with {@link Double#compare(double, double)}. The
+     * sort is stable, so tied values keep the order of their positions.
+     * Short runs are sorted by insertion and then merged bottom-up.
+     * </p>
+     *
+     * @param values values to sort (sorted in place)
+     * @param positions positions of the values (permuted in place)
+     */
+    private static void sort(double[] values, int[] positions) {
+
+        final int n = values.length;
+        for (int lo = 0; lo < n; lo += INSERTION_SORT_RUN) {
+            final int hi = FastMath.min(n, lo + INSERTION_SORT_RUN);
+            for (int i = lo + 1; i < hi; i++) {
+                final double v = values[i];
+                final int    p = positions[i];
+                int j = i - 1;
+                while (j >= lo && Double.compare(values[j], v) > 0) {
+                    values[j + 1]    = values[j];
+                    positions[j + 1] = positions[j];
+                    --j;
+                }
+                values[j + 1]    = v;
+                positions[j + 1] = p;
+            }
+        }
+        if (n <= INSERTION_SORT_RUN) {
+            return;
+        }
+
+        // merge runs of increasing width, alternating between the arrays and work buffers
+        double[] srcV = values;
+        int[]    srcP = positions;
+        double[] dstV = new double[n];
+        int[]    dstP = new int[n];
+        for (long width = INSERTION_SORT_RUN; width < n; width *= 2) {
+            for (long lo = 0; lo < n; lo += 2 * width) {
+                final int mid = (int) FastMath.min(n, lo + width);
+                final int hi  = (int) FastMath.min(n, lo + 2 * width);
+                int i = (int) lo;
+                int j = mid;
+                int k = (int) lo;
+                if (mid < hi && Double.compare(srcV[mid - 1], srcV[mid]) > 0) {
+                    while (i < mid && j < hi) {
+                        if (Double.compare(srcV[j], srcV[i]) < 0) {
+                            dstV[k]   = srcV[j];
+                            dstP[k++] = srcP[j++];
+                        } else {
+                            dstV[k]   = srcV[i];
+                            dstP[k++] = srcP[i++];
+                        }
+                    }
+                }
+                System.arraycopy(srcV, i, dstV, k, mid - i);
+                System.arraycopy(srcP, i, dstP, k, mid - i);
+                k += mid - i;
+                System.arraycopy(srcV, j, dstV, k, hi - j);
+                System.arraycopy(srcP, j, dstP, k, hi - j);
+            }
+            final double[] tmpV = srcV;
+            srcV = dstV;
+            dstV = tmpV;
+            final int[] tmpP = srcP;
+            srcP = dstP;
+            dstP = tmpP;
+        }
+        if (srcV != values) {
+            System.arraycopy(srcV, 0, values,    0, n);
+            System.arraycopy(srcP, 0, positions, 0, n);
+        }
+
+    }
+
+    /**
+     * Returns an array that is a copy of the input array with NaN values removed.
      *
-     * @param ranks input array
+     * @param values input array
      * @return array with NaN-valued entries removed
      */
-    private IntDoublePair[] removeNaNs(IntDoublePair[] ranks) {
-        if (!containsNaNs(ranks)) {
-            return ranks;
+    private double[] removeNaNs(double[] values) {
+        if (!containsNaNs(values)) {
+            return values;
         }
-        IntDoublePair[] outRanks = new IntDoublePair[ranks.length];
+        double[] outValues = new double[values.length];
         int j = 0;
-        for (int i = 0; i < ranks.length; i++) {
-            if (Double.isNaN(ranks[i].getValue())) {
-                // drop, but adjust original ranks of later elements
-                for (int k = i + 1; k < ranks.length; k++) {
-                    ranks[k] = new IntDoublePair(
-                            ranks[k].getValue(), ranks[k].getPosition() - 1);
-                }
-            } else {
-                outRanks[j] = new IntDoublePair(
-                        ranks[i].getValue(), ranks[i].getPosition());
-                j++;
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                outValues[j++] = values[i];
             }
         }
-        IntDoublePair[] returnRanks = new IntDoublePair[j];
-        System.arraycopy(outRanks, 0, returnRanks, 0, j);
-        return returnRanks;
+        double[] returnValues = new double[j];
+        System.arraycopy(outValues, 0, returnValues, 0, j);
+        return returnValues;
     }
 
     /**
      * Recodes NaN values to the given value.
      *
-     * @param ranks array to recode
+     * @param values array to recode
      * @param value the value to replace NaNs with
      */
-    private void recodeNaNs(IntDoublePair[] ranks, double value) {
-        for (int i = 0; i < ranks.length; i++) {
-            if (Double.isNaN(ranks[i].getValue())) {
-                ranks[i] = new IntDoublePair(
-                        value, ranks[i].getPosition());
+    private void recodeNaNs(double[] values, double value) {
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i])) {
+                values[i] = value;
             }
         }
     }
 
     /**
-     * Checks for presence of NaNs in <code>ranks.</code>
+     * Checks for presence of NaNs in <code>values.</code>
      *
-     * @param ranks array to be searched for NaNs
-     * @return true iff ranks contains one or more NaNs
+     * @param values array to be searched for NaNs
+     * @return true iff values contains one or more NaNs
      */
-    private boolean containsNaNs(IntDoublePair[] ranks) {
-        for (int i = 0; i < ranks.length; i++) {
-            if (Double.isNaN(ranks[i].getValue())) {
+    private boolean containsNaNs(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i])) {
                 return true;
             }
         }
@@ -263,52 +318,47 @@ public class NaturalRanking implements RankingAlgorithm {
 
     /**
      * Resolve a sequence of ties, using the configured {@link TiesStrategy}.
-     * The input <code>ranks</code> array is expected to take the same value
-     * for all indices in <code>tiesTrace</code>.  The common value is recoded
-     * according to the tiesStrategy. For example, if ranks = <5,8,2,6,2,7,1,2>,
-     * tiesTrace = <2,4,7> and tiesStrategy is MINIMUM, ranks will be unchanged.
-     * The same array and trace with tiesStrategy AVERAGE will come out
-     * <5,8,3,6,3,7,1,3>.
+     * The values at sorted indices <code>start</code> (included) to
+     * <code>end</code> (excluded) are all equal, so they all share the
+     * minimum rank <code>start + 1</code>, which is recoded according to
+     * the tiesStrategy. For example, if the ranks of the sequence would be
+     * <2,3,4> without ties, they all become 2 with tiesStrategy MINIMUM
+     * and 3 with tiesStrategy AVERAGE.
      *
      * @param ranks array of ranks
-     * @param tiesTrace list of indices where <code>ranks</code> is constant
-     * -- that is, for any i and j in TiesTrace, <code> ranks[i] == ranks[j]
-     * </code>
+     * @param positions initial positions of the sorted values
+     * @param start first sorted index of the tie sequence (included)
+     * @param end last sorted index of the tie sequence (excluded)
      */
-    private void resolveTie(double[] ranks, List<Integer> tiesTrace) {
+    private void resolveTie(double[] ranks, int[] positions, int start, int end) {
 
-        // constant value of ranks over tiesTrace
-        final double c = ranks[tiesTrace.get(0)];
+        // common minimum rank of the sequence
+        final double c = start + 1;
 
         // length of sequence of tied ranks
-        final int length = tiesTrace.size();
+        final int length = end - start;
 
         switch (tiesStrategy) {
             case  AVERAGE:  // Replace ranks with average
-                fill(ranks, tiesTrace, (2 * c + length - 1) / 2d);
+                fill(ranks, positions, start, end, (2 * c + length - 1) / 2d);
                 break;
             case MAXIMUM:   // Replace ranks with maximum values
-                fill(ranks, tiesTrace, c + length - 1);
+                fill(ranks, positions, start, end, c + length - 1);
                 break;
             case MINIMUM:   // Replace ties with minimum
-                fill(ranks, tiesTrace, c);
+                fill(ranks, positions, start, end, c);
                 break;
             case RANDOM:    // Fill with random integral values in [c, c + length - 1]
-                Iterator<Integer> iterator = tiesTrace.iterator();
                 long f = FastMath.round(c);
-                while (iterator.hasNext()) {
+                for (int i = start; i < end; i++) {
                     // No advertised exception because args are guaranteed valid
-                    ranks[iterator.next()] =
-                        randomData.nextLong(f, f + length - 1);
+                    ranks[positions[i]] = randomData.nextLong(f, f + length - 1);
                 }
                 break;
             case SEQUENTIAL:  // Fill sequentially from c to c + length - 1
-                // walk and fill
-                iterator = tiesTrace.iterator();
                 f = FastMath.round(c);
-                int i = 0;
-                while (iterator.hasNext()) {
-                    ranks[iterator.next()] = f + i++;
+                for (int i = start; i < end; i++) {
+                    ranks[positions[i]] = f + i - start;
                 }
                 break;
             default: // this should not happen unless TiesStrategy enum is changed
@@ -317,103 +367,33 @@ public class NaturalRanking implements RankingAlgorithm {
     }
 
     /**
-     * Sets<code>data[i] = value</code> for each i in <code>tiesTrace.</code>
+     * Sets <code>data[positions[i]] = value</code> for each i from
+     * <code>start</code> (included) to <code>end</code> (excluded).
      *
      * @param data array to modify
-     * @param tiesTrace list of index values to set
+     * @param positions positions to set
+     * @param start first index in positions (included)
+     * @param end last index in positions (excluded)
      * @param value value to set
      */
-    private void fill(double[] data, List<Integer> tiesTrace, double value) {
-        Iterator<Integer> iterator = tiesTrace.iterator();
-        while (iterator.hasNext()) {
-            data[iterator.next()] = value;
+    private void fill(double[] data, int[] positions, int start, int end, double value) {
+        for (int i = start; i < end; i++) {
+            data[positions[i]] = value;
         }
     }
 
     /**
-     * Set <code>ranks[i] = Double.NaN</code> for each i in <code>nanPositions.</code>
+     * Set <code>ranks[i] = Double.NaN</code> for each i where <code>data[i]</code> is NaN.
      *
      * @param ranks array to modify
-     * @param nanPositions list of index values to set to <code>Double.NaN</code>
-     */
-    private void restoreNaNs(double[] ranks, List<Integer> nanPositions) {
-        if (nanPositions.size() == 0) {
-            return;
-        }
-        Iterator<Integer> iterator = nanPositions.iterator();
-        while (iterator.hasNext()) {
-            ranks[iterator.next().intValue()] = Double.NaN;
-        }
-
-    }
-
-    /**
-     * Returns a list of indexes where <code>ranks</code> is <code>NaN.</code>
-     *
-     * @param ranks array to search for <code>NaNs</code>
-     * @return list of indexes i such that <code>ranks[i] = NaN</code>
+     * @param data ranked data
      */
-    private List<Integer> getNanPositions(IntDoublePair[] ranks) {
-        ArrayList<Integer> out = new ArrayList<Integer>();
-        for (int i = 0; i < ranks.length; i++) {
-            if (Double.isNaN(ranks[i].getValue())) {
-                out.add(Integer.valueOf(i));
+    private void restoreNaNs(double[] ranks, double[] data) {
+        for (int i = 0; i < data.length; i++) {
+            if (Double.isNaN(data[i])) {
+                ranks[i] = Double.NaN;
             }
         }
-        return out;
     }
 
-    /**
-     * Represents the position of a double value in an ordering.
-     * Comparable interface is implemented so Arrays.sort can be used
-     * to sort an array of IntDoublePairs by value.  Note that the
-     * implicitly defined natural ordering is NOT consistent with equals.
-     */
-    private static class IntDoublePair implements Comparable<IntDoublePair>  {
-
-        /** Value of the pair */
-        private final double value;
-
-        /** Original position of the pair */
-        private final int position;
-
-        /**
-         * Construct an IntDoublePair with the given value and position.
-         * @param value the value of the pair
-         * @param position the original position
-         */
-        public IntDoublePair(double value, int position) {
-            this.value = value;
-            this.position = position;
-        }
-
-        /**
-         * Compare this IntDoublePair to another pair.
-         * Only the <strong>values</strong> are compared.
-         *
-         * @param other the other pair to compare this to
-         * @return result of <code>Double.compare(value, other.value)</code>
-         */
-        public int compareTo(IntDoublePair other) {
-            return Double.compare(value, other.value);
-        }
-
-        // N.B. equals() and hashCode() are not implemented; see MATH-610 for discussion.
-
-        /**
-         * Returns the value of the pair.
-         * @return value
-         */
-        public double getValue() {
-            return value;
-        }
-
-        /**
-         * Returns the original position of the pair.
-         * @return position
-         */
-        public int getPosition() {
-            return position;
-        }
-    }
 }
@@ -0,0 +1,419 @@
+package stat.regression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import linear.Array2DRowRealMatrix;
+import linear.QRDecomposition;
+import linear.RealMatrix;
+import linear.SingularMatrixException;
+import math.util.ConcurrencyUtils;
+import math.util.FastMath;
+import math.util.MathArrays;
+import math.util.Precision;
+import exception.MathIllegalArgumentException;
+import exception.NoDataException;
+import exception.util.LocalizedFormats;
+
+public class ChunkedOLSRegression implements UpdatingMultipleLinearRegression {
+
+    /** Default number of rows in a chunk. */
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    /** Number of variables in regression, including the constant if any. */
+    private final int nvars;
+
+    /** Boolean flag whether a regression constant is added. */
+    private final boolean hasIntercept;
+
+    /** Number of rows folded into the triangular factor at once. */
+    private final int chunkSize;
+
+    /** Executor for bulk additions (may be null). */
+    private final ExecutorService executor;
+
+    /** Zero tolerance for rank detection. */
+    private final double epsilon;
+
+    /** Triangular factor of all folded rows. */
+    private final Factor factor;
+
+    /** Pending rows, augmented with the regressand, not yet folded. */
+    private final double[][] pending;
+
+    /** Number of pending rows. */
+    private int nPending;
+
+    /**
+     * Build a sequential regression engine.
+     *
+     * @param numberOfVariables number of regressors to expect, not including constant
+     * @param includeConstant include a constant automatically
+     * @throws ModelSpecificationException if {@code numberOfVariables is less than 1}
+     */
+    public ChunkedOLSRegression(int numberOfVariables, boolean includeConstant)
+        throws ModelSpecificationException {
+        this(numberOfVariables, includeConstant, null, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Build a regression engine folding rows by chunks, optionally in parallel.
+     * <p>
+     * Rows are buffered into chunks of {@code chunkSize} rows. Each chunk is
+     * folded into an upper triangular factor of the augmented design matrix
+     * [X y] by a Householder QR decomposition (tall-skinny QR), so memory
+     * use is proportional to {@code chunkSize * p + p<sup>2</sup>}
+     * regardless of the number of observations.
+     * </p>
+     * <p>
+     * If {@code executor} is not null, {@link #addObservations(double[][], double[])}
+     * splits its rows into ranges factored concurrently, whose partial
+     * factors are then merged in order.
+     * </p>
+     *
+     * @param numberOfVariables number of regressors to expect, not including constant
+     * @param includeConstant include a constant automatically
+     * @param executor executor for bulk additions (may be null)
+     * @param chunkSize number of rows folded at once
+     * @throws ModelSpecificationException if {@code numberOfVariables is less than 1}
+     */
+    public ChunkedOLSRegression(int numberOfVariables, boolean includeConstant,
+                                ExecutorService executor, int chunkSize)
+        throws ModelSpecificationException {
+        if (numberOfVariables < 1) {
+            throw new ModelSpecificationException(LocalizedFormats.NO_REGRESSORS);
+        }
+        this.nvars        = includeConstant ? numberOfVariables + 1 : numberOfVariables;
+        this.hasIntercept = includeConstant;
+        this.executor     = executor;
+        this.chunkSize    = FastMath.max(1, chunkSize);
+        this.epsilon      = Precision.EPSILON;
+        this.factor       = new Factor(nvars + 1);
+        this.pending      = new double[this.chunkSize][nvars + 1];
+        this.nPending     = 0;
+    }
+
+    /** {@inheritDoc} */
+    public boolean hasIntercept() {
+        return hasIntercept;
+    }
+
+    /** {@inheritDoc} */
+    public long getN() {
+        return factor.n + nPending;
+    }
+
+    /** {@inheritDoc} */
+    public void addObservation(final double[] x, final double y)
+        throws ModelSpecificationException {
+        checkObservation(x);
+        fillRow(pending[nPending++], x, y);
+        if (nPending == chunkSize) {
+            flush();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void addObservations(final double[][] x, final double[] y)
+        throws ModelSpecificationException {
+        if ((x == null) || (y == null) || (x.length != y.length)) {
+            throw new ModelSpecificationException(
+                  LocalizedFormats.DIMENSIONS_MISMATCH_SIMPLE,
+                  (x == null) ? 0 : x.length,
+                  (y == null) ? 0 : y.length);
+        }
+        if (x.length == 0) {  // Must be no y data either
+            throw new ModelSpecificationException(
+                    LocalizedFormats.NO_DATA);
+        }
+        for (final double[] row : x) {
+            checkObservation(row);
+        }
+
+        if (executor == null || x.length < 2 * chunkSize) {
+            for (int i = 0; i < x.length; i++) {
+                addObservation(x[i], y[i]);
+            }
+            return;
+        }
+
+        // factor disjoint ranges of rows concurrently
+        final int[] bounds = ConcurrencyUtils.splitRange(0, x.length,
+                                                         Runtime.getRuntime().availableProcessors(),
+                                                         chunkSize);
+        final List<Callable<Factor>> tasks = new ArrayList<Callable<Factor>>(bounds.length - 1);
+        for (int k = 0; k + 1 < bounds.length; ++k) {
+            final int begin = bounds[k];
+            final int end   = bounds[k + 1];
+            tasks.add(new Callable<Factor>() {
+                /** {@inheritDoc} */
+                public Factor call() {
+                    final Factor partial = new Factor(nvars + 1);
+                    final double[][] rows = new double[chunkSize][nvars + 1];
+                    int count = 0;
+                    for (int i = begin; i < end; ++i) {
+                        fillRow(rows[count++], x[i], y[i]);
+                        if (count == chunkSize) {
+                            partial.fold(rows, count);
+                            count = 0;
+                        }
+                    }
+                    partial.fold(rows, count);
+                    return partial;
+                }
+            });
+        }
+
+        // merge the partial factors in order
+        for (final Factor partial : ConcurrencyUtils.invokeAll(executor, tasks)) {
+            factor.merge(partial);
+        }
+
+    }
+
+    /** {@inheritDoc} */
+    public void clear() {
+        factor.clear();
+        nPending = 0;
+    }
+
+    /** {@inheritDoc} */
+    public RegressionResults regress() throws ModelSpecificationException, NoDataException {
+        final int[] all = new int[nvars];
+        for (int i = 0; i < nvars; ++i) {
+            all[i] = i;
+        }
+        return regress(all);
+    }
+
+    /** {@inheritDoc} */
+    public RegressionResults regress(final int[] variablesToInclude)
+        throws ModelSpecificationException, MathIllegalArgumentException {
+
+        if (variablesToInclude == null || variablesToInclude.length == 0) {
+            throw new MathIllegalArgumentException(LocalizedFormats.ARRAY_ZERO_LENGTH_OR_NULL_NOT_ALLOWED);
+        }
+        if (variablesToInclude.length > nvars) {
+            throw new ModelSpecificationException(
+                    LocalizedFormats.TOO_MANY_REGRESSORS, variablesToInclude.length, nvars);
+        }
+
+        // remove duplicates, keeping canonical order
+        final int[] sorted = variablesToInclude.clone();
+        Arrays.sort(sorted);
+        int k = 0;
+        for (int i = 0; i < sorted.length; ++i) {
+            if (sorted[i] < 0 || sorted[i] >= nvars) {
+                throw new ModelSpecificationException(
+                        LocalizedFormats.INDEX_LARGER_THAN_MAX, sorted[i], nvars);
+            }
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[k++] = sorted[i];
+            }
+        }
+        final int[] series = MathArrays.copyOf(sorted, k);
+
+        flush();
+        if (factor.n <= series.length) {
+            throw new ModelSpecificationException(
+                    LocalizedFormats.NOT_ENOUGH_DATA_FOR_NUMBER_OF_PREDICTORS,
+                    factor.n, series.length);
+        }
+
+        // triangular factor of the selected columns augmented with y
+        final double[][] r;
+        if (series.length == nvars) {
+            r = factor.r;
+        } else {
+            final double[][] selected = new double[nvars + 1][k + 1];
+            for (int i = 0; i <= nvars; ++i) {
+                for (int j = 0; j < k; ++j) {
+                    selected[i][j] = factor.r[i][series[j]];
+                }
+                selected[i][k] = factor.r[i][nvars];
+            }
+            r = new QRDecomposition(new Array2DRowRealMatrix(selected, false)).getR().getData();
+        }
+
+        // check rank
+        double maxDiag = 0;
+        for (int i = 0; i < k; ++i) {
+            maxDiag = FastMath.max(maxDiag, FastMath.abs(r[i][i]));
+        }
+        for (int i = 0; i < k; ++i) {
+            if (FastMath.abs(r[i][i]) <= epsilon * maxDiag * k) {
+                throw new SingularMatrixException();
+            }
+        }
+
+        // back substitution for the parameters
+        final double[] beta = new double[k];
+        for (int i = k - 1; i >= 0; --i) {
+            double s = r[i][k];
+            for (int j = i + 1; j < k; ++j) {
+                s -= r[i][j] * beta[j];
+            }
+            beta[i] = s / r[i][i];
+        }
+        final double sse = r[k][k] * r[k][k];
+
+        // inverse of R, then covariance MSE (R^T R)^-1 in symmetric compressed form
+        final double[][] rInv = new double[k][k];
+        for (int j = 0; j < k; ++j) {
+            rInv[j][j] = 1.0 / r[j][j];
+            for (int i = j - 1; i >= 0; --i) {
+                double s = 0;
+                for (int l = i + 1; l <= j; ++l) {
+                    s += r[i][l] * rInv[l][j];
+                }
+                rInv[i][j] = -s / r[i][i];
+            }
+        }
+        final double mse = sse / (factor.n - k);
+        final double[] cov = new double[k * (k + 1) / 2];
+        for (int col = 0; col < k; ++col) {
+            for (int row = 0; row <= col; ++row) {
+                double s = 0;
+                for (int l = col; l < k; ++l) {
+                    s += rInv[row][l] * rInv[col][l];
+                }
+                cov[(col + 1) * col / 2 + row] = s * mse;
+            }
+        }
+
+        final boolean constant = hasIntercept && series[0] == 0;
+        return new RegressionResults(beta, new double[][] { cov }, true, factor.n, k,
+                                     factor.sumy, factor.sumsqy, sse, constant, false);
+
+    }
+
+    /**
+     * Check the length of an observation.
+     * @param x the array with regressor values
+     * @exception ModelSpecificationException if the length of {@code x} does not equal
+     * the number of independent variables in the model
+     */
+    private void checkObservation(final double[] x) throws ModelSpecificationException {
+        if ((!hasIntercept && x.length != nvars) ||
+            (hasIntercept && x.length + 1 != nvars)) {
+            throw new ModelSpecificationException(LocalizedFormats.INVALID_REGRESSION_OBSERVATION,
+                                                  x.length, nvars);
+        }
+    }
+
+    /**
+     * Fill one augmented row [1 x y] or [x y].
+     * @param row row to fill
+     * @param x the array with regressor values
+     * @param y the value of dependent variable
+     */
+    private void fillRow(final double[] row, final double[] x, final double y) {
+        if (hasIntercept) {
+            row[0] = 1.0;
+            System.arraycopy(x, 0, row, 1, x.length);
+        } else {
+            System.arraycopy(x, 0, row, 0, x.length);
+        }
+        row[nvars] = y;
+    }
+
+    /** Fold the pending rows into the triangular factor. */
+    private void flush() {
+        factor.fold(pending, nPending);
+        nPending = 0;
+    }
+
+    /** Upper triangular factor of an augmented design matrix, with regressand sums. */
+    private static class Factor {
+
+        /** Upper triangular factor R of [X y], such that R<sup>T</sup>R = [X y]<sup>T</sup>[X y]. */
+        private final double[][] r;
+
+        /** Number of observations. */
+        private long n;
+
+        /** Sum of the regressand. */
+        private double sumy;
+
+        /** Sum of the squared regressand. */
+        private double sumsqy;
+
+        /**
+         * @param q number of columns of the augmented design matrix
+         */
+        public Factor(final int q) {
+            r = new double[q][q];
+        }
+
+        /**
+         * Fold rows into the factor.
+         * @param rows augmented rows, regressand last
+         * @param count number of rows to use
+         */
+        public void fold(final double[][] rows, final int count) {
+            if (count == 0) {
+                return;
+            }
+            final int q = r.length;
+            final double[][] stacked = new double[q + count][];
+            for (int i = 0; i < q; ++i) {
+                stacked[i] = r[i].clone();
+            }
+            for (int i = 0; i < count; ++i) {
+                stacked[q + i] = rows[i].clone();
+                final double y = rows[i][q - 1];
+                sumy   += y;
+                sumsqy += y * y;
+            }
+            n += count;
+            setR(new QRDecomposition(new Array2DRowRealMatrix(stacked, false)).getR());
+        }
+
+        /**
+         * Merge another factor into this one.
+         * @param other factor to merge
+         */
+        public void merge(final Factor other) {
+            if (other.n == 0) {
+                return;
+            }
+            final int q = r.length;
+            final double[][] stacked = new double[2 * q][];
+            for (int i = 0; i < q; ++i) {
+                stacked[i]     = r[i].clone();
+                stacked[q + i] = other.r[i].clone();
+            }
+            n      += other.n;
+            sumy   += other.sumy;
+            sumsqy += other.sumsqy;
+            setR(new QRDecomposition(new Array2DRowRealMatrix(stacked, false)).getR());
+        }
+
+        /** Reset the factor. */
+        public void clear() {
+            for (final double[] row : r) {
+                Arrays.fill(row, 0.0);
+            }
+            n      = 0;
+            sumy   = 0;
+            sumsqy = 0;
+        }
+
+        /**
+         * Copy the top square part of a triangular matrix.
+         * @param full triangular matrix with at least as many rows as columns
+         */
+        private void setR(final RealMatrix full) {
+            for (int i = 0; i < r.length; ++i) {
+                for (int j = 0; j < r.length; ++j) {
+                    r[i][j] = full.getEntry(i, j);
+                }
+            }
+        }
+
+    }
+
+}
@@ -1,10 +1,16 @@
 package stat.regression;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
+import math.util.ConcurrencyUtils;
 import math.util.FastMath;
 import math.util.MathArrays;
 import math.util.Precision;
+import exception.DimensionMismatchException;
 import exception.util.LocalizedFormats;
 
 
@@ -180,6 +186,124 @@ public class MillerUpdatingRegression implements UpdatingMultipleLinearRegressio
         }
     }
 
+    /**
+     * Adds multiple observations to the model, splitting the rows across threads.
+     * <p>
+     * The rows are split into contiguous ranges, each range is accumulated
+     * into its own partial regression by a task submitted to {@code executor},
+     * and the partial regressions are then {@link #merge(MillerUpdatingRegression)
+     * merged} into this instance in row order.
+     * </p>
+     * @param x observations on the regressors
+     * @param y observations on the regressand
+     * @param executor executor running the partial regressions (may be null,
+     * in which case this is equivalent to {@link #addObservations(double[][], double[])})
+     * @throws ModelSpecificationException if {@code x} is not rectangular, does not match
+     * the length of {@code y} or does not contain sufficient data to estimate the model
+     */
+    public void addObservations(final double[][] x, final double[] y,
+                                final ExecutorService executor)
+        throws ModelSpecificationException {
+        if (executor == null) {
+            addObservations(x, y);
+            return;
+        }
+        if ((x == null) || (y == null) || (x.length != y.length)) {
+            throw new ModelSpecificationException(
+                  LocalizedFormats.DIMENSIONS_MISMATCH_SIMPLE,
+                  (x == null) ? 0 : x.length,
+                  (y == null) ? 0 : y.length);
+        }
+        if (x.length == 0) {  // Must be no y data either
+            throw new ModelSpecificationException(
+                    LocalizedFormats.NO_DATA);
+        }
+        if (x[0].length + 1 > x.length) {
+            throw new ModelSpecificationException(
+                  LocalizedFormats.NOT_ENOUGH_DATA_FOR_NUMBER_OF_PREDICTORS,
+                  x.length, x[0].length);
+        }
+
+        final int[] bounds = ConcurrencyUtils.splitRange(0, x.length,
+                                                         Runtime.getRuntime().availableProcessors(),
+                                                         nvars);
+        final int numberOfVariables = hasIntercept ? nvars - 1 : nvars;
+        final List<Callable<MillerUpdatingRegression>> tasks =
+            new ArrayList<Callable<MillerUpdatingRegression>>(bounds.length - 1);
+        for (int k = 0; k + 1 < bounds.length; ++k) {
+            final int begin = bounds[k];
+            final int end   = bounds[k + 1];
+            tasks.add(new Callable<MillerUpdatingRegression>() {
+                /** {@inheritDoc} */
+                public MillerUpdatingRegression call() {
+                    final MillerUpdatingRegression partial =
+                        new MillerUpdatingRegression(numberOfVariables, hasIntercept, epsilon);
+                    for (int i = begin; i < end; ++i) {
+                        partial.addObservation(x[i], y[i]);
+                    }
+                    return partial;
+                }
+            });
+        }
+
+        for (final MillerUpdatingRegression partial : ConcurrencyUtils.invokeAll(executor, tasks)) {
+            merge(partial);
+        }
+    }
+
+    /**
+     * Merges the observations of another regression into this one.
+     * <p>
+     * Each row of the other triangular factor is folded into this factor
+     * as a weighted observation, using the same Givens rotations as
+     * {@link #addObservation(double[], double)}. The result is the
+     * regression that would have been obtained by adding all the
+     * observations of both instances to a single one, up to rounding.
+     * The other instance is not modified.
+     * </p>
+     * @param other regression to merge into this one
+     * @throws ModelSpecificationException if the two regressions do not agree
+     * on the constant term
+     * @throws DimensionMismatchException if the two regressions do not have
+     * the same number of variables
+     */
+    public void merge(final MillerUpdatingRegression other)
+        throws ModelSpecificationException, DimensionMismatchException {
+        if (other.hasIntercept != hasIntercept) {
+            throw new ModelSpecificationException(LocalizedFormats.INCOMPATIBLE_REGRESSION_MODELS,
+                                                  hasIntercept, other.hasIntercept);
+        }
+        if (other.nvars != nvars) {
+            throw new DimensionMismatchException(other.nvars, nvars);
+        }
+
+        // position of each variable in the current order of this instance
+        final int[] position = new int[nvars];
+        for (int i = 0; i < nvars; i++) {
+            position[vorder[i]] = i;
+        }
+
+        final double[] row = new double[nvars];
+        int nextr = 0;
+        for (int i = 0; i < nvars; i++) {
+            Arrays.fill(row, 0.0);
+            row[position[other.vorder[i]]] = 1.0;
+            for (int k = i + 1; k < nvars; k++) {
+                row[position[other.vorder[k]]] = other.r[nextr++];
+            }
+            if (other.d[i] != 0.0) {
+                rotate(row, other.d[i], other.rhs[i]);
+            }
+        }
+
+        sserr  = smartAdd(sserr, other.sserr);
+        sumy   = smartAdd(sumy, other.sumy);
+        sumsqy = smartAdd(sumsqy, other.sumsqy);
+        nobs  += other.nobs;
+        tol_set = false;
+        rss_set = false;
+    }
+
     /**
      * The include method is where the QR decomposition occurs. This statement forms all
      * intermediate data which will be used for all derivative measures.
@@ -195,6 +319,22 @@ public class MillerUpdatingRegression implements UpdatingMultipleLinearRegressio
      * @param yi observation on the regressand
      */
     private void include(final double[] x, final double wi, final double yi) {
+        sumy = smartAdd(yi, sumy);
+        sumsqy = smartAdd(sumsqy, yi * yi);
+        rotate(x, wi, yi);
+    }
+
+    /**
+     * Applies the square root free Givens rotations of Gentleman's algorithm
+     * to fold one weighted row into the triangular factor, without updating
+     * the regressand sums.
+     *
+     * @param x row of regressors, in the current order of the regressors
+     * (overwritten)
+     * @param wi weight of the row
+     * @param yi regressand value of the row
+     */
+    private void rotate(final double[] x, final double wi, final double yi) {
         int nextr = 0;
         double w = wi;
         double y = yi;
@@ -205,8 +345,6 @@ public class MillerUpdatingRegression implements UpdatingMultipleLinearRegressio
         double xk;
         double _w;
         this.rss_set = false;
-        sumy = smartAdd(yi, sumy);
-        sumsqy = smartAdd(sumsqy, yi * yi);
         for (int i = 0; i < x.length; i++) {
             if (w == 0.0) {
                 return;